@@ -0,0 +1,19 @@
+package com.magicalrice.project.library_annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要在编译期生成 Gson TypeAdapter 的数据类。
+ * <p>
+ * 编译时在同一个包下生成 {@code 类名_TypeAdapter}，运行时由 GeneratedTypeAdapterFactory 按类型查找，
+ * 不再走 Gson 的反射解析。字段名支持 {@code @SerializedName}，不支持泛型类。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
@@ -5,6 +5,7 @@ import android.app.Application
 import android.content.Context
 import android.os.Bundle
 import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
 
 /**
  * @package com.magicalrice.project.library_base.advanced
@@ -17,6 +18,7 @@ class AppManager private constructor() : Application.ActivityLifecycleCallbacks
     private lateinit var application: Application
     private var foregroundCount = 0
     private var foregroundListener: OnAppStatusChangedListener? = null
+    private val statusListeners = CopyOnWriteArrayList<OnAppStatusChangedListener>()
 
     companion object {
         fun getInstance() = Holder.INSTANCE
@@ -39,15 +41,23 @@ class AppManager private constructor() : Application.ActivityLifecycleCallbacks
         this.foregroundListener = listener
     }
 
+    /**
+     * 添加前后台切换监听，可添加多个，与 setForegroundListener 互不影响
+     */
+    fun addOnAppStatusChangedListener(listener: OnAppStatusChangedListener) {
+        statusListeners.addIfAbsent(listener)
+    }
+
+    fun removeOnAppStatusChangedListener(listener: OnAppStatusChangedListener) {
+        statusListeners.remove(listener)
+    }
+
     override fun onActivityPaused(activity: Activity?) {
 
     }
 
     override fun onActivityResumed(activity: Activity?) {
-        foregroundCount++
-        if (foregroundCount > 0) {
-            this.foregroundListener?.onForeground()
-        }
+
     }
 
     fun getTopActivityOrApp(): Context {
@@ -60,7 +70,11 @@ class AppManager private constructor() : Application.ActivityLifecycleCallbacks
     }
 
     override fun onActivityStarted(activity: Activity?) {
-
+        foregroundCount++
+        if (foregroundCount == 1) {
+            this.foregroundListener?.onForeground()
+            statusListeners.forEach { it.onForeground() }
+        }
     }
 
     override fun onActivityDestroyed(activity: Activity?) {
@@ -74,8 +88,10 @@ class AppManager private constructor() : Application.ActivityLifecycleCallbacks
     override fun onActivityStopped(activity: Activity?) {
         if (foregroundCount > 0) {
             foregroundCount--
-        } else {
-            this.foregroundListener?.onBackground()
+            if (foregroundCount == 0) {
+                this.foregroundListener?.onBackground()
+                statusListeners.forEach { it.onBackground() }
+            }
         }
     }
 
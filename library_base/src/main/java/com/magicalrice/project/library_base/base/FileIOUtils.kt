@@ -22,6 +22,7 @@ import java.util.*
  * readFile2BytesByStream     : 读取文件到字节数组中
  * readFile2BytesByChannel    : 读取文件到字节数组中
  * readFile2BytesByMap        : 读取文件到字节数组中
+ * preallocateFile            : 预分配文件大小
  * setBufferSize              : 设置缓冲区尺寸
  */
 
@@ -718,6 +719,33 @@ object FileIOUtils {
         }
     }
 
+    /**
+     * 预分配文件大小，分段并发写入前调用，文件已存在时截断或扩展到 length
+     *
+     * @param file   The file.
+     * @param length 文件长度
+     * @return `true`: success<br></br>`false`: fail
+     */
+    fun preallocateFile(file: File?, length: Long): Boolean {
+        if (!createOrExistsFile(file) || length < 0) return false
+        var raf: RandomAccessFile? = null
+        try {
+            raf = RandomAccessFile(file, "rw")
+            raf.setLength(length)
+            return true
+        } catch (e: IOException) {
+            e.printStackTrace()
+            return false
+        } finally {
+            try {
+                raf?.close()
+            } catch (e: IOException) {
+                e.printStackTrace()
+            }
+
+        }
+    }
+
     /**
      * 设置缓冲区尺寸
      *
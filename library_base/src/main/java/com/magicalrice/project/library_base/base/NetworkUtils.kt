@@ -42,7 +42,25 @@ class NetworkUtils {
         fun call(isSuccess: Boolean)
     }
 
+    /**
+     * 域名解析实现
+     */
+    interface DomainResolver {
+        @Throws(UnknownHostException::class)
+        fun lookup(hostname: String): List<InetAddress>
+    }
+
     companion object {
+        @Volatile
+        private var domainResolver: DomainResolver? = null
+
+        /**
+         * 设置域名解析实现(如网络层带缓存的 DNS)，为 null 时使用系统解析
+         */
+        fun setDomainResolver(resolver: DomainResolver?) {
+            domainResolver = resolver
+        }
+
         /**
          * 打开网络设置界面
          */
@@ -353,10 +371,13 @@ class NetworkUtils {
          */
         @RequiresPermission(INTERNET)
         fun getDomainAddress(domain: String): String {
-            val inetAddress: InetAddress
+            val resolver = domainResolver
             return try {
-                inetAddress = InetAddress.getByName(domain)
-                inetAddress.hostAddress
+                if (resolver != null) {
+                    resolver.lookup(domain).firstOrNull()?.hostAddress ?: ""
+                } else {
+                    InetAddress.getByName(domain).hostAddress
+                }
             } catch (e: UnknownHostException) {
                 e.printStackTrace()
                 ""
@@ -0,0 +1,185 @@
+package com.magicalrice.project.library_base.base.bandwidth
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import com.magicalrice.project.library_base.base.AppManager
+import com.magicalrice.project.library_base.base.NetworkUtils
+import java.util.ArrayDeque
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * @package com.magicalrice.project.library_base.base.bandwidth
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 根据实际传输速率和网络类型估算带宽，发布 [QualityTier]
+ *
+ * 网络层在每次响应体读完后调用 [addSample]。小于 [MIN_SAMPLE_BYTES] 的响应主要反映延迟而不是带宽，不计入；
+ * 样本按 sqrt(字节数) 加权，保留最近总权重 [maxWeight] 以内的样本，取加权中位数，个别异常样本不会拉偏结果。
+ * 样本不足 [MIN_SAMPLES] 个时使用网络类型的经验值；网络类型切换时清空样本。
+ * 网络类型同时限制档位上限：2G 只能是 LOW，3G 最多 MEDIUM。
+ * 档位切换带 [HYSTERESIS] 的回差，带宽在阈值附近波动时不会来回切换。
+ */
+
+class BandwidthEstimator @JvmOverloads constructor(private val maxWeight: Int = DEFAULT_MAX_WEIGHT) {
+    private val samples = ArrayDeque<Sample>()
+    private val listeners = CopyOnWriteArrayList<OnTierChangedListener>()
+    private var totalWeight = 0.0
+    private var networkType = NetworkUtils.NetworkType.NETWORK_UNKNOWN
+    @Volatile
+    private var bitrate = priorBitrate(networkType)
+    @Volatile
+    private var tier = QualityTier.of(bitrate)
+
+    /**
+     * @param bytes 响应体字节数
+     * @param nanos 读取响应体的耗时
+     */
+    fun addSample(bytes: Long, nanos: Long) {
+        if (bytes < MIN_SAMPLE_BYTES || nanos <= 0) return
+        val changed = synchronized(this) {
+            val sample = Sample(bytes * 8 * 1_000_000_000.0 / nanos, Math.sqrt(bytes.toDouble()))
+            samples.addLast(sample)
+            totalWeight += sample.weight
+            while (totalWeight > maxWeight && samples.size > 1) {
+                totalWeight -= samples.removeFirst().weight
+            }
+            if (samples.size >= MIN_SAMPLES) {
+                bitrate = weightedMedian()
+            }
+            updateTier(false)
+        }
+        changed?.let { notifyListeners(it) }
+    }
+
+    fun setNetworkType(type: NetworkUtils.NetworkType) {
+        val changed = synchronized(this) {
+            if (type == networkType) return
+            networkType = type
+            samples.clear()
+            totalWeight = 0.0
+            bitrate = priorBitrate(type)
+            updateTier(true)
+        }
+        changed?.let { notifyListeners(it) }
+    }
+
+    /**
+     * 当前估算带宽(bit/s)
+     */
+    fun getBitrateEstimate(): Long {
+        return bitrate
+    }
+
+    fun getTier(): QualityTier {
+        return tier
+    }
+
+    fun addOnTierChangedListener(listener: OnTierChangedListener) {
+        listeners.add(listener)
+    }
+
+    fun removeOnTierChangedListener(listener: OnTierChangedListener) {
+        listeners.remove(listener)
+    }
+
+    /**
+     * @return 档位有变化时返回新档位
+     */
+    private fun updateTier(immediate: Boolean): QualityTier? {
+        val current = tier
+        val cap = maxTier(networkType)
+        val next = when {
+            immediate || current > cap -> minOf(QualityTier.of(bitrate), cap)
+            //降档：低于当前档位阈值一定比例
+            bitrate < current.minBitrate * (1 - HYSTERESIS) -> minOf(QualityTier.of(bitrate), cap)
+            //升档：高于目标档位阈值一定比例
+            else -> maxOf(current, minOf(QualityTier.of((bitrate / (1 + HYSTERESIS)).toLong()), cap))
+        }
+        if (next == current) return null
+        tier = next
+        return next
+    }
+
+    private fun notifyListeners(tier: QualityTier) {
+        for (listener in listeners) {
+            listener.onTierChanged(tier)
+        }
+    }
+
+    private fun weightedMedian(): Long {
+        val sorted = samples.sortedBy { it.bitrate }
+        var weight = 0.0
+        for (sample in sorted) {
+            weight += sample.weight
+            if (weight >= totalWeight / 2) {
+                return sample.bitrate.toLong()
+            }
+        }
+        return sorted.last().bitrate.toLong()
+    }
+
+    private class Sample(val bitrate: Double, val weight: Double)
+
+    interface OnTierChangedListener {
+        /**
+         * 在产生样本的线程回调(通常是网络线程)
+         */
+        fun onTierChanged(tier: QualityTier)
+    }
+
+    companion object {
+        /**
+         * 小于该值的响应不计入
+         */
+        const val MIN_SAMPLE_BYTES = 16 * 1024L
+        const val MIN_SAMPLES = 3
+        const val HYSTERESIS = 0.2
+        //约 30 个 64KB 的样本
+        private const val DEFAULT_MAX_WEIGHT = 8000
+
+        private val shared by lazy {
+            BandwidthEstimator().also { registerNetworkReceiver(it, AppManager.getInstance().getApp()) }
+        }
+
+        /**
+         * 获取进程内共用的实例，第一次创建时注册网络变化广播
+         */
+        fun getInstance(): BandwidthEstimator {
+            return shared
+        }
+
+        /**
+         * 注册时系统会立即发送一次当前状态
+         */
+        private fun registerNetworkReceiver(estimator: BandwidthEstimator, context: Context) {
+            context.registerReceiver(object : BroadcastReceiver() {
+                override fun onReceive(context: Context, intent: Intent) {
+                    estimator.setNetworkType(NetworkUtils.getNetworkType())
+                }
+            }, IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION))
+        }
+
+        private fun priorBitrate(type: NetworkUtils.NetworkType): Long {
+            return when (type) {
+                NetworkUtils.NetworkType.NETWORK_ETHERNET -> 20_000_000
+                NetworkUtils.NetworkType.NETWORK_WIFI -> 8_000_000
+                NetworkUtils.NetworkType.NETWORK_4G -> 4_000_000
+                NetworkUtils.NetworkType.NETWORK_3G -> 1_000_000
+                NetworkUtils.NetworkType.NETWORK_2G -> 100_000
+                NetworkUtils.NetworkType.NETWORK_UNKNOWN -> 2_000_000
+                NetworkUtils.NetworkType.NETWORK_NO -> 0
+            }
+        }
+
+        private fun maxTier(type: NetworkUtils.NetworkType): QualityTier {
+            return when (type) {
+                NetworkUtils.NetworkType.NETWORK_2G, NetworkUtils.NetworkType.NETWORK_NO -> QualityTier.LOW
+                NetworkUtils.NetworkType.NETWORK_3G -> QualityTier.MEDIUM
+                else -> QualityTier.HIGH
+            }
+        }
+    }
+}
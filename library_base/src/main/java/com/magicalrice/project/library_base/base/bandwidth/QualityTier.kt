@@ -0,0 +1,55 @@
+package com.magicalrice.project.library_base.base.bandwidth
+
+/**
+ * @package com.magicalrice.project.library_base.base.bandwidth
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 按带宽划分的加载档位，由 [BandwidthEstimator] 发布
+ *
+ * 图片加载据此选择尺寸和解码格式，列表据此调整分页大小和预加载页数。
+ */
+
+enum class QualityTier(
+    /**
+     * 进入该档位所需的最低带宽(bit/s)
+     */
+    val minBitrate: Long,
+    /**
+     * 图片请求尺寸相对控件尺寸的比例
+     */
+    val imageScale: Float,
+    /**
+     * 优先使用 RGB_565 解码，内存和 CDN 流量都减半
+     */
+    val preferRgb565: Boolean,
+    /**
+     * CDN 压缩质量(1-100)
+     */
+    val imageQuality: Int,
+    private val pageScale: Float,
+    private val prefetchPages: Int
+) {
+    LOW(0, 0.5f, true, 50, 0.5f, 0),
+    MEDIUM(1_000_000, 0.75f, false, 75, 1f, 1),
+    HIGH(5_000_000, 1f, false, 90, 1f, 2);
+
+    /**
+     * @param base 正常网络下的每页条数
+     */
+    fun pageSize(base: Int): Int {
+        return Math.max(1, Math.round(base * pageScale))
+    }
+
+    /**
+     * 滚动到底前预先加载的页数，不超过 max
+     */
+    fun prefetchDepth(max: Int): Int {
+        return Math.min(max, prefetchPages)
+    }
+
+    companion object {
+        fun of(bitrate: Long): QualityTier {
+            return values().last { bitrate >= it.minBitrate }
+        }
+    }
+}
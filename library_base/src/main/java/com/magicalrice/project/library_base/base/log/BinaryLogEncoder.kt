@@ -0,0 +1,229 @@
+package com.magicalrice.project.library_base.base.log
+
+import java.util.TimeZone
+
+/**
+ * @package com.magicalrice.project.library_base.base.log
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 把日志编码为紧凑的二进制记录
+ *
+ * 每段以 "MLOG"、版本号和时区偏移(分钟)开头，之后是一条条记录，每条以类型字节开始：
+ * ```
+ * DEFINE 0x01  id, 长度, UTF-8         定义字符串，id 在本段内有效
+ * EVENT  0x02  时间差, 级别, tag, 头部, 格式串(0 表示没有), 参数个数, 参数...
+ * TEXT   0x03  长度, UTF-8              原样输出的文本，如文件开头的设备信息
+ * ```
+ * 整数都是 varint，时间是与上一条记录的毫秒差(zigzag，第一条相对 0)。tag、头部和格式串第一次出现时
+ * 先写一条 DEFINE，之后只写 id。参数以类型字节开始：null、true、false、整数(zigzag varint)、double、float、
+ * 字符串；其它对象用 LogUtils 的格式化结果按字符串写入。
+ * 每次打开文件(包括进程重启后接着写当天的文件)都从新的一段开始，id 和时间基准只在段内有效。
+ * 头部包含线程名，线程名可能一直在变(如 OkHttp 按 url 给线程改名)，已定义的字符串超过 maxStrings 个时，
+ * 在同一文件中从新的一段开始，字符串表不会无限增长。
+ * 格式串用 {} 作为占位符。解码见 library_log_decoder 的 LogDecoder，两边的常量需要保持一致。
+ *
+ * 不是线程安全的，由调用方加锁。
+ */
+
+internal class BinaryLogEncoder(
+    private val maxStrings: Int = MAX_STRINGS,
+    private val stringify: (Any) -> String
+) {
+    private val ids = HashMap<String, Int>()
+    private var buffer = ByteArray(256)
+    private var size = 0
+    private var lastMillis = 0L
+
+    /**
+     * 新一段的开头，同时清空已定义的字符串和时间基准
+     */
+    fun fileHead(millis: Long, text: String?): ByteArray {
+        size = 0
+        writeSegmentHead(millis)
+        if (text != null) {
+            writeByte(RECORD_TEXT)
+            writeString(text)
+        }
+        return buffer.copyOf(size)
+    }
+
+    /**
+     * 编码一条日志，结果在 [buffer] 的前若干字节
+     *
+     * @return 编码后的长度
+     */
+    fun encode(millis: Long, level: Int, tag: String, head: String, format: String?, args: Array<out Any?>): Int {
+        size = 0
+        if (ids.size >= maxStrings) {
+            writeSegmentHead(millis)
+        }
+        val tagId = intern(tag)
+        val headId = intern(head)
+        val formatId = if (format == null) 0 else intern(format)
+        writeByte(RECORD_EVENT)
+        writeVarLong(zigzag(millis - lastMillis))
+        lastMillis = millis
+        writeByte(level)
+        writeVarLong(tagId.toLong())
+        writeVarLong(headId.toLong())
+        writeVarLong(formatId.toLong())
+        writeVarLong(args.size.toLong())
+        for (arg in args) {
+            writeArg(arg)
+        }
+        return size
+    }
+
+    fun buffer(): ByteArray {
+        return buffer
+    }
+
+    private fun writeSegmentHead(millis: Long) {
+        ids.clear()
+        lastMillis = 0
+        for (b in MAGIC) {
+            writeByte(b.toInt())
+        }
+        writeByte(VERSION)
+        writeVarLong(zigzag(TimeZone.getDefault().getOffset(millis) / 60000L))
+    }
+
+    private fun intern(value: String): Int {
+        ids[value]?.let { return it }
+        val id = ids.size + 1
+        ids[value] = id
+        writeByte(RECORD_DEFINE)
+        writeVarLong(id.toLong())
+        writeString(value)
+        return id
+    }
+
+    private fun writeArg(arg: Any?) {
+        when (arg) {
+            null -> writeByte(ARG_NULL)
+            is Boolean -> writeByte(if (arg) ARG_TRUE else ARG_FALSE)
+            is Int, is Long, is Short, is Byte -> {
+                writeByte(ARG_LONG)
+                writeVarLong(zigzag((arg as Number).toLong()))
+            }
+            is Double -> {
+                writeByte(ARG_DOUBLE)
+                writeFixed(java.lang.Double.doubleToLongBits(arg), 8)
+            }
+            is Float -> {
+                writeByte(ARG_FLOAT)
+                writeFixed(java.lang.Float.floatToIntBits(arg).toLong(), 4)
+            }
+            is CharSequence -> {
+                writeByte(ARG_STRING)
+                writeString(arg)
+            }
+            else -> {
+                writeByte(ARG_STRING)
+                writeString(stringify(arg))
+            }
+        }
+    }
+
+    /**
+     * 直接编码为 UTF-8，不生成中间的字节数组；落单的代理字符与 String.getBytes 一样写成 '?'
+     */
+    private fun writeString(value: CharSequence) {
+        var length = 0
+        var i = 0
+        while (i < value.length) {
+            val c = value[i]
+            length += when {
+                c.toInt() < 0x80 -> 1
+                c.toInt() < 0x800 -> 2
+                isPair(value, i) -> {
+                    i++
+                    4
+                }
+                Character.isSurrogate(c) -> 1
+                else -> 3
+            }
+            i++
+        }
+        writeVarLong(length.toLong())
+        ensure(length)
+        i = 0
+        while (i < value.length) {
+            val c = value[i].toInt()
+            when {
+                c < 0x80 -> buffer[size++] = c.toByte()
+                c < 0x800 -> {
+                    buffer[size++] = (0xc0 or (c shr 6)).toByte()
+                    buffer[size++] = (0x80 or (c and 0x3f)).toByte()
+                }
+                isPair(value, i) -> {
+                    val code = Character.toCodePoint(value[i], value[++i])
+                    buffer[size++] = (0xf0 or (code shr 18)).toByte()
+                    buffer[size++] = (0x80 or (code shr 12 and 0x3f)).toByte()
+                    buffer[size++] = (0x80 or (code shr 6 and 0x3f)).toByte()
+                    buffer[size++] = (0x80 or (code and 0x3f)).toByte()
+                }
+                Character.isSurrogate(value[i]) -> buffer[size++] = '?'.toByte()
+                else -> {
+                    buffer[size++] = (0xe0 or (c shr 12)).toByte()
+                    buffer[size++] = (0x80 or (c shr 6 and 0x3f)).toByte()
+                    buffer[size++] = (0x80 or (c and 0x3f)).toByte()
+                }
+            }
+            i++
+        }
+    }
+
+    private fun isPair(value: CharSequence, index: Int): Boolean {
+        return Character.isHighSurrogate(value[index]) && index + 1 < value.length
+                && Character.isLowSurrogate(value[index + 1])
+    }
+
+    private fun writeByte(value: Int) {
+        ensure(1)
+        buffer[size++] = value.toByte()
+    }
+
+    private fun writeVarLong(value: Long) {
+        ensure(10)
+        var v = value
+        while (v and 0x7fL.inv() != 0L) {
+            buffer[size++] = (v and 0x7f or 0x80).toByte()
+            v = v ushr 7
+        }
+        buffer[size++] = v.toByte()
+    }
+
+    private fun writeFixed(value: Long, bytes: Int) {
+        ensure(bytes)
+        for (i in bytes - 1 downTo 0) {
+            buffer[size++] = (value ushr (i * 8)).toByte()
+        }
+    }
+
+    private fun ensure(count: Int) {
+        if (size + count > buffer.size) {
+            buffer = buffer.copyOf(Math.max(buffer.size * 2, size + count))
+        }
+    }
+
+    private fun zigzag(value: Long): Long {
+        return value shl 1 xor (value shr 63)
+    }
+
+    companion object {
+        private val MAGIC = byteArrayOf('M'.toByte(), 'L'.toByte(), 'O'.toByte(), 'G'.toByte())
+        private const val VERSION = 1
+        private const val MAX_STRINGS = 1024
+        private const val RECORD_DEFINE = 0x01
+        private const val RECORD_EVENT = 0x02
+        private const val RECORD_TEXT = 0x03
+        private const val ARG_NULL = 0
+        private const val ARG_TRUE = 1
+        private const val ARG_FALSE = 2
+        private const val ARG_LONG = 3
+        private const val ARG_DOUBLE = 4
+        private const val ARG_FLOAT = 5
+        private const val ARG_STRING = 6
+    }
+}
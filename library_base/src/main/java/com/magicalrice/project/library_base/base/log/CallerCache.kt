@@ -0,0 +1,62 @@
+package com.magicalrice.project.library_base.base.log
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * @package com.magicalrice.project.library_base.base.log
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 按调用位置缓存日志 tag 和格式化后的位置信息
+ *
+ * 每次取调用栈得到的都是新的 StackTraceElement，但同一调用位置的元素相等(类、方法、文件、行号)，
+ * 以它为 key 后，文件名解析和格式化只在第一次执行。调用位置数量有限，超过 [MAX_ENTRIES] 时整体清空。
+ */
+
+internal object CallerCache {
+    private const val MAX_ENTRIES = 1024
+    private val frames = ConcurrentHashMap<StackTraceElement, Frame>()
+
+    class Frame(
+        /**
+         * 文件名去掉扩展名
+         */
+        val tag: String,
+        /**
+         * 如 com.example.MainActivity.onCreate(MainActivity.kt:20)
+         */
+        val location: String
+    )
+
+    fun get(element: StackTraceElement): Frame {
+        frames[element]?.let { return it }
+        if (frames.size >= MAX_ENTRIES) {
+            frames.clear()
+        }
+        val fileName = getFileName(element)
+        val index = fileName.indexOf('.')// Use proguard may not find '.'.
+        val frame = Frame(
+            if (index == -1) fileName else fileName.substring(0, index),
+            element.className + '.' + element.methodName + '(' + fileName + ':' + element.lineNumber + ')'
+        )
+        frames[element] = frame
+        return frame
+    }
+
+    fun size(): Int {
+        return frames.size
+    }
+
+    private fun getFileName(targetElement: StackTraceElement): String {
+        val fileName = targetElement.fileName
+        if (fileName != null) return fileName
+        // If name of file is null, should add
+        // "-keepattributes SourceFile,LineNumberTable" in proguard file.
+        var className = targetElement.className
+        className = className.substring(className.lastIndexOf('.') + 1)
+        val index = className.indexOf('$')
+        if (index != -1) {
+            className = className.substring(0, index)
+        }
+        return "$className.java"
+    }
+}
@@ -0,0 +1,20 @@
+package com.magicalrice.project.library_base.base.log
+
+/**
+ * @package com.magicalrice.project.library_base.base.log
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 日志 tag 和调用位置的获取方式
+ */
+
+enum class CallerMode {
+    /**
+     * 通过调用栈获取调用位置，tag 为空时使用调用处的文件名；同一调用位置的格式化结果会缓存
+     */
+    STACK,
+    /**
+     * 不遍历调用栈：tag 使用 xTag(tag, ...) 传入的值或全局 tag，头部只输出线程名。
+     * 适合频繁调用的代码，tag 在编译期写成常量
+     */
+    STATIC
+}
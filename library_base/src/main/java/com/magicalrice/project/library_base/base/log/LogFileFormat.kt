@@ -0,0 +1,20 @@
+package com.magicalrice.project.library_base.base.log
+
+/**
+ * @package com.magicalrice.project.library_base.base.log
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 日志文件的格式
+ */
+
+enum class LogFileFormat {
+    /**
+     * 每行一条文本日志，prefix-yyyy-MM-dd.txt
+     */
+    TEXT,
+    /**
+     * 二进制记录，prefix-yyyy-MM-dd.blog：tag、调用位置和格式串只在文件中定义一次，参数按类型写入，不做字符串格式化。
+     * 需要用 library_log_decoder 转成文本或 JSON 查看
+     */
+    BINARY
+}
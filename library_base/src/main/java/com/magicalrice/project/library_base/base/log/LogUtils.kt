@@ -23,6 +23,7 @@ import java.text.ParseException
 import java.text.SimpleDateFormat
 import java.util.*
 import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
 import javax.xml.transform.OutputKeys
 import javax.xml.transform.TransformerFactory
 import javax.xml.transform.stream.StreamResult
@@ -58,11 +59,18 @@ object LogUtils {
     private val NULL = "null"
     private val ARGS = "args"
     private val PLACEHOLDER = " "
+    //CallerMode.STATIC 下未指定 tag 时使用
+    private val STATIC_TAG = "LogUtils"
+    private val DEFAULT_MAX_FILE_SIZE = 8L * 1024 * 1024
     private val CONFIG = Config()
 
-    private val SDF_THREAD_LOCAL = ThreadLocal<SimpleDateFormat>()
-
     private val EXECUTOR = Executors.newSingleThreadExecutor()
+    //文件中每行时间后的级别，如 "D/"
+    private val TYPE_HEADS = T.map { "$it/" }.toTypedArray()
+    private val FLUSH_SCHEDULED = AtomicBoolean()
+    @Volatile
+    private var fileWriter: MmapLogWriter? = null
+    private val BINARY_ENCODER = BinaryLogEncoder { formatObject(it) }
 
     fun getConfig(): Config {
         return CONFIG
@@ -169,54 +177,94 @@ object LogUtils {
     }
 
     fun log(type: Int, tag: String, vararg contents: Any) {
+        //调用层级：processTagAndHead <- dispatch <- log <- v/d/i... <- 调用处
+        dispatch(type, tag, null, contents, 4)
+    }
+
+    /**
+     * 按格式串输出，格式串用 {} 作为占位符，应写成常量。
+     * 文件格式为 [LogFileFormat.BINARY] 且不输出到控制台时不做格式化，参数按类型写入文件
+     *
+     * ```
+     * LogUtils.event(D, "Image", "decode {} took {} ms", url, cost)
+     * ```
+     */
+    fun event(@TYPE type: Int, tag: String, format: String, vararg args: Any?) {
+        //调用层级：processTagAndHead <- dispatch <- event <- 调用处
+        dispatch(type, tag, format, args, 3)
+    }
+
+    private fun dispatch(type: Int, tag: String, format: String?, contents: Array<out Any?>, depth: Int) {
         if (!CONFIG.mLogSwitch || !CONFIG.mLog2ConsoleSwitch && !CONFIG.mLog2FileSwitch) return
         val type_low = type and 0x0f
         val type_high = type and 0xf0
-        if (type_low < CONFIG.mConsoleFilter && type_low < CONFIG.mFileFilter) return
-        val tagHead = processTagAndHead(tag)
-        val body = processBody(type_high, *contents)
-        if (CONFIG.mLog2ConsoleSwitch && type_low >= CONFIG.mConsoleFilter && type_high != FILE) {
-            print2Console(type_low, tagHead.tag, tagHead.consoleHead, body)
+        val toConsole = CONFIG.mLog2ConsoleSwitch && type_low >= CONFIG.mConsoleFilter && type_high != FILE
+        val toFile = (CONFIG.mLog2FileSwitch || type_high == FILE) && type_low >= CONFIG.mFileFilter
+        //两处都不输出时不取调用栈，也不格式化内容
+        if (!toConsole && !toFile) return
+        val tagHead = processTagAndHead(tag, depth)
+        val toBinary = toFile && CONFIG.mFileFormat == LogFileFormat.BINARY
+        if (toConsole || !toBinary) {
+            val body = if (format == null) processBody(type_high, *contents) else formatTemplate(format, contents)
+            if (toConsole) {
+                print2Console(type_low, tagHead.tag, tagHead.consoleHead, body)
+            }
+            if (toFile && !toBinary) {
+                print2File(type_low, tagHead.tag, tagHead.fileHead + body)
+            }
+        }
+        if (toBinary) {
+            print2Binary(type_low, tagHead.tag, tagHead.fileHead, format, contents)
+        }
+    }
+
+    private fun formatTemplate(format: String, args: Array<out Any?>): String {
+        val sb = StringBuilder(format.length + args.size * 8)
+        var start = 0
+        var index = 0
+        while (index < args.size) {
+            val placeholder = format.indexOf("{}", start)
+            if (placeholder == -1) break
+            sb.append(format, start, placeholder).append(formatArg(args[index++]))
+            start = placeholder + 2
         }
-        if ((CONFIG.mLog2FileSwitch || type_high == FILE) && type_low >= CONFIG.mFileFilter) {
-            print2File(type_low, tagHead.tag, tagHead.fileHead + body)
+        return sb.append(format, start, format.length).toString()
+    }
+
+    private fun formatArg(arg: Any?): String {
+        return when (arg) {
+            null -> NULL
+            is CharSequence, is Number, is Boolean -> arg.toString()
+            else -> formatObject(arg)
         }
     }
 
-    private fun processTagAndHead(tag: String): TagHead {
+    private fun processTagAndHead(tag: String, depth: Int): TagHead {
         var tag = tag
         if (!CONFIG.mTagIsSpace && !CONFIG.mLogHeadSwitch) {
             tag = CONFIG.mGlobalTag
+        } else if (CONFIG.mCallerMode == CallerMode.STATIC) {
+            if (isSpace(tag)) tag = if (CONFIG.mTagIsSpace) STATIC_TAG else CONFIG.mGlobalTag
+            if (CONFIG.mLogHeadSwitch) {
+                val head = Thread.currentThread().name
+                return TagHead(tag, arrayOf(head), " [$head]: ")
+            }
         } else {
             val stackTrace = Throwable().stackTrace
-            val stackIndex = 3 + CONFIG.mStackOffset
+            val stackIndex = depth + CONFIG.mStackOffset
             if (stackIndex >= stackTrace.size) {
-                val targetElement = stackTrace[3]
-                val fileName = getFileName(targetElement)
                 if (CONFIG.mTagIsSpace && isSpace(tag)) {
-                    val index = fileName.indexOf('.')// Use proguard may not find '.'.
-                    tag = if (index == -1) fileName else fileName.substring(0, index)
+                    tag = CallerCache.get(stackTrace[depth]).tag
                 }
                 return TagHead(tag, null, ": ")
             }
-            var targetElement = stackTrace[stackIndex]
-            val fileName = getFileName(targetElement)
+            val frame = CallerCache.get(stackTrace[stackIndex])
             if (CONFIG.mTagIsSpace && isSpace(tag)) {
-                val index = fileName.indexOf('.')// Use proguard may not find '.'.
-                tag = if (index == -1) fileName else fileName.substring(0, index)
+                tag = frame.tag
             }
             if (CONFIG.mLogHeadSwitch) {
                 val tName = Thread.currentThread().name
-                val head = Formatter()
-                    .format(
-                        "%s, %s.%s(%s:%d)",
-                        tName,
-                        targetElement.className,
-                        targetElement.methodName,
-                        fileName,
-                        targetElement.lineNumber
-                    )
-                    .toString()
+                val head = tName + ", " + frame.location
                 val fileHead = " [$head]: "
                 if (CONFIG.mStackDeep <= 1) {
                     return TagHead(tag, arrayOf(head), fileHead)
@@ -228,22 +276,11 @@ object LogUtils {
                         )
                     )
                     consoleHead[0] = head
-                    val spaceLen = tName.length + 2
-                    val space = Formatter().format("%" + spaceLen + "s", "").toString()
+                    val space = PLACEHOLDER.repeat(tName.length + 2)
                     var i = 1
                     val len = consoleHead.size
                     while (i < len) {
-                        targetElement = stackTrace[i + stackIndex]
-                        consoleHead[i] = Formatter()
-                            .format(
-                                "%s%s.%s(%s:%d)",
-                                space,
-                                targetElement.className,
-                                targetElement.methodName,
-                                getFileName(targetElement),
-                                targetElement.lineNumber
-                            )
-                            .toString()
+                        consoleHead[i] = space + CallerCache.get(stackTrace[i + stackIndex]).location
                         ++i
                     }
                     return TagHead(tag, consoleHead, fileHead)
@@ -253,25 +290,7 @@ object LogUtils {
         return TagHead(tag, null, ": ")
     }
 
-    private fun getFileName(targetElement: StackTraceElement): String {
-        val fileName = targetElement.fileName
-        if (fileName != null) return fileName
-        // If name of file is null, should add
-        // "-keepattributes SourceFile,LineNumberTable" in proguard file.
-        var className = targetElement.className
-        val classNameInfo =
-            className.split("\\.".toRegex()).dropLastWhile { it.isEmpty() }.toTypedArray()
-        if (classNameInfo.size > 0) {
-            className = classNameInfo[classNameInfo.size - 1]
-        }
-        val index = className.indexOf('$')
-        if (index != -1) {
-            className = className.substring(0, index)
-        }
-        return "$className.java"
-    }
-
-    private fun processBody(type: Int, vararg contents: Any): String {
+    private fun processBody(type: Int, vararg contents: Any?): String {
         var body = NULL
         if (contents != null) {
             if (contents.size == 1) {
@@ -449,75 +468,169 @@ object LogUtils {
     }
 
     private fun print2File(type: Int, tag: String, msg: String) {
-        val now = Date(System.currentTimeMillis())
-        val format = getSdf().format(now)
-        val date = format.substring(0, 10)
-        val time = format.substring(11)
-        val fullPath = ((if (CONFIG.mDir == null) CONFIG.mDefaultDir else CONFIG.mDir)
-                + CONFIG.mFilePrefix + "-" + date + ".txt")
-        if (!createOrExistsFile(fullPath)) {
-            Log.e("LogUtils", "create $fullPath failed!")
+        val writer = getFileWriter() ?: return
+        val now = System.currentTimeMillis()
+        if (!writer.isBuffered()) {
+            //没有映射缓冲区时每行都直接写文件，交给后台线程
+            EXECUTOR.execute { appendText(writer, now, type, tag, msg) }
             return
         }
-        val sb = StringBuilder()
-        sb.append(time)
-            .append(T[type - V])
-            .append("/")
-            .append(tag)
-            .append(msg)
-            .append(LINE_SEP)
-        val content = sb.toString()
-        input2File(content, fullPath)
+        if (appendText(writer, now, type, tag, msg)) {
+            scheduleFlush(writer, now)
+        }
     }
 
-    private fun getSdf(): SimpleDateFormat {
-        var simpleDateFormat = SDF_THREAD_LOCAL.get()
-        if (simpleDateFormat == null) {
-            simpleDateFormat = SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-            SDF_THREAD_LOCAL.set(simpleDateFormat)
+    private fun appendText(writer: MmapLogWriter, now: Long, type: Int, tag: String, msg: String): Boolean {
+        try {
+            writer.append(now, TYPE_HEADS[type - V], tag, msg, LINE_SEP)
+            return true
+        } catch (e: IOException) {
+            e.printStackTrace()
+            Log.e("LogUtils", "log to ${writer.dir} failed!")
+            return false
         }
-        return simpleDateFormat
     }
 
-    private fun createOrExistsFile(filePath: String): Boolean {
-        val file = File(filePath)
-        if (file.exists()) return file.isFile
-        if (!createOrExistsDir(file.parentFile)) return false
+    /**
+     * 二进制格式不拼接字符串：tag、头部和格式串在文件中只定义一次，参数按类型写入
+     */
+    private fun print2Binary(type: Int, tag: String, head: String, format: String?, args: Array<out Any?>) {
+        val writer = getFileWriter() ?: return
+        val now = System.currentTimeMillis()
+        if (!writer.isBuffered()) {
+            //没有映射缓冲区时交给后台线程，参数先转成不可变的值，避免之后被修改
+            val values = Array(args.size) {
+                val arg = args[it]
+                if (arg == null || arg is Boolean || arg is Number) arg else formatArg(arg)
+            }
+            EXECUTOR.execute { appendBinary(writer, now, type, tag, head, format, values) }
+            return
+        }
+        if (appendBinary(writer, now, type, tag, head, format, args)) {
+            scheduleFlush(writer, now)
+        }
+    }
+
+    private fun appendBinary(
+        writer: MmapLogWriter, now: Long, type: Int, tag: String, head: String, format: String?, args: Array<out Any?>
+    ): Boolean {
         try {
-            deleteDueLogs(filePath)
-            val isCreate = file.createNewFile()
-            if (isCreate) {
-                printDeviceInfo(filePath)
+            //换文件时会重置已定义的字符串，换文件和编码要在同一个锁内
+            synchronized(BINARY_ENCODER) {
+                writer.prepare(now)
+                val length = BINARY_ENCODER.encode(now, type, tag, head, format, args)
+                writer.append(now, BINARY_ENCODER.buffer(), length)
             }
-            return isCreate
+            return true
         } catch (e: IOException) {
             e.printStackTrace()
+            Log.e("LogUtils", "log to ${writer.dir} failed!")
             return false
         }
+    }
 
+    private fun scheduleFlush(writer: MmapLogWriter, now: Long) {
+        if (writer.shouldFlush(now) && FLUSH_SCHEDULED.compareAndSet(false, true)) {
+            EXECUTOR.execute {
+                FLUSH_SCHEDULED.set(false)
+                flushQuietly(writer)
+            }
+        }
+    }
+
+    /**
+     * 把缓冲中的日志写入文件，读取或上传日志文件前调用；日志不会因进程退出丢失，只是文件里暂时看不到
+     */
+    fun flushFile() {
+        fileWriter?.let { flushQuietly(it) }
+    }
+
+    private fun flushQuietly(writer: MmapLogWriter) {
+        try {
+            writer.flush()
+        } catch (e: IOException) {
+            e.printStackTrace()
+            Log.e("LogUtils", "flush log to ${writer.dir} failed!")
+        }
     }
 
-    private fun deleteDueLogs(filePath: String) {
-        val file = File(filePath)
-        val parentFile = file.parentFile
-        val files =
-            parentFile.listFiles { dir, name -> name.matches(("^" + CONFIG.mFilePrefix + "-[0-9]{4}-[0-9]{2}-[0-9]{2}.txt$").toRegex()) }
-        if (files!!.size <= 0) return
-        val length = filePath.length
+    /**
+     * 目录、前缀、大小上限或文件格式变化时换一个 writer
+     */
+    private fun getFileWriter(): MmapLogWriter? {
+        val dir = (if (CONFIG.mDir == null) CONFIG.mDefaultDir else CONFIG.mDir) ?: return null
+        val current = fileWriter
+        if (current != null && current.matches(dir)) return current
+        synchronized(this) {
+            val checked = fileWriter
+            if (checked != null && checked.matches(dir)) return checked
+            checked?.let {
+                fileWriter = null
+                //先关闭旧 writer 释放缓冲区文件，新 writer 可能使用同一个缓冲区
+                try {
+                    it.close()
+                } catch (e: IOException) {
+                    e.printStackTrace()
+                    Log.e("LogUtils", "close log writer in ${it.dir} failed!")
+                }
+            }
+            val binary = CONFIG.mFileFormat == LogFileFormat.BINARY
+            val suffix = if (binary) MmapLogWriter.SUFFIX_BINARY else MmapLogWriter.SUFFIX_TEXT
+            val created = try {
+                MmapLogWriter(File(dir), CONFIG.mFilePrefix, CONFIG.mMaxFileSize, suffix = suffix) { day, created ->
+                    if (created) {
+                        //列目录、删文件都在后台线程
+                        EXECUTOR.execute { deleteDueLogs(dir, day) }
+                    }
+                    val head = if (created) getDeviceInfo(day) else null
+                    when {
+                        //每次打开都重新开始一段，已定义的字符串和时间基准从这里重新计算
+                        binary -> BINARY_ENCODER.fileHead(System.currentTimeMillis(), head)
+                        else -> head?.toByteArray(Charsets.UTF_8)
+                    }
+                }
+            } catch (e: IOException) {
+                e.printStackTrace()
+                Log.e("LogUtils", "create log writer in $dir failed!")
+                return null
+            }
+            if (checked == null) {
+                //切到后台时写入文件，方便查看
+                AppManager.getInstance().addOnAppStatusChangedListener(object : AppManager.OnAppStatusChangedListener {
+                    override fun onForeground() {
+                    }
+
+                    override fun onBackground() {
+                        EXECUTOR.execute { flushFile() }
+                    }
+                })
+            }
+            fileWriter = created
+            return created
+        }
+    }
+
+    private fun MmapLogWriter.matches(dir: String): Boolean {
+        return this.dir.path + FILE_SEP == dir && prefix == CONFIG.mFilePrefix && maxFileSize == CONFIG.mMaxFileSize
+                && suffix == (if (CONFIG.mFileFormat == LogFileFormat.BINARY) MmapLogWriter.SUFFIX_BINARY else MmapLogWriter.SUFFIX_TEXT)
+    }
+
+    private fun deleteDueLogs(dir: String, curDay: String) {
+        if (CONFIG.mSaveDays <= 0) return
+        val prefix = CONFIG.mFilePrefix + "-"
+        val files = File(dir).listFiles { _, name ->
+            name.matches(("^" + CONFIG.mFilePrefix + "-[0-9]{4}-[0-9]{2}-[0-9]{2}(_[0-9]+)?\\.(txt|blog)$").toRegex())
+        }
+        if (files == null || files.isEmpty()) return
         val sdf = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
         try {
-            val curDay = filePath.substring(length - 14, length - 4)
             val dueMillis = sdf.parse(curDay).time - CONFIG.mSaveDays * 86400000L
             for (aFile in files) {
-                val name = aFile.name
-                val l = name.length
-                val logDay = name.substring(l - 14, l - 4)
+                val logDay = aFile.name.substring(prefix.length, prefix.length + 10)
                 if (sdf.parse(logDay).time <= dueMillis) {
-                    EXECUTOR.execute {
-                        val delete = aFile.delete()
-                        if (!delete) {
-                            Log.e("LogUtils", "delete $aFile failed!")
-                        }
+                    val delete = aFile.delete()
+                    if (!delete) {
+                        Log.e("LogUtils", "delete $aFile failed!")
                     }
                 }
             }
@@ -527,7 +640,7 @@ object LogUtils {
 
     }
 
-    private fun printDeviceInfo(filePath: String) {
+    private fun getDeviceInfo(day: String): String {
         var versionName = ""
         var versionCode = 0
         try {
@@ -542,9 +655,8 @@ object LogUtils {
             e.printStackTrace()
         }
 
-        val time = filePath.substring(filePath.length - 14, filePath.length - 4)
-        val head = "************* Log Head ****************" +
-                "\nDate of Log        : " + time +
+        return "************* Log Head ****************" +
+                "\nDate of Log        : " + day +
                 "\nDevice Manufacturer: " + Build.MANUFACTURER +
                 "\nDevice Model       : " + Build.MODEL +
                 "\nAndroid Version    : " + Build.VERSION.RELEASE +
@@ -552,7 +664,6 @@ object LogUtils {
                 "\nApp VersionName    : " + versionName +
                 "\nApp VersionCode    : " + versionCode +
                 "\n************* Log Head ****************\n\n"
-        input2File(head, filePath)
     }
 
     private fun createOrExistsDir(file: File?): Boolean {
@@ -572,26 +683,6 @@ object LogUtils {
         return true
     }
 
-    private fun input2File(input: String, filePath: String) {
-        EXECUTOR.execute {
-            var bw: BufferedWriter? = null
-            try {
-                bw = BufferedWriter(FileWriter(filePath, true))
-                bw.write(input)
-            } catch (e: IOException) {
-                e.printStackTrace()
-                Log.e("LogUtils", "log to $filePath failed!")
-            } finally {
-                try {
-                    bw?.close()
-                } catch (e: IOException) {
-                    e.printStackTrace()
-                }
-
-            }
-        }
-    }
-
     internal fun <T> getTypeClassFromParadigm(formatter: IFormatter<T>): Class<*>? {
         val genericInterfaces = formatter.javaClass.genericInterfaces
         var type: Type?
@@ -669,7 +760,10 @@ object LogUtils {
         var mFileFilter = V     // The file's filter of log.
         var mStackDeep = 1     // The stack's deep of log.
         var mStackOffset = 0     // The stack's offset of log.
+        var mCallerMode = CallerMode.STACK // How tag and head are resolved.
         var mSaveDays = -1    // The save days of log.
+        var mMaxFileSize = DEFAULT_MAX_FILE_SIZE // The max size of one log file.
+        var mFileFormat = LogFileFormat.TEXT // The format of log file.
 
         constructor() {
             if (mDefaultDir != null) return
@@ -770,11 +864,35 @@ object LogUtils {
             return this
         }
 
+        /**
+         * 频繁输出日志的场景可设为 [CallerMode.STATIC]，不再遍历调用栈
+         */
+        fun setCallerMode(callerMode: CallerMode): Config {
+            mCallerMode = callerMode
+            return this
+        }
+
         fun setSaveDays(@IntRange(from = 1) saveDays: Int): Config {
             mSaveDays = saveDays
             return this
         }
 
+        /**
+         * 单个日志文件的大小上限，超过后当天续写 prefix-yyyy-MM-dd_1.txt，<= 0 不限制
+         */
+        fun setMaxFileSize(maxFileSize: Long): Config {
+            mMaxFileSize = maxFileSize
+            return this
+        }
+
+        /**
+         * 设为 [LogFileFormat.BINARY] 时文件更小，写入时不格式化，需要用 library_log_decoder 解码查看
+         */
+        fun setFileFormat(fileFormat: LogFileFormat): Config {
+            mFileFormat = fileFormat
+            return this
+        }
+
         override fun toString(): String {
             return ("switch: " + mLogSwitch
                     + LINE_SEP + "console: " + mLog2ConsoleSwitch
@@ -789,7 +907,10 @@ object LogUtils {
                     + LINE_SEP + "fileFilter: " + T[mFileFilter - V]
                     + LINE_SEP + "stackDeep: " + mStackDeep
                     + LINE_SEP + "stackOffset: " + mStackOffset
-                    + LINE_SEP + "saveDays: " + mSaveDays)
+                    + LINE_SEP + "callerMode: " + mCallerMode
+                    + LINE_SEP + "saveDays: " + mSaveDays
+                    + LINE_SEP + "maxFileSize: " + mMaxFileSize
+                    + LINE_SEP + "fileFormat: " + mFileFormat)
         }
     }
 
@@ -0,0 +1,382 @@
+package com.magicalrice.project.library_base.base.log
+
+import java.io.Closeable
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.OverlappingFileLockException
+import java.nio.charset.CodingErrorAction
+import java.util.Calendar
+
+/**
+ * @package com.magicalrice.project.library_base.base.log
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 通过内存映射缓冲区写日志文件
+ *
+ * 日志先编码进映射到 `.<prefix>.logbuf` 的缓冲区，攒够一批再一次写入当天的日志文件，文件在当天内保持打开。
+ * 映射页由内核负责写回，进程被杀后缓冲区里的内容仍在，下次创建时先补写到原来的日志文件([recover])。
+ * 缓冲区头部记录已写入长度和目标文件路径，长度在整行写完后才更新，写到一半被杀的行会被丢弃；
+ * 补写完成到清空长度之间被杀，下次会重复补写这一批。
+ *
+ * 缓冲区文件用文件锁独占，同一目录被其它进程(如 :dexopt、推送进程)或未关闭的 writer 占用时，
+ * 不使用映射缓冲区，每次写入直接写文件，避免多个进程覆盖同一个缓冲区；此时 [isBuffered] 为 false，
+ * 调用方应在后台线程写入。
+ *
+ * 跨天时换新文件(prefix-yyyy-MM-dd.txt)，超过 maxFileSize 时在同一天内续写 prefix-yyyy-MM-dd_1.txt、_2 ...
+ * 二进制格式([BinaryLogEncoder])使用 .blog 后缀，通过 [prepare] 和 [append] 写入已编码的记录。
+ * 方法都是同步的，写入只是内存拷贝；缓冲区写满时会在调用线程写盘，一般由 [shouldFlush] 提前交给后台线程写入。
+ */
+
+internal class MmapLogWriter(
+    val dir: File,
+    val prefix: String,
+    /**
+     * 单个文件的大小上限，<= 0 不限制
+     */
+    val maxFileSize: Long,
+    bufferSize: Int = DEFAULT_BUFFER_SIZE,
+    val suffix: String = SUFFIX_TEXT,
+    /**
+     * 打开文件时调用，created 表示新建的空文件，返回的内容先写入文件
+     */
+    private val onOpenFile: ((day: String, created: Boolean) -> ByteArray?)? = null
+) : Closeable {
+    private val buffer: ByteBuffer
+    //持有缓冲区文件的锁，关闭后锁才释放；为空表示没拿到锁，直接写文件
+    private val bufferFile: RandomAccessFile?
+    private val encoder = Charsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    private val flushThreshold: Int
+    private val calendar = Calendar.getInstance()
+    private val time = CharArray(8)
+    private val timeBuffer = CharBuffer.wrap(time)
+    private var timeSecond = Long.MIN_VALUE
+    private var dayStart = Long.MAX_VALUE
+    private var dayEnd = Long.MIN_VALUE
+    private var day = ""
+    private var part = 0
+    private var channel: FileChannel? = null
+    private var written = 0L
+    private var firstPendingAt = 0L
+    private var closed = false
+
+    init {
+        require(bufferSize >= MIN_BUFFER_SIZE) { "bufferSize must be at least $MIN_BUFFER_SIZE" }
+        if (!dir.isDirectory && !dir.mkdirs()) {
+            throw IOException("Cannot create $dir")
+        }
+        val file = RandomAccessFile(File(dir, ".$prefix.logbuf"), "rw")
+        val lock = try {
+            file.channel.tryLock()
+        } catch (e: OverlappingFileLockException) {
+            null
+        } catch (e: IOException) {
+            file.close()
+            throw e
+        }
+        if (lock == null) {
+            file.close()
+            bufferFile = null
+            buffer = ByteBuffer.allocate(HEADER_SIZE + bufferSize)
+        } else {
+            bufferFile = file
+            buffer = try {
+                val size = HEADER_SIZE + bufferSize.toLong()
+                if (file.length() < size) {
+                    file.setLength(size)
+                }
+                file.channel.map(FileChannel.MapMode.READ_WRITE, 0, file.length())
+            } catch (e: IOException) {
+                file.close()
+                throw e
+            }
+        }
+        flushThreshold = (buffer.capacity() - HEADER_SIZE) / 2
+        if (bufferFile != null) {
+            try {
+                recover()
+            } catch (e: IOException) {
+                bufferFile.close()
+                throw e
+            }
+        }
+        buffer.putInt(OFFSET_MAGIC, MAGIC)
+        buffer.position(HEADER_SIZE)
+    }
+
+    /**
+     * 是否拿到了映射缓冲区；为 false 时每次写入都会直接写文件
+     */
+    fun isBuffered(): Boolean {
+        return bufferFile != null
+    }
+
+    /**
+     * 写入一行，开头加上 HH:mm:ss；关闭后写入的内容丢弃(LogUtils 切换目录时旧 writer 会被关闭)
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun append(millis: Long, vararg parts: CharSequence) {
+        if (closed) return
+        prepare(millis)
+        if (pending() == 0) {
+            firstPendingAt = millis
+        }
+        put(formatTime(millis))
+        for (text in parts) {
+            put(text)
+        }
+        buffer.putInt(OFFSET_LENGTH, pending())
+        if (bufferFile == null) {
+            drain()
+        }
+    }
+
+    /**
+     * 需要时跨天或按大小换文件；写入已编码的记录前调用，记录中引用的内容要在换文件后重新定义
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun prepare(millis: Long) {
+        if (closed) return
+        if (millis >= dayEnd || millis < dayStart) {
+            openDay(millis)
+        } else if (maxFileSize > 0 && written + pending() >= maxFileSize) {
+            drain()
+            part++
+            openFile()
+        }
+    }
+
+    /**
+     * 写入一条已编码的记录，不换文件
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun append(millis: Long, bytes: ByteArray, length: Int) {
+        if (closed) return
+        if (channel == null) {
+            throw IOException("prepare() must be called first")
+        }
+        if (pending() == 0) {
+            firstPendingAt = millis
+        }
+        var offset = 0
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                drain()
+            }
+            val count = Math.min(length - offset, buffer.remaining())
+            buffer.put(bytes, offset, count)
+            offset += count
+        }
+        buffer.putInt(OFFSET_LENGTH, pending())
+        if (bufferFile == null) {
+            drain()
+        }
+    }
+
+    /**
+     * 缓冲区过半或最早一行已等待 [FLUSH_INTERVAL] 毫秒
+     */
+    @Synchronized
+    fun shouldFlush(now: Long): Boolean {
+        val pending = pending()
+        return pending >= flushThreshold || pending > 0 && now - firstPendingAt >= FLUSH_INTERVAL
+    }
+
+    /**
+     * 把缓冲区写入日志文件，读取或上传日志文件前调用
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun flush() {
+        if (!closed && channel != null) {
+            drain()
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        if (closed) return
+        try {
+            flush()
+        } finally {
+            closed = true
+            channel?.close()
+            channel = null
+            //释放锁，映射在此之后不再写入
+            bufferFile?.close()
+        }
+    }
+
+    /**
+     * 当前写入的文件
+     */
+    @Synchronized
+    fun currentFile(): File? {
+        return if (channel == null) null else File(dir, fileName(day, part))
+    }
+
+    private fun fileName(day: String, part: Int): String {
+        return if (part == 0) "$prefix-$day$suffix" else "$prefix-$day$PART_SEP$part$suffix"
+    }
+
+    private fun pending(): Int {
+        return buffer.position() - HEADER_SIZE
+    }
+
+    private fun put(text: CharSequence) {
+        val chars = if (text === timeBuffer) timeBuffer else CharBuffer.wrap(text)
+        encoder.reset()
+        while (encoder.encode(chars, buffer, true).isOverflow) {
+            //单行超过缓冲区时分段写入
+            drain()
+        }
+        while (encoder.flush(buffer).isOverflow) {
+            drain()
+        }
+    }
+
+    private fun drain() {
+        val end = buffer.position()
+        if (end > HEADER_SIZE) {
+            val data = buffer.duplicate()
+            data.position(HEADER_SIZE)
+            data.limit(end)
+            write(channel ?: throw IOException("No log file is open"), data)
+            written += end - HEADER_SIZE
+        }
+        buffer.position(HEADER_SIZE)
+        buffer.putInt(OFFSET_LENGTH, 0)
+    }
+
+    private fun openDay(millis: Long) {
+        if (channel != null) {
+            drain()
+        }
+        calendar.timeInMillis = millis
+        val year = calendar.get(Calendar.YEAR)
+        val month = calendar.get(Calendar.MONTH) + 1
+        val date = calendar.get(Calendar.DAY_OF_MONTH)
+        calendar.set(Calendar.HOUR_OF_DAY, 0)
+        calendar.set(Calendar.MINUTE, 0)
+        calendar.set(Calendar.SECOND, 0)
+        calendar.set(Calendar.MILLISECOND, 0)
+        dayStart = calendar.timeInMillis
+        calendar.add(Calendar.DAY_OF_MONTH, 1)
+        dayEnd = calendar.timeInMillis
+        day = StringBuilder(10).append(year).append('-')
+            .append(if (month < 10) "0" else "").append(month).append('-')
+            .append(if (date < 10) "0" else "").append(date).toString()
+        //接着写当天编号最大的文件
+        val head = "$prefix-$day"
+        part = 0
+        dir.list()?.forEach {
+            if (it.startsWith(head + PART_SEP) && it.endsWith(suffix)) {
+                val index = it.substring(head.length + 1, it.length - suffix.length).toIntOrNull() ?: 0
+                if (index > part) part = index
+            }
+        }
+        openFile()
+    }
+
+    private fun openFile() {
+        channel?.close()
+        channel = null
+        val file = File(dir, fileName(day, part))
+        val path = file.absolutePath.toByteArray(Charsets.UTF_8)
+        if (path.size > HEADER_SIZE - OFFSET_PATH) {
+            throw IOException("Log path is too long: $file")
+        }
+        val isNew = file.length() == 0L
+        val opened = FileOutputStream(file, true).channel
+        channel = opened
+        written = opened.size()
+        //此时缓冲区为空，之后写入的内容都属于这个文件
+        val header = buffer.duplicate()
+        header.position(OFFSET_PATH)
+        header.put(path)
+        buffer.putShort(OFFSET_PATH_LENGTH, path.size.toShort())
+        onOpenFile?.invoke(day, isNew)?.let {
+            val bytes = ByteBuffer.wrap(it)
+            written += bytes.remaining()
+            write(opened, bytes)
+        }
+    }
+
+    private fun formatTime(millis: Long): CharBuffer {
+        val second = millis / 1000
+        if (second != timeSecond) {
+            timeSecond = second
+            calendar.timeInMillis = millis
+            put2(0, calendar.get(Calendar.HOUR_OF_DAY))
+            time[2] = ':'
+            put2(3, calendar.get(Calendar.MINUTE))
+            time[5] = ':'
+            put2(6, calendar.get(Calendar.SECOND))
+        }
+        timeBuffer.clear()
+        return timeBuffer
+    }
+
+    private fun put2(index: Int, value: Int) {
+        time[index] = '0' + value / 10
+        time[index + 1] = '0' + value % 10
+    }
+
+    /**
+     * 把上次进程退出时缓冲区中未写入的内容补写到原来的文件
+     */
+    private fun recover() {
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC) return
+        val length = buffer.getInt(OFFSET_LENGTH)
+        val pathLength = buffer.getShort(OFFSET_PATH_LENGTH).toInt()
+        if (length <= 0 || length > buffer.capacity() - HEADER_SIZE
+            || pathLength <= 0 || pathLength > HEADER_SIZE - OFFSET_PATH
+        ) {
+            buffer.putInt(OFFSET_LENGTH, 0)
+            return
+        }
+        val path = ByteArray(pathLength)
+        val header = buffer.duplicate()
+        header.position(OFFSET_PATH)
+        header.get(path)
+        val data = buffer.duplicate()
+        data.position(HEADER_SIZE)
+        data.limit(HEADER_SIZE + length)
+        try {
+            FileOutputStream(File(String(path, Charsets.UTF_8)), true).channel.use { write(it, data) }
+        } finally {
+            buffer.putInt(OFFSET_LENGTH, 0)
+        }
+    }
+
+    private fun write(channel: FileChannel, data: ByteBuffer) {
+        while (data.hasRemaining()) {
+            channel.write(data)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_BUFFER_SIZE = 128 * 1024
+        private const val MIN_BUFFER_SIZE = 4 * 1024
+        private const val FLUSH_INTERVAL = 3000L
+        private const val HEADER_SIZE = 1024
+        //"LGB1"
+        private const val MAGIC = 0x4c474231
+        private const val OFFSET_MAGIC = 0
+        private const val OFFSET_LENGTH = 4
+        private const val OFFSET_PATH_LENGTH = 8
+        private const val OFFSET_PATH = 10
+        private const val PART_SEP = '_'
+        const val SUFFIX_TEXT = ".txt"
+        const val SUFFIX_BINARY = ".blog"
+    }
+}
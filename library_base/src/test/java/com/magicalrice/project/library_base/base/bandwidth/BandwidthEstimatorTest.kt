@@ -0,0 +1,105 @@
+package com.magicalrice.project.library_base.base.bandwidth
+
+import com.magicalrice.project.library_base.base.NetworkUtils
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.Random
+
+/**
+ * 用合成的吞吐量序列驱动估算器
+ */
+class BandwidthEstimatorTest {
+    private lateinit var estimator: BandwidthEstimator
+    private val changes = ArrayList<QualityTier>()
+
+    @Before
+    fun setUp() {
+        estimator = BandwidthEstimator()
+        estimator.setNetworkType(NetworkUtils.NetworkType.NETWORK_WIFI)
+        estimator.addOnTierChangedListener(object : BandwidthEstimator.OnTierChangedListener {
+            override fun onTierChanged(tier: QualityTier) {
+                changes.add(tier)
+            }
+        })
+    }
+
+    private fun feed(bitrate: Long, bytes: Long = 64 * 1024L) {
+        estimator.addSample(bytes, bytes * 8 * 1_000_000_000L / bitrate)
+    }
+
+    @Test
+    fun steadyTraceConvergesToMeasuredRate() {
+        assertEquals(QualityTier.HIGH, estimator.getTier())
+        val random = Random(1)
+        repeat(50) { feed((3_000_000 * (0.9 + random.nextDouble() * 0.2)).toLong()) }
+
+        val estimate = estimator.getBitrateEstimate()
+        assertTrue("estimate $estimate", estimate in 2_800_000..3_200_000)
+        assertEquals(QualityTier.MEDIUM, estimator.getTier())
+        assertEquals(listOf(QualityTier.MEDIUM), changes)
+    }
+
+    @Test
+    fun outliersAndSmallResponsesAreIgnored() {
+        repeat(20) {
+            feed(10_000_000)
+            //偶发的慢响应
+            if (it % 5 == 0) feed(200_000)
+            //小响应只反映延迟
+            feed(50_000, 2 * 1024L)
+        }
+
+        assertEquals(10_000_000.0, estimator.getBitrateEstimate().toDouble(), 100_000.0)
+        assertEquals(QualityTier.HIGH, estimator.getTier())
+        assertTrue(changes.isEmpty())
+    }
+
+    @Test
+    fun hysteresisAvoidsFlappingAroundThreshold() {
+        repeat(40) { feed(3_000_000) }
+        assertEquals(QualityTier.MEDIUM, estimator.getTier())
+
+        //在 HIGH 阈值附近波动，不升档
+        repeat(40) { feed(if (it % 2 == 0) 4_600_000 else 5_400_000) }
+        assertEquals(QualityTier.MEDIUM, estimator.getTier())
+
+        repeat(40) { feed(7_000_000) }
+        assertEquals(QualityTier.HIGH, estimator.getTier())
+        //略低于阈值，不降档
+        repeat(40) { feed(4_500_000) }
+        assertEquals(QualityTier.HIGH, estimator.getTier())
+        repeat(40) { feed(3_500_000) }
+        assertEquals(QualityTier.MEDIUM, estimator.getTier())
+
+        assertEquals(listOf(QualityTier.MEDIUM, QualityTier.HIGH, QualityTier.MEDIUM), changes)
+    }
+
+    @Test
+    fun networkTypeSetsPriorAndCap() {
+        estimator.setNetworkType(NetworkUtils.NetworkType.NETWORK_2G)
+        assertEquals(QualityTier.LOW, estimator.getTier())
+        //2G 下测得的速率再高也不升档
+        repeat(20) { feed(10_000_000) }
+        assertEquals(QualityTier.LOW, estimator.getTier())
+
+        //切换网络后清空样本，先使用经验值
+        estimator.setNetworkType(NetworkUtils.NetworkType.NETWORK_3G)
+        assertEquals(QualityTier.MEDIUM, estimator.getTier())
+        repeat(2) { feed(300_000) }
+        assertEquals(QualityTier.MEDIUM, estimator.getTier())
+        feed(300_000)
+        assertEquals(QualityTier.LOW, estimator.getTier())
+
+        assertEquals(listOf(QualityTier.LOW, QualityTier.MEDIUM, QualityTier.LOW), changes)
+    }
+
+    @Test
+    fun tierScalesPagingAndPrefetch() {
+        assertEquals(10, QualityTier.LOW.pageSize(20))
+        assertEquals(20, QualityTier.HIGH.pageSize(20))
+        assertEquals(0, QualityTier.LOW.prefetchDepth(3))
+        assertEquals(1, QualityTier.HIGH.prefetchDepth(1))
+    }
+}
@@ -0,0 +1,142 @@
+package com.magicalrice.project.library_base.base.log
+
+import com.magicalrice.project.library_log_decoder.LogDecoder
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.RandomAccessFile
+import java.io.StringWriter
+import java.nio.file.Files
+import java.util.Calendar
+
+class BinaryLogEncoderTest {
+    private lateinit var dir: File
+
+    @Before
+    fun setUp() {
+        dir = Files.createTempDirectory("binary_log").toFile()
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    private fun millis(hour: Int, minute: Int, second: Int): Long {
+        val calendar = Calendar.getInstance()
+        calendar.clear()
+        calendar.set(2026, Calendar.OCTOBER, 19, hour, minute, second)
+        return calendar.timeInMillis
+    }
+
+    /**
+     * 与 LogUtils 相同的写法：换文件、编码、写入在同一个锁内
+     */
+    private class Session(dir: File, maxStrings: Int = 1024) {
+        val encoder = BinaryLogEncoder(maxStrings) { "obj:$it" }
+        val writer = MmapLogWriter(dir, "util", 0, suffix = MmapLogWriter.SUFFIX_BINARY) { day, created ->
+            encoder.fileHead(System.currentTimeMillis(), if (created) "head $day\n" else null)
+        }
+
+        fun log(millis: Long, level: Int, tag: String, format: String?, vararg args: Any?) {
+            logWithHead(millis, level, tag, " [main]: ", format, *args)
+        }
+
+        fun logWithHead(millis: Long, level: Int, tag: String, head: String, format: String?, vararg args: Any?) {
+            synchronized(encoder) {
+                writer.prepare(millis)
+                writer.append(millis, encoder.buffer(), encoder.encode(millis, level, tag, head, format, args))
+            }
+        }
+    }
+
+    /**
+     * 模拟进程被杀：缓冲区文件恢复成关闭前的状态，日志文件去掉关闭时写入的内容，下次创建时补写
+     */
+    private fun kill(session: Session) {
+        val buffer = File(dir, ".util.logbuf")
+        val file = File(dir, "util-2026-10-19.blog")
+        val snapshot = buffer.readBytes()
+        val length = file.length()
+        session.writer.close()
+        RandomAccessFile(file, "rw").use { it.setLength(length) }
+        buffer.writeBytes(snapshot)
+    }
+
+    private fun decode(json: Boolean): String {
+        val output = StringWriter()
+        File(dir, "util-2026-10-19.blog").inputStream().use { LogDecoder(it, output, json).decode() }
+        return output.toString()
+    }
+
+    @Test
+    fun decodesToSameTextAcrossRestarts() {
+        val first = Session(dir)
+        first.log(millis(9, 0, 1), D, "Net", "GET {} took {} ms, cached={}", "/feed", 42, false)
+        first.log(millis(9, 0, 2), E, "Net", null, "失败 😀")
+        first.log(millis(9, 0, 3), W, "Img", "scale {} of {}", 0.5f, 1.25, null)
+        first.log(millis(9, 0, 4), I, "Img", null, -7L, listOf(1))
+        //进程被杀，缓冲区里的内容在下次启动时补写，之后从新的一段继续
+        kill(first)
+        val second = Session(dir)
+        second.log(millis(10, 30, 0), D, "Net", "GET {} took {} ms, cached={}", "/me", 3, true)
+        second.writer.close()
+
+        assertEquals(
+            "head 2026-10-19\n" +
+                    "09:00:01D/Net [main]: GET /feed took 42 ms, cached=false\n" +
+                    "09:00:02E/Net [main]: 失败 😀\n" +
+                    "09:00:03W/Img [main]: scale 0.5 of 1.25\n" +
+                    "09:00:04I/Img [main]: args[0] = -7\nargs[1] = obj:[1]\n\n" +
+                    "10:30:00D/Net [main]: GET /me took 3 ms, cached=true\n",
+            decode(false)
+        )
+        val json = decode(true).lines()
+        assertEquals("{\"text\":\"head 2026-10-19\\n\"}", json[0])
+        assertEquals(
+            "{\"time\":${millis(9, 0, 1)},\"level\":\"D\",\"tag\":\"Net\",\"head\":\" [main]: \"," +
+                    "\"format\":\"GET {} took {} ms, cached={}\",\"args\":[\"/feed\",42,false]," +
+                    "\"message\":\"GET /feed took 42 ms, cached=false\"}",
+            json[1]
+        )
+    }
+
+    @Test
+    fun startsNewSegmentWhenStringTableIsFull() {
+        val session = Session(dir, maxStrings = 8)
+        val expected = StringBuilder("head 2026-10-19\n")
+        for (i in 0 until 20) {
+            //OkHttp 按 url 给线程改名，每条的头部都不同
+            val head = " [OkHttp http://host/item/$i]: "
+            session.logWithHead(millis(11, 0, i), I, "Net", head, "done {}", i)
+            expected.append(String.format("11:00:%02dI/Net%sdone %d\n", i, head, i))
+        }
+        session.writer.close()
+        val segments = File(dir, "util-2026-10-19.blog").readText(Charsets.ISO_8859_1).split("MLOG").size - 1
+
+        assertTrue("$segments segments", segments >= 3)
+        assertEquals(expected.toString(), decode(false))
+    }
+
+    @Test
+    fun smallerThanText() {
+        val session = Session(dir)
+        val text = StringBuilder()
+        val start = millis(12, 0, 0)
+        for (i in 0 until 1000) {
+            val millis = start + i * 37L
+            session.log(millis, D, "Feed", "bind position {} id {} visible {}", i, 1_000_000L + i, i % 2 == 0)
+            text.append("12:00:00D/Feed [main, com.example.FeedAdapter.onBindViewHolder(FeedAdapter.kt:42)]: ")
+                .append("bind position ").append(i).append(" id ").append(1_000_000L + i)
+                .append(" visible ").append(i % 2 == 0).append('\n')
+        }
+        session.writer.close()
+        val binary = File(dir, "util-2026-10-19.blog").length()
+        val plain = text.toString().toByteArray().size
+
+        assertTrue("text ${plain}B, binary ${binary}B", binary * 4 < plain)
+    }
+}
@@ -0,0 +1,42 @@
+package com.magicalrice.project.library_base.base.log
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CallerCacheTest {
+
+    private fun caller(): StackTraceElement {
+        return Throwable().stackTrace[1]
+    }
+
+    @Test
+    fun sameCallSiteSharesFormattedFrame() {
+        val frames = (0 until 3).map { CallerCache.get(caller()) }
+
+        assertSame(frames[0], frames[1])
+        assertSame(frames[0], frames[2])
+        assertEquals("CallerCacheTest", frames[0].tag)
+        val element = caller()
+        assertEquals(
+            "${javaClass.name}.sameCallSiteSharesFormattedFrame(CallerCacheTest.kt:${element.lineNumber})",
+            CallerCache.get(element).location
+        )
+    }
+
+    @Test
+    fun fallsBackToClassNameWithoutSourceFile() {
+        val frame = CallerCache.get(StackTraceElement("com.example.Feed\$Adapter", "bind", null, 42))
+
+        assertEquals("Feed", frame.tag)
+        assertEquals("com.example.Feed\$Adapter.bind(Feed.java:42)", frame.location)
+    }
+
+    @Test
+    fun staysBounded() {
+        repeat(5000) { CallerCache.get(StackTraceElement("com.example.Gen$it", "run", "Gen.kt", it)) }
+
+        assertTrue(CallerCache.size() <= 1024)
+    }
+}
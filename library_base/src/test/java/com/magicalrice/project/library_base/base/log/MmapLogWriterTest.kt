@@ -0,0 +1,122 @@
+package com.magicalrice.project.library_base.base.log
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import java.util.Calendar
+
+class MmapLogWriterTest {
+    private lateinit var dir: File
+
+    @Before
+    fun setUp() {
+        dir = Files.createTempDirectory("mmap_log").toFile()
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    private fun millis(day: Int, hour: Int, minute: Int, second: Int): Long {
+        val calendar = Calendar.getInstance()
+        calendar.clear()
+        calendar.set(2026, Calendar.OCTOBER, day, hour, minute, second)
+        return calendar.timeInMillis
+    }
+
+    @Test
+    fun batchesUntilFlush() {
+        val writer = MmapLogWriter(dir, "util", 0, onOpenFile = { day, created -> if (created) "head $day\n".toByteArray() else null })
+        writer.append(millis(19, 9, 5, 7), "D/", "Tag", " 第一行", "\n")
+        writer.append(millis(19, 9, 5, 8), "E/", "Tag", " second", "\n")
+        val file = File(dir, "util-2026-10-19.txt")
+
+        assertEquals("head 2026-10-19\n", file.readText())
+        assertFalse(writer.shouldFlush(millis(19, 9, 5, 9)))
+        assertTrue(writer.shouldFlush(millis(19, 9, 5, 12)))
+        writer.flush()
+        assertEquals("head 2026-10-19\n09:05:07D/Tag 第一行\n09:05:08E/Tag second\n", file.readText())
+        writer.close()
+    }
+
+    /**
+     * 保存未 flush 时的缓冲区文件，关闭后恢复成这个状态，模拟进程被杀；下次创建时补写到原文件
+     */
+    @Test
+    fun recoversBufferedTailAfterProcessDeath() {
+        val killed = MmapLogWriter(dir, "util", 0)
+        killed.append(millis(19, 23, 59, 59), "I/", "Tag", " before death", "\n")
+        val file = File(dir, "util-2026-10-19.txt")
+        assertEquals("", file.readText())
+        val buffer = File(dir, ".util.logbuf")
+        val snapshot = buffer.readBytes()
+        killed.close()
+        file.writeText("")
+        buffer.writeBytes(snapshot)
+
+        val writer = MmapLogWriter(dir, "util", 0)
+        assertEquals("23:59:59I/Tag before death\n", file.readText())
+        writer.append(millis(20, 0, 0, 1), "I/", "Tag", " next day", "\n")
+        writer.close()
+        assertEquals("23:59:59I/Tag before death\n", file.readText())
+        assertEquals("00:00:01I/Tag next day\n", File(dir, "util-2026-10-20.txt").readText())
+    }
+
+    @Test
+    fun rollsBySizeWithinDay() {
+        val writer = MmapLogWriter(dir, "util", 100, bufferSize = 4096)
+        val line = "x".repeat(40)
+        repeat(5) { writer.append(millis(19, 10, 0, it), "V/", "T ", line, "\n") }
+        writer.close()
+
+        val names = dir.list()!!.filter { it.endsWith(".txt") }.sorted()
+        assertEquals(listOf("util-2026-10-19.txt", "util-2026-10-19_1.txt", "util-2026-10-19_2.txt"), names)
+        assertEquals(5, names.sumBy { File(dir, it).readLines().size })
+
+        //重新打开时接着写编号最大的文件
+        val reopened = MmapLogWriter(dir, "util", 1000, bufferSize = 4096)
+        reopened.append(millis(19, 11, 0, 0), "V/", "T ", "tail", "\n")
+        reopened.close()
+        assertTrue(File(dir, "util-2026-10-19_2.txt").readText().endsWith("11:00:00V/T tail\n"))
+    }
+
+    @Test
+    fun splitsLinesLargerThanBuffer() {
+        val writer = MmapLogWriter(dir, "util", 0, bufferSize = 4096)
+        val line = "日志".repeat(5000)
+        writer.append(millis(19, 12, 0, 0), "W/", "T ", line, "\n")
+        writer.close()
+
+        assertEquals("12:00:00W/T $line\n", File(dir, "util-2026-10-19.txt").readText())
+    }
+
+    /**
+     * 缓冲区被占用(其它进程或未关闭的 writer)时直接写文件，不共用映射
+     */
+    @Test
+    fun writesDirectlyWhenBufferIsLocked() {
+        val owner = MmapLogWriter(dir, "util", 0)
+        owner.append(millis(19, 8, 0, 0), "I/", "Main", " buffered", "\n")
+        val other = MmapLogWriter(dir, "util", 0)
+        other.append(millis(19, 8, 0, 1), "I/", "Push", " direct", "\n")
+        val file = File(dir, "util-2026-10-19.txt")
+
+        assertEquals("08:00:01I/Push direct\n", file.readText())
+        other.close()
+        owner.close()
+        assertEquals("08:00:01I/Push direct\n08:00:00I/Main buffered\n", file.readText())
+
+        //释放后新的 writer 重新使用映射缓冲区
+        val next = MmapLogWriter(dir, "util", 0)
+        next.append(millis(19, 8, 0, 2), "I/", "Main", " again", "\n")
+        assertFalse(file.readText().endsWith("again\n"))
+        next.close()
+        assertTrue(file.readText().endsWith("08:00:02I/Main again\n"))
+    }
+}
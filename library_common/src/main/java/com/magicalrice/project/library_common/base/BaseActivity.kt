@@ -23,6 +23,8 @@ import com.magicalrice.project.library_data.BaseConstants
 import com.magicalrice.project.library_widget.base.HeaderView
 import com.magicalrice.project.library_widget.base.dialog.DialogExtUtils
 import com.trello.rxlifecycle3.components.support.RxAppCompatActivity
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
 import java.lang.reflect.ParameterizedType
 
 abstract class BaseActivity<V : ViewDataBinding, VM : BaseViewModel> : RxAppCompatActivity(),IBaseActivity {
@@ -34,6 +36,7 @@ abstract class BaseActivity<V : ViewDataBinding, VM : BaseViewModel> : RxAppComp
     @get:LayoutRes
     protected abstract val layoutId: Int
     private lateinit var localBroadcastReceiver: LocalBroadcastManager
+    private val prefetchDisposables = CompositeDisposable()
 
     val broadcastReceiver = object : BroadcastReceiver() {
         override fun onReceive(context: Context?, intent: Intent?) {
@@ -65,6 +68,7 @@ abstract class BaseActivity<V : ViewDataBinding, VM : BaseViewModel> : RxAppComp
 
     override fun onDestroy() {
         super.onDestroy()
+        prefetchDisposables.dispose()
         viewModel?.let {
             lifecycle.removeObserver(it)
         }
@@ -111,6 +115,15 @@ abstract class BaseActivity<V : ViewDataBinding, VM : BaseViewModel> : RxAppComp
         }
     }
 
+    /**
+     * 登记预加载请求(RequestPriority.PREFETCH)，页面销毁时自动取消
+     *
+     * @param disposable 请求的Disposable
+     */
+    fun addPrefetch(disposable: Disposable) {
+        prefetchDisposables.add(disposable)
+    }
+
     /**
      * 跳转页面
      *
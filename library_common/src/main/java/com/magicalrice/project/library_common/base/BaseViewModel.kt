@@ -4,11 +4,29 @@ import android.app.Application
 import androidx.fragment.app.FragmentActivity
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleObserver
 import androidx.lifecycle.LifecycleOwner
+import androidx.lifecycle.LiveData
+import androidx.lifecycle.MutableLiveData
+import androidx.lifecycle.OnLifecycleEvent
 import com.magicalrice.project.library_base.base.ToastUtils
+import com.magicalrice.project.library_data.remote.http.resource.NetworkBoundResource
+import com.magicalrice.project.library_data.remote.http.resource.Resource
+import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
 
 open class BaseViewModel(application: Application) : AndroidViewModel(application), IBaseViewModel {
     private lateinit var lifecycle: Lifecycle
+    private val prefetchDisposables = CompositeDisposable()
+    private val resourceDisposables = CompositeDisposable()
+    //单独监听销毁事件，子类重写onDestroy时不会漏掉取消预加载
+    private val prefetchObserver = object : LifecycleObserver {
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        fun onOwnerDestroy() {
+            prefetchDisposables.clear()
+        }
+    }
 
     /**
      * 注入RxLifecycle生命周期
@@ -18,10 +36,43 @@ open class BaseViewModel(application: Application) : AndroidViewModel(applicatio
     fun setLifecycle(lifecycle: Lifecycle) {
         this.lifecycle = lifecycle
         this.lifecycle.addObserver(this)
+        this.lifecycle.addObserver(prefetchObserver)
     }
 
     fun removeLifecycle() {
         this.lifecycle.removeObserver(this)
+        this.lifecycle.removeObserver(prefetchObserver)
+    }
+
+    /**
+     * 登记预加载请求(RequestPriority.PREFETCH)，页面销毁时自动取消
+     *
+     * @param disposable 请求的Disposable
+     */
+    fun addPrefetch(disposable: Disposable) {
+        prefetchDisposables.add(disposable)
+    }
+
+    /**
+     * 加载缓存和网络数据，ViewModel 清除时取消；屏幕旋转等配置变化重建页面时继续加载
+     *
+     * @param resource Repository 提供的数据源
+     * @return 依次收到缓存数据(LOADING)和网络结果(SUCCESS/ERROR)
+     */
+    fun <T : Any> load(resource: NetworkBoundResource<T>): LiveData<Resource<T>> {
+        val data = MutableLiveData<Resource<T>>()
+        resourceDisposables.add(
+            resource.asFlowable()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe({ data.value = it }, { data.value = Resource.error(it, data.value?.data) })
+        )
+        return data
+    }
+
+    override fun onCleared() {
+        super.onCleared()
+        prefetchDisposables.dispose()
+        resourceDisposables.dispose()
     }
 
     override fun onAny(owner: LifecycleOwner, event: Lifecycle.Event) {
@@ -0,0 +1,557 @@
+package com.magicalrice.project.library_compiler;
+
+import com.magicalrice.project.library_annotation.JsonModel;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * 为 {@link JsonModel} 标记的类生成流式 Gson TypeAdapter。
+ * <p>
+ * 生成的 {@code 类名_TypeAdapter} 直接通过 JsonReader/JsonWriter 读写字段：基本类型、包装类型和 String
+ * 直接读写，其它类型在构造时从 Gson 取一次对应的 TypeAdapter。对象优先通过参数与字段一一对应的构造方法创建
+ * (Kotlin data class 的主构造方法)，没有时使用无参构造方法加 setter。
+ */
+public class JsonModelProcessor extends AbstractProcessor {
+    static final String ADAPTER_SUFFIX = "_TypeAdapter";
+
+    private static final ClassName GSON = ClassName.get("com.google.gson", "Gson");
+    private static final ClassName TYPE_ADAPTER = ClassName.get("com.google.gson", "TypeAdapter");
+    private static final ClassName TYPE_TOKEN = ClassName.get("com.google.gson.reflect", "TypeToken");
+    private static final ClassName JSON_PARSE_EXCEPTION = ClassName.get("com.google.gson", "JsonParseException");
+    private static final ClassName JSON_READER = ClassName.get("com.google.gson.stream", "JsonReader");
+    private static final ClassName JSON_WRITER = ClassName.get("com.google.gson.stream", "JsonWriter");
+    private static final ClassName JSON_TOKEN = ClassName.get("com.google.gson.stream", "JsonToken");
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+    private static final String[] NOT_NULL = {
+            "org.jetbrains.annotations.NotNull",
+            "androidx.annotation.NonNull",
+            "android.support.annotation.NonNull"
+    };
+
+    private Filer filer;
+    private Messager messager;
+    private Types types;
+    private Elements elements;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+        types = processingEnv.getTypeUtils();
+        elements = processingEnv.getElementUtils();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(JsonModel.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonModel.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@JsonModel can only be applied to classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            try {
+                generate(type);
+            } catch (ProcessingException e) {
+                error(e.element, e.getMessage());
+            } catch (IOException e) {
+                error(type, "Failed to write adapter: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new ProcessingException(type, "@JsonModel does not support generic classes");
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new ProcessingException(type, "@JsonModel class must be non-private and concrete");
+        }
+        List<Property> properties = collectProperties(type);
+        ExecutableElement constructor = findPropertyConstructor(type, properties);
+        if (constructor == null) {
+            checkSettable(type, properties);
+        }
+
+        ClassName beanName = ClassName.get(type);
+        String adapterSimpleName = adapterSimpleName(beanName);
+        TypeSpec.Builder adapter = TypeSpec.classBuilder(adapterSimpleName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .superclass(ParameterizedTypeName.get(TYPE_ADAPTER, beanName))
+                .addOriginatingElement(type);
+
+        MethodSpec.Builder init = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(GSON, "gson");
+        for (Property property : properties) {
+            if (property.kind == Kind.OBJECT) {
+                TypeName adapterType = ParameterizedTypeName.get(TYPE_ADAPTER, property.typeName.box());
+                adapter.addField(FieldSpec.builder(adapterType, property.adapterField(), Modifier.PRIVATE, Modifier.FINAL).build());
+                TypeSpec token = TypeSpec.anonymousClassBuilder("")
+                        .superclass(ParameterizedTypeName.get(TYPE_TOKEN, property.typeName.box()))
+                        .build();
+                init.addStatement("this.$N = gson.getAdapter($L)", property.adapterField(), token);
+            }
+        }
+        adapter.addMethod(init.build());
+        adapter.addMethod(writeMethod(beanName, properties));
+        adapter.addMethod(readMethod(beanName, properties, constructor != null));
+
+        JavaFile.builder(beanName.packageName(), adapter.build())
+                .addFileComment("Generated by JsonModelProcessor. Do not edit.")
+                .build()
+                .writeTo(filer);
+    }
+
+    private MethodSpec writeMethod(ClassName beanName, List<Property> properties) {
+        MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(JSON_WRITER, "out")
+                .addParameter(beanName, "value")
+                .addException(IOException.class);
+        write.beginControlFlow("if (value == null)")
+                .addStatement("out.nullValue()")
+                .addStatement("return")
+                .endControlFlow();
+        write.addStatement("out.beginObject()");
+        for (Property property : properties) {
+            CodeBlock access = property.readAccess("value");
+            write.addStatement("out.name($S)", property.jsonName);
+            switch (property.kind) {
+                case CHAR:
+                    if (property.typeName.isPrimitive()) {
+                        write.addStatement("out.value(String.valueOf($L))", access);
+                    } else {
+                        write.addStatement("$T $N = $L", property.typeName, property.local(), access);
+                        write.addStatement("out.value($N == null ? null : String.valueOf($N))", property.local(), property.local());
+                    }
+                    break;
+                case FLOAT:
+                    if (property.typeName.isPrimitive()) {
+                        write.addStatement("out.value((double) $L)", access);
+                    } else {
+                        write.addStatement("out.value((Number) $L)", access);
+                    }
+                    break;
+                case BOOLEAN:
+                    write.addStatement(property.typeName.isPrimitive() ? "out.value($L)" : "out.value((Boolean) $L)", access);
+                    break;
+                case STRING:
+                    write.addStatement("out.value($L)", access);
+                    break;
+                case OBJECT:
+                    write.addStatement("$N.write(out, $L)", property.adapterField(), access);
+                    break;
+                default:
+                    write.addStatement(property.typeName.isPrimitive() ? "out.value($L)" : "out.value((Number) $L)", access);
+                    break;
+            }
+        }
+        write.addStatement("out.endObject()");
+        return write.build();
+    }
+
+    private MethodSpec readMethod(ClassName beanName, List<Property> properties, boolean useConstructor) {
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(beanName)
+                .addParameter(JSON_READER, "in")
+                .addException(IOException.class);
+        read.beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+                .addStatement("in.nextNull()")
+                .addStatement("return null")
+                .endControlFlow();
+        for (Property property : properties) {
+            read.addStatement("$T $N = $L", property.typeName, property.local(), defaultValue(property.typeName));
+            if (!useConstructor) {
+                read.addStatement("boolean $N = false", property.present());
+            }
+        }
+        read.addStatement("in.beginObject()");
+        read.beginControlFlow("while (in.hasNext())");
+        read.beginControlFlow("switch (in.nextName())");
+        for (Property property : properties) {
+            for (String name : property.allNames()) {
+                read.addCode("case $S:\n", name);
+            }
+            read.addCode("$>");
+            if (property.kind == Kind.OBJECT) {
+                read.addStatement("$N = $N.read(in)", property.local(), property.adapterField());
+            } else {
+                read.beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+                        .addStatement("in.nextNull()")
+                        .nextControlFlow("else")
+                        .addStatement("$N = $L", property.local(), readValue(property))
+                        .endControlFlow();
+            }
+            if (!useConstructor) {
+                read.addStatement("$N = true", property.present());
+            }
+            read.addStatement("break");
+            read.addCode("$<");
+        }
+        read.addCode("default:\n$>");
+        read.addStatement("in.skipValue()");
+        read.addCode("$<");
+        read.endControlFlow();
+        read.endControlFlow();
+        read.addStatement("in.endObject()");
+
+        for (Property property : properties) {
+            if (!property.notNull || property.typeName.isPrimitive()) {
+                continue;
+            }
+            read.beginControlFlow("if ($N == null)", property.local());
+            if (property.kind == Kind.STRING) {
+                read.addStatement("$N = $S", property.local(), "");
+            } else if (useConstructor) {
+                read.addStatement("throw new $T($S)", JSON_PARSE_EXCEPTION,
+                        "Required value '" + property.jsonName + "' missing");
+            } else {
+                read.addStatement("$N = false", property.present());
+            }
+            read.endControlFlow();
+        }
+
+        if (useConstructor) {
+            CodeBlock.Builder args = CodeBlock.builder();
+            for (int i = 0; i < properties.size(); i++) {
+                if (i > 0) args.add(", ");
+                args.add("$N", properties.get(i).local());
+            }
+            read.addStatement("return new $T($L)", beanName, args.build());
+        } else {
+            read.addStatement("$T bean = new $T()", beanName, beanName);
+            for (Property property : properties) {
+                read.beginControlFlow("if ($N)", property.present())
+                        .addStatement("$L", property.writeAccess("bean", property.local()))
+                        .endControlFlow();
+            }
+            read.addStatement("return bean");
+        }
+        return read.build();
+    }
+
+    private CodeBlock readValue(Property property) {
+        switch (property.kind) {
+            case BOOLEAN:
+                return CodeBlock.of("in.peek() == $T.STRING ? Boolean.parseBoolean(in.nextString()) : in.nextBoolean()", JSON_TOKEN);
+            case INT:
+                return CodeBlock.of("in.nextInt()");
+            case LONG:
+                return CodeBlock.of("in.nextLong()");
+            case DOUBLE:
+                return CodeBlock.of("in.nextDouble()");
+            case FLOAT:
+                return CodeBlock.of("(float) in.nextDouble()");
+            case SHORT:
+                return CodeBlock.of("(short) in.nextInt()");
+            case BYTE:
+                return CodeBlock.of("(byte) in.nextInt()");
+            case CHAR:
+                return CodeBlock.of("in.nextString().charAt(0)");
+            case STRING:
+                return CodeBlock.of("in.peek() == $T.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString()", JSON_TOKEN);
+            default:
+                throw new IllegalStateException(property.kind.name());
+        }
+    }
+
+    private String defaultValue(TypeName typeName) {
+        if (!typeName.isPrimitive()) return "null";
+        if (typeName == TypeName.BOOLEAN) return "false";
+        if (typeName == TypeName.LONG) return "0L";
+        if (typeName == TypeName.FLOAT) return "0f";
+        if (typeName == TypeName.DOUBLE) return "0d";
+        if (typeName == TypeName.CHAR) return "(char) 0";
+        if (typeName == TypeName.SHORT) return "(short) 0";
+        if (typeName == TypeName.BYTE) return "(byte) 0";
+        return "0";
+    }
+
+    private List<Property> collectProperties(TypeElement type) {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().toString().startsWith("java.")) {
+            hierarchy.add(0, current);
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        List<Property> properties = new ArrayList<>();
+        for (TypeElement element : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                if (field.asType().getKind() == TypeKind.TYPEVAR) {
+                    throw new ProcessingException(field, "Type variables are not supported");
+                }
+                Property property = new Property(properties.size(), field);
+                property.getter = findGetter(type, property);
+                property.setter = findSetter(type, property);
+                if (property.getter == null && modifiers.contains(Modifier.PRIVATE)) {
+                    throw new ProcessingException(field, "No accessible getter for '" + property.name + "'");
+                }
+                readSerializedName(property);
+                properties.add(property);
+            }
+        }
+        return properties;
+    }
+
+    private ExecutableElement findPropertyConstructor(TypeElement type, List<Property> properties) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) continue;
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (parameters.size() != properties.size() || parameters.isEmpty()) continue;
+            boolean match = true;
+            for (int i = 0; i < parameters.size(); i++) {
+                if (!types.isSameType(types.erasure(parameters.get(i).asType()),
+                        types.erasure(properties.get(i).field.asType()))) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    properties.get(i).notNull |= hasNotNull(parameters.get(i));
+                }
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private void checkSettable(TypeElement type, List<Property> properties) {
+        boolean hasDefault = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PRIVATE) && constructor.getParameters().isEmpty()) {
+                hasDefault = true;
+            }
+        }
+        if (!hasDefault) {
+            throw new ProcessingException(type, "No constructor matching the fields and no default constructor");
+        }
+        for (Property property : properties) {
+            Set<Modifier> modifiers = property.field.getModifiers();
+            if (property.setter == null && (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL))) {
+                throw new ProcessingException(property.field, "No accessible setter for '" + property.name + "'");
+            }
+        }
+    }
+
+    private String findGetter(TypeElement type, Property property) {
+        String cap = capitalize(property.name);
+        List<String> candidates = new ArrayList<>();
+        candidates.add("get" + cap);
+        candidates.add("is" + cap);
+        if (isKotlinIsProperty(property.name)) {
+            candidates.add(property.name);
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) continue;
+            if (!method.getParameters().isEmpty()) continue;
+            if (!candidates.contains(method.getSimpleName().toString())) continue;
+            if (types.isSameType(types.erasure(method.getReturnType()), types.erasure(property.field.asType()))) {
+                return method.getSimpleName().toString();
+            }
+        }
+        return null;
+    }
+
+    private String findSetter(TypeElement type, Property property) {
+        String name = isKotlinIsProperty(property.name)
+                ? "set" + property.name.substring(2) : "set" + capitalize(property.name);
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) continue;
+            if (method.getParameters().size() != 1) continue;
+            if (!method.getSimpleName().contentEquals(name)) continue;
+            if (types.isSameType(types.erasure(method.getParameters().get(0).asType()),
+                    types.erasure(property.field.asType()))) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private void readSerializedName(Property property) {
+        for (AnnotationMirror mirror : property.field.getAnnotationMirrors()) {
+            String annotation = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (SERIALIZED_NAME.equals(annotation)) {
+                for (java.util.Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                        : mirror.getElementValues().entrySet()) {
+                    String key = entry.getKey().getSimpleName().toString();
+                    if ("value".equals(key)) {
+                        property.jsonName = (String) entry.getValue().getValue();
+                    } else if ("alternate".equals(key)) {
+                        for (Object value : (List<?>) entry.getValue().getValue()) {
+                            property.alternates.add((String) ((AnnotationValue) value).getValue());
+                        }
+                    }
+                }
+            } else {
+                for (String notNull : NOT_NULL) {
+                    if (notNull.equals(annotation)) property.notNull = true;
+                }
+            }
+        }
+    }
+
+    private boolean hasNotNull(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            String annotation = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            for (String notNull : NOT_NULL) {
+                if (notNull.equals(annotation)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isKotlinIsProperty(String name) {
+        return name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2));
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    static String adapterSimpleName(ClassName beanName) {
+        return String.join("_", beanName.simpleNames()) + ADAPTER_SUFFIX;
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private enum Kind {
+        BOOLEAN, INT, LONG, DOUBLE, FLOAT, SHORT, BYTE, CHAR, STRING, OBJECT
+    }
+
+    private static final class Property {
+        final int index;
+        final VariableElement field;
+        final String name;
+        final TypeName typeName;
+        final Kind kind;
+        final List<String> alternates = new ArrayList<>();
+        String jsonName;
+        String getter;
+        String setter;
+        boolean notNull;
+
+        Property(int index, VariableElement field) {
+            this.index = index;
+            this.field = field;
+            this.name = field.getSimpleName().toString();
+            this.jsonName = name;
+            this.typeName = TypeName.get(field.asType());
+            this.kind = kindOf(typeName);
+        }
+
+        String local() {
+            return "p" + index;
+        }
+
+        String present() {
+            return "has" + index;
+        }
+
+        String adapterField() {
+            return "adapter" + index;
+        }
+
+        List<String> allNames() {
+            List<String> names = new ArrayList<>();
+            names.add(jsonName);
+            for (String alternate : alternates) {
+                if (!names.contains(alternate)) names.add(alternate);
+            }
+            return names;
+        }
+
+        CodeBlock readAccess(String target) {
+            return getter != null ? CodeBlock.of("$N.$N()", target, getter) : CodeBlock.of("$N.$N", target, name);
+        }
+
+        CodeBlock writeAccess(String target, String value) {
+            return setter != null
+                    ? CodeBlock.of("$N.$N($N)", target, setter, value)
+                    : CodeBlock.of("$N.$N = $N", target, name, value);
+        }
+
+        private static Kind kindOf(TypeName typeName) {
+            TypeName unboxed = typeName;
+            if (typeName.isBoxedPrimitive()) {
+                unboxed = typeName.unbox();
+            }
+            if (unboxed == TypeName.BOOLEAN) return Kind.BOOLEAN;
+            if (unboxed == TypeName.INT) return Kind.INT;
+            if (unboxed == TypeName.LONG) return Kind.LONG;
+            if (unboxed == TypeName.DOUBLE) return Kind.DOUBLE;
+            if (unboxed == TypeName.FLOAT) return Kind.FLOAT;
+            if (unboxed == TypeName.SHORT) return Kind.SHORT;
+            if (unboxed == TypeName.BYTE) return Kind.BYTE;
+            if (unboxed == TypeName.CHAR) return Kind.CHAR;
+            if (ClassName.get(String.class).equals(typeName)) return Kind.STRING;
+            return Kind.OBJECT;
+        }
+    }
+
+    private static final class ProcessingException extends RuntimeException {
+        final Element element;
+
+        ProcessingException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
@@ -19,3 +19,9 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# 编译期生成的 Gson TypeAdapter，由 GeneratedTypeAdapterFactory 按类名反射加载
+-keep @com.magicalrice.project.library_annotation.JsonModel class *
+-keep class **_TypeAdapter {
+    public <init>(com.google.gson.Gson);
+}
@@ -0,0 +1,55 @@
+package com.magicalrice.project.library_data
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import com.google.gson.TypeAdapterFactory
+import com.google.gson.reflect.TypeToken
+import com.magicalrice.project.library_annotation.JsonModel
+import java.lang.reflect.Constructor
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * @package com.magicalrice.project.library_data
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 查找编译期生成的 TypeAdapter
+ *
+ * 对标注了 [JsonModel] 的类型加载 library_compiler 生成的 `类名_TypeAdapter`（内部类为 `外部类_内部类_TypeAdapter`），
+ * 构造方法按类型缓存，找不到时返回 null 交给 Gson 的反射解析。
+ */
+
+class GeneratedTypeAdapterFactory : TypeAdapterFactory {
+    private val constructors = ConcurrentHashMap<Class<*>, Any>()
+
+    override fun <T : Any?> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T>? {
+        val rawType = type.rawType
+        if (!rawType.isAnnotationPresent(JsonModel::class.java)) {
+            return null
+        }
+        val constructor = constructors[rawType] ?: findConstructor(rawType).also { constructors[rawType] = it }
+        if (constructor === MISSING) {
+            return null
+        }
+        @Suppress("UNCHECKED_CAST")
+        return (constructor as Constructor<*>).newInstance(gson) as TypeAdapter<T>
+    }
+
+    private fun findConstructor(rawType: Class<*>): Any {
+        val packageName = rawType.`package`?.name ?: ""
+        val simpleName = (if (packageName.isEmpty()) rawType.name else rawType.name.substring(packageName.length + 1))
+            .replace('$', '_')
+        val adapterName = if (packageName.isEmpty()) simpleName + ADAPTER_SUFFIX else "$packageName.$simpleName$ADAPTER_SUFFIX"
+        return try {
+            Class.forName(adapterName, true, rawType.classLoader).getConstructor(Gson::class.java)
+        } catch (e: ClassNotFoundException) {
+            MISSING
+        } catch (e: NoSuchMethodException) {
+            MISSING
+        }
+    }
+
+    companion object {
+        private const val ADAPTER_SUFFIX = "_TypeAdapter"
+        private val MISSING = Any()
+    }
+}
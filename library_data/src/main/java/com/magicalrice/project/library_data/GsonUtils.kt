@@ -2,6 +2,7 @@ package com.magicalrice.project.library_data
 
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
+import com.google.gson.reflect.TypeToken
 import java.io.Reader
 import java.lang.reflect.Type
 
@@ -12,6 +13,8 @@ import java.lang.reflect.Type
  * @description Gson 相关
  *
  * getGson : 获取 Gson 对象
+ * getNetGson: 获取网络层共用的 Gson 对象
+ * prewarm : 预先创建 TypeAdapter
  * toJson  : 对象转 Json 串
  * fromJson: Json 串转对象
  */
@@ -23,6 +26,35 @@ object GsonUtils {
     private val GSON_NO_NULLS =
         createGson(false)
 
+    private val NET_GSON = GsonBuilder()
+        .setDateFormat("yyyy-MM-dd HH:mm:ss")
+        .serializeNulls()
+        .registerTypeAdapterFactory(GeneratedTypeAdapterFactory())
+        .create()
+
+    /**
+     * 获取网络层共用的 Gson 对象
+     *
+     * Retrofit 转换器和错误体解析都使用这一个实例，TypeAdapter 只创建一次；
+     * 标注了 JsonModel 的类型使用编译期生成的 TypeAdapter。
+     *
+     * @return [Gson] instance.
+     */
+    fun getNetGson(): Gson {
+        return NET_GSON
+    }
+
+    /**
+     * 预先创建 TypeAdapter，可在启动后的空闲时机调用，避免首个请求承担反射开销
+     *
+     * @param types the types to prepare.
+     */
+    fun prewarm(vararg types: Type) {
+        for (type in types) {
+            NET_GSON.getAdapter(TypeToken.get(type))
+        }
+    }
+
     /**
      * 获取 Gson 对象
      *
@@ -113,12 +145,14 @@ object GsonUtils {
 
     /**
      * Create a pre-configured [Gson] instance.
+     * 与 [getNetGson] 一样，标注了 JsonModel 的类型使用编译期生成的 TypeAdapter。
      *
      * @param serializeNulls determines if nulls will be serialized.
      * @return [Gson] instance.
      */
     private fun createGson(serializeNulls: Boolean): Gson {
         val builder = GsonBuilder()
+            .registerTypeAdapterFactory(GeneratedTypeAdapterFactory())
         if (serializeNulls) builder.serializeNulls()
         return builder.create()
     }
@@ -1,5 +1,8 @@
 package com.magicalrice.project.library_data.bean
 
+import com.magicalrice.project.library_annotation.JsonModel
+
+@JsonModel
 data class NetErrorBean(
     var timestamp: Long,
     var status: Int,
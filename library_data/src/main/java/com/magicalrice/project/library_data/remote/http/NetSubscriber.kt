@@ -7,11 +7,13 @@ import androidx.annotation.RequiresPermission
 import androidx.appcompat.app.AlertDialog
 import androidx.localbroadcastmanager.content.LocalBroadcastManager
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout
-import com.google.gson.Gson
 import com.magicalrice.project.library_base.base.NetworkUtils
 import com.magicalrice.project.library_base.base.ToastUtils
 import com.magicalrice.project.library_data.BaseConstants
+import com.magicalrice.project.library_data.GsonUtils
 import com.magicalrice.project.library_data.bean.NetErrorBean
+import com.magicalrice.project.library_data.remote.http.outbox.OfflineQueuedException
+import com.magicalrice.project.library_data.remote.http.resilience.CircuitOpenException
 import io.reactivex.Observer
 import io.reactivex.disposables.Disposable
 import retrofit2.HttpException
@@ -94,10 +96,9 @@ class NetSubscriber<T> : Observer<T> {
         when (p0) {
             is HttpException -> when (p0.response().code()) {
                 INTERNAL_SERVER_ERROR -> {
-                    val error = p0.response().errorBody()
-                    error?.let {
-                        val resultBean: NetErrorBean? = Gson().fromJson<NetErrorBean>(
-                            String(it.bytes()),
+                    p0.response().errorBody()?.use {
+                        val resultBean: NetErrorBean? = GsonUtils.getNetGson().fromJson<NetErrorBean>(
+                            it.charStream(),
                             NetErrorBean::class.java
                         )
                         showToastError(resultBean?.message)
@@ -106,10 +107,9 @@ class NetSubscriber<T> : Observer<T> {
 
                 REQUESTINVALID -> {
                     showToastError("请求无效")
-                    val error = p0.response().errorBody()
-                    error?.let {
-                        val resultBean = Gson().fromJson<NetErrorBean>(
-                            String(it.bytes()),
+                    p0.response().errorBody()?.use {
+                        val resultBean = GsonUtils.getNetGson().fromJson<NetErrorBean>(
+                            it.charStream(),
                             NetErrorBean::class.java
                         )
                         showToastError(resultBean.message)
@@ -155,6 +155,8 @@ class NetSubscriber<T> : Observer<T> {
                     showToastError("服务器开小差了哦，请稍后重试")
                 }
             }
+            is OfflineQueuedException -> showToastError("网络不可用，已保存，网络恢复后自动提交")
+            is CircuitOpenException -> showToastError("服务器繁忙，请稍后重试")
             is ConnectException -> showToastError("网络请求失败，请稍后重试")
             is UnknownHostException -> showToastError("网络不可用")
             is SocketTimeoutException -> showToastError("网络请求超时")
@@ -0,0 +1,104 @@
+package com.magicalrice.project.library_data.remote.http.cbor
+
+import com.google.gson.Gson
+import com.google.gson.JsonElement
+import com.google.gson.JsonIOException
+import com.google.gson.TypeAdapter
+import com.google.gson.TypeAdapterFactory
+import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.google.gson.stream.JsonWriter
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import java.lang.reflect.Type
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.cbor
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 按响应的 Content-Type 选择 CBOR 或 JSON 解析
+ *
+ * 接口通过 `@Headers(CborConverterFactory.ACCEPT_CBOR)` 声明可以接受 CBOR，服务端支持时返回 application/cbor，
+ * 用 [CborReader] 和同一套 Gson 适配器解析到原来的 bean；服务端还没支持时照常返回 JSON，交给 GsonConverterFactory。
+ * 接口可以逐个迁移，客户端和服务端谁先上线都不影响。
+ * 请求体仍由后面注册的 GsonConverterFactory 输出 JSON。需要放在 GsonConverterFactory 之前注册。
+ */
+
+class CborConverterFactory private constructor(gson: Gson) : Converter.Factory() {
+    private val jsonFactory = GsonConverterFactory.create(gson)
+    private val cborGson = gson.newBuilder().registerTypeAdapterFactory(MapAdapterFactory).create()
+
+    override fun responseBodyConverter(
+        type: Type,
+        annotations: Array<Annotation>,
+        retrofit: Retrofit
+    ): Converter<ResponseBody, *>? {
+        val json = jsonFactory.responseBodyConverter(type, annotations, retrofit) ?: return null
+        return CborResponseBodyConverter(cborGson.getAdapter(TypeToken.get(type)), json)
+    }
+
+    private class CborResponseBodyConverter<T>(
+        private val adapter: TypeAdapter<T>,
+        private val json: Converter<ResponseBody, *>
+    ) : Converter<ResponseBody, Any> {
+
+        override fun convert(value: ResponseBody): Any? {
+            if (!isCbor(value.contentType())) {
+                return json.convert(value)
+            }
+            value.use {
+                val reader = CborReader(it.source())
+                val result = adapter.read(reader)
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw JsonIOException("CBOR document was not fully consumed.")
+                }
+                return result
+            }
+        }
+    }
+
+    /**
+     * Gson 自带的 Map 适配器通过内部接口修改 JsonReader 的私有状态读取 key，对 [CborReader] 无效，
+     * 这里先读成 JsonElement 再交给原来的适配器。bean 里的 Map 字段通常很小，多一次转换影响不大。
+     */
+    private object MapAdapterFactory : TypeAdapterFactory {
+        override fun <T> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T>? {
+            if (!Map::class.java.isAssignableFrom(type.rawType)) {
+                return null
+            }
+            val delegate = gson.getDelegateAdapter(this, type)
+            val tree = gson.getAdapter(JsonElement::class.java)
+            return object : TypeAdapter<T>() {
+                override fun write(out: JsonWriter, value: T) {
+                    delegate.write(out, value)
+                }
+
+                override fun read(reader: JsonReader): T {
+                    return delegate.fromJsonTree(tree.read(reader))
+                }
+            }
+        }
+    }
+
+    companion object {
+        const val CONTENT_TYPE = "application/cbor"
+        /**
+         * 声明可以接受 CBOR，JSON 作为后备
+         */
+        const val ACCEPT_CBOR = "Accept: $CONTENT_TYPE, application/json;q=0.9"
+
+        fun create(gson: Gson): CborConverterFactory {
+            return CborConverterFactory(gson)
+        }
+
+        fun isCbor(mediaType: MediaType?): Boolean {
+            if (mediaType == null || mediaType.type() != "application") return false
+            val subtype = mediaType.subtype()
+            return subtype == "cbor" || subtype.endsWith("+cbor")
+        }
+    }
+}
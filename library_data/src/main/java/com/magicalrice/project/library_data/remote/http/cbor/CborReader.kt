@@ -0,0 +1,407 @@
+package com.magicalrice.project.library_data.remote.http.cbor
+
+import android.util.Base64
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import okio.BufferedSource
+import java.io.IOException
+import java.io.Reader
+import java.math.BigInteger
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.cbor
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 以 JsonReader 的接口读取 CBOR(RFC 7049)
+ *
+ * Gson 的 TypeAdapter 只依赖 JsonReader 的 peek/nextXxx 接口，这里把 CBOR 的数据项翻译成对应的 JsonToken，
+ * 现有的 bean、@SerializedName 和自定义 TypeAdapter 不用改动就能解析 CBOR，省去文本解析和数字、字符串转义的开销。
+ * - map 的 key 必须是字符串或整数(整数转为字符串)
+ * - byte string 按 Base64 字符串返回
+ * - tag 忽略，只读取其中的数据项
+ * - 支持不定长的数组、map 和字符串
+ * 父类的解析状态完全不使用，Gson 内部通过 JsonReaderInternalAccess 修改父类状态的地方(Map 的非字符串 key)
+ * 由 [CborConverterFactory] 注册的 Map 适配器代替。
+ */
+
+class CborReader(private val source: BufferedSource) : JsonReader(UNREADABLE) {
+    //容器栈：剩余的数据项数(map 为键值对数)，-1 表示不定长
+    private var remaining = LongArray(16)
+    private var isMap = BooleanArray(16)
+    private var expectName = BooleanArray(16)
+    private var depth = 0
+
+    //已读取但未消费的数据项头部
+    private var headerRead = false
+    private var major = 0
+    private var info = 0
+    private var argument = 0L
+    private var peeked: JsonToken? = null
+
+    override fun beginArray() {
+        expect(JsonToken.BEGIN_ARRAY)
+        push(false, if (info == INDEFINITE) -1 else argument)
+    }
+
+    override fun endArray() {
+        expect(JsonToken.END_ARRAY)
+        pop()
+    }
+
+    override fun beginObject() {
+        expect(JsonToken.BEGIN_OBJECT)
+        push(true, if (info == INDEFINITE) -1 else argument)
+    }
+
+    override fun endObject() {
+        expect(JsonToken.END_OBJECT)
+        pop()
+    }
+
+    override fun hasNext(): Boolean {
+        val token = peek()
+        return token != JsonToken.END_ARRAY && token != JsonToken.END_OBJECT && token != JsonToken.END_DOCUMENT
+    }
+
+    override fun peek(): JsonToken {
+        peeked?.let { return it }
+        val token = doPeek()
+        peeked = token
+        return token
+    }
+
+    private fun doPeek(): JsonToken {
+        if (depth > 0) {
+            val top = depth - 1
+            if (remaining[top] == 0L) {
+                return if (isMap[top]) JsonToken.END_OBJECT else JsonToken.END_ARRAY
+            }
+            if (remaining[top] < 0 && !headerRead && source.request(1) && source.buffer().getByte(0) == BREAK) {
+                source.skip(1)
+                remaining[top] = 0
+                return if (isMap[top]) JsonToken.END_OBJECT else JsonToken.END_ARRAY
+            }
+        } else if (!headerRead && source.exhausted()) {
+            return JsonToken.END_DOCUMENT
+        }
+        readHeader()
+        if (depth > 0 && isMap[depth - 1] && expectName[depth - 1]) {
+            if (major != MAJOR_TEXT && major != MAJOR_UNSIGNED && major != MAJOR_NEGATIVE) {
+                throw syntaxError("Unsupported map key type $major")
+            }
+            return JsonToken.NAME
+        }
+        return when (major) {
+            MAJOR_UNSIGNED, MAJOR_NEGATIVE -> JsonToken.NUMBER
+            MAJOR_BYTES, MAJOR_TEXT -> JsonToken.STRING
+            MAJOR_ARRAY -> JsonToken.BEGIN_ARRAY
+            MAJOR_MAP -> JsonToken.BEGIN_OBJECT
+            else -> when (info) {
+                SIMPLE_FALSE, SIMPLE_TRUE -> JsonToken.BOOLEAN
+                SIMPLE_NULL, SIMPLE_UNDEFINED -> JsonToken.NULL
+                FLOAT_16, FLOAT_32, FLOAT_64 -> JsonToken.NUMBER
+                else -> throw syntaxError("Unsupported simple value $info")
+            }
+        }
+    }
+
+    /**
+     * 读取下一个数据项的头部，跳过 tag
+     */
+    private fun readHeader() {
+        if (headerRead) return
+        while (true) {
+            val initial = source.readByte().toInt() and 0xff
+            major = initial ushr 5
+            info = initial and 0x1f
+            argument = when {
+                info < 24 -> info.toLong()
+                info == 24 -> (source.readByte().toInt() and 0xff).toLong()
+                info == 25 -> (source.readShort().toInt() and 0xffff).toLong()
+                info == 26 -> source.readInt().toLong() and 0xffffffffL
+                info == 27 -> source.readLong()
+                info == INDEFINITE && major in MAJOR_BYTES..MAJOR_MAP -> -1L
+                else -> throw syntaxError("Invalid additional info $info for major type $major")
+            }
+            if (major != MAJOR_TAG) break
+        }
+        headerRead = true
+    }
+
+    private fun expect(token: JsonToken) {
+        val actual = peek()
+        if (actual != token) {
+            throw IllegalStateException("Expected $token but was $actual at path ${getPath()}")
+        }
+        consumed(token)
+    }
+
+    /**
+     * 消费了一个 token 后更新所在容器的状态
+     */
+    private fun consumed(token: JsonToken) {
+        peeked = null
+        headerRead = false
+        if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT || depth == 0) return
+        val top = depth - 1
+        if (isMap[top]) {
+            if (token == JsonToken.NAME) {
+                expectName[top] = false
+                return
+            }
+            expectName[top] = true
+        }
+        //容器的开始在 push 之后才计入外层，见 push
+        if (token != JsonToken.BEGIN_ARRAY && token != JsonToken.BEGIN_OBJECT && remaining[top] > 0) {
+            remaining[top]--
+        }
+    }
+
+    private fun push(map: Boolean, count: Long) {
+        //嵌套容器本身作为外层的一个数据项
+        if (depth > 0 && remaining[depth - 1] > 0) {
+            remaining[depth - 1]--
+        }
+        if (depth == remaining.size) {
+            remaining = remaining.copyOf(depth * 2)
+            isMap = isMap.copyOf(depth * 2)
+            expectName = expectName.copyOf(depth * 2)
+        }
+        remaining[depth] = count
+        isMap[depth] = map
+        expectName[depth] = map
+        depth++
+    }
+
+    private fun pop() {
+        depth--
+    }
+
+    override fun nextName(): String {
+        if (peek() != JsonToken.NAME) {
+            throw IllegalStateException("Expected a name but was ${peek()} at path ${getPath()}")
+        }
+        val name = if (major == MAJOR_TEXT) readText() else integerString()
+        consumed(JsonToken.NAME)
+        return name
+    }
+
+    override fun nextString(): String {
+        val token = peek()
+        val value = when {
+            token == JsonToken.STRING && major == MAJOR_TEXT -> readText()
+            token == JsonToken.STRING -> Base64.encodeToString(readBytes(), Base64.NO_WRAP)
+            token == JsonToken.NUMBER && (major == MAJOR_UNSIGNED || major == MAJOR_NEGATIVE) -> integerString()
+            token == JsonToken.NUMBER -> floatValue().toString()
+            else -> throw IllegalStateException("Expected a string but was $token at path ${getPath()}")
+        }
+        consumed(token)
+        return value
+    }
+
+    override fun nextBoolean(): Boolean {
+        if (peek() != JsonToken.BOOLEAN) {
+            throw IllegalStateException("Expected a boolean but was ${peek()} at path ${getPath()}")
+        }
+        val value = info == SIMPLE_TRUE
+        consumed(JsonToken.BOOLEAN)
+        return value
+    }
+
+    override fun nextNull() {
+        expect(JsonToken.NULL)
+    }
+
+    override fun nextDouble(): Double {
+        val token = peek()
+        val value = when {
+            token == JsonToken.STRING -> readNumericString().toDouble()
+            token != JsonToken.NUMBER -> throw IllegalStateException("Expected a double but was $token at path ${getPath()}")
+            major == MAJOR_UNSIGNED && argument < 0 -> unsigned(argument).toDouble()
+            major == MAJOR_UNSIGNED -> argument.toDouble()
+            major == MAJOR_NEGATIVE -> -1.0 - argument.toDouble()
+            else -> floatValue()
+        }
+        if (!isLenient && (value.isNaN() || value.isInfinite())) {
+            throw NumberFormatException("JSON forbids NaN and infinities: $value at path ${getPath()}")
+        }
+        consumed(token)
+        return value
+    }
+
+    override fun nextLong(): Long {
+        val token = peek()
+        val value = when {
+            token == JsonToken.STRING -> readNumericString().toLong()
+            token != JsonToken.NUMBER -> throw IllegalStateException("Expected a long but was $token at path ${getPath()}")
+            major == MAJOR_UNSIGNED && argument >= 0 -> argument
+            major == MAJOR_NEGATIVE && argument >= 0 -> -1L - argument
+            major == MAJOR_UNSIGNED || major == MAJOR_NEGATIVE -> throw NumberFormatException("Expected a long but was ${integerString()} at path ${getPath()}")
+            else -> {
+                val double = floatValue()
+                val long = double.toLong()
+                if (long.toDouble() != double) {
+                    throw NumberFormatException("Expected a long but was $double at path ${getPath()}")
+                }
+                long
+            }
+        }
+        consumed(token)
+        return value
+    }
+
+    override fun nextInt(): Int {
+        val value = nextLong()
+        if (value.toInt().toLong() != value) {
+            throw NumberFormatException("Expected an int but was $value at path ${getPath()}")
+        }
+        return value.toInt()
+    }
+
+    override fun skipValue() {
+        when (peek()) {
+            JsonToken.BEGIN_ARRAY -> {
+                beginArray()
+                while (hasNext()) skipValue()
+                endArray()
+            }
+            JsonToken.BEGIN_OBJECT -> {
+                beginObject()
+                while (hasNext()) {
+                    nextName()
+                    skipValue()
+                }
+                endObject()
+            }
+            JsonToken.NAME -> nextName()
+            JsonToken.STRING -> {
+                if (info == INDEFINITE) readBytes() else source.skip(argument)
+                consumed(JsonToken.STRING)
+            }
+            JsonToken.END_ARRAY, JsonToken.END_OBJECT, JsonToken.END_DOCUMENT ->
+                throw IllegalStateException("Expected a value but was ${peek()} at path ${getPath()}")
+            else -> consumed(peek())
+        }
+    }
+
+    override fun close() {
+        peeked = null
+        depth = 0
+        source.close()
+    }
+
+    override fun getPath(): String {
+        return "$[depth $depth]"
+    }
+
+    override fun toString(): String {
+        return "CborReader at ${getPath()}"
+    }
+
+    private fun readText(): String {
+        if (info != INDEFINITE) {
+            return source.readUtf8(argument)
+        }
+        return String(readBytes(), Charsets.UTF_8)
+    }
+
+    private fun readBytes(): ByteArray {
+        if (info != INDEFINITE) {
+            return source.readByteArray(argument)
+        }
+        //不定长字符串由若干定长分段组成，以 break 结束
+        val chunkMajor = major
+        val buffer = okio.Buffer()
+        while (true) {
+            val initial = source.readByte()
+            if (initial == BREAK) break
+            val chunkInfo = initial.toInt() and 0x1f
+            if ((initial.toInt() and 0xff) ushr 5 != chunkMajor || chunkInfo == INDEFINITE) {
+                throw syntaxError("Invalid chunk in indefinite-length string")
+            }
+            val length = when {
+                chunkInfo < 24 -> chunkInfo.toLong()
+                chunkInfo == 24 -> (source.readByte().toInt() and 0xff).toLong()
+                chunkInfo == 25 -> (source.readShort().toInt() and 0xffff).toLong()
+                chunkInfo == 26 -> source.readInt().toLong() and 0xffffffffL
+                chunkInfo == 27 -> source.readLong()
+                else -> throw syntaxError("Invalid chunk length $chunkInfo")
+            }
+            source.readFully(buffer, length)
+        }
+        return buffer.readByteArray()
+    }
+
+    private fun readNumericString(): String {
+        return readText().trim()
+    }
+
+    private fun integerString(): String {
+        return when {
+            major == MAJOR_UNSIGNED && argument >= 0 -> argument.toString()
+            major == MAJOR_UNSIGNED -> unsigned(argument).toString()
+            argument >= 0 -> (-1L - argument).toString()
+            else -> unsigned(argument).add(BigInteger.ONE).negate().toString()
+        }
+    }
+
+    private fun floatValue(): Double {
+        return when (info) {
+            FLOAT_16 -> halfToDouble(argument.toInt())
+            FLOAT_32 -> java.lang.Float.intBitsToFloat(argument.toInt()).toDouble()
+            else -> java.lang.Double.longBitsToDouble(argument)
+        }
+    }
+
+    private fun syntaxError(message: String): IOException {
+        return IOException("$message at path ${getPath()}")
+    }
+
+    companion object {
+        internal const val MAJOR_UNSIGNED = 0
+        internal const val MAJOR_NEGATIVE = 1
+        internal const val MAJOR_BYTES = 2
+        internal const val MAJOR_TEXT = 3
+        internal const val MAJOR_ARRAY = 4
+        internal const val MAJOR_MAP = 5
+        internal const val MAJOR_TAG = 6
+        internal const val MAJOR_SIMPLE = 7
+        internal const val INDEFINITE = 31
+        internal const val SIMPLE_FALSE = 20
+        internal const val SIMPLE_TRUE = 21
+        internal const val SIMPLE_NULL = 22
+        internal const val SIMPLE_UNDEFINED = 23
+        internal const val FLOAT_16 = 25
+        internal const val FLOAT_32 = 26
+        internal const val FLOAT_64 = 27
+        internal const val BREAK = 0xff.toByte()
+
+        //父类要求非空 Reader，但所有读取方法都已覆盖，不会被调用
+        private val UNREADABLE = object : Reader() {
+            override fun read(cbuf: CharArray, off: Int, len: Int): Int {
+                throw AssertionError()
+            }
+
+            override fun close() {
+            }
+        }
+
+        /**
+         * 超过 Long.MAX_VALUE 的 64 位无符号数
+         */
+        private fun unsigned(value: Long): BigInteger {
+            return BigInteger.valueOf(value ushr 1).shiftLeft(1).add(BigInteger.valueOf(value and 1))
+        }
+
+        private fun halfToDouble(half: Int): Double {
+            val exponent = (half ushr 10) and 0x1f
+            val mantissa = half and 0x3ff
+            val value = when (exponent) {
+                0 -> mantissa * Math.pow(2.0, -24.0)
+                31 -> if (mantissa == 0) Double.POSITIVE_INFINITY else Double.NaN
+                else -> (mantissa + 1024) * Math.pow(2.0, exponent - 25.0)
+            }
+            return if (half and 0x8000 != 0) -value else value
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.magicalrice.project.library_data.remote.http.cbor
+
+import com.google.gson.stream.JsonWriter
+import okio.BufferedSink
+import java.io.Writer
+import java.math.BigDecimal
+import java.math.BigInteger
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.cbor
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 以 JsonWriter 的接口输出 CBOR(RFC 7049)
+ *
+ * 与 [CborReader] 对应，Gson 的 TypeAdapter 直接输出 CBOR。
+ * 数组和对象的长度事先未知，使用不定长编码(结尾多一个 break 字节)；
+ * 浮点数能无损表示为 float 时用 4 字节，否则用 8 字节。
+ * 不支持 [jsonValue]，原始 JSON 片段无法转换。
+ */
+
+class CborWriter(private val sink: BufferedSink) : NullSafeJsonWriter(UNWRITABLE) {
+    private var deferredName: String? = null
+    private var depth = 0
+
+    override fun beginArray(): JsonWriter {
+        writeDeferredName()
+        sink.writeByte(CborReader.MAJOR_ARRAY shl 5 or CborReader.INDEFINITE)
+        depth++
+        return this
+    }
+
+    override fun endArray(): JsonWriter {
+        return end()
+    }
+
+    override fun beginObject(): JsonWriter {
+        writeDeferredName()
+        sink.writeByte(CborReader.MAJOR_MAP shl 5 or CborReader.INDEFINITE)
+        depth++
+        return this
+    }
+
+    override fun endObject(): JsonWriter {
+        return end()
+    }
+
+    private fun end(): JsonWriter {
+        check(depth > 0 && deferredName == null) { "Nesting problem." }
+        sink.writeByte(CborReader.BREAK.toInt())
+        depth--
+        return this
+    }
+
+    override fun name(name: String): JsonWriter {
+        check(deferredName == null && depth > 0) { "Nesting problem." }
+        deferredName = name
+        return this
+    }
+
+    override fun value(value: String?): JsonWriter {
+        if (value == null) {
+            return nullValue()
+        }
+        writeDeferredName()
+        writeText(value)
+        return this
+    }
+
+    override fun jsonValue(value: String?): JsonWriter {
+        throw UnsupportedOperationException("Raw JSON cannot be written as CBOR")
+    }
+
+    override fun nullValue(): JsonWriter {
+        if (deferredName != null && !serializeNulls) {
+            //与 JsonWriter 一致：不输出 null 时连同字段名一起省略
+            deferredName = null
+            return this
+        }
+        writeDeferredName()
+        sink.writeByte(CborReader.MAJOR_SIMPLE shl 5 or CborReader.SIMPLE_NULL)
+        return this
+    }
+
+    override fun writeBoolean(value: Boolean): JsonWriter {
+        writeDeferredName()
+        sink.writeByte(CborReader.MAJOR_SIMPLE shl 5 or if (value) CborReader.SIMPLE_TRUE else CborReader.SIMPLE_FALSE)
+        return this
+    }
+
+    override fun value(value: Double): JsonWriter {
+        if (!isLenient && (value.isNaN() || value.isInfinite())) {
+            throw IllegalArgumentException("Numeric values must be finite, but was $value")
+        }
+        writeDeferredName()
+        writeDouble(value)
+        return this
+    }
+
+    override fun value(value: Long): JsonWriter {
+        writeDeferredName()
+        writeLong(value)
+        return this
+    }
+
+    override fun value(value: Number?): JsonWriter {
+        if (value == null) {
+            return nullValue()
+        }
+        when (value) {
+            is Int, is Long, is Short, is Byte -> return value(value.toLong())
+            is Double, is Float, is BigDecimal -> return value(value.toDouble())
+            is BigInteger -> if (value.bitLength() < 64) return value(value.toLong())
+        }
+        //LazilyParsedNumber 等：按字面判断整数或小数
+        val text = value.toString()
+        val long = text.toLongOrNull()
+        return if (long != null) value(long) else value(text.toDouble())
+    }
+
+    override fun flush() {
+        sink.flush()
+    }
+
+    override fun close() {
+        sink.close()
+        check(depth == 0) { "Incomplete document" }
+    }
+
+    private fun writeDeferredName() {
+        val name = deferredName ?: return
+        deferredName = null
+        writeText(name)
+    }
+
+    private fun writeText(value: String) {
+        val length = okio.Utf8.size(value)
+        writeHeader(CborReader.MAJOR_TEXT, length)
+        sink.writeUtf8(value)
+    }
+
+    private fun writeLong(value: Long) {
+        if (value >= 0) {
+            writeHeader(CborReader.MAJOR_UNSIGNED, value)
+        } else {
+            writeHeader(CborReader.MAJOR_NEGATIVE, -1L - value)
+        }
+    }
+
+    private fun writeDouble(value: Double) {
+        val float = value.toFloat()
+        if (float.toDouble() == value || value.isNaN()) {
+            sink.writeByte(CborReader.MAJOR_SIMPLE shl 5 or CborReader.FLOAT_32)
+            sink.writeInt(java.lang.Float.floatToIntBits(float))
+        } else {
+            sink.writeByte(CborReader.MAJOR_SIMPLE shl 5 or CborReader.FLOAT_64)
+            sink.writeLong(java.lang.Double.doubleToLongBits(value))
+        }
+    }
+
+    private fun writeHeader(major: Int, argument: Long) {
+        val type = major shl 5
+        when {
+            argument < 24 -> sink.writeByte(type or argument.toInt())
+            argument <= 0xff -> {
+                sink.writeByte(type or 24)
+                sink.writeByte(argument.toInt())
+            }
+            argument <= 0xffff -> {
+                sink.writeByte(type or 25)
+                sink.writeShort(argument.toInt())
+            }
+            argument <= 0xffffffffL -> {
+                sink.writeByte(type or 26)
+                sink.writeInt(argument.toInt())
+            }
+            else -> {
+                sink.writeByte(type or 27)
+                sink.writeLong(argument)
+            }
+        }
+    }
+
+    companion object {
+        //父类要求非空 Writer，但所有输出方法都已覆盖，不会被调用
+        private val UNWRITABLE = object : Writer() {
+            override fun write(cbuf: CharArray, off: Int, len: Int) {
+                throw AssertionError()
+            }
+
+            override fun flush() {
+            }
+
+            override fun close() {
+            }
+        }
+    }
+}
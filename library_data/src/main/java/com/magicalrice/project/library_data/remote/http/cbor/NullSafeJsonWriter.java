@@ -0,0 +1,37 @@
+package com.magicalrice.project.library_data.remote.http.cbor;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.cbor
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 统一处理 JsonWriter 的两个 Boolean 重载
+ *
+ * Kotlin 不能同时覆盖 value(boolean) 和 value(Boolean)，只覆盖一个时编译器生成的另一个会直接拆箱，
+ * Gson 的 Boolean 适配器写 null 字段时抛出 NullPointerException。这里把两者都转到 {@link #writeBoolean(boolean)}。
+ */
+public abstract class NullSafeJsonWriter extends JsonWriter {
+
+    protected NullSafeJsonWriter(Writer out) {
+        super(out);
+    }
+
+    protected abstract JsonWriter writeBoolean(boolean value) throws IOException;
+
+    @Override
+    public final JsonWriter value(boolean value) throws IOException {
+        return writeBoolean(value);
+    }
+
+    @Override
+    public final JsonWriter value(Boolean value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return writeBoolean(value);
+    }
+}
@@ -0,0 +1,80 @@
+package com.magicalrice.project.library_data.remote.http.coalesce
+
+import io.reactivex.Observable
+import io.reactivex.Single
+import retrofit2.Call
+import retrofit2.CallAdapter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.coalesce
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 相同请求合并(RxJava 层)
+ *
+ * 需要放在 RxJava2CallAdapterFactory 之前注册。订阅时若已有相同请求在执行，直接订阅该请求，
+ * 共享的是解析后的对象，不会重复解析。所有订阅者都取消后底层请求才会取消。
+ */
+
+class CoalescingCallAdapterFactory private constructor() : CallAdapter.Factory() {
+    private val inFlight = ConcurrentHashMap<String, Observable<Any>>()
+
+    override fun get(returnType: Type, annotations: Array<Annotation>, retrofit: Retrofit): CallAdapter<*, *>? {
+        val rawType = getRawType(returnType)
+        if (rawType != Observable::class.java && rawType != Single::class.java) {
+            return null
+        }
+        @Suppress("UNCHECKED_CAST")
+        val delegate = retrofit.nextCallAdapter(this, returnType, annotations) as CallAdapter<Any, Any>
+        return CoalescingCallAdapter(delegate)
+    }
+
+    private inner class CoalescingCallAdapter(private val delegate: CallAdapter<Any, Any>) : CallAdapter<Any, Any> {
+        override fun responseType(): Type {
+            return delegate.responseType()
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        override fun adapt(call: Call<Any>): Any {
+            val adapted = delegate.adapt(call)
+            val request = call.request()
+            if (!RequestCoalescing.isCoalescable(request)) {
+                return adapted
+            }
+            val key = RequestCoalescing.key(request)
+            return when (adapted) {
+                is Observable<*> -> Observable.defer { share(key, adapted as Observable<Any>) }
+                is Single<*> -> Observable.defer { share(key, (adapted as Single<Any>).toObservable()) }
+                    .singleOrError()
+                else -> adapted
+            }
+        }
+    }
+
+    private fun share(key: String, source: Observable<Any>): Observable<Any> {
+        while (true) {
+            val existing = inFlight[key]
+            if (existing != null) {
+                RequestCoalescing.onCollapsed()
+                return existing
+            }
+            val holder = arrayOfNulls<Observable<Any>>(1)
+            val shared = source
+                .doFinally { holder[0]?.let { inFlight.remove(key, it) } }
+                .replay(1)
+                .refCount()
+            holder[0] = shared
+            if (inFlight.putIfAbsent(key, shared) == null) {
+                return shared
+            }
+        }
+    }
+
+    companion object {
+        fun create(): CoalescingCallAdapterFactory {
+            return CoalescingCallAdapterFactory()
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.magicalrice.project.library_data.remote.http.coalesce
+
+import okhttp3.Headers
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.coalesce
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 相同请求合并拦截器
+ *
+ * 第一个请求正常发出。响应到达时如果有相同请求在等待，body 读取一次后缓存在内存中，等待者各自拿到一份副本；
+ * 没有等待者时响应原样返回，不读取 body，流式解析和下载不受影响。
+ * 只共享成功拿到的响应：第一个请求失败或被取消(如随页面销毁的预加载)时，等待者各自重新发起请求。
+ * body 超过 [maxBufferBytes] 时(长度未知的最多预读这么多)不再缓存，已预读的部分留在原响应中继续流式返回，
+ * 等待者自行重新发起请求。
+ */
+
+class CoalescingInterceptor(private val maxBufferBytes: Long = DEFAULT_MAX_BUFFER_BYTES) : Interceptor {
+    private val inFlight = ConcurrentHashMap<String, InFlightCall>()
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        var request = chain.request()
+        if (request.header(RequestCoalescing.HEADER_NAME) != null) {
+            val coalescable = RequestCoalescing.isCoalescable(request)
+            request = request.newBuilder().removeHeader(RequestCoalescing.HEADER_NAME).build()
+            if (!coalescable) {
+                return chain.proceed(request)
+            }
+        } else if (!RequestCoalescing.isCoalescable(request)) {
+            return chain.proceed(request)
+        }
+
+        val key = RequestCoalescing.key(request)
+        val call = InFlightCall()
+        val existing = inFlight.putIfAbsent(key, call)
+        if (existing != null) {
+            //领头请求已经收到响应时不再等待
+            if (existing.join()) {
+                val snapshot = existing.await(chain)
+                if (snapshot != null) {
+                    RequestCoalescing.onCollapsed()
+                    return snapshot.toResponse(request)
+                }
+            }
+            //领头请求失败、被取消或 body 过大未缓存，自行发起
+            return chain.proceed(request)
+        }
+
+        RequestCoalescing.onLeader()
+        try {
+            val response = chain.proceed(request)
+            inFlight.remove(key, call)
+            val body = response.body()
+            if (call.close() == 0 || body == null || !fitsBuffer(body)) {
+                call.complete(null)
+                return response
+            }
+            val bytes = body.bytes()
+            val snapshot = Snapshot(
+                response.protocol(), response.code(), response.message(), response.headers(),
+                body.contentType(), bytes, response.sentRequestAtMillis(), response.receivedResponseAtMillis()
+            )
+            call.complete(snapshot)
+            return snapshot.toResponse(request)
+        } finally {
+            inFlight.remove(key, call)
+            //失败或取消时不把异常传给等待者，等待者未被取消，各自重新请求；成功时已 complete，这里不会覆盖
+            call.complete(null)
+        }
+    }
+
+    /**
+     * 长度未知时最多预读 [maxBufferBytes] + 1 字节，预读的内容留在 source 的缓冲区里，不会丢失
+     */
+    private fun fitsBuffer(body: ResponseBody): Boolean {
+        val length = body.contentLength()
+        if (length >= 0) return length <= maxBufferBytes
+        return !body.source().request(maxBufferBytes + 1)
+    }
+
+    private class InFlightCall {
+        private val latch = CountDownLatch(1)
+        private var followers = 0
+        private var closed = false
+
+        /**
+         * 加入等待，领头请求已收到响应时返回 false
+         */
+        @Synchronized
+        fun join(): Boolean {
+            if (closed) return false
+            followers++
+            return true
+        }
+
+        /**
+         * 不再接受等待者，返回已加入的数量
+         */
+        @Synchronized
+        fun close(): Int {
+            closed = true
+            return followers
+        }
+
+        @Volatile
+        private var snapshot: Snapshot? = null
+
+        /**
+         * 只有第一次调用生效
+         */
+        @Synchronized
+        fun complete(snapshot: Snapshot?) {
+            if (latch.count == 0L) return
+            this.snapshot = snapshot
+            latch.countDown()
+        }
+
+        /**
+         * 等待领头请求完成，期间当前请求被取消则抛出异常
+         */
+        fun await(chain: Interceptor.Chain): Snapshot? {
+            try {
+                while (!latch.await(AWAIT_SLICE_MS, TimeUnit.MILLISECONDS)) {
+                    if (chain.call().isCanceled) {
+                        throw IOException("Canceled")
+                    }
+                }
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                throw IOException("Interrupted while waiting for coalesced request")
+            }
+            return snapshot
+        }
+    }
+
+    private class Snapshot(
+        val protocol: Protocol,
+        val code: Int,
+        val message: String,
+        val headers: Headers,
+        val contentType: MediaType?,
+        val bytes: ByteArray,
+        val sentAt: Long,
+        val receivedAt: Long
+    ) {
+        fun toResponse(request: Request): Response {
+            return Response.Builder()
+                .request(request)
+                .protocol(protocol)
+                .code(code)
+                .message(message)
+                .headers(headers)
+                .body(ResponseBody.create(contentType, bytes))
+                .sentRequestAtMillis(sentAt)
+                .receivedResponseAtMillis(receivedAt)
+                .build()
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_BUFFER_BYTES = 1024 * 1024L
+        private const val AWAIT_SLICE_MS = 100L
+    }
+}
@@ -0,0 +1,79 @@
+package com.magicalrice.project.library_data.remote.http.coalesce
+
+import okhttp3.Request
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.coalesce
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 相同请求合并
+ *
+ * 同一时刻发出的相同 GET/HEAD 请求(method、url、相关请求头都一致)只会真正发出一次，
+ * 后来的调用方复用第一次请求的结果。接口不需要合并时在 Retrofit 方法上加
+ * `@Headers(RequestCoalescing.HEADER_NO_COALESCE)` 即可。
+ */
+
+object RequestCoalescing {
+    const val HEADER_NAME = "X-Coalesce"
+    const val HEADER_NO_COALESCE = "$HEADER_NAME: off"
+
+    //参与计算 key 的请求头，其余请求头不影响响应内容；条件请求头不同时可能一个是 304 一个是完整响应
+    private val KEY_HEADERS = arrayOf(
+        "token", "Authorization", "Accept", "Accept-Language", "Range", "If-None-Match", "If-Modified-Since"
+    )
+
+    private val leaders = AtomicLong()
+    private val collapsed = AtomicLong()
+
+    /**
+     * 请求是否允许合并
+     */
+    fun isCoalescable(request: Request): Boolean {
+        val method = request.method()
+        if (method != "GET" && method != "HEAD") return false
+        return !"off".equals(request.header(HEADER_NAME), ignoreCase = true)
+    }
+
+    /**
+     * 请求的合并 key
+     */
+    fun key(request: Request): String {
+        val sb = StringBuilder(128)
+        sb.append(request.method()).append(' ').append(request.url())
+        for (name in KEY_HEADERS) {
+            val value = request.header(name)
+            if (value != null) {
+                sb.append('\n').append(name).append(':').append(value)
+            }
+        }
+        return sb.toString()
+    }
+
+    internal fun onLeader() {
+        leaders.incrementAndGet()
+    }
+
+    internal fun onCollapsed() {
+        collapsed.incrementAndGet()
+    }
+
+    /**
+     * 实际发出的可合并请求数
+     */
+    fun getLeaderCount(): Long {
+        return leaders.get()
+    }
+
+    /**
+     * 被合并掉(没有实际发出)的请求数
+     */
+    fun getCollapsedCount(): Long {
+        return collapsed.get()
+    }
+
+    fun resetStats() {
+        leaders.set(0)
+        collapsed.set(0)
+    }
+}
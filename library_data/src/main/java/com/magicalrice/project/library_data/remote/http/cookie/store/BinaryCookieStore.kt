@@ -0,0 +1,373 @@
+package com.magicalrice.project.library_data.remote.http.cookie.store
+
+import android.content.Context
+import com.magicalrice.project.library_base.base.log.LogUtils
+import okhttp3.Cookie
+import okhttp3.HttpUrl
+import java.io.BufferedInputStream
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.cookie.store
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 二进制文件持久化的 cookie
+ *
+ * 替代 [PersistentCookieStore]：所有 cookie 保存在一个文件中，文件结构为
+ * 文件头(魔数、domain 数、每个 domain 的偏移和长度) + 按 cookie 的 domain 分段的记录。
+ * 创建时只读文件头，请求某个 host 时才读取并解析该 host 及其各级父域名的分段。
+ * 内存中使用 [CookieIndex]，按 RFC 6265 匹配 domain 和 path，过期的 cookie 在查询时批量清理。
+ * 修改只更新内存，在 [FLUSH_DELAY_MS] 内的多次修改合并为一次整体写入(先写临时文件再重命名)。
+ * 进程内同一文件只能有一个实例，通过 [getInstance] 获取。
+ */
+
+class BinaryCookieStore(private val file: File) : CookieStore {
+    //内存索引、未读入的分段和文件读写都由 lock 保护
+    private val lock = Any()
+    private val index = CookieIndex()
+    //文件中还未读入内存的 domain 及其记录位置
+    private val unloaded = HashMap<String, Section>()
+    private val dirty = AtomicBoolean(false)
+    private val flushScheduled = AtomicBoolean(false)
+
+    init {
+        readIndex()
+    }
+
+    override fun saveCookie(url: HttpUrl, cookie: List<Cookie>) {
+        var changed = false
+        synchronized(lock) {
+            for (bean in cookie) {
+                ensureLoaded(bean.domain())
+                changed = index.put(bean) || changed
+            }
+        }
+        if (changed) scheduleFlush()
+    }
+
+    override fun saveCookie(url: HttpUrl, cookie: Cookie) {
+        saveCookie(url, listOf(cookie))
+    }
+
+    /**
+     * 获取会发送给 url 的 cookie，顺带一次性清理所有已过期的 cookie
+     */
+    override fun loadCookie(url: HttpUrl): List<Cookie> {
+        val swept: List<Cookie>
+        val ret: List<Cookie>
+        synchronized(lock) {
+            ensureLoaded(url.host())
+            swept = index.sweep()
+            ret = index.match(url)
+        }
+        if (swept.isNotEmpty()) scheduleFlush()
+        return ret
+    }
+
+    override fun getAllCookie(): List<Cookie> {
+        synchronized(lock) {
+            for (domain in ArrayList(unloaded.keys)) {
+                ensureLoaded(domain)
+            }
+            return index.all()
+        }
+    }
+
+    override fun getCookie(url: HttpUrl): List<Cookie> {
+        synchronized(lock) {
+            ensureLoaded(url.host())
+            return index.match(url)
+        }
+    }
+
+    override fun removeCookie(url: HttpUrl, cookie: Cookie): Boolean {
+        val removed = synchronized(lock) {
+            ensureLoaded(cookie.domain())
+            index.remove(cookie)
+        }
+        if (removed) scheduleFlush()
+        return removed
+    }
+
+    /**
+     * 移除会发送给 url 对应 host 的所有 cookie
+     */
+    override fun removeCookie(url: HttpUrl): Boolean {
+        val removed = synchronized(lock) {
+            ensureLoaded(url.host())
+            index.removeAll(url.host())
+        }
+        if (removed) scheduleFlush()
+        return removed
+    }
+
+    override fun removeAllCookie(): Boolean {
+        synchronized(lock) {
+            unloaded.clear()
+            index.clear()
+        }
+        scheduleFlush()
+        return true
+    }
+
+    /**
+     * 立即写入文件，如进入后台时调用；没有修改时直接返回
+     */
+    fun flush() {
+        if (!dirty.getAndSet(false)) {
+            return
+        }
+        synchronized(lock) {
+            try {
+                writeFile()
+            } catch (e: IOException) {
+                dirty.set(true)
+                LogUtils.eTag(LOG_TAG, "Failed to write cookies", e)
+            }
+        }
+    }
+
+    /**
+     * 读入 host 及其各级父域名的分段，调用时需持有 lock
+     */
+    private fun ensureLoaded(host: String) {
+        if (unloaded.isEmpty()) {
+            return
+        }
+        var domain = host
+        while (true) {
+            unloaded.remove(domain)?.let { readSection(domain, it) }
+            val dot = domain.indexOf('.')
+            if (dot < 0) break
+            domain = domain.substring(dot + 1)
+        }
+    }
+
+    private fun scheduleFlush() {
+        dirty.set(true)
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule({
+                flushScheduled.set(false)
+                flush()
+            }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private fun readIndex() {
+        if (!file.exists()) {
+            return
+        }
+        val start = System.nanoTime()
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC) {
+                    throw IOException("Unknown cookie file format")
+                }
+                val count = input.readInt()
+                for (i in 0 until count) {
+                    unloaded[input.readUTF()] = Section(input.readInt(), input.readInt())
+                }
+            }
+            LogUtils.dTag(LOG_TAG, "index: ${unloaded.size} domains in ${(System.nanoTime() - start) / 1000}us")
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Discarding unreadable cookie file", e)
+            unloaded.clear()
+            file.delete()
+        }
+    }
+
+    private fun readSection(domain: String, section: Section) {
+        val start = System.nanoTime()
+        try {
+            val input = DataInputStream(ByteArrayInputStream(readBytes(section)))
+            val count = input.readUnsignedShort()
+            for (i in 0 until count) {
+                index.put(readCookie(input))
+            }
+            LogUtils.dTag(LOG_TAG, "load $domain: $count cookies in ${(System.nanoTime() - start) / 1000}us")
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Failed to read cookies of $domain", e)
+        } catch (e: IllegalArgumentException) {
+            LogUtils.eTag(LOG_TAG, "Invalid cookie of $domain", e)
+        }
+    }
+
+    private fun readBytes(section: Section): ByteArray {
+        val bytes = ByteArray(section.length)
+        RandomAccessFile(file, "r").use {
+            it.seek(section.offset.toLong())
+            it.readFully(bytes)
+        }
+        return bytes
+    }
+
+    /**
+     * 整体重写文件，未读入内存的 domain 直接复制原始字节，调用时需持有 lock
+     */
+    private fun writeFile() {
+        val start = System.nanoTime()
+        val body = ByteArrayOutputStream()
+        val bodyOutput = DataOutputStream(body)
+        val domains = ArrayList<String>()
+        val offsets = ArrayList<Int>()
+        index.sweep()
+        for ((domain, domainCookies) in index.byDomain()) {
+            val valid = domainCookies.take(MAX_COOKIES_PER_DOMAIN)
+            domains.add(domain)
+            offsets.add(body.size())
+            bodyOutput.writeShort(valid.size)
+            for (cookie in valid) {
+                writeCookie(bodyOutput, cookie)
+            }
+        }
+        val copied = ArrayList<String>(unloaded.keys)
+        for (domain in copied) {
+            domains.add(domain)
+            offsets.add(body.size())
+            body.write(readBytes(unloaded.getValue(domain)))
+        }
+        offsets.add(body.size())
+
+        val headerSize = 8 + domains.sumBy { 2 + utfLength(it) + 8 }
+        val header = ByteArrayOutputStream(headerSize)
+        val headerOutput = DataOutputStream(header)
+        headerOutput.writeInt(MAGIC)
+        headerOutput.writeInt(domains.size)
+        for (i in domains.indices) {
+            headerOutput.writeUTF(domains[i])
+            headerOutput.writeInt(headerSize + offsets[i])
+            headerOutput.writeInt(offsets[i + 1] - offsets[i])
+        }
+
+        val temp = File(file.path + ".tmp")
+        FileOutputStream(temp).use {
+            header.writeTo(it)
+            body.writeTo(it)
+            it.fd.sync()
+        }
+        if (!temp.renameTo(file)) {
+            file.delete()
+            if (!temp.renameTo(file)) throw IOException("Failed to replace ${file.path}")
+        }
+        val base = domains.size - copied.size
+        for (i in copied.indices) {
+            val position = base + i
+            unloaded[copied[i]] = Section(headerSize + offsets[position], offsets[position + 1] - offsets[position])
+        }
+        LogUtils.dTag(
+            LOG_TAG,
+            "save: ${domains.size} domains, ${headerSize + body.size()} bytes in ${(System.nanoTime() - start) / 1000}us"
+        )
+    }
+
+    /**
+     * 从旧的 [PersistentCookieStore] 迁移，迁移后清空旧数据
+     */
+    private fun migrateFrom(old: PersistentCookieStore) {
+        val oldCookies = old.getCookiesByHost()
+        if (oldCookies.isEmpty()) {
+            return
+        }
+        synchronized(lock) {
+            for (list in oldCookies.values) {
+                list.forEach { index.put(it) }
+            }
+        }
+        dirty.set(true)
+        flush()
+        old.removeAllCookie()
+    }
+
+    private class Section(val offset: Int, val length: Int)
+
+    companion object {
+        private const val LOG_TAG = "BinaryCookieStore"
+        private const val FILE_NAME = "cookies.bin"
+        //"CKS1"
+        private const val MAGIC = 0x434B5331
+        private const val FLUSH_DELAY_MS = 500L
+        private const val MAX_COOKIES_PER_DOMAIN = 0xFFFF
+        private const val FLAG_SECURE = 1
+        private const val FLAG_HTTP_ONLY = 1 shl 1
+        private const val FLAG_HOST_ONLY = 1 shl 2
+        private const val FLAG_PERSISTENT = 1 shl 3
+
+        @Volatile
+        private var instance: BinaryCookieStore? = null
+
+        private val executor: ScheduledExecutorService by lazy {
+            Executors.newSingleThreadScheduledExecutor { runnable ->
+                val thread = Thread(runnable, "CookieStore-flush")
+                thread.isDaemon = true
+                thread
+            }
+        }
+
+        /**
+         * 获取进程内共用的实例，第一次创建时迁移旧的 SharedPreferences 数据
+         */
+        fun getInstance(context: Context): BinaryCookieStore {
+            return instance ?: synchronized(this) {
+                instance ?: BinaryCookieStore(File(context.filesDir, FILE_NAME)).also {
+                    if (!it.file.exists()) {
+                        it.migrateFrom(PersistentCookieStore(context))
+                    }
+                    instance = it
+                }
+            }
+        }
+
+        private fun writeCookie(output: DataOutputStream, cookie: Cookie) {
+            var flags = 0
+            if (cookie.secure()) flags = flags or FLAG_SECURE
+            if (cookie.httpOnly()) flags = flags or FLAG_HTTP_ONLY
+            if (cookie.hostOnly()) flags = flags or FLAG_HOST_ONLY
+            if (cookie.persistent()) flags = flags or FLAG_PERSISTENT
+            output.writeByte(flags)
+            output.writeUTF(cookie.name())
+            output.writeUTF(cookie.value())
+            output.writeUTF(cookie.domain())
+            output.writeUTF(cookie.path())
+            output.writeLong(cookie.expiresAt())
+        }
+
+        private fun readCookie(input: DataInputStream): Cookie {
+            val flags = input.readUnsignedByte()
+            val builder = Cookie.Builder()
+                .name(input.readUTF())
+                .value(input.readUTF())
+            val domain = input.readUTF()
+            if (flags and FLAG_HOST_ONLY != 0) builder.hostOnlyDomain(domain) else builder.domain(domain)
+            builder.path(input.readUTF())
+            val expiresAt = input.readLong()
+            if (flags and FLAG_PERSISTENT != 0) builder.expiresAt(expiresAt)
+            if (flags and FLAG_SECURE != 0) builder.secure()
+            if (flags and FLAG_HTTP_ONLY != 0) builder.httpOnly()
+            return builder.build()
+        }
+
+        private fun utfLength(value: String): Int {
+            var length = 0
+            for (c in value) {
+                length += when {
+                    c.toInt() in 1..0x7F -> 1
+                    c.toInt() > 0x7FF -> 3
+                    else -> 2
+                }
+            }
+            return length
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.magicalrice.project.library_data.remote.http.cookie.store
+
+import okhttp3.Cookie
+import okhttp3.HttpUrl
+import java.util.TreeSet
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.cookie.store
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 按域名索引的 cookie
+ *
+ * 以反转后的域名标签建立前缀树(api.example.com -> com/example/api)，cookie 挂在其 domain 对应的节点上，
+ * 查询时只沿请求 host 的路径向下走，途经节点上的 cookie 才需要按 RFC 6265 检查 domain、path 和 secure，
+ * host-only 的 cookie 只在完全相同的 host 上匹配。同名 cookie 以 (name, domain, path) 区分。
+ * 另外按过期时间维护一个有序索引，[sweep] 一次性取出所有已过期的 cookie。
+ *
+ * 非线程安全，由调用方加锁。
+ */
+
+class CookieIndex {
+    private val root = Node(null, "")
+    private val expiry = TreeSet<Entry>()
+    private var sequence = 0L
+
+    /**
+     * 保存 cookie，已过期的 cookie 会移除同名旧值
+     *
+     * @return 内容是否有变化
+     */
+    fun put(cookie: Cookie, now: Long = System.currentTimeMillis()): Boolean {
+        if (cookie.expiresAt() < now) {
+            return remove(cookie)
+        }
+        val node = node(cookie.domain(), true)!!
+        val key = key(cookie)
+        val old = node.entries[key]
+        if (old != null) {
+            if (old.cookie == cookie) return false
+            expiry.remove(old)
+        }
+        //替换时保留原来的创建顺序
+        val entry = Entry(cookie, node, key, old?.sequence ?: sequence++)
+        node.entries[key] = entry
+        expiry.add(entry)
+        return true
+    }
+
+    fun remove(cookie: Cookie): Boolean {
+        val node = node(cookie.domain(), false) ?: return false
+        val entry = node.entries[key(cookie)] ?: return false
+        removeEntry(entry)
+        return true
+    }
+
+    /**
+     * 移除会发送给 [host] 的所有 cookie
+     */
+    fun removeAll(host: String): Boolean {
+        val removed = ArrayList<Entry>()
+        walk(host) { entry, exact ->
+            if (exact || !entry.cookie.hostOnly()) removed.add(entry)
+        }
+        removed.forEach { removeEntry(it) }
+        return removed.isNotEmpty()
+    }
+
+    /**
+     * 返回与 [url] 匹配的 cookie，path 更长的排在前面，path 相同时先保存的排在前面
+     */
+    fun match(url: HttpUrl): List<Cookie> {
+        val matched = ArrayList<Entry>()
+        walk(url.host()) { entry, exact ->
+            if ((exact || !entry.cookie.hostOnly()) && entry.cookie.matches(url)) matched.add(entry)
+        }
+        if (matched.size > 1) {
+            matched.sortWith(Comparator { a, b ->
+                val byPath = b.cookie.path().length - a.cookie.path().length
+                if (byPath != 0) byPath else a.sequence.compareTo(b.sequence)
+            })
+        }
+        return matched.map { it.cookie }
+    }
+
+    /**
+     * 移除所有在 [now] 之前过期的 cookie
+     *
+     * @return 被移除的 cookie
+     */
+    fun sweep(now: Long = System.currentTimeMillis()): List<Cookie> {
+        if (expiry.isEmpty() || expiry.first().cookie.expiresAt() >= now) {
+            return emptyList()
+        }
+        val removed = ArrayList<Cookie>()
+        while (expiry.isNotEmpty() && expiry.first().cookie.expiresAt() < now) {
+            val entry = expiry.first()
+            removeEntry(entry)
+            removed.add(entry.cookie)
+        }
+        return removed
+    }
+
+    fun all(): List<Cookie> {
+        return expiry.map { it.cookie }
+    }
+
+    /**
+     * 按 domain 分组，用于持久化
+     */
+    fun byDomain(): Map<String, List<Cookie>> {
+        val ret = LinkedHashMap<String, MutableList<Cookie>>()
+        for (entry in expiry) {
+            ret.getOrPut(entry.cookie.domain()) { ArrayList() }.add(entry.cookie)
+        }
+        return ret
+    }
+
+    fun size(): Int {
+        return expiry.size
+    }
+
+    fun clear() {
+        root.children.clear()
+        root.entries.clear()
+        expiry.clear()
+    }
+
+    /**
+     * 沿 host 的反转标签向下遍历，对途经节点上的 cookie 调用 [action]，exact 表示节点与 host 完全相同
+     */
+    private inline fun walk(host: String, action: (Entry, Boolean) -> Unit) {
+        val labels = host.split('.')
+        var node = root
+        for (i in labels.indices.reversed()) {
+            node = node.children[labels[i]] ?: return
+            val exact = i == 0
+            for (entry in node.entries.values) {
+                action(entry, exact)
+            }
+        }
+    }
+
+    private fun node(domain: String, create: Boolean): Node? {
+        val labels = domain.split('.')
+        var node = root
+        for (i in labels.indices.reversed()) {
+            node = node.children[labels[i]] ?: if (create) {
+                Node(node, labels[i]).also { node.children[labels[i]] = it }
+            } else {
+                return null
+            }
+        }
+        return node
+    }
+
+    private fun removeEntry(entry: Entry) {
+        expiry.remove(entry)
+        var node = entry.node
+        node.entries.remove(entry.key)
+        //清理空节点
+        while (node.entries.isEmpty() && node.children.isEmpty()) {
+            val parent = node.parent ?: break
+            parent.children.remove(node.label)
+            node = parent
+        }
+    }
+
+    private fun key(cookie: Cookie): String {
+        return cookie.name() + ";" + cookie.path()
+    }
+
+    private class Node(val parent: Node?, val label: String) {
+        val children = HashMap<String, Node>()
+        val entries = LinkedHashMap<String, Entry>()
+    }
+
+    private class Entry(val cookie: Cookie, val node: Node, val key: String, val sequence: Long) : Comparable<Entry> {
+        override fun compareTo(other: Entry): Int {
+            val byExpiry = cookie.expiresAt().compareTo(other.cookie.expiresAt())
+            return if (byExpiry != 0) byExpiry else sequence.compareTo(other.sequence)
+        }
+    }
+}
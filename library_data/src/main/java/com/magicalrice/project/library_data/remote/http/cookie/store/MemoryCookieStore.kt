@@ -2,85 +2,59 @@ package com.magicalrice.project.library_data.remote.http.cookie.store
 
 import okhttp3.Cookie
 import okhttp3.HttpUrl
-import java.util.*
 
 /**
  * @package com.magicalrice.project.library_third_internal.storage.remote.http.cookie.store
  * @author Adolph
  * @date 2019-04-24 Wed
- * @description TODO
+ * @description 只保存在内存中的 cookie，按 [CookieIndex] 匹配 domain 和 path
  */
 
 class MemoryCookieStore :
     CookieStore {
-    private val memoryCookies = HashMap<String, List<Cookie>>()
+    private val memoryCookies = CookieIndex()
 
+    @Synchronized
     override fun saveCookie(url: HttpUrl, cookie: Cookie) {
-        val cookies = memoryCookies[url.host()]?.toMutableList()
-        val needRemove = ArrayList<Cookie>()
-        if (cookies != null) {
-            for (item in cookies) {
-                if (cookie.name() == item.name()) {
-                    needRemove.add(item)
-                }
-            }
-            cookies.removeAll(needRemove)
-            cookies.add(cookie)
-        }
+        memoryCookies.put(cookie)
     }
 
+    @Synchronized
     override fun saveCookie(url: HttpUrl, cookie: List<Cookie>) {
-        val oldCookies = memoryCookies[url.host()]?.toMutableList()
-        val needRemove = ArrayList<Cookie>()
-        if (oldCookies != null) {
-            for (newCookie in cookie) {
-                for (oldCookie in oldCookies) {
-                    if (newCookie.name() == oldCookie.name()) {
-                        needRemove.add(oldCookie)
-                    }
-                }
-            }
-            oldCookies.removeAll(needRemove)
-            oldCookies.addAll(cookie)
+        for (bean in cookie) {
+            memoryCookies.put(bean)
         }
     }
 
+    @Synchronized
     override fun loadCookie(url: HttpUrl): List<Cookie> {
-        var cookies = memoryCookies[url.host()]
-        if (cookies == null) {
-            cookies = ArrayList()
-            memoryCookies[url.host()] = cookies
-        }
-        return cookies
+        memoryCookies.sweep()
+        return memoryCookies.match(url)
     }
 
+    @Synchronized
     override fun getAllCookie(): List<Cookie> {
-        val cookies = ArrayList<Cookie>()
-        val httpUrls = memoryCookies.keys
-        for (url in httpUrls) {
-            cookies.addAll(memoryCookies[url]!!)
-        }
-        return cookies
+        return memoryCookies.all()
     }
 
+    @Synchronized
     override fun getCookie(url: HttpUrl): List<Cookie> {
-        val cookies = ArrayList<Cookie>()
-        val urlCookies = memoryCookies[url.host()]
-        if (urlCookies != null) cookies.addAll(urlCookies)
-        return cookies
+        return memoryCookies.match(url)
     }
 
+    @Synchronized
     override fun removeAllCookie(): Boolean {
         memoryCookies.clear()
         return true
     }
 
+    @Synchronized
     override fun removeCookie(url: HttpUrl): Boolean {
-        return memoryCookies.remove(url.host()) != null
+        return memoryCookies.removeAll(url.host())
     }
 
+    @Synchronized
     override fun removeCookie(url: HttpUrl, cookie: Cookie): Boolean {
-        val cookies = memoryCookies[url.host()]?.toMutableList()
-        return cookies?.remove(cookie) ?: false
+        return memoryCookies.remove(cookie)
     }
-}
\ No newline at end of file
+}
@@ -141,6 +141,17 @@ class PersistentCookieStore :
         return ret
     }
 
+    /**
+     * 按 host 获取所有cookie,用于迁移到 [BinaryCookieStore]
+     */
+    internal fun getCookiesByHost(): Map<String, List<Cookie>> {
+        val ret = HashMap<String, List<Cookie>>()
+        for ((host, hostCookies) in cookies) {
+            ret[host] = ArrayList(hostCookies.values)
+        }
+        return ret
+    }
+
     override fun getCookie(url: HttpUrl): List<Cookie> {
         val ret = ArrayList<Cookie>()
         val mapCookie = cookies[url.host()]
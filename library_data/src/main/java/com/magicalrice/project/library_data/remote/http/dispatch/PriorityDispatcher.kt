@@ -0,0 +1,170 @@
+package com.magicalrice.project.library_data.remote.http.dispatch
+
+import okhttp3.Call
+import okhttp3.Dispatcher
+import okhttp3.Interceptor
+import java.io.IOException
+import java.util.TreeSet
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.dispatch
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 按优先级调度请求
+ *
+ * OkHttp 的 Dispatcher 按 FIFO 执行且不区分优先级，这里在应用拦截器中再做一层排队：
+ * 等待队列按 [RequestPriority] 排序，同优先级先进先出；总并发中预留 reservedForCritical 个名额只给 CRITICAL 使用；
+ * 每个 host 的并发数单独限制。OkHttp 自身的 Dispatcher 需要放宽限制([createOkHttpDispatcher])，由这里负责限流。
+ */
+
+class PriorityDispatcher(
+    private val maxRequests: Int = 16,
+    private val maxRequestsPerHost: Int = 5,
+    private val reservedForCritical: Int = 2
+) {
+    private val lock = ReentrantLock()
+    private val stateChanged = lock.newCondition()
+    private val waiting = TreeSet<Ticket>()
+    private val runningPerHost = HashMap<String, Int>()
+    private var running = 0
+    private var sequence = 0L
+
+    /**
+     * 放宽 OkHttp 的并发限制，排队由 [getInterceptor] 完成
+     */
+    fun createOkHttpDispatcher(): Dispatcher {
+        val dispatcher = Dispatcher()
+        dispatcher.maxRequests = OKHTTP_MAX_REQUESTS
+        dispatcher.maxRequestsPerHost = OKHTTP_MAX_REQUESTS
+        return dispatcher
+    }
+
+    /**
+     * 应尽量靠前添加，排队期间不执行后续拦截器
+     */
+    fun getInterceptor(): Interceptor {
+        return Interceptor { chain ->
+            var request = chain.request()
+            val priority = RequestPriority.of(request)
+            if (request.header(RequestPriority.HEADER_NAME) != null) {
+                request = request.newBuilder().removeHeader(RequestPriority.HEADER_NAME).build()
+            }
+            val ticket = acquire(priority, request.url().host(), chain.call())
+            try {
+                chain.proceed(request)
+            } finally {
+                release(ticket)
+            }
+        }
+    }
+
+    fun getRunningCount(): Int {
+        lock.lock()
+        try {
+            return running
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    fun getQueuedCount(): Int {
+        lock.lock()
+        try {
+            return waiting.size
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun acquire(priority: RequestPriority, host: String, call: Call): Ticket {
+        lock.lock()
+        //序号在锁内分配，相同序号的 Ticket 在 TreeSet 中视为重复，会被丢掉
+        val ticket = Ticket(priority, host, sequence++)
+        try {
+            waiting.add(ticket)
+            promote()
+            while (!ticket.granted) {
+                stateChanged.await(CANCEL_CHECK_MS, TimeUnit.MILLISECONDS)
+                if (!ticket.granted && call.isCanceled) {
+                    waiting.remove(ticket)
+                    throw IOException("Canceled")
+                }
+            }
+            return ticket
+        } catch (e: InterruptedException) {
+            //中断前可能已被放行，需要归还名额，否则名额永远不会释放
+            if (ticket.granted) {
+                releaseLocked(ticket)
+            } else {
+                waiting.remove(ticket)
+            }
+            Thread.currentThread().interrupt()
+            throw IOException("Interrupted while waiting for dispatch")
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun release(ticket: Ticket) {
+        lock.lock()
+        try {
+            releaseLocked(ticket)
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    /**
+     * 归还已放行请求的名额，调用时需持有锁
+     */
+    private fun releaseLocked(ticket: Ticket) {
+        running--
+        val count = (runningPerHost[ticket.host] ?: 1) - 1
+        if (count <= 0) {
+            runningPerHost.remove(ticket.host)
+        } else {
+            runningPerHost[ticket.host] = count
+        }
+        promote()
+    }
+
+    /**
+     * 按优先级顺序放行所有可以执行的请求，调用时需持有锁
+     */
+    private fun promote() {
+        var changed = false
+        val iterator = waiting.iterator()
+        while (iterator.hasNext()) {
+            val ticket = iterator.next()
+            val limit = if (ticket.priority == RequestPriority.CRITICAL) maxRequests else maxRequests - reservedForCritical
+            if (running >= maxRequests) break
+            if (running >= limit) continue
+            val hostCount = runningPerHost[ticket.host] ?: 0
+            if (hostCount >= maxRequestsPerHost) continue
+            iterator.remove()
+            running++
+            runningPerHost[ticket.host] = hostCount + 1
+            ticket.granted = true
+            changed = true
+        }
+        if (changed) {
+            stateChanged.signalAll()
+        }
+    }
+
+    private class Ticket(val priority: RequestPriority, val host: String, val sequence: Long) : Comparable<Ticket> {
+        var granted = false
+
+        override fun compareTo(other: Ticket): Int {
+            val byPriority = priority.compareTo(other.priority)
+            return if (byPriority != 0) byPriority else sequence.compareTo(other.sequence)
+        }
+    }
+
+    companion object {
+        private const val OKHTTP_MAX_REQUESTS = 128
+        private const val CANCEL_CHECK_MS = 100L
+    }
+}
@@ -0,0 +1,44 @@
+package com.magicalrice.project.library_data.remote.http.dispatch
+
+import okhttp3.Request
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.dispatch
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 请求优先级
+ *
+ * 在 Retrofit 方法上通过 `@Headers(RequestPriority.HEADER_PREFETCH)` 指定，
+ * 也可以在 OkHttp Request 上直接设置 [HEADER_NAME] 请求头，未设置时为 [NORMAL]。
+ */
+
+enum class RequestPriority {
+    /**
+     * 用户操作直接触发的请求，可以使用预留的并发名额
+     */
+    CRITICAL,
+    /**
+     * 普通请求
+     */
+    NORMAL,
+    /**
+     * 预加载、图片预取等后台请求，页面销毁时可整体取消
+     */
+    PREFETCH;
+
+    companion object {
+        const val HEADER_NAME = "X-Priority"
+        const val HEADER_CRITICAL = "$HEADER_NAME: critical"
+        const val HEADER_NORMAL = "$HEADER_NAME: normal"
+        const val HEADER_PREFETCH = "$HEADER_NAME: prefetch"
+
+        fun of(request: Request): RequestPriority {
+            val value = request.header(HEADER_NAME) ?: return NORMAL
+            return when {
+                "critical".equals(value, ignoreCase = true) -> CRITICAL
+                "prefetch".equals(value, ignoreCase = true) -> PREFETCH
+                else -> NORMAL
+            }
+        }
+    }
+}
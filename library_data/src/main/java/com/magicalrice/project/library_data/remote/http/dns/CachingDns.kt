@@ -0,0 +1,295 @@
+package com.magicalrice.project.library_data.remote.http.dns
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import com.magicalrice.project.library_base.base.NetworkUtils
+import com.magicalrice.project.library_base.base.log.LogUtils
+import okhttp3.Dns
+import java.net.Inet4Address
+import java.net.InetAddress
+import java.net.UnknownHostException
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.dns
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 带缓存的 DNS
+ *
+ * - 成功结果按 TTL 缓存([Resolver] 没有给出 TTL 时使用默认值)，失败结果缓存 negativeTtl，避免反复查询不存在的域名
+ * - 过期后 maxStale 内仍直接返回旧结果，同时在后台重新解析；重新解析失败时也继续使用旧结果
+ * - 同一域名同时只有一个解析在进行，其它调用等待其结果
+ * - 返回的地址按 IPv4/IPv6 交替排列，首选族可配置。OkHttp 按顺序尝试地址，交替排列可以在某一族不通时尽快换到另一族
+ * - [prefetch] 在后台并行解析指定域名，可在启动时调用
+ *
+ * 同时实现 [NetworkUtils.DomainResolver]，注册后 NetworkUtils.getDomainAddress 也使用这里的缓存。
+ * 调用 [registerNetworkReceiver] 后网络变化时自动清空缓存。
+ */
+
+class CachingDns private constructor(builder: Builder) : Dns, NetworkUtils.DomainResolver {
+    private val resolver = builder.resolver
+    private val defaultTtl = builder.defaultTtl
+    private val negativeTtl = builder.negativeTtl
+    private val maxStale = builder.maxStale
+    private val preferIpv4 = builder.preferIpv4
+    private val clock = builder.clock
+    private val executor = builder.executor ?: DEFAULT_EXECUTOR
+    private val cache = ConcurrentHashMap<String, Entry>()
+    private val inFlight = ConcurrentHashMap<String, FutureTask<Entry>>()
+
+    override fun lookup(hostname: String): List<InetAddress> {
+        val now = clock.now()
+        val entry = cache[hostname]
+        if (entry != null) {
+            if (now < entry.expiresAt) {
+                return entry.get(hostname)
+            }
+            if (entry.addresses != null && now < entry.staleUntil) {
+                refreshAsync(hostname, entry)
+                return entry.addresses
+            }
+        }
+        return resolve(hostname).get(hostname)
+    }
+
+    /**
+     * 在后台解析，已缓存且未过期的域名跳过
+     */
+    fun prefetch(vararg hostnames: String) {
+        val now = clock.now()
+        for (hostname in hostnames) {
+            val entry = cache[hostname]
+            if (entry == null || now >= entry.expiresAt) {
+                executor.execute { resolveQuietly(hostname) }
+            }
+        }
+    }
+
+    /**
+     * 清空缓存，网络切换时调用，避免继续使用旧网络下的结果
+     */
+    fun clear() {
+        cache.clear()
+    }
+
+    /**
+     * 注册网络变化广播，网络切换时清空缓存。注册时收到的粘性广播不处理
+     */
+    fun registerNetworkReceiver(context: Context) {
+        context.applicationContext.registerReceiver(object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                if (!isInitialStickyBroadcast) {
+                    clear()
+                }
+            }
+        }, IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION))
+    }
+
+    private fun refreshAsync(hostname: String, entry: Entry) {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            executor.execute { resolveQuietly(hostname) }
+        }
+    }
+
+    private fun resolveQuietly(hostname: String) {
+        try {
+            resolve(hostname)
+        } catch (e: Exception) {
+            LogUtils.wTag(TAG, "prefetch $hostname failed", e)
+        }
+    }
+
+    /**
+     * 解析并更新缓存，同一域名的并发调用共用一次解析
+     */
+    private fun resolve(hostname: String): Entry {
+        val task = FutureTask(Callable { doResolve(hostname) })
+        val existing = inFlight.putIfAbsent(hostname, task)
+        if (existing != null) {
+            return await(existing)
+        }
+        try {
+            task.run()
+            return await(task)
+        } finally {
+            inFlight.remove(hostname, task)
+        }
+    }
+
+    private fun doResolve(hostname: String): Entry {
+        val previous = cache[hostname]
+        val entry = try {
+            val answer = resolver.resolve(hostname)
+            if (answer.addresses.isEmpty()) throw UnknownHostException("No address for $hostname")
+            val ttl = if (answer.ttlMillis >= 0) answer.ttlMillis else defaultTtl
+            val expiresAt = clock.now() + ttl
+            Entry(order(answer.addresses), null, expiresAt, expiresAt + maxStale)
+        } catch (e: UnknownHostException) {
+            val now = clock.now()
+            if (previous?.addresses != null && now < previous.staleUntil) {
+                //解析失败时继续使用旧结果，稍后再试，但不超过原来的 maxStale
+                Entry(previous.addresses, null, Math.min(now + negativeTtl, previous.staleUntil), previous.staleUntil)
+            } else {
+                Entry(null, e, now + negativeTtl, 0)
+            }
+        }
+        cache[hostname] = entry
+        return entry
+    }
+
+    private fun await(task: FutureTask<Entry>): Entry {
+        try {
+            return task.get()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw UnknownHostException("Interrupted while resolving")
+        } catch (e: ExecutionException) {
+            val cause = e.cause
+            if (cause is RuntimeException) throw cause
+            throw UnknownHostException(cause?.message)
+        }
+    }
+
+    /**
+     * IPv4/IPv6 交替排列，同一族内保持解析器给出的顺序
+     */
+    private fun order(addresses: List<InetAddress>): List<InetAddress> {
+        val ipv4 = addresses.filter { it is Inet4Address }
+        val ipv6 = addresses.filter { it !is Inet4Address }
+        if (ipv4.isEmpty() || ipv6.isEmpty()) return addresses
+        val first = if (preferIpv4) ipv4 else ipv6
+        val second = if (preferIpv4) ipv6 else ipv4
+        val ordered = ArrayList<InetAddress>(addresses.size)
+        for (i in 0 until Math.max(first.size, second.size)) {
+            if (i < first.size) ordered.add(first[i])
+            if (i < second.size) ordered.add(second[i])
+        }
+        return ordered
+    }
+
+    private class Entry(
+        val addresses: List<InetAddress>?,
+        val error: UnknownHostException?,
+        val expiresAt: Long,
+        val staleUntil: Long
+    ) {
+        val refreshing = AtomicBoolean(false)
+
+        fun get(hostname: String): List<InetAddress> {
+            if (addresses != null) return addresses
+            val exception = UnknownHostException(error?.message ?: hostname)
+            exception.initCause(error)
+            throw exception
+        }
+    }
+
+    /**
+     * 实际的解析实现，默认使用系统解析，测试时可替换
+     */
+    interface Resolver {
+        @Throws(UnknownHostException::class)
+        fun resolve(hostname: String): Answer
+    }
+
+    /**
+     * 解析结果
+     *
+     * @param ttlMillis 有效期，小于 0 时使用默认 TTL
+     */
+    class Answer @JvmOverloads constructor(val addresses: List<InetAddress>, val ttlMillis: Long = -1)
+
+    interface Clock {
+        fun now(): Long
+    }
+
+    class Builder {
+        internal var resolver: Resolver = SYSTEM
+        internal var defaultTtl = 60_000L
+        internal var negativeTtl = 5_000L
+        internal var maxStale = 10 * 60_000L
+        internal var preferIpv4 = true
+        internal var clock: Clock = SYSTEM_CLOCK
+        internal var executor: Executor? = null
+
+        fun resolver(resolver: Resolver): Builder {
+            this.resolver = resolver
+            return this
+        }
+
+        /**
+         * 解析器没有给出 TTL 时的有效期，系统解析不返回 TTL
+         */
+        fun defaultTtl(millis: Long): Builder {
+            this.defaultTtl = millis
+            return this
+        }
+
+        fun negativeTtl(millis: Long): Builder {
+            this.negativeTtl = millis
+            return this
+        }
+
+        /**
+         * 过期后仍可返回旧结果的时长
+         */
+        fun maxStale(millis: Long): Builder {
+            this.maxStale = millis
+            return this
+        }
+
+        fun preferIpv4(preferIpv4: Boolean): Builder {
+            this.preferIpv4 = preferIpv4
+            return this
+        }
+
+        fun clock(clock: Clock): Builder {
+            this.clock = clock
+            return this
+        }
+
+        /**
+         * 后台刷新和预解析使用的线程池
+         */
+        fun executor(executor: Executor): Builder {
+            this.executor = executor
+            return this
+        }
+
+        fun build(): CachingDns {
+            return CachingDns(this)
+        }
+    }
+
+    companion object {
+        private const val TAG = "CachingDns"
+
+        private val SYSTEM = object : Resolver {
+            override fun resolve(hostname: String): Answer {
+                return Answer(Dns.SYSTEM.lookup(hostname))
+            }
+        }
+
+        private val SYSTEM_CLOCK = object : Clock {
+            override fun now(): Long {
+                return System.currentTimeMillis()
+            }
+        }
+
+        private val DEFAULT_EXECUTOR: Executor by lazy {
+            Executors.newFixedThreadPool(2) { runnable ->
+                val thread = Thread(runnable, "CachingDns")
+                thread.isDaemon = true
+                thread
+            }
+        }
+    }
+}
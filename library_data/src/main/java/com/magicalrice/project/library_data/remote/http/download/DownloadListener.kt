@@ -0,0 +1,21 @@
+package com.magicalrice.project.library_data.remote.http.download
+
+import java.io.File
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.download
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 下载回调，均在下载线程调用，[onProgress] 每 250ms 左右一次
+ */
+
+interface DownloadListener {
+    fun onProgress(task: DownloadTask, downloadedBytes: Long, totalBytes: Long)
+
+    fun onComplete(task: DownloadTask, file: File)
+
+    /**
+     * 失败后分段进度保留，可调用 DownloadManager.resume 续传；校验失败时已下载的数据会被删除
+     */
+    fun onFailed(task: DownloadTask, error: Throwable)
+}
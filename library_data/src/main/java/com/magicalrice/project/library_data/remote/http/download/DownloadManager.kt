@@ -0,0 +1,631 @@
+package com.magicalrice.project.library_data.remote.http.download
+
+import com.magicalrice.project.library_base.base.FileIOUtils
+import com.magicalrice.project.library_base.base.log.LogUtils
+import com.magicalrice.project.library_data.remote.http.metrics.NetworkMetrics
+import com.magicalrice.project.library_data.remote.http.upload.BandwidthLimiter
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.download
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 多连接分段下载
+ *
+ * 先用 `Range: bytes=0-0` 探测文件长度、是否支持 Range 和校验值(ETag/Last-Modified)，
+ * 支持时用 [FileIOUtils.preallocateFile] 预分配 .part 文件，多个连接各自请求一段，通过 FileChannel 按位置并发写入。
+ * - 分段进度约每秒写入状态文件一次([DownloadState])，进程被杀后对同一 url 和目标文件再次调用 [download] 从记录的位置继续；
+ *   续传前重新探测，文件长度或校验值变化时从头下载。分段请求带 If-Range，服务端文件中途变化时不会拼接出错误的文件
+ * - 连接数自适应：从 initialSegments 开始，每隔 2 秒把剩余最多的分段对半拆开并增加一个连接，
+ *   直到 maxSegments 或增加连接后吞吐提升不足 10% 为止；有分段完成时继续拆分剩余分段，保持连接数，避免最后只剩一个慢连接
+ * - 设置了 expectedHash 时，调度线程随下载进度顺序读取已连续写完的前缀并计算摘要，下载结束时只需再读剩余部分，不需要整文件再读一遍
+ * - 服务端不支持 Range 时退化为单连接顺序下载，不支持续传
+ */
+
+class DownloadManager private constructor(builder: Builder) {
+    private val client = builder.client
+    private val stateDir = builder.stateDir
+    private val initialSegments = builder.initialSegments
+    private val maxSegments = builder.maxSegments
+    private val minSegmentSize = builder.minSegmentSize
+    private val maxRetries = builder.maxRetries
+    private val hashAlgorithm = builder.hashAlgorithm
+    private val limiter = BandwidthLimiter(builder.bytesPerSecond)
+    private val tasks = ConcurrentHashMap<String, DownloadTask>()
+    private val taskExecutor = ThreadPoolExecutor(
+        builder.maxTasks, builder.maxTasks, 30, TimeUnit.SECONDS, LinkedBlockingQueue()
+    ) { runnable ->
+        Thread(runnable, "Download-${THREAD_ID.incrementAndGet()}").apply { isDaemon = true }
+    }.apply { allowCoreThreadTimeOut(true) }
+    private val segmentExecutor: ExecutorService = Executors.newCachedThreadPool { runnable ->
+        Thread(runnable, "Download-segment-${THREAD_ID.incrementAndGet()}").apply { isDaemon = true }
+    }
+
+    /**
+     * 下载到 [target]，同一 url 和目标文件的任务未结束时返回已有任务
+     */
+    @JvmOverloads
+    fun download(
+        url: String,
+        target: File,
+        expectedHash: String? = null,
+        listener: DownloadListener? = null
+    ): DownloadTask {
+        val key = stateKey(url, target)
+        synchronized(tasks) {
+            tasks[key]?.let {
+                if (it.status == DownloadTask.Status.WAITING || it.status == DownloadTask.Status.RUNNING) return it
+            }
+            val task = DownloadTask(url, target, expectedHash, listener, File(stateDir, "$key.dl"))
+            tasks[key] = task
+            start(task)
+            return task
+        }
+    }
+
+    fun resume(task: DownloadTask) {
+        if (task.status == DownloadTask.Status.PAUSED || task.status == DownloadTask.Status.FAILED) {
+            start(task)
+        }
+    }
+
+    /**
+     * 暂停，进度保留
+     */
+    fun pause(task: DownloadTask) {
+        if (task.status == DownloadTask.Status.WAITING || task.status == DownloadTask.Status.RUNNING) {
+            task.status = DownloadTask.Status.PAUSED
+            task.runToken?.countDown()
+            task.segments.forEach { it.call?.cancel() }
+        }
+    }
+
+    /**
+     * 取消并删除已下载的数据和续传状态
+     */
+    fun cancel(task: DownloadTask) {
+        val running = task.status == DownloadTask.Status.RUNNING
+        task.status = DownloadTask.Status.CANCELED
+        task.runToken?.countDown()
+        task.segments.forEach { it.call?.cancel() }
+        tasks.values.remove(task)
+        if (!running) {
+            discard(task)
+        }
+    }
+
+    /**
+     * 所有下载共用的带宽上限，0 表示不限速
+     */
+    fun setBandwidthLimit(bytesPerSecond: Long) {
+        limiter.setRate(bytesPerSecond)
+    }
+
+    fun getTasks(): List<DownloadTask> {
+        return ArrayList(tasks.values)
+    }
+
+    private fun start(task: DownloadTask) {
+        val token = CountDownLatch(1)
+        task.runToken?.countDown()
+        task.runToken = token
+        task.status = DownloadTask.Status.WAITING
+        task.error = null
+        taskExecutor.execute { run(task, token) }
+    }
+
+    /**
+     * 暂停后又继续时，上一次运行的调度线程和分段线程可能还没退出，不再是当前运行的直接退出
+     */
+    private fun isCurrent(task: DownloadTask, token: CountDownLatch): Boolean {
+        return task.runToken === token && task.status == DownloadTask.Status.RUNNING
+    }
+
+    private fun run(task: DownloadTask, token: CountDownLatch) {
+        //等上一次运行保存进度、分段线程全部结束后再开始，避免两次运行同时写 .part 和状态文件
+        synchronized(task.runLock) {
+            if (task.runToken !== token || task.status != DownloadTask.Status.WAITING) {
+                return
+            }
+            task.segmentFailure = null
+            task.status = DownloadTask.Status.RUNNING
+            runLocked(task, token)
+        }
+    }
+
+    private fun runLocked(task: DownloadTask, token: CountDownLatch) {
+        try {
+            val probe = probe(task)
+            task.totalBytes = probe.total
+            val hash = if (probe.acceptRanges && probe.total > 0) {
+                downloadSegmented(task, probe, token)
+            } else {
+                downloadSingle(task, token)
+            }
+            if (!isCurrent(task, token)) {
+                finishStopped(task)
+                return
+            }
+            task.hash = hash
+            if (task.expectedHash != null && !task.expectedHash.equals(hash, ignoreCase = true)) {
+                discard(task)
+                throw IOException("Hash mismatch: expected ${task.expectedHash}, got $hash")
+            }
+            val part = task.partFile()
+            task.target.delete()
+            if (!part.renameTo(task.target)) {
+                throw IOException("Failed to move ${part.path}")
+            }
+            task.stateFile.delete()
+            task.status = DownloadTask.Status.COMPLETED
+            tasks.values.remove(task)
+            task.listener?.onComplete(task, task.target)
+        } catch (e: IOException) {
+            if (!isCurrent(task, token)) {
+                finishStopped(task)
+                return
+            }
+            LogUtils.eTag(LOG_TAG, "Download ${task.url} failed at ${task.downloadedBytes}/${task.totalBytes}", e)
+            task.error = e
+            task.status = DownloadTask.Status.FAILED
+            task.listener?.onFailed(task, e)
+        }
+    }
+
+    private fun finishStopped(task: DownloadTask) {
+        if (task.status == DownloadTask.Status.CANCELED) {
+            discard(task)
+        }
+    }
+
+    private fun discard(task: DownloadTask) {
+        task.partFile().delete()
+        task.stateFile.delete()
+        task.segments.clear()
+    }
+
+    private fun probe(task: DownloadTask): Probe {
+        val request = Request.Builder().url(task.url).header("Range", "bytes=0-0").build()
+        client.newCall(request).execute().use { response ->
+            if (response.code() == HTTP_PARTIAL) {
+                val total = response.header("Content-Range")?.substringAfterLast('/')?.toLongOrNull() ?: -1L
+                return Probe(true, total, validator(response))
+            }
+            if (!response.isSuccessful) {
+                throw IOException("HTTP ${response.code()}")
+            }
+            return Probe(false, response.body()?.contentLength() ?: -1L, validator(response))
+        }
+    }
+
+    private fun downloadSegmented(task: DownloadTask, probe: Probe, token: CountDownLatch): String? {
+        val part = task.partFile()
+        var state = DownloadState.read(task.stateFile)
+        if (state != null && (state.url != task.url || state.total != probe.total || state.validator != probe.validator
+                    || !part.exists() || part.length() != probe.total)
+        ) {
+            LogUtils.dTag(LOG_TAG, "remote file changed, restart ${task.url}")
+            state = null
+        }
+        if (state == null) {
+            if (!FileIOUtils.preallocateFile(part, probe.total)) {
+                throw IOException("Failed to allocate ${part.path}")
+            }
+            val count = minOf(initialSegments.toLong(), maxOf(1L, probe.total / minSegmentSize)).toInt()
+            val size = probe.total / count
+            val segments = (0 until count).map {
+                val start = it * size
+                val end = if (it == count - 1) probe.total else start + size
+                DownloadSegment(start, end, start)
+            }
+            state = DownloadState(task.url, probe.total, probe.validator, segments)
+            state.write(task.stateFile)
+        } else {
+            LogUtils.dTag(LOG_TAG, "resume ${task.url} with ${state.segments.size} segments")
+        }
+        task.segments.clear()
+        task.segments.addAll(state.segments)
+
+        RandomAccessFile(part, "rw").use { file ->
+            val channel = file.channel
+            val hasher = hashAlgorithm?.takeIf { task.expectedHash != null }?.let { StreamingHash(it) }
+            var targetConnections = 0
+            for (segment in task.segments) {
+                if (!segment.isDone() && targetConnections < maxSegments) {
+                    startSegment(task, segment, channel, probe.validator, token)
+                    targetConnections++
+                }
+            }
+            targetConnections = maxOf(targetConnections, initialSegments)
+            var growing = true
+            var lastThroughput = 0L
+            var lastAdapt = System.nanoTime()
+            var lastSave = lastAdapt
+            var windowStart = lastAdapt
+            var windowBytes = downloaded(task)
+
+            while (true) {
+                //暂停、取消时立即醒来
+                token.await(TICK_MS, TimeUnit.MILLISECONDS)
+                val now = System.nanoTime()
+                val downloaded = downloaded(task)
+                task.downloadedBytes = downloaded
+                if (now - windowStart >= WINDOW_NANOS) {
+                    task.bytesPerSecond = (downloaded - windowBytes) * 1_000_000_000L / (now - windowStart)
+                    windowStart = now
+                    windowBytes = downloaded
+                }
+                if (!isCurrent(task, token)) {
+                    awaitSegments(task)
+                    save(task, channel, state)
+                    return null
+                }
+                task.segmentFailure?.let {
+                    task.segments.forEach { segment -> segment.call?.cancel() }
+                    awaitSegments(task)
+                    save(task, channel, state)
+                    throw it
+                }
+                hasher?.advance(channel, contiguous(task))
+
+                if (growing && now - lastAdapt >= ADAPT_NANOS) {
+                    lastAdapt = now
+                    val throughput = task.bytesPerSecond
+                    if (lastThroughput > 0 && throughput < lastThroughput + lastThroughput / 10) {
+                        growing = false
+                        LogUtils.dTag(LOG_TAG, "settled at $targetConnections connections, ${throughput / 1024}KB/s")
+                    } else if (targetConnections < maxSegments) {
+                        targetConnections++
+                        lastThroughput = throughput
+                    } else {
+                        growing = false
+                    }
+                }
+                //补足连接数：先启动续传时未启动的分段，再拆分剩余最多的分段
+                var active = task.activeConnections()
+                for (segment in task.segments) {
+                    if (active >= targetConnections) break
+                    if (!segment.isDone() && !segment.isActive()) {
+                        startSegment(task, segment, channel, probe.validator, token)
+                        active++
+                    }
+                }
+                while (active < targetConnections) {
+                    val largest = task.segments.filter { !it.isDone() }.maxBy { it.remaining() } ?: break
+                    val tail = largest.split(minSegmentSize, STEP.toLong()) ?: break
+                    task.segments.add(task.segments.indexOf(largest) + 1, tail)
+                    startSegment(task, tail, channel, probe.validator, token)
+                    active++
+                }
+                if (now - lastSave >= SAVE_NANOS) {
+                    lastSave = now
+                    save(task, channel, state)
+                }
+                task.listener?.onProgress(task, downloaded, probe.total)
+                if (active == 0 && task.segments.all { it.isDone() }) {
+                    break
+                }
+            }
+            channel.force(true)
+            save(task, channel, state)
+            task.downloadedBytes = probe.total
+            task.listener?.onProgress(task, probe.total, probe.total)
+            return hasher?.let {
+                it.advance(channel, probe.total)
+                it.hex()
+            }
+        }
+    }
+
+    private fun startSegment(
+        task: DownloadTask,
+        segment: DownloadSegment,
+        channel: FileChannel,
+        validator: String,
+        token: CountDownLatch
+    ) {
+        segment.worker = segmentExecutor.submit { runSegment(task, segment, channel, validator, token) }
+    }
+
+    private fun runSegment(
+        task: DownloadTask,
+        segment: DownloadSegment,
+        channel: FileChannel,
+        validator: String,
+        token: CountDownLatch
+    ) {
+        val array = ByteArray(STEP)
+        val buffer = ByteBuffer.wrap(array)
+        var failures = 0
+        while (!segment.isDone() && isCurrent(task, token) && task.segmentFailure == null) {
+            try {
+                val builder = Request.Builder()
+                    .url(task.url)
+                    .header("Range", "bytes=${segment.position}-${segment.end - 1}")
+                if (validator.isNotEmpty()) {
+                    builder.header("If-Range", validator)
+                }
+                val call = client.newCall(builder.build())
+                NetworkMetrics.excludeFromBandwidth(call)
+                segment.call = call
+                if (!isCurrent(task, token)) {
+                    call.cancel()
+                }
+                call.execute().use { response ->
+                    if (response.code() != HTTP_PARTIAL) {
+                        throw IOException("Range not honored: HTTP ${response.code()}")
+                    }
+                    val source = response.body()!!.source()
+                    while (true) {
+                        val allowed = segment.remaining()
+                        if (allowed <= 0) break
+                        val read = source.read(array, 0, minOf(allowed, STEP.toLong()).toInt())
+                        if (read == -1) throw EOFException("Unexpected end of segment at ${segment.position}")
+                        limiter.acquire(read)
+                        if (!isCurrent(task, token)) return
+                        var position = segment.position
+                        buffer.clear()
+                        buffer.limit(read)
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position)
+                        }
+                        segment.position = position
+                        failures = 0
+                    }
+                }
+            } catch (e: IOException) {
+                if (!isCurrent(task, token)) {
+                    return
+                }
+                if (++failures > maxRetries) {
+                    task.segmentFailure = e
+                    return
+                }
+                LogUtils.dTag(LOG_TAG, "segment at ${segment.position} failed ($failures): ${e.message}")
+                val delay = minOf(MIN_RETRY_DELAY_MS shl minOf(failures - 1, 16), MAX_RETRY_DELAY_MS)
+                try {
+                    //暂停、取消时立即结束退避
+                    if (token.await(delay, TimeUnit.MILLISECONDS)) {
+                        return
+                    }
+                } catch (ie: InterruptedException) {
+                    task.segmentFailure = InterruptedIOException("interrupted")
+                    return
+                }
+            } finally {
+                segment.call = null
+            }
+        }
+    }
+
+    /**
+     * 服务端不支持 Range 时单连接顺序下载
+     */
+    private fun downloadSingle(task: DownloadTask, token: CountDownLatch): String? {
+        task.segments.clear()
+        task.stateFile.delete()
+        val part = task.partFile()
+        if (!FileIOUtils.preallocateFile(part, 0)) {
+            throw IOException("Failed to create ${part.path}")
+        }
+        val digest = hashAlgorithm?.takeIf { task.expectedHash != null }?.let { MessageDigest.getInstance(it) }
+        val call = client.newCall(Request.Builder().url(task.url).build())
+        NetworkMetrics.excludeFromBandwidth(call)
+        val segment = DownloadSegment(0, Long.MAX_VALUE, 0).also {
+            it.call = call
+            task.segments.add(it)
+        }
+        call.execute().use { response ->
+            if (!response.isSuccessful) {
+                throw IOException("HTTP ${response.code()}")
+            }
+            val source = response.body()!!.source()
+            val array = ByteArray(STEP)
+            RandomAccessFile(part, "rw").use { file ->
+                var downloaded = 0L
+                var lastReport = 0L
+                while (true) {
+                    val read = source.read(array, 0, STEP)
+                    if (read == -1) break
+                    limiter.acquire(read)
+                    if (!isCurrent(task, token)) throw InterruptedIOException("Stopped")
+                    file.write(array, 0, read)
+                    digest?.update(array, 0, read)
+                    downloaded += read
+                    task.downloadedBytes = downloaded
+                    val now = System.nanoTime()
+                    if (now - lastReport >= TimeUnit.MILLISECONDS.toNanos(TICK_MS)) {
+                        lastReport = now
+                        task.listener?.onProgress(task, downloaded, task.totalBytes)
+                    }
+                }
+                file.fd.sync()
+                task.totalBytes = downloaded
+                segment.position = downloaded
+            }
+        }
+        task.listener?.onProgress(task, task.totalBytes, task.totalBytes)
+        return digest?.let { hex(it.digest()) }
+    }
+
+    private fun save(task: DownloadTask, channel: FileChannel, state: DownloadState) {
+        try {
+            channel.force(false)
+            DownloadState(state.url, state.total, state.validator, ArrayList(task.segments)).write(task.stateFile)
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Failed to save download progress of ${task.url}", e)
+        }
+    }
+
+    private fun awaitSegments(task: DownloadTask) {
+        for (segment in task.segments) {
+            try {
+                segment.worker?.get()
+            } catch (e: Exception) {
+                //分段线程自行处理异常，这里只等待结束
+            }
+        }
+    }
+
+    private fun downloaded(task: DownloadTask): Long {
+        return task.segments.sumByLong { it.position - it.start }
+    }
+
+    /**
+     * 从文件开头起已连续写完的长度
+     */
+    private fun contiguous(task: DownloadTask): Long {
+        for (segment in task.segments) {
+            if (!segment.isDone()) return segment.position
+        }
+        return task.totalBytes
+    }
+
+    private inline fun <T> List<T>.sumByLong(selector: (T) -> Long): Long {
+        var sum = 0L
+        for (element in this) sum += selector(element)
+        return sum
+    }
+
+    private fun stateKey(url: String, target: File): String {
+        return hex(MessageDigest.getInstance("MD5").digest((url + "|" + target.absolutePath).toByteArray(Charsets.UTF_8)))
+    }
+
+    private fun validator(response: Response): String {
+        val etag = response.header("ETag")
+        //弱 ETag 不能用于 If-Range
+        if (etag != null && !etag.startsWith("W/")) return etag
+        return response.header("Last-Modified") ?: ""
+    }
+
+    private class Probe(val acceptRanges: Boolean, val total: Long, val validator: String)
+
+    /**
+     * 按顺序计算已连续写完部分的摘要，每次只读取新增的部分
+     */
+    private class StreamingHash(algorithm: String) {
+        private val digest = MessageDigest.getInstance(algorithm)
+        private val buffer = ByteBuffer.allocate(64 * 1024)
+        private var position = 0L
+
+        fun advance(channel: FileChannel, upTo: Long) {
+            while (position < upTo) {
+                buffer.clear()
+                buffer.limit(minOf(buffer.capacity().toLong(), upTo - position).toInt())
+                val read = channel.read(buffer, position)
+                if (read <= 0) break
+                buffer.flip()
+                digest.update(buffer)
+                position += read
+            }
+        }
+
+        fun hex(): String {
+            return DownloadManager.hex(digest.digest())
+        }
+    }
+
+    class Builder(internal val client: OkHttpClient, internal val stateDir: File) {
+        internal var maxTasks = 2
+        internal var initialSegments = 2
+        internal var maxSegments = 6
+        internal var minSegmentSize = 1024 * 1024L
+        internal var maxRetries = 5
+        internal var bytesPerSecond = 0L
+        internal var hashAlgorithm: String? = "SHA-256"
+
+        /**
+         * 同时下载的文件数
+         */
+        fun maxTasks(count: Int): Builder {
+            require(count > 0) { "count <= 0" }
+            this.maxTasks = count
+            return this
+        }
+
+        /**
+         * 每个文件开始时的连接数和最多的连接数
+         */
+        fun segments(initial: Int, max: Int): Builder {
+            require(initial in 1..max) { "require 1 <= initial <= max" }
+            this.initialSegments = initial
+            this.maxSegments = max
+            return this
+        }
+
+        /**
+         * 分段的最小长度，剩余不足两倍时不再拆分
+         */
+        fun minSegmentSize(bytes: Long): Builder {
+            require(bytes >= STEP) { "bytes < $STEP" }
+            this.minSegmentSize = bytes
+            return this
+        }
+
+        /**
+         * 单个分段连续失败的重试次数
+         */
+        fun maxRetries(count: Int): Builder {
+            this.maxRetries = count
+            return this
+        }
+
+        fun bandwidthLimit(bytesPerSecond: Long): Builder {
+            this.bytesPerSecond = bytesPerSecond
+            return this
+        }
+
+        /**
+         * expectedHash 使用的摘要算法，如 SHA-256、MD5
+         */
+        fun hashAlgorithm(algorithm: String): Builder {
+            this.hashAlgorithm = algorithm
+            return this
+        }
+
+        fun build(): DownloadManager {
+            return DownloadManager(this)
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "DownloadManager"
+        private const val HTTP_PARTIAL = 206
+        private const val STEP = 64 * 1024
+        private const val TICK_MS = 250L
+        private val WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1)
+        private val ADAPT_NANOS = TimeUnit.SECONDS.toNanos(2)
+        private val SAVE_NANOS = TimeUnit.SECONDS.toNanos(1)
+        private const val MIN_RETRY_DELAY_MS = 1_000L
+        private const val MAX_RETRY_DELAY_MS = 30_000L
+        private val THREAD_ID = AtomicInteger()
+
+        internal fun hex(bytes: ByteArray): String {
+            val sb = StringBuilder(bytes.size * 2)
+            for (b in bytes) {
+                val v = b.toInt() and 0xff
+                if (v < 16) sb.append('0')
+                sb.append(Integer.toHexString(v))
+            }
+            return sb.toString()
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.magicalrice.project.library_data.remote.http.download
+
+import okhttp3.Call
+import java.util.concurrent.Future
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.download
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 文件中的一段 [start, end)，position 为已写入的位置
+ *
+ * position 只由下载该段的线程推进；end 可能被 [split] 缩小，两者都在 this 上加锁读写。
+ * 下载线程每次最多写入 step 字节，split 只在新 end 距 position 至少 step 时才执行，保证不会与正在进行的写入重叠。
+ */
+
+internal class DownloadSegment(val start: Long, end: Long, position: Long) {
+    var end = end
+        @Synchronized get
+        private set
+    var position = position
+        @Synchronized get
+        @Synchronized set
+    @Volatile
+    var call: Call? = null
+    @Volatile
+    var worker: Future<*>? = null
+
+    @Synchronized
+    fun remaining(): Long {
+        return end - position
+    }
+
+    fun isDone(): Boolean {
+        return remaining() <= 0
+    }
+
+    fun isActive(): Boolean {
+        val worker = worker
+        return worker != null && !worker.isDone
+    }
+
+    /**
+     * 把剩余部分的后一半分出去，剩余不足 minSize * 2 时返回 null
+     */
+    @Synchronized
+    fun split(minSize: Long, step: Long): DownloadSegment? {
+        val remaining = end - position
+        if (remaining < minSize * 2) {
+            return null
+        }
+        val mid = position + remaining / 2
+        if (mid < position + step) {
+            return null
+        }
+        val tail = DownloadSegment(mid, end, mid)
+        end = mid
+        return tail
+    }
+}
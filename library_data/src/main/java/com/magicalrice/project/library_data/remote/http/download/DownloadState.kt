@@ -0,0 +1,91 @@
+package com.magicalrice.project.library_data.remote.http.download
+
+import com.magicalrice.project.library_base.base.log.LogUtils
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.download
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 分段下载的续传状态文件
+ *
+ * 文件结构：魔数、url、文件长度、校验值(ETag 或 Last-Modified)、分段数、每段的 start/end/position。
+ * 只有几百字节，每次整体重写(先写临时文件再重命名)。
+ * 写入前先对数据文件 force，保证记录的进度不会超过已落盘的数据。
+ */
+
+internal class DownloadState(
+    val url: String,
+    val total: Long,
+    val validator: String,
+    val segments: List<DownloadSegment>
+) {
+
+    @Throws(IOException::class)
+    fun write(file: File) {
+        val bytes = ByteArrayOutputStream(64 + segments.size * 24)
+        val output = DataOutputStream(bytes)
+        output.writeInt(MAGIC)
+        output.writeUTF(url)
+        output.writeLong(total)
+        output.writeUTF(validator)
+        output.writeInt(segments.size)
+        for (segment in segments) {
+            //先读 position 再读 end，split 只会让 end 变小、不会小于 position
+            val position = segment.position
+            output.writeLong(segment.start)
+            output.writeLong(segment.end)
+            output.writeLong(position)
+        }
+        file.parentFile?.mkdirs()
+        val temp = File(file.path + ".tmp")
+        FileOutputStream(temp).use {
+            bytes.writeTo(it)
+            it.fd.sync()
+        }
+        if (!temp.renameTo(file)) {
+            file.delete()
+            if (!temp.renameTo(file)) throw IOException("Failed to replace ${file.path}")
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "DownloadState"
+        //"DLS1"
+        private const val MAGIC = 0x444C5331
+
+        fun read(file: File): DownloadState? {
+            if (!file.exists()) {
+                return null
+            }
+            try {
+                DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                    if (input.readInt() != MAGIC) return null
+                    val url = input.readUTF()
+                    val total = input.readLong()
+                    val validator = input.readUTF()
+                    val count = input.readInt()
+                    val segments = ArrayList<DownloadSegment>(count)
+                    for (i in 0 until count) {
+                        val start = input.readLong()
+                        val end = input.readLong()
+                        val position = input.readLong()
+                        if (start < 0 || end > total || position < start || position > end) return null
+                        segments.add(DownloadSegment(start, end, position))
+                    }
+                    return DownloadState(url, total, validator, segments)
+                }
+            } catch (e: IOException) {
+                LogUtils.eTag(LOG_TAG, "Discarding unreadable download state ${file.name}", e)
+                return null
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.magicalrice.project.library_data.remote.http.download
+
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.download
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 一个文件的下载任务
+ */
+
+class DownloadTask internal constructor(
+    val url: String,
+    val target: File,
+    /**
+     * 期望的文件摘要(十六进制)，null 表示不校验
+     */
+    val expectedHash: String?,
+    internal val listener: DownloadListener?,
+    internal val stateFile: File
+) {
+    enum class Status {
+        WAITING, RUNNING, PAUSED, FAILED, COMPLETED, CANCELED
+    }
+
+    @Volatile
+    var status = Status.WAITING
+        internal set
+    /**
+     * 文件总长度，服务端未返回时为 -1
+     */
+    @Volatile
+    var totalBytes = -1L
+        internal set
+    @Volatile
+    var downloadedBytes = 0L
+        internal set
+    /**
+     * 最近一秒左右的下载速度，字节/秒
+     */
+    @Volatile
+    var bytesPerSecond = 0L
+        internal set
+    /**
+     * 下载完成后计算出的摘要
+     */
+    @Volatile
+    var hash: String? = null
+        internal set
+    @Volatile
+    var error: Throwable? = null
+        internal set
+
+    internal val segments = CopyOnWriteArrayList<DownloadSegment>()
+    //任一分段重试用尽后记录，由调度线程处理
+    @Volatile
+    internal var segmentFailure: IOException? = null
+    /**
+     * 当前这次运行的标记，每次开始时换新；暂停、取消时 countDown，唤醒等待中的调度和分段线程，旧的运行随之退出
+     */
+    @Volatile
+    internal var runToken: CountDownLatch? = null
+    //同一任务同时只有一次运行持有，新的运行等旧的分段线程全部结束后才开始
+    internal val runLock = Any()
+
+    /**
+     * 当前正在下载的连接数
+     */
+    fun activeConnections(): Int {
+        return segments.count { it.isActive() }
+    }
+
+    fun partFile(): File {
+        return File(target.path + ".part")
+    }
+
+    override fun toString(): String {
+        return "DownloadTask(${target.name}, $status, $downloadedBytes/$totalBytes, ${segments.size} segments)"
+    }
+}
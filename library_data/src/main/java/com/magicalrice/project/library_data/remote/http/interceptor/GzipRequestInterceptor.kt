@@ -0,0 +1,200 @@
+package com.magicalrice.project.library_data.remote.http.interceptor
+
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.Response
+import okio.BufferedSink
+import okio.Okio
+import java.util.Locale
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.zip.CRC32
+import java.util.zip.CheckedOutputStream
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.interceptor
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 对指定 host 的请求体做 gzip 压缩
+ *
+ * 只处理已登记的 host(服务端需要支持 Content-Encoding: gzip 的请求)，且满足：
+ * - 请求没有 Content-Encoding
+ * - 类型是文本类(JSON、XML、表单、text/...)，图片、视频、压缩包、multipart 等已压缩或混合内容不处理
+ * - 长度不小于 minSize；长度未知的流式请求体一律压缩
+ *
+ * 压缩边写边输出，不会把整个请求体读进内存，请求改为 chunked 发送。
+ * Deflater 创建时会分配较大的本地内存，这里放在池中复用，最多保留 poolSize 个。
+ * 应添加在其他应用拦截器之后，离线队列、日志等看到的仍是原始请求体。
+ */
+
+class GzipRequestInterceptor private constructor(builder: Builder) : Interceptor {
+    private val hosts = CopyOnWriteArraySet<String>(builder.hosts)
+    private val minSize = builder.minSize
+    private val pool = DeflaterPool(builder.poolSize, builder.level)
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val body = request.body()
+        if (body == null || !shouldCompress(request, body)) {
+            return chain.proceed(request)
+        }
+        return chain.proceed(
+            request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), GzipRequestBody(body, pool))
+                .build()
+        )
+    }
+
+    /**
+     * 登记支持 gzip 请求体的 host，以 "*." 开头时匹配所有子域名
+     */
+    fun addHost(host: String) {
+        hosts.add(host.toLowerCase(Locale.US))
+    }
+
+    fun removeHost(host: String) {
+        hosts.remove(host.toLowerCase(Locale.US))
+    }
+
+    private fun shouldCompress(request: Request, body: RequestBody): Boolean {
+        if (request.header("Content-Encoding") != null || !isOptedIn(request.url().host())) {
+            return false
+        }
+        if (!isCompressible(body.contentType())) {
+            return false
+        }
+        val length = body.contentLength()
+        return length < 0 || length >= minSize
+    }
+
+    private fun isOptedIn(host: String): Boolean {
+        if (hosts.isEmpty()) return false
+        if (hosts.contains(host)) return true
+        var dot = host.indexOf('.')
+        while (dot >= 0) {
+            if (hosts.contains("*" + host.substring(dot))) return true
+            dot = host.indexOf('.', dot + 1)
+        }
+        return false
+    }
+
+    private class GzipRequestBody(private val delegate: RequestBody, private val pool: DeflaterPool) : RequestBody() {
+
+        override fun contentType(): MediaType? {
+            return delegate.contentType()
+        }
+
+        override fun contentLength(): Long {
+            return -1
+        }
+
+        override fun writeTo(sink: BufferedSink) {
+            val deflater = pool.obtain()
+            try {
+                sink.write(GZIP_HEADER)
+                val crc = CRC32()
+                val deflated = DeflaterOutputStream(sink.outputStream(), deflater, BUFFER_SIZE)
+                val source = Okio.buffer(Okio.sink(CheckedOutputStream(deflated, crc)))
+                delegate.writeTo(source)
+                //只 flush 和 finish，不关闭，下层的 sink 由 OkHttp 负责
+                source.flush()
+                deflated.finish()
+                //gzip 尾部：CRC32 和原始长度，小端序
+                sink.writeIntLe(crc.value.toInt())
+                sink.writeIntLe(deflater.bytesRead.toInt())
+            } finally {
+                pool.release(deflater)
+            }
+        }
+    }
+
+    private class DeflaterPool(size: Int, private val level: Int) {
+        private val idle = ArrayBlockingQueue<Deflater>(size)
+
+        fun obtain(): Deflater {
+            //nowrap：只输出 deflate 数据，gzip 头尾自己写
+            return idle.poll() ?: Deflater(level, true)
+        }
+
+        fun release(deflater: Deflater) {
+            deflater.reset()
+            if (!idle.offer(deflater)) {
+                deflater.end()
+            }
+        }
+    }
+
+    class Builder {
+        internal val hosts = LinkedHashSet<String>()
+        internal var minSize = 1024L
+        internal var poolSize = 4
+        internal var level = Deflater.DEFAULT_COMPRESSION
+
+        /**
+         * 支持 gzip 请求体的 host，以 "*." 开头时匹配所有子域名
+         */
+        fun hosts(vararg hosts: String): Builder {
+            hosts.mapTo(this.hosts) { it.toLowerCase(Locale.US) }
+            return this
+        }
+
+        /**
+         * 小于该长度的请求体不压缩，压缩收益抵不过 gzip 头尾和 CPU 开销
+         */
+        fun minSize(bytes: Long): Builder {
+            require(bytes >= 0) { "bytes < 0" }
+            this.minSize = bytes
+            return this
+        }
+
+        /**
+         * 池中最多保留的 Deflater 数量，并发更高时临时创建，用完释放
+         */
+        fun poolSize(size: Int): Builder {
+            require(size > 0) { "size <= 0" }
+            this.poolSize = size
+            return this
+        }
+
+        /**
+         * 压缩级别 0-9，默认 6
+         */
+        fun level(level: Int): Builder {
+            require(level in Deflater.NO_COMPRESSION..Deflater.BEST_COMPRESSION) { "level out of range: $level" }
+            this.level = level
+            return this
+        }
+
+        fun build(): GzipRequestInterceptor {
+            return GzipRequestInterceptor(this)
+        }
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 8192
+        //magic、CM=deflate、无标志位、无时间戳、XFL=0、OS=unknown
+        private val GZIP_HEADER = byteArrayOf(0x1f, 0x8b.toByte(), 8, 0, 0, 0, 0, 0, 0, 0xff.toByte())
+
+        /**
+         * 文本类内容才压缩，未声明类型时不处理
+         */
+        fun isCompressible(mediaType: MediaType?): Boolean {
+            if (mediaType == null) return false
+            val type = mediaType.type().toLowerCase(Locale.US)
+            val subtype = mediaType.subtype().toLowerCase(Locale.US)
+            return when (type) {
+                "text" -> true
+                "application" -> subtype == "json" || subtype.endsWith("+json")
+                        || subtype == "xml" || subtype.endsWith("+xml")
+                        || subtype == "x-www-form-urlencoded" || subtype == "javascript"
+                        || subtype == "x-protobuf" || subtype == "cbor"
+                else -> false
+            }
+        }
+    }
+}
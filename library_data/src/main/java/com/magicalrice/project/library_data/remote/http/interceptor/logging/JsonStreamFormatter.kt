@@ -0,0 +1,118 @@
+package com.magicalrice.project.library_data.remote.http.interceptor.logging
+
+import okio.Buffer
+import okio.BufferedSource
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.interceptor.logging
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description Json 流式格式化
+ *
+ * 逐字节扫描 UTF-8 Json 并写入缩进，不构建 JSONObject/JSONArray，也不要求 Json 完整(截断的 body 同样可以输出)。
+ * 结构字符都是 ASCII，多字节字符原样拷贝，所以不需要先解码成 String。
+ */
+
+internal object JsonStreamFormatter {
+    private const val OBJECT_OPEN = '{'.toInt()
+    private const val OBJECT_CLOSE = '}'.toInt()
+    private const val ARRAY_OPEN = '['.toInt()
+    private const val ARRAY_CLOSE = ']'.toInt()
+    private const val COMMA = ','.toInt()
+    private const val COLON = ':'.toInt()
+    private const val QUOTE = '"'.toInt()
+    private const val BACKSLASH = '\\'.toInt()
+    private const val SPACE = ' '.toInt()
+    private const val NEW_LINE = '\n'.toInt()
+
+    /**
+     * 是否以 Json 对象或数组开头
+     */
+    fun isJson(source: BufferedSource): Boolean {
+        if (!source.request(1)) return false
+        val buffer = source.buffer()
+        var i = 0L
+        while (i < buffer.size()) {
+            val b = buffer.getByte(i).toInt()
+            if (!isWhitespace(b)) {
+                return b == OBJECT_OPEN || b == ARRAY_OPEN
+            }
+            i++
+        }
+        return false
+    }
+
+    /**
+     * @param source Json 数据源
+     * @param indent 缩进空格数
+     * @return 格式化后的字符串
+     */
+    fun format(source: BufferedSource, indent: Int): String {
+        val sink = Buffer()
+        var depth = 0
+        var inString = false
+        var escaped = false
+        var afterOpen = false
+        while (!source.exhausted()) {
+            val b = source.readByte().toInt()
+            if (inString) {
+                sink.writeByte(b)
+                if (escaped) {
+                    escaped = false
+                } else if (b == BACKSLASH) {
+                    escaped = true
+                } else if (b == QUOTE) {
+                    inString = false
+                }
+                continue
+            }
+            if (isWhitespace(b)) continue
+            if (afterOpen) {
+                afterOpen = false
+                if (b == OBJECT_CLOSE || b == ARRAY_CLOSE) {
+                    depth--
+                    sink.writeByte(b)
+                    continue
+                }
+                newLine(sink, depth, indent)
+            }
+            when (b) {
+                OBJECT_OPEN, ARRAY_OPEN -> {
+                    sink.writeByte(b)
+                    depth++
+                    afterOpen = true
+                }
+                OBJECT_CLOSE, ARRAY_CLOSE -> {
+                    if (depth > 0) depth--
+                    newLine(sink, depth, indent)
+                    sink.writeByte(b)
+                }
+                COMMA -> {
+                    sink.writeByte(b)
+                    newLine(sink, depth, indent)
+                }
+                COLON -> {
+                    sink.writeByte(b)
+                    sink.writeByte(SPACE)
+                }
+                QUOTE -> {
+                    inString = true
+                    sink.writeByte(b)
+                }
+                else -> sink.writeByte(b)
+            }
+        }
+        return sink.readUtf8()
+    }
+
+    private fun newLine(sink: Buffer, depth: Int, indent: Int) {
+        sink.writeByte(NEW_LINE)
+        for (i in 0 until depth * indent) {
+            sink.writeByte(SPACE)
+        }
+    }
+
+    private fun isWhitespace(b: Int): Boolean {
+        return b == SPACE || b == NEW_LINE || b == '\r'.toInt() || b == '\t'.toInt()
+    }
+}
@@ -3,6 +3,7 @@ package com.magicalrice.project.library_data.remote.http.interceptor.logging
 import android.text.TextUtils
 import okhttp3.*
 import okhttp3.internal.platform.Platform
+import okio.Buffer
 import java.util.concurrent.TimeUnit
 
 /**
@@ -79,7 +80,6 @@ class LoggingInterceptor : Interceptor {
         val contentType = responseBody!!.contentType()
 
         var subtype: String? = null
-        val body: ResponseBody
 
         if (contentType != null) {
             subtype = contentType.subtype()
@@ -90,10 +90,24 @@ class LoggingInterceptor : Interceptor {
                     || subtype.contains("plain")
                     || subtype.contains("html"))
         ) {
-            val bodyString =
-                Printer.getJsonString(
-                    responseBody.string()
-                )
+            var bodyString = ""
+            var captureUs = 0L
+            //body 不输出时不读取，输出时只 peek 前 maxBodyBytes + 1 字节(多出的 1 字节用来判断是否截断)，原始 body 继续流式交给下游
+            if (Printer.isBodyLoggable(builder.getLevel())) {
+                val captureSt = System.nanoTime()
+                val maxBytes = builder.getMaxBodyBytes()
+                val peeked = response.peekBody(maxBytes + 1).source().buffer()
+                if (peeked.size() > maxBytes) {
+                    val contentLength = responseBody.contentLength()
+                    val head = Buffer()
+                    head.write(peeked, maxBytes)
+                    peeked.clear()
+                    bodyString = Printer.formatBody(head, if (contentLength > maxBytes) contentLength - maxBytes else -1L)
+                } else {
+                    bodyString = Printer.formatBody(peeked, 0)
+                }
+                captureUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - captureSt)
+            }
             Printer.printJsonResponse(
                 builder,
                 chainMs,
@@ -101,9 +115,9 @@ class LoggingInterceptor : Interceptor {
                 code,
                 header,
                 bodyString,
-                segmentList
+                segmentList,
+                captureUs
             )
-            body = ResponseBody.create(contentType, bodyString)
         } else {
             Printer.printFileResponse(
                 builder,
@@ -113,9 +127,8 @@ class LoggingInterceptor : Interceptor {
                 header,
                 segmentList
             )
-            return response
         }
-        return response.newBuilder().body(body).build()
+        return response
     }
 
     @SuppressWarnings("unused")
@@ -128,6 +141,7 @@ class LoggingInterceptor : Interceptor {
             Level.BASIC
         private var builder: Headers.Builder
         private var logger: Logger? = null
+        private var maxBodyBytes = DEFAULT_MAX_BODY_BYTES
 
         constructor() {
             builder = Headers.Builder()
@@ -157,6 +171,10 @@ class LoggingInterceptor : Interceptor {
             return logger
         }
 
+        fun getMaxBodyBytes(): Long {
+            return maxBodyBytes
+        }
+
         /**
          * @param name  Filed
          * @param value Value
@@ -240,6 +258,15 @@ class LoggingInterceptor : Interceptor {
             return this
         }
 
+        /**
+         * @param maxBodyBytes 单个 body 最多输出的字节数，超出部分截断
+         * @return Builder
+         */
+        fun maxBodyBytes(maxBodyBytes: Long): Builder {
+            this.maxBodyBytes = maxBodyBytes
+            return this
+        }
+
         fun build(): LoggingInterceptor {
             return LoggingInterceptor(
                 this
@@ -248,6 +275,7 @@ class LoggingInterceptor : Interceptor {
 
         companion object {
             private var TAG = "LoggingI"
+            private const val DEFAULT_MAX_BODY_BYTES = 32 * 1024L
         }
     }
 }
\ No newline at end of file
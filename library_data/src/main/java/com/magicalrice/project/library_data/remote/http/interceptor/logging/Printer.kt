@@ -4,6 +4,10 @@ import android.text.TextUtils
 import okhttp3.FormBody
 import okhttp3.Request
 import okio.Buffer
+import okio.BufferedSource
+import okio.Okio
+import okio.Sink
+import okio.Timeout
 import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
@@ -39,6 +43,9 @@ object Printer {
     private val HEADERS_TAG = "Headers:"
     private val STATUS_CODE_TAG = "Status Code: "
     private val RECEIVED_TAG = "Received in: "
+    private val CAPTURE_TAG = "Body logged in: "
+    private val TRUNCATED_TAG = "... (truncated, %d bytes omitted)"
+    private val TRUNCATED_UNKNOWN_TAG = "... (truncated)"
     private val CORNER_UP = "┌ "
     private val CORNER_BOTTOM = "└ "
     private val CENTER_LINE = "├ "
@@ -49,9 +56,6 @@ object Printer {
     }
 
     fun printJsonRequest(builder: LoggingInterceptor.Builder, request: Request) {
-        val requestBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + bodyToString(
-            request
-        )
         val tag = builder.getTag(true)
         if (builder.getLogger() == null)
             I.log(
@@ -93,7 +97,11 @@ object Printer {
                 )
             }
         }
-        if (builder.getLevel() === Level.BASIC || builder.getLevel() === Level.BODY) {
+        if (isBodyLoggable(builder.getLevel())) {
+            val requestBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + bodyToString(
+                request,
+                builder.getMaxBodyBytes()
+            )
             logLines(
                 builder.getType(),
                 tag,
@@ -110,13 +118,16 @@ object Printer {
             )
     }
 
+    /**
+     * @param bodyString 已格式化的 body，level 不输出 body 时为空
+     * @param captureUs  读取并格式化 body 的耗时(微秒)
+     */
     fun printJsonResponse(
         builder: LoggingInterceptor.Builder, chainMs: Long, isSuccessful: Boolean,
-        code: Int, headers: String, bodyString: String, segments: List<String>
+        code: Int, headers: String, bodyString: String, segments: List<String>, captureUs: Long
     ) {
-        val responseBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + getJsonString(
-            bodyString
-        )
+        val responseBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + bodyString +
+                LINE_SEPARATOR + CAPTURE_TAG + captureUs + "us"
         val tag = builder.getTag(false)
         if (builder.getLogger() == null)
             I.log(
@@ -135,7 +146,7 @@ object Printer {
             builder.getLogger(),
             true
         )
-        if (builder.getLevel() === Level.BASIC || builder.getLevel() === Level.BODY) {
+        if (isBodyLoggable(builder.getLevel())) {
             logLines(
                 builder.getType(),
                 tag,
@@ -194,7 +205,7 @@ object Printer {
                 )
             }
         }
-        if (builder.getLevel() === Level.BASIC || builder.getLevel() === Level.BODY) {
+        if (isBodyLoggable(builder.getLevel())) {
             logLines(
                 builder.getType(),
                 tag,
@@ -356,22 +367,83 @@ object Printer {
         }
     }
 
-    private fun bodyToString(request: Request): String {
+    private fun bodyToString(request: Request, maxBytes: Long): String {
         try {
-            val copy = request.newBuilder().build()
+            val body = request.body() ?: return ""
+            //最多复制 maxBytes + 1 字节，多出的 1 字节只用来判断是否截断
             val buffer = Buffer()
-            if (copy.body() == null)
-                return ""
-            copy.body()!!.writeTo(buffer)
-            return getJsonString(
-                buffer.readUtf8()
-            )
+            val sink = Okio.buffer(CappedSink(buffer, maxBytes + 1))
+            try {
+                body.writeTo(sink)
+                sink.flush()
+            } catch (e: CapReachedException) {
+            }
+            if (buffer.size() > maxBytes) {
+                val head = Buffer()
+                head.write(buffer, maxBytes)
+                buffer.clear()
+                val total = body.contentLength()
+                return formatBody(head, if (total > maxBytes) total - maxBytes else -1)
+            }
+            return formatBody(buffer, 0)
         } catch (e: IOException) {
             return "{\"err\": \"" + e.message + "\"}"
         }
 
     }
 
+    /**
+     * 只保留前 limit 字节，写满后抛出 [CapReachedException] 结束 writeTo
+     */
+    private class CappedSink(private val buffer: Buffer, private val limit: Long) : Sink {
+        override fun write(source: Buffer, byteCount: Long) {
+            val count = minOf(byteCount, limit - buffer.size())
+            buffer.write(source, count)
+            source.skip(byteCount - count)
+            if (buffer.size() >= limit) {
+                throw CapReachedException()
+            }
+        }
+
+        override fun flush() {
+        }
+
+        override fun timeout(): Timeout {
+            return Timeout.NONE
+        }
+
+        override fun close() {
+        }
+    }
+
+    private class CapReachedException : IOException()
+
+    /**
+     * 只有 BASIC 和 BODY 会输出 body
+     */
+    fun isBodyLoggable(level: Level): Boolean {
+        return level === Level.BASIC || level === Level.BODY
+    }
+
+    /**
+     * 格式化 body，Json 使用流式缩进，其它类型原样输出
+     *
+     * @param source  body 数据(可能已被截断)
+     * @param omitted 被截断的字节数，未截断为 0，长度未知的截断为 -1
+     */
+    fun formatBody(source: BufferedSource, omitted: Long): String {
+        val content = if (JsonStreamFormatter.isJson(source)) {
+            JsonStreamFormatter.format(source, JSON_INDENT)
+        } else {
+            source.readUtf8()
+        }
+        return when {
+            omitted > 0 -> content + LINE_SEPARATOR + String.format(TRUNCATED_TAG, omitted)
+            omitted < 0 -> content + LINE_SEPARATOR + TRUNCATED_UNKNOWN_TAG
+            else -> content
+        }
+    }
+
     fun getJsonString(msg: String): String {
         var message: String = ""
         try {
@@ -0,0 +1,123 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+import okhttp3.Protocol
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.metrics
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 单个接口(方法 + host + 路径模板)的统计
+ */
+
+class EndpointMetrics internal constructor(val method: String, val host: String, val path: String) {
+    private val histograms = Array(NetworkPhase.values().size) { LatencyHistogram() }
+    private val calls = AtomicLong()
+    private val failures = AtomicLong()
+    private val reusedConnections = AtomicLong()
+    private val newConnections = AtomicLong()
+    private val bytesSent = AtomicLong()
+    private val bytesReceived = AtomicLong()
+    private val protocols = AtomicLongArray(Protocol.values().size)
+
+    internal fun record(listener: MetricsEventListener, failed: Boolean) {
+        calls.incrementAndGet()
+        if (failed) failures.incrementAndGet()
+        if (listener.reused > 0) reusedConnections.addAndGet(listener.reused.toLong())
+        if (listener.connected > 0) newConnections.addAndGet(listener.connected.toLong())
+        if (listener.bytesSent > 0) bytesSent.addAndGet(listener.bytesSent)
+        if (listener.bytesReceived > 0) bytesReceived.addAndGet(listener.bytesReceived)
+        listener.protocol?.let { protocols.incrementAndGet(it.ordinal) }
+        for (phase in NetworkPhase.values()) {
+            val nanos = listener.durations[phase.ordinal]
+            if (nanos >= 0) histograms[phase.ordinal].record(nanos / 1000)
+        }
+    }
+
+    fun getHistogram(phase: NetworkPhase): LatencyHistogram {
+        return histograms[phase.ordinal]
+    }
+
+    fun getCallCount(): Long {
+        return calls.get()
+    }
+
+    fun getFailureCount(): Long {
+        return failures.get()
+    }
+
+    fun getReusedConnectionCount(): Long {
+        return reusedConnections.get()
+    }
+
+    fun getNewConnectionCount(): Long {
+        return newConnections.get()
+    }
+
+    /**
+     * 请求体字节数
+     */
+    fun getBytesSent(): Long {
+        return bytesSent.get()
+    }
+
+    /**
+     * 响应体字节数
+     */
+    fun getBytesReceived(): Long {
+        return bytesReceived.get()
+    }
+
+    fun getProtocolCount(protocol: Protocol): Long {
+        return protocols.get(protocol.ordinal)
+    }
+
+    /**
+     * 一行文本摘要，如
+     * `GET api.example.com/user/{id} calls=12 fail=0 reuse=83% http/1.1=2 h2=10 in=12KB out=0KB total=64/128/256ms ...`，
+     * 耗时为 p50/p90/p99
+     */
+    fun getSummary(): String {
+        val sb = StringBuilder()
+        sb.append(method).append(' ').append(host).append(path)
+        sb.append(" calls=").append(calls.get())
+        sb.append(" fail=").append(failures.get())
+        val acquired = reusedConnections.get() + newConnections.get()
+        if (acquired > 0) {
+            sb.append(" reuse=").append(reusedConnections.get() * 100 / acquired).append('%')
+        }
+        for (protocol in Protocol.values()) {
+            val count = protocols.get(protocol.ordinal)
+            if (count > 0) sb.append(' ').append(protocol).append('=').append(count)
+        }
+        sb.append(" in=").append(bytesReceived.get() / 1024).append("KB")
+        sb.append(" out=").append(bytesSent.get() / 1024).append("KB")
+        for (phase in NetworkPhase.values()) {
+            val histogram = histograms[phase.ordinal]
+            if (histogram.getCount() == 0L) continue
+            sb.append(' ').append(phase.label).append('=')
+                .append(formatMillis(histogram.getPercentileMicros(50.0))).append('/')
+                .append(formatMillis(histogram.getPercentileMicros(90.0))).append('/')
+                .append(formatMillis(histogram.getPercentileMicros(99.0))).append("ms")
+        }
+        return sb.toString()
+    }
+
+    internal fun reset() {
+        histograms.forEach { it.reset() }
+        calls.set(0)
+        failures.set(0)
+        reusedConnections.set(0)
+        newConnections.set(0)
+        bytesSent.set(0)
+        bytesReceived.set(0)
+        for (i in 0 until protocols.length()) {
+            protocols.set(i, 0)
+        }
+    }
+
+    private fun formatMillis(micros: Long): String {
+        return if (micros >= 10_000) (micros / 1000).toString() else String.format("%.1f", micros / 1000.0)
+    }
+}
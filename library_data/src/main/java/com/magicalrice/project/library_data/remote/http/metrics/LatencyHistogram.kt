@@ -0,0 +1,70 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.metrics
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 耗时直方图
+ *
+ * 以微秒为单位按 2 的幂分桶(第 i 个桶为 [2^(i-1), 2^i) 微秒)，记录一次只有几次原子自增，
+ * 分位数按所在桶的上界估算，误差不超过一倍，足够用来发现异常。
+ */
+
+class LatencyHistogram {
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val count = AtomicLong()
+    private val sumMicros = AtomicLong()
+
+    fun record(micros: Long) {
+        if (micros < 0) return
+        val index = (64 - java.lang.Long.numberOfLeadingZeros(micros)).coerceAtMost(BUCKET_COUNT - 1)
+        buckets.incrementAndGet(index)
+        count.incrementAndGet()
+        sumMicros.addAndGet(micros)
+    }
+
+    fun getCount(): Long {
+        return count.get()
+    }
+
+    fun getMeanMicros(): Long {
+        val count = count.get()
+        return if (count == 0L) 0 else sumMicros.get() / count
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param percentile 0 ~ 100
+     * @return 所在桶的上界(微秒)，没有数据时返回 0
+     */
+    fun getPercentileMicros(percentile: Double): Long {
+        val total = count.get()
+        if (total == 0L) return 0
+        val target = Math.ceil(total * percentile / 100).toLong().coerceAtLeast(1)
+        var seen = 0L
+        for (i in 0 until BUCKET_COUNT) {
+            seen += buckets.get(i)
+            if (seen >= target) {
+                return if (i == 0) 0 else 1L shl i
+            }
+        }
+        return 1L shl (BUCKET_COUNT - 1)
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) {
+            buckets.set(i, 0)
+        }
+        count.set(0)
+        sumMicros.set(0)
+    }
+
+    companion object {
+        //最大桶约 2^31 微秒(约 36 分钟)
+        private const val BUCKET_COUNT = 32
+    }
+}
@@ -0,0 +1,162 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import javax.net.ssl.SSLSocket
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.metrics
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 记录单次请求各阶段耗时
+ *
+ * 每个 Call 一个实例，事件回调只读一次 System.nanoTime() 并写字段，请求结束时才汇总到 [NetworkMetrics]。
+ * 没有经历的阶段耗时为 -1，不计入直方图。
+ * 新建 TLS 连接时，会话创建时间早于本次握手开始说明是复用之前的会话(session id 或 ticket)，记为恢复握手。
+ */
+
+internal class MetricsEventListener(
+    private val metrics: NetworkMetrics,
+    private val request: Request
+) : EventListener() {
+    val durations = LongArray(NetworkPhase.values().size) { -1 }
+    var reused = 0
+    var connected = 0
+    var fullHandshakes = 0
+    var resumedHandshakes = 0
+    var bytesSent = 0L
+    var bytesReceived = 0L
+    var protocol: Protocol? = null
+
+    private var callStart = 0L
+    private var queued = true
+    private var dnsStart = 0L
+    private var connectStart = 0L
+    private var secureConnectStart = 0L
+    //会话创建时间是墙上时间，单独记录
+    private var secureConnectWallStart = 0L
+    private var connectedThisAttempt = false
+    private var requestStart = 0L
+    private var requestEnd = 0L
+    private var responseStart = 0L
+    private var finished = false
+
+    override fun callStart(call: Call) {
+        callStart = System.nanoTime()
+    }
+
+    override fun dnsStart(call: Call, domainName: String) {
+        dnsStart = System.nanoTime()
+        endQueue(dnsStart)
+    }
+
+    override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>?) {
+        add(NetworkPhase.DNS, System.nanoTime() - dnsStart)
+    }
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+        connectStart = System.nanoTime()
+        connectedThisAttempt = true
+    }
+
+    override fun secureConnectStart(call: Call) {
+        secureConnectStart = System.nanoTime()
+        secureConnectWallStart = System.currentTimeMillis()
+    }
+
+    override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+        add(NetworkPhase.TLS, System.nanoTime() - secureConnectStart)
+    }
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress?, proxy: Proxy?, protocol: Protocol?) {
+        add(NetworkPhase.CONNECT, System.nanoTime() - connectStart)
+    }
+
+    override fun connectFailed(
+        call: Call,
+        inetSocketAddress: InetSocketAddress?,
+        proxy: Proxy?,
+        protocol: Protocol?,
+        ioe: IOException?
+    ) {
+        add(NetworkPhase.CONNECT, System.nanoTime() - connectStart)
+    }
+
+    override fun connectionAcquired(call: Call, connection: Connection) {
+        endQueue(System.nanoTime())
+        if (connectedThisAttempt) connected++ else reused++
+        if (connectedThisAttempt && secureConnectWallStart != 0L) {
+            val session = (connection.socket() as? SSLSocket)?.session
+            if (session != null) {
+                if (session.creationTime < secureConnectWallStart) resumedHandshakes++ else fullHandshakes++
+            }
+            secureConnectWallStart = 0L
+        }
+        connectedThisAttempt = false
+        protocol = connection.protocol()
+    }
+
+    override fun requestHeadersStart(call: Call) {
+        requestStart = System.nanoTime()
+    }
+
+    override fun requestHeadersEnd(call: Call, request: Request) {
+        requestEnd = System.nanoTime()
+    }
+
+    override fun requestBodyEnd(call: Call, byteCount: Long) {
+        requestEnd = System.nanoTime()
+        bytesSent += byteCount
+    }
+
+    //responseHeadersStart 在开始读响应头前回调，此时服务端还没有响应，所以 wait 以 responseHeadersEnd 为准
+    override fun responseHeadersEnd(call: Call, response: Response) {
+        responseStart = System.nanoTime()
+        if (requestStart != 0L) {
+            add(NetworkPhase.REQUEST, requestEnd - requestStart)
+            add(NetworkPhase.WAIT, responseStart - requestEnd)
+            requestStart = 0L
+        }
+    }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+        add(NetworkPhase.RESPONSE, System.nanoTime() - responseStart)
+        bytesReceived += byteCount
+    }
+
+    override fun callEnd(call: Call) {
+        finish(call, false)
+    }
+
+    override fun callFailed(call: Call, ioe: IOException) {
+        finish(call, true)
+    }
+
+    private fun endQueue(now: Long) {
+        if (queued) {
+            queued = false
+            add(NetworkPhase.QUEUE, now - callStart)
+        }
+    }
+
+    private fun add(phase: NetworkPhase, nanos: Long) {
+        val index = phase.ordinal
+        durations[index] = if (durations[index] < 0) nanos else durations[index] + nanos
+    }
+
+    private fun finish(call: Call, failed: Boolean) {
+        if (finished) return
+        finished = true
+        durations[NetworkPhase.TOTAL.ordinal] = System.nanoTime() - callStart
+        metrics.record(request, call, this, failed)
+    }
+}
@@ -0,0 +1,171 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+import com.magicalrice.project.library_base.base.bandwidth.BandwidthEstimator
+import com.magicalrice.project.library_base.base.log.LogUtils
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.HttpUrl
+import okhttp3.Request
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.metrics
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 网络请求分阶段耗时统计
+ *
+ * 通过 [eventListenerFactory] 接入 OkHttp，按 方法 + host + 路径模板 分组记录各 [NetworkPhase] 的耗时直方图、
+ * 连接复用次数、收发字节数和协议。路径中的数字、UUID 和长十六进制段替换为 `{id}`，避免每个 id 单独成组。
+ * [getSummary] 返回可直接输出到日志或诊断页面的文本，[startReporting] 定时输出。
+ * TLS 握手按完整握手和会话恢复分别计数，用于确认会话缓存是否生效。
+ * 传入 [BandwidthEstimator] 时，每次成功读完响应体都作为一个带宽样本；限速的下载、上传请求通过
+ * [excludeFromBandwidth] 排除，它们的速率取决于限速而不是网络。
+ */
+
+class NetworkMetrics @JvmOverloads constructor(private val bandwidthEstimator: BandwidthEstimator? = null) {
+    private val endpoints = ConcurrentHashMap<String, EndpointMetrics>()
+    private val fullHandshakes = AtomicLong()
+    private val resumedHandshakes = AtomicLong()
+    @Volatile
+    private var reportTask: ScheduledFuture<*>? = null
+
+    fun eventListenerFactory(): EventListener.Factory {
+        return EventListener.Factory { call -> MetricsEventListener(this, call.request()) }
+    }
+
+    /**
+     * 按请求数从多到少排列
+     */
+    fun getEndpoints(): List<EndpointMetrics> {
+        return endpoints.values.sortedByDescending { it.getCallCount() }
+    }
+
+    /**
+     * 完整 TLS 握手次数
+     */
+    fun getFullHandshakeCount(): Long {
+        return fullHandshakes.get()
+    }
+
+    /**
+     * 复用会话的 TLS 握手次数
+     */
+    fun getResumedHandshakeCount(): Long {
+        return resumedHandshakes.get()
+    }
+
+    fun getSummary(): String {
+        val sb = StringBuilder("network metrics (p50/p90/p99):")
+        sb.append("\ntls handshakes: full ").append(fullHandshakes.get())
+            .append(", resumed ").append(resumedHandshakes.get())
+        for (endpoint in getEndpoints()) {
+            sb.append('\n').append(endpoint.getSummary())
+        }
+        return sb.toString()
+    }
+
+    fun reset() {
+        endpoints.values.forEach { it.reset() }
+        fullHandshakes.set(0)
+        resumedHandshakes.set(0)
+    }
+
+    /**
+     * 定时输出摘要，重复调用会替换之前的任务
+     *
+     * @param resetAfterReport 输出后是否清空，清空时每次输出的是这一周期内的数据
+     */
+    @JvmOverloads
+    fun startReporting(
+        period: Long,
+        unit: TimeUnit,
+        resetAfterReport: Boolean = false,
+        reporter: Reporter = LOG_REPORTER
+    ) {
+        stopReporting()
+        reportTask = executor.scheduleAtFixedRate({
+            if (endpoints.isNotEmpty()) {
+                reporter.report(getSummary())
+                if (resetAfterReport) reset()
+            }
+        }, period, period, unit)
+    }
+
+    fun stopReporting() {
+        reportTask?.cancel(false)
+        reportTask = null
+    }
+
+    internal fun record(request: Request, call: Call, listener: MetricsEventListener, failed: Boolean) {
+        val url = request.url()
+        val path = pathTemplate(url)
+        val key = request.method() + ' ' + url.host() + path
+        val endpoint = endpoints[key]
+            ?: endpoints.putIfAbsent(key, EndpointMetrics(request.method(), url.host(), path))
+            ?: endpoints.getValue(key)
+        endpoint.record(listener, failed)
+        if (listener.fullHandshakes > 0) fullHandshakes.addAndGet(listener.fullHandshakes.toLong())
+        if (listener.resumedHandshakes > 0) resumedHandshakes.addAndGet(listener.resumedHandshakes.toLong())
+        val transferNanos = listener.durations[NetworkPhase.RESPONSE.ordinal]
+        val sampled = synchronized(UNSAMPLED_CALLS) { !UNSAMPLED_CALLS.remove(call) }
+        if (sampled && !failed && transferNanos > 0) {
+            bandwidthEstimator?.addSample(listener.bytesReceived, transferNanos)
+        }
+    }
+
+    interface Reporter {
+        fun report(summary: String)
+    }
+
+    companion object {
+        private const val TAG = "NetworkMetrics"
+        //不作为带宽样本的请求，请求结束时移除；弱引用，未经过 NetworkMetrics 的 Call 不会一直保留
+        private val UNSAMPLED_CALLS = Collections.newSetFromMap(WeakHashMap<Call, Boolean>())
+
+        /**
+         * 请求不作为带宽样本，如经过 BandwidthLimiter 限速的下载和上传，创建 Call 后、执行前调用
+         */
+        @JvmStatic
+        fun excludeFromBandwidth(call: Call) {
+            synchronized(UNSAMPLED_CALLS) {
+                UNSAMPLED_CALLS.add(call)
+            }
+        }
+
+        private val LOG_REPORTER = object : Reporter {
+            override fun report(summary: String) {
+                LogUtils.iTag(TAG, summary)
+            }
+        }
+
+        private val executor: ScheduledExecutorService by lazy {
+            Executors.newSingleThreadScheduledExecutor { runnable ->
+                val thread = Thread(runnable, "NetworkMetrics-report")
+                thread.isDaemon = true
+                thread
+            }
+        }
+
+        internal fun pathTemplate(url: HttpUrl): String {
+            val sb = StringBuilder()
+            for (segment in url.pathSegments()) {
+                if (segment.isEmpty()) continue
+                sb.append('/').append(if (isIdentifier(segment)) "{id}" else segment)
+            }
+            return if (sb.isEmpty()) "/" else sb.toString()
+        }
+
+        private fun isIdentifier(segment: String): Boolean {
+            if (segment.all { it in '0'..'9' }) return true
+            if (segment.length < 16) return false
+            return segment.all { it in '0'..'9' || it in 'a'..'f' || it in 'A'..'F' || it == '-' }
+        }
+    }
+}
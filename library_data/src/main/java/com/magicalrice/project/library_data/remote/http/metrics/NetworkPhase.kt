@@ -0,0 +1,34 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.metrics
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 一次请求的各个阶段，重试时同一阶段的耗时累加
+ */
+
+enum class NetworkPhase(val label: String) {
+    /**
+     * callStart 到开始 DNS 或拿到连接，包含应用拦截器中的排队(优先级调度、请求合并)
+     */
+    QUEUE("queue"),
+    DNS("dns"),
+    /**
+     * TCP 连接，包含 TLS
+     */
+    CONNECT("connect"),
+    TLS("tls"),
+    /**
+     * 发送请求头和请求体
+     */
+    REQUEST("request"),
+    /**
+     * 请求发送完到收到响应头，即服务端处理时间
+     */
+    WAIT("wait"),
+    /**
+     * 收到响应头后接收响应体
+     */
+    RESPONSE("response"),
+    TOTAL("total")
+}
@@ -0,0 +1,491 @@
+package com.magicalrice.project.library_data.remote.http.outbox
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import com.magicalrice.project.library_base.base.AppManager
+import com.magicalrice.project.library_base.base.NetworkUtils
+import com.magicalrice.project.library_base.base.log.LogUtils
+import com.magicalrice.project.library_data.remote.http.resilience.RetryInterceptor
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okio.Buffer
+import java.io.File
+import java.io.IOException
+import java.util.UUID
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.outbox
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 离线请求队列
+ *
+ * 点赞、表单提交等写请求在 Retrofit 方法上通过 `@Headers(OfflineOutbox.HEADER_QUEUE)` 开启，
+ * 无网络、队列中还有未回放的请求或请求因网络异常失败时保存到磁盘，调用方收到 [OfflineQueuedException]，
+ * 网络恢复后按入队顺序回放。队列中还有请求而新请求无法入队(如队列已满)时，调用方收到 IOException，请求不会发出。
+ * - [HEADER_REPLACE] 表示同一 url 的新请求替换队列中的旧请求(如先点赞再取消只发最后一次)，
+ *   也可以用 [COALESCE_KEY_HEADER] 指定合并的 key
+ * - 开启的请求第一次发出时就带上 Idempotency-Key，回放时使用同一个 key，服务端已处理过的请求不会重复执行
+ * - 回放每批最多 batchSize 个，一批结束后一次性写入删除记录。2xx/3xx 和 408、429 以外的 4xx 移出队列，
+ *   网络异常、408、429 和 5xx 停止回放并按失败次数退避后重试，后面的请求不会越过前面的请求
+ * - 网络恢复、应用回到前台时触发回放，也可以手动调用 [replay]
+ * - 超过 maxAge 的请求在回放前丢弃
+ *
+ * 进程内同一文件只能有一个实例，通过 [getInstance] 获取。
+ */
+
+class OfflineOutbox private constructor(builder: Builder) : AppManager.OnAppStatusChangedListener {
+    private val journal = OutboxJournal(builder.file)
+    private val connectivity = builder.connectivity
+    private val batchSize = builder.batchSize
+    private val maxEntries = builder.maxEntries
+    private val maxBodyBytes = builder.maxBodyBytes
+    private val maxAge = builder.maxAge
+    private val executor = builder.executor ?: DEFAULT_EXECUTOR
+    //队列、合并索引和文件读写都由 lock 保护
+    private val lock = Any()
+    private val pending = LinkedHashMap<Long, OutboxEntry>()
+    private val byCoalesceKey = HashMap<String, Long>()
+    private var nextId = 0L
+    private var pendingBytes = 0L
+    private val replaying = AtomicBoolean(false)
+    private var retryTask: ScheduledFuture<*>? = null
+    @Volatile
+    private var client: OkHttpClient? = null
+    @Volatile
+    private var listener: Listener? = null
+    private val enqueued = AtomicLong()
+    private val superseded = AtomicLong()
+    private val replayed = AtomicLong()
+    private val dropped = AtomicLong()
+    private val expired = AtomicLong()
+
+    private val interceptor = Interceptor { chain ->
+        val request = chain.request()
+        val mode = request.header(HEADER_NAME) ?: return@Interceptor chain.proceed(request)
+        val coalesceKey = request.header(COALESCE_KEY_HEADER)
+            ?: if (MODE_REPLACE.equals(mode, ignoreCase = true)) request.url().toString() else null
+        val idempotencyKey = request.header(RetryInterceptor.IDEMPOTENCY_KEY_HEADER) ?: UUID.randomUUID().toString()
+        val outgoing = request.newBuilder()
+            .removeHeader(HEADER_NAME)
+            .removeHeader(COALESCE_KEY_HEADER)
+            .header(RetryInterceptor.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .build()
+        val connected = connectivity.isConnected()
+        //有网时队列未清空也排到后面，不越过更早的请求，相同 key 的旧请求被替换
+        if (!connected || depth() > 0) {
+            enqueue(outgoing, coalesceKey)?.let {
+                if (connected) replay()
+                throw OfflineQueuedException(it)
+            }
+            //没能入队(队列已满、body 过大)时，队列中还有更早的请求就不能直接发出，否则会越过它们
+            val depth = depth()
+            if (depth > 0) {
+                if (connected) replay()
+                throw IOException("Outbox has $depth pending requests, ${outgoing.method()} ${outgoing.url()} not queued")
+            }
+            return@Interceptor chain.proceed(outgoing)
+        }
+        try {
+            chain.proceed(outgoing)
+        } catch (e: IOException) {
+            if (chain.call().isCanceled || e is OfflineQueuedException) throw e
+            val entry = enqueue(outgoing, coalesceKey) ?: throw e
+            //有网时不会再收到网络恢复的广播，需要自己安排回放
+            scheduleRetry(1)
+            throw OfflineQueuedException(entry, e)
+        }
+    }
+
+    init {
+        synchronized(lock) {
+            for (entry in journal.load()) {
+                add(entry)
+                nextId = maxOf(nextId, entry.id + 1)
+            }
+        }
+        if (pending.isNotEmpty()) {
+            LogUtils.dTag(LOG_TAG, "restored ${pending.size} requests")
+        }
+    }
+
+    /**
+     * 需要加到业务 client 上，建议放在重试拦截器之前，重试用尽后才入队
+     */
+    fun getInterceptor(): Interceptor {
+        return interceptor
+    }
+
+    /**
+     * 设置回放使用的 client，一般就是业务 client，只有第一次调用生效
+     */
+    fun attach(client: OkHttpClient) {
+        if (this.client == null) {
+            this.client = client
+        }
+    }
+
+    fun setListener(listener: Listener?) {
+        this.listener = listener
+    }
+
+    /**
+     * 保存请求，超过数量上限、body 过大或无法序列化时返回 null
+     */
+    fun enqueue(request: Request, coalesceKey: String? = null): OutboxEntry? {
+        val body = request.body()
+        val bytes = if (body == null) {
+            null
+        } else {
+            if (body.contentLength() > maxBodyBytes) return null
+            val buffer = Buffer()
+            try {
+                body.writeTo(buffer)
+            } catch (e: IOException) {
+                return null
+            }
+            if (buffer.size() > maxBodyBytes) return null
+            buffer.readByteArray()
+        }
+        val idempotencyKey = request.header(RetryInterceptor.IDEMPOTENCY_KEY_HEADER) ?: UUID.randomUUID().toString()
+        val headers = request.headers().newBuilder()
+            .removeAll(HEADER_NAME)
+            .removeAll(COALESCE_KEY_HEADER)
+            .set(RetryInterceptor.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .build()
+        synchronized(lock) {
+            val replaced = coalesceKey?.let { byCoalesceKey[it] }?.let { pending[it] }
+            if (replaced == null && pending.size >= maxEntries) {
+                LogUtils.wTag(LOG_TAG, "outbox full, ${request.method()} ${request.url()} not queued")
+                return null
+            }
+            val entry = OutboxEntry(
+                nextId++, System.currentTimeMillis(), idempotencyKey, coalesceKey,
+                request.method(), request.url().toString(), headers, body?.contentType()?.toString(), bytes
+            )
+            try {
+                journal.append(entry)
+                if (replaced != null) {
+                    journal.remove(listOf(replaced.id), pending.values.filter { it !== replaced } + entry)
+                }
+            } catch (e: IOException) {
+                LogUtils.eTag(LOG_TAG, "Failed to persist ${entry.method} ${entry.url}", e)
+                return null
+            }
+            if (replaced != null) {
+                delete(replaced)
+                superseded.incrementAndGet()
+            }
+            add(entry)
+            enqueued.incrementAndGet()
+            return entry
+        }
+    }
+
+    /**
+     * 在后台回放队列，已有回放在进行时忽略
+     */
+    fun replay() {
+        executor.execute { drain() }
+    }
+
+    /**
+     * 队列中的请求数
+     */
+    fun depth(): Int {
+        synchronized(lock) {
+            return pending.size
+        }
+    }
+
+    /**
+     * 最早入队的请求已等待的时间，队列为空时返回 0
+     */
+    fun oldestAgeMillis(): Long {
+        synchronized(lock) {
+            val oldest = pending.values.firstOrNull() ?: return 0
+            return System.currentTimeMillis() - oldest.createdAt
+        }
+    }
+
+    fun getEntries(): List<OutboxEntry> {
+        synchronized(lock) {
+            return ArrayList(pending.values)
+        }
+    }
+
+    fun getSummary(): String {
+        synchronized(lock) {
+            return "outbox: depth=${pending.size}, oldest=${oldestAgeMillis() / 1000}s, " +
+                    "body=${pendingBytes}B, file=${journal.length()}B, enqueued=${enqueued.get()}, " +
+                    "superseded=${superseded.get()}, replayed=${replayed.get()}, dropped=${dropped.get()}, " +
+                    "expired=${expired.get()}"
+        }
+    }
+
+    /**
+     * 清空队列，如退出登录时调用
+     */
+    fun clear() {
+        synchronized(lock) {
+            try {
+                journal.rewrite(emptyList())
+            } catch (e: IOException) {
+                LogUtils.eTag(LOG_TAG, "Failed to clear outbox", e)
+            }
+            pending.clear()
+            byCoalesceKey.clear()
+            pendingBytes = 0
+        }
+    }
+
+    override fun onForeground() {
+        replay()
+    }
+
+    override fun onBackground() {
+
+    }
+
+    private fun drain() {
+        val client = client ?: return
+        if (!replaying.compareAndSet(false, true)) {
+            return
+        }
+        try {
+            while (connectivity.isConnected()) {
+                val batch = synchronized(lock) {
+                    removeExpired()
+                    pending.values.take(batchSize)
+                }
+                if (batch.isEmpty()) {
+                    return
+                }
+                val done = ArrayList<Long>(batch.size)
+                var failed: OutboxEntry? = null
+                for (entry in batch) {
+                    val code = try {
+                        client.newCall(entry.toRequest()).execute().use { it.code() }
+                    } catch (e: IOException) {
+                        LogUtils.dTag(LOG_TAG, "replay ${entry.method} ${entry.url} failed: ${e.message}")
+                        -1
+                    }
+                    if (code == -1 || code == 408 || code == 429 || code >= 500) {
+                        entry.attempts++
+                        failed = entry
+                        break
+                    }
+                    done.add(entry.id)
+                    if (code < 400) {
+                        replayed.incrementAndGet()
+                        listener?.onReplayed(entry, code)
+                    } else {
+                        dropped.incrementAndGet()
+                        listener?.onDropped(entry, code)
+                    }
+                }
+                remove(done)
+                if (failed != null) {
+                    scheduleRetry(failed.attempts)
+                    return
+                }
+            }
+        } finally {
+            replaying.set(false)
+        }
+    }
+
+    private fun scheduleRetry(attempts: Int) {
+        val delay = minOf(MIN_RETRY_DELAY_MS shl minOf(attempts - 1, 16), MAX_RETRY_DELAY_MS)
+        synchronized(lock) {
+            retryTask?.cancel(false)
+            retryTask = executor.schedule({ drain() }, delay, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    /**
+     * 调用时需持有 lock
+     */
+    private fun removeExpired() {
+        if (maxAge <= 0) {
+            return
+        }
+        val deadline = System.currentTimeMillis() - maxAge
+        val old = pending.values.filter { it.createdAt < deadline }
+        if (old.isNotEmpty()) {
+            val ids = old.map { it.id }
+            try {
+                journal.remove(ids, pending.values.filter { it.createdAt >= deadline })
+            } catch (e: IOException) {
+                LogUtils.eTag(LOG_TAG, "Failed to remove expired requests", e)
+            }
+            old.forEach { delete(it) }
+            expired.addAndGet(old.size.toLong())
+        }
+    }
+
+    private fun remove(ids: List<Long>) {
+        if (ids.isEmpty()) {
+            return
+        }
+        synchronized(lock) {
+            //回放期间可能已被新请求替换
+            val removed = ids.mapNotNull { pending[it] }
+            try {
+                journal.remove(removed.map { it.id }, pending.values.filter { it.id !in ids })
+            } catch (e: IOException) {
+                LogUtils.eTag(LOG_TAG, "Failed to remove replayed requests", e)
+            }
+            removed.forEach { delete(it) }
+        }
+    }
+
+    private fun add(entry: OutboxEntry) {
+        pending[entry.id] = entry
+        entry.coalesceKey?.let { byCoalesceKey[it] = entry.id }
+        pendingBytes += entry.bodySize()
+    }
+
+    private fun delete(entry: OutboxEntry) {
+        pending.remove(entry.id)
+        entry.coalesceKey?.let { if (byCoalesceKey[it] == entry.id) byCoalesceKey.remove(it) }
+        pendingBytes -= entry.bodySize()
+    }
+
+    /**
+     * 网络恢复时回放，注册时系统会立即发送一次当前状态
+     */
+    private fun registerNetworkReceiver(context: Context) {
+        context.registerReceiver(object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                if (connectivity.isConnected() && depth() > 0) {
+                    replay()
+                }
+            }
+        }, IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION))
+    }
+
+    /**
+     * 网络是否可用
+     */
+    interface Connectivity {
+        fun isConnected(): Boolean
+    }
+
+    interface Listener {
+        /**
+         * 回放成功，在回放线程回调
+         */
+        fun onReplayed(entry: OutboxEntry, code: Int)
+
+        /**
+         * 服务端拒绝(4xx)，请求已移出队列
+         */
+        fun onDropped(entry: OutboxEntry, code: Int)
+    }
+
+    class Builder(internal val file: File) {
+        internal var connectivity: Connectivity = SYSTEM_CONNECTIVITY
+        internal var batchSize = 20
+        internal var maxEntries = 500
+        internal var maxBodyBytes = 256 * 1024L
+        internal var maxAge = TimeUnit.DAYS.toMillis(7)
+        internal var executor: ScheduledExecutorService? = null
+
+        fun connectivity(connectivity: Connectivity): Builder {
+            this.connectivity = connectivity
+            return this
+        }
+
+        /**
+         * 每批回放的请求数
+         */
+        fun batchSize(size: Int): Builder {
+            require(size > 0) { "size <= 0" }
+            this.batchSize = size
+            return this
+        }
+
+        /**
+         * 队列上限，已满时新请求不再入队，直接返回原来的异常
+         */
+        fun maxEntries(count: Int): Builder {
+            this.maxEntries = count
+            return this
+        }
+
+        /**
+         * body 超过该大小的请求(如上传文件)不入队
+         */
+        fun maxBodyBytes(bytes: Long): Builder {
+            this.maxBodyBytes = bytes
+            return this
+        }
+
+        /**
+         * 请求在队列中的最长保留时间，0 表示不过期
+         */
+        fun maxAge(millis: Long): Builder {
+            this.maxAge = millis
+            return this
+        }
+
+        fun executor(executor: ScheduledExecutorService): Builder {
+            this.executor = executor
+            return this
+        }
+
+        fun build(): OfflineOutbox {
+            return OfflineOutbox(this)
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "OfflineOutbox"
+        private const val FILE_NAME = "outbox.bin"
+        private const val MIN_RETRY_DELAY_MS = 1_000L
+        private const val MAX_RETRY_DELAY_MS = 5 * 60_000L
+        const val HEADER_NAME = "X-Offline"
+        const val COALESCE_KEY_HEADER = "X-Offline-Key"
+        const val MODE_QUEUE = "queue"
+        const val MODE_REPLACE = "replace"
+        const val HEADER_QUEUE = "$HEADER_NAME: $MODE_QUEUE"
+        const val HEADER_REPLACE = "$HEADER_NAME: $MODE_REPLACE"
+
+        @Volatile
+        private var instance: OfflineOutbox? = null
+
+        private val DEFAULT_EXECUTOR: ScheduledExecutorService by lazy {
+            Executors.newSingleThreadScheduledExecutor { runnable ->
+                Thread(runnable, "OfflineOutbox-replay").apply { isDaemon = true }
+            }
+        }
+
+        private val SYSTEM_CONNECTIVITY = object : Connectivity {
+            override fun isConnected(): Boolean {
+                return NetworkUtils.isConnected()
+            }
+        }
+
+        /**
+         * 获取进程内共用的实例，第一次创建时注册网络变化广播，网络恢复后回放
+         */
+        fun getInstance(context: Context): OfflineOutbox {
+            return instance ?: synchronized(this) {
+                instance ?: Builder(File(context.filesDir, FILE_NAME)).build().also {
+                    it.registerNetworkReceiver(context.applicationContext)
+                    instance = it
+                }
+            }
+        }
+    }
+}
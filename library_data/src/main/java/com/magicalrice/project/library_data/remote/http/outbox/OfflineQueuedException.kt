@@ -0,0 +1,13 @@
+package com.magicalrice.project.library_data.remote.http.outbox
+
+import java.io.IOException
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.outbox
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 请求因无网络未能发出，已保存到离线队列，网络恢复后自动回放
+ */
+
+class OfflineQueuedException(val entry: OutboxEntry, cause: IOException? = null) :
+    IOException("Queued offline: ${entry.method} ${entry.url}", cause)
@@ -0,0 +1,52 @@
+package com.magicalrice.project.library_data.remote.http.outbox
+
+import okhttp3.Headers
+import okhttp3.MediaType
+import okhttp3.Request
+import okhttp3.RequestBody
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.outbox
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 离线队列中的一个请求
+ *
+ * [headers] 中已包含 Idempotency-Key，回放时原样发出，服务端据此去重。
+ */
+
+class OutboxEntry internal constructor(
+    val id: Long,
+    val createdAt: Long,
+    val idempotencyKey: String,
+    /**
+     * 相同 coalesceKey 的新请求会替换队列中的旧请求，null 表示不合并
+     */
+    val coalesceKey: String?,
+    val method: String,
+    val url: String,
+    val headers: Headers,
+    val contentType: String?,
+    internal val body: ByteArray?
+) {
+    //回放失败次数，只保存在内存中
+    @Volatile
+    var attempts = 0
+        internal set
+
+    fun bodySize(): Int {
+        return body?.size ?: 0
+    }
+
+    internal fun toRequest(): Request {
+        val requestBody = body?.let { RequestBody.create(contentType?.let { type -> MediaType.parse(type) }, it) }
+        return Request.Builder()
+            .url(url)
+            .headers(headers)
+            .method(method, requestBody)
+            .build()
+    }
+
+    override fun toString(): String {
+        return "OutboxEntry(id=$id, $method $url, key=$idempotencyKey)"
+    }
+}
@@ -0,0 +1,236 @@
+package com.magicalrice.project.library_data.remote.http.outbox
+
+import com.magicalrice.project.library_base.base.log.LogUtils
+import okhttp3.Headers
+import java.io.BufferedInputStream
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.zip.CRC32
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.outbox
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 离线队列的持久化文件
+ *
+ * 只追加写：文件头为魔数，之后每条记录为 长度 + 类型 + 内容 + CRC32，类型为新增请求或删除一批请求。
+ * 每次追加后 fsync，进程被杀也不会丢失已入队的请求；读取时遇到写了一半或校验失败的记录，从该处截断。
+ * 已删除的记录多于有效记录时整体重写一次(先写临时文件再重命名)。
+ *
+ * 非线程安全，由 [OfflineOutbox] 加锁。
+ */
+
+internal class OutboxJournal(private val file: File) {
+    //文件中的新增记录数和作废记录数(已删除的新增记录和删除记录)，用于判断是否需要重写
+    private var live = 0
+    private var dead = 0
+
+    /**
+     * 读取文件中仍在队列中的请求，按入队顺序返回
+     */
+    fun load(): List<OutboxEntry> {
+        val entries = LinkedHashMap<Long, OutboxEntry>()
+        live = 0
+        dead = 0
+        if (!file.exists()) {
+            return emptyList()
+        }
+        var valid = 0L
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC) {
+                    throw IOException("Unknown outbox file format")
+                }
+                valid = 4
+                while (true) {
+                    val record = readRecord(input) ?: break
+                    val data = DataInputStream(ByteArrayInputStream(record))
+                    when (data.readByte().toInt()) {
+                        TYPE_ADD -> {
+                            val entry = readEntry(data)
+                            entries[entry.id] = entry
+                            live++
+                        }
+                        TYPE_REMOVE -> {
+                            val count = data.readInt()
+                            for (i in 0 until count) {
+                                if (entries.remove(data.readLong()) != null) {
+                                    live--
+                                    dead++
+                                }
+                            }
+                            dead++
+                        }
+                        else -> throw IOException("Unknown record type")
+                    }
+                    valid += 8 + record.size
+                }
+            }
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Outbox file damaged at $valid, truncating", e)
+            if (valid == 0L) {
+                file.delete()
+            } else {
+                RandomAccessFile(file, "rw").use { it.setLength(valid) }
+            }
+        }
+        return ArrayList(entries.values)
+    }
+
+    fun append(entry: OutboxEntry) {
+        val record = ByteArrayOutputStream()
+        val output = DataOutputStream(record)
+        output.writeByte(TYPE_ADD)
+        writeEntry(output, entry)
+        write(record.toByteArray())
+        live++
+    }
+
+    /**
+     * 一次写入一批删除，避免逐条 fsync
+     */
+    fun remove(ids: Collection<Long>, remaining: Collection<OutboxEntry>) {
+        if (ids.isEmpty()) {
+            return
+        }
+        val record = ByteArrayOutputStream(5 + ids.size * 8)
+        val output = DataOutputStream(record)
+        output.writeByte(TYPE_REMOVE)
+        output.writeInt(ids.size)
+        ids.forEach { output.writeLong(it) }
+        write(record.toByteArray())
+        live -= ids.size
+        dead += ids.size + 1
+        if (dead >= COMPACT_THRESHOLD && dead > live) {
+            rewrite(remaining)
+        }
+    }
+
+    /**
+     * 只保留 [entries] 重写文件
+     */
+    fun rewrite(entries: Collection<OutboxEntry>) {
+        val temp = File(file.path + ".tmp")
+        FileOutputStream(temp).use { stream ->
+            val output = DataOutputStream(stream.buffered())
+            output.writeInt(MAGIC)
+            for (entry in entries) {
+                val record = ByteArrayOutputStream()
+                val data = DataOutputStream(record)
+                data.writeByte(TYPE_ADD)
+                writeEntry(data, entry)
+                writeRecord(output, record.toByteArray())
+            }
+            output.flush()
+            stream.fd.sync()
+        }
+        if (!temp.renameTo(file)) {
+            file.delete()
+            if (!temp.renameTo(file)) throw IOException("Failed to replace ${file.path}")
+        }
+        live = entries.size
+        dead = 0
+    }
+
+    fun length(): Long {
+        return file.length()
+    }
+
+    private fun write(record: ByteArray) {
+        val exists = file.exists() && file.length() > 0
+        FileOutputStream(file, true).use { stream ->
+            val output = DataOutputStream(stream.buffered())
+            if (!exists) output.writeInt(MAGIC)
+            writeRecord(output, record)
+            output.flush()
+            stream.fd.sync()
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "OutboxJournal"
+        //"OBX1"
+        private const val MAGIC = 0x4F425831
+        private const val TYPE_ADD = 1
+        private const val TYPE_REMOVE = 2
+        private const val COMPACT_THRESHOLD = 64
+        private const val MAX_RECORD_BYTES = 16 * 1024 * 1024
+
+        private fun writeRecord(output: DataOutputStream, record: ByteArray) {
+            val crc = CRC32()
+            crc.update(record)
+            output.writeInt(record.size)
+            output.write(record)
+            output.writeInt(crc.value.toInt())
+        }
+
+        /**
+         * 读取一条记录，文件结束返回 null，记录不完整或校验失败抛出 IOException
+         */
+        private fun readRecord(input: DataInputStream): ByteArray? {
+            val length = try {
+                input.readInt()
+            } catch (e: EOFException) {
+                return null
+            }
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                throw IOException("Invalid record length $length")
+            }
+            val record = ByteArray(length)
+            input.readFully(record)
+            val crc = CRC32()
+            crc.update(record)
+            if (input.readInt() != crc.value.toInt()) {
+                throw IOException("Record checksum mismatch")
+            }
+            return record
+        }
+
+        private fun writeEntry(output: DataOutputStream, entry: OutboxEntry) {
+            output.writeLong(entry.id)
+            output.writeLong(entry.createdAt)
+            output.writeUTF(entry.idempotencyKey)
+            output.writeUTF(entry.coalesceKey ?: "")
+            output.writeUTF(entry.method)
+            output.writeUTF(entry.url)
+            output.writeShort(entry.headers.size())
+            for (i in 0 until entry.headers.size()) {
+                output.writeUTF(entry.headers.name(i))
+                output.writeUTF(entry.headers.value(i))
+            }
+            output.writeUTF(entry.contentType ?: "")
+            val body = entry.body
+            if (body == null) {
+                output.writeInt(-1)
+            } else {
+                output.writeInt(body.size)
+                output.write(body)
+            }
+        }
+
+        private fun readEntry(input: DataInputStream): OutboxEntry {
+            val id = input.readLong()
+            val createdAt = input.readLong()
+            val idempotencyKey = input.readUTF()
+            val coalesceKey = input.readUTF().takeIf { it.isNotEmpty() }
+            val method = input.readUTF()
+            val url = input.readUTF()
+            val headers = Headers.Builder()
+            for (i in 0 until input.readUnsignedShort()) {
+                headers.add(input.readUTF(), input.readUTF())
+            }
+            val contentType = input.readUTF().takeIf { it.isNotEmpty() }
+            val length = input.readInt()
+            val body = if (length < 0) null else ByteArray(length).also { input.readFully(it) }
+            return OutboxEntry(id, createdAt, idempotencyKey, coalesceKey, method, url, headers.build(), contentType, body)
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.magicalrice.project.library_data.remote.http.resilience
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resilience
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 单个 host 的熔断器
+ *
+ * CLOSED: 正常放行，连续失败达到阈值后进入 OPEN
+ * OPEN: 直接拒绝，冷却时间结束后进入 HALF_OPEN
+ * HALF_OPEN: 只放行一个探测请求，成功回到 CLOSED，失败重新 OPEN
+ */
+
+class CircuitBreaker(
+    private val host: String,
+    private val failureThreshold: Int,
+    private val openMillis: Long,
+    private val clock: RetryInterceptor.Clock,
+    private val metrics: ResilienceMetrics
+) {
+    enum class State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private var state = State.CLOSED
+    private var consecutiveFailures = 0
+    private var openedAt = 0L
+    private var probeInFlight = false
+
+    @Synchronized
+    fun getState(): State {
+        return state
+    }
+
+    /**
+     * 是否允许发出请求
+     */
+    @Synchronized
+    fun tryAcquire(): Boolean {
+        when (state) {
+            State.CLOSED -> return true
+            State.OPEN -> {
+                if (clock.now() - openedAt < openMillis) {
+                    return false
+                }
+                transition(State.HALF_OPEN)
+                probeInFlight = true
+                return true
+            }
+            State.HALF_OPEN -> {
+                if (probeInFlight) {
+                    return false
+                }
+                probeInFlight = true
+                return true
+            }
+        }
+    }
+
+    @Synchronized
+    fun onSuccess() {
+        consecutiveFailures = 0
+        probeInFlight = false
+        if (state != State.CLOSED) {
+            transition(State.CLOSED)
+        }
+    }
+
+    @Synchronized
+    fun onFailure() {
+        probeInFlight = false
+        consecutiveFailures++
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = clock.now()
+            transition(State.OPEN)
+        }
+    }
+
+    private fun transition(to: State) {
+        val from = state
+        state = to
+        metrics.onBreakerTransition(host, from, to)
+    }
+}
@@ -0,0 +1,12 @@
+package com.magicalrice.project.library_data.remote.http.resilience
+
+import java.io.IOException
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resilience
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description host 处于熔断状态，请求未发出
+ */
+
+class CircuitOpenException(val host: String) : IOException("Circuit open for $host")
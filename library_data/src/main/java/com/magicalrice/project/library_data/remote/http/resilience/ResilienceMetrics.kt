@@ -0,0 +1,79 @@
+package com.magicalrice.project.library_data.remote.http.resilience
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resilience
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 重试与熔断统计
+ */
+
+class ResilienceMetrics {
+    private val retries = AtomicLong()
+    private val budgetExhausted = AtomicLong()
+    private val rejectedByBreaker = AtomicLong()
+    private val breakerTransitions = AtomicLong()
+    @Volatile
+    private var listener: OnBreakerListener? = null
+
+    fun setBreakerListener(listener: OnBreakerListener?) {
+        this.listener = listener
+    }
+
+    internal fun onRetry() {
+        retries.incrementAndGet()
+    }
+
+    internal fun onBudgetExhausted() {
+        budgetExhausted.incrementAndGet()
+    }
+
+    internal fun onRejected() {
+        rejectedByBreaker.incrementAndGet()
+    }
+
+    internal fun onBreakerTransition(host: String, from: CircuitBreaker.State, to: CircuitBreaker.State) {
+        breakerTransitions.incrementAndGet()
+        listener?.onStateChanged(host, from, to)
+    }
+
+    /**
+     * 已执行的重试次数
+     */
+    fun getRetryCount(): Long {
+        return retries.get()
+    }
+
+    /**
+     * 因重试预算耗尽而放弃的重试次数
+     */
+    fun getBudgetExhaustedCount(): Long {
+        return budgetExhausted.get()
+    }
+
+    /**
+     * 被熔断直接拒绝的请求数
+     */
+    fun getRejectedCount(): Long {
+        return rejectedByBreaker.get()
+    }
+
+    /**
+     * 熔断器状态切换次数
+     */
+    fun getBreakerTransitionCount(): Long {
+        return breakerTransitions.get()
+    }
+
+    override fun toString(): String {
+        return "retries=" + retries.get() +
+                ", budgetExhausted=" + budgetExhausted.get() +
+                ", rejected=" + rejectedByBreaker.get() +
+                ", breakerTransitions=" + breakerTransitions.get()
+    }
+
+    interface OnBreakerListener {
+        fun onStateChanged(host: String, from: CircuitBreaker.State, to: CircuitBreaker.State)
+    }
+}
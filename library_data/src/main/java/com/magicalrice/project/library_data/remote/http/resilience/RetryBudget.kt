@@ -0,0 +1,34 @@
+package com.magicalrice.project.library_data.remote.http.resilience
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resilience
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 重试预算
+ *
+ * 每个原始请求存入 ratio 个令牌，每次重试消耗 1 个，令牌最多 maxTokens 个。
+ * 网络整体变差时重试量被限制在请求量的 ratio 倍以内，不会因为重试把服务端压垮。
+ */
+
+class RetryBudget(private val ratio: Float, private val maxTokens: Float) {
+    private var tokens = maxTokens
+
+    @Synchronized
+    fun deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio)
+    }
+
+    @Synchronized
+    fun tryWithdraw(): Boolean {
+        if (tokens < 1f) {
+            return false
+        }
+        tokens -= 1f
+        return true
+    }
+
+    @Synchronized
+    fun getTokens(): Float {
+        return tokens
+    }
+}
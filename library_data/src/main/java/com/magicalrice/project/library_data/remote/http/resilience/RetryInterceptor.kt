@@ -0,0 +1,252 @@
+package com.magicalrice.project.library_data.remote.http.resilience
+
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.internal.http.HttpDate
+import java.io.IOException
+import java.util.Random
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resilience
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 重试与熔断拦截器
+ *
+ * 幂等请求(GET/HEAD/PUT/DELETE/OPTIONS，或带 Idempotency-Key 头)在网络异常或 408/429/502/503/504 时重试：
+ * 退避时间使用 decorrelated jitter，服务端返回 Retry-After 时优先使用；重试次数受 [RetryBudget] 限制。
+ * 每个 host 一个 [CircuitBreaker]，熔断期间请求直接抛出 [CircuitOpenException]。
+ */
+
+class RetryInterceptor private constructor(builder: Builder) : Interceptor {
+    private val maxRetries = builder.maxRetries
+    private val baseDelayMs = builder.baseDelayMs
+    private val maxDelayMs = builder.maxDelayMs
+    private val maxRetryAfterMs = builder.maxRetryAfterMs
+    private val failureThreshold = builder.failureThreshold
+    private val openMillis = builder.openMillis
+    private val clock = builder.clock
+    private val sleeper = builder.sleeper
+    private val random = builder.random
+    private val budget = RetryBudget(builder.budgetRatio, builder.budgetMaxTokens)
+    private val breakers = ConcurrentHashMap<String, CircuitBreaker>()
+    private val metrics = builder.metrics
+
+    fun getMetrics(): ResilienceMetrics {
+        return metrics
+    }
+
+    fun getBreaker(host: String): CircuitBreaker {
+        val existing = breakers[host]
+        if (existing != null) {
+            return existing
+        }
+        val created = CircuitBreaker(host, failureThreshold, openMillis, clock, metrics)
+        return breakers.putIfAbsent(host, created) ?: created
+    }
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val host = request.url().host()
+        val breaker = getBreaker(host)
+        budget.deposit()
+
+        var attempt = 0
+        var prevDelayMs = baseDelayMs
+        while (true) {
+            if (!breaker.tryAcquire()) {
+                metrics.onRejected()
+                throw CircuitOpenException(host)
+            }
+            var response: Response? = null
+            var error: IOException? = null
+            try {
+                response = chain.proceed(request)
+            } catch (e: IOException) {
+                error = e
+            } catch (e: Throwable) {
+                //后续拦截器抛出的 RuntimeException 等也要结束探测，否则熔断器一直停在 HALF_OPEN
+                breaker.onFailure()
+                throw e
+            }
+
+            if (error != null || response!!.code() >= 500) {
+                breaker.onFailure()
+            } else {
+                breaker.onSuccess()
+            }
+            if (error == null && !isRetryableCode(response!!.code())) {
+                return response
+            }
+
+            var delayMs = -1L
+            if (attempt < maxRetries && isIdempotent(request) && !chain.call().isCanceled) {
+                val retryAfterMs = response?.let { parseRetryAfter(it.header("Retry-After")) } ?: -1L
+                if (retryAfterMs <= maxRetryAfterMs) {
+                    if (budget.tryWithdraw()) {
+                        delayMs = if (retryAfterMs >= 0) retryAfterMs else nextDelay(prevDelayMs)
+                    } else {
+                        metrics.onBudgetExhausted()
+                    }
+                }
+            }
+            if (delayMs < 0) {
+                if (error != null) throw error
+                return response!!
+            }
+
+            response?.close()
+            prevDelayMs = Math.max(delayMs, baseDelayMs)
+            sleeper.sleep(delayMs)
+            attempt++
+            metrics.onRetry()
+        }
+    }
+
+    /**
+     * decorrelated jitter: random(base, prev * 3)，不超过 maxDelay
+     */
+    private fun nextDelay(prevDelayMs: Long): Long {
+        val upper = Math.min(maxDelayMs, prevDelayMs * 3)
+        if (upper <= baseDelayMs) {
+            return baseDelayMs
+        }
+        return baseDelayMs + (random.nextDouble() * (upper - baseDelayMs)).toLong()
+    }
+
+    /**
+     * @return Retry-After 对应的毫秒数，没有或无法解析时返回 -1
+     */
+    private fun parseRetryAfter(value: String?): Long {
+        if (value == null || value.isEmpty()) return -1
+        val seconds = value.trim().toLongOrNull()
+        if (seconds != null) {
+            return if (seconds < 0) -1 else seconds * 1000
+        }
+        val date = HttpDate.parse(value) ?: return -1
+        return Math.max(0, date.time - clock.now())
+    }
+
+    private fun isRetryableCode(code: Int): Boolean {
+        return code == 408 || code == 429 || code == 502 || code == 503 || code == 504
+    }
+
+    private fun isIdempotent(request: Request): Boolean {
+        return when (request.method()) {
+            "GET", "HEAD", "PUT", "DELETE", "OPTIONS" -> true
+            else -> request.header(IDEMPOTENCY_KEY_HEADER) != null
+        }
+    }
+
+    interface Clock {
+        fun now(): Long
+    }
+
+    interface Sleeper {
+        @Throws(IOException::class)
+        fun sleep(millis: Long)
+    }
+
+    class Builder {
+        internal var maxRetries = 2
+        internal var baseDelayMs = 200L
+        internal var maxDelayMs = 5_000L
+        internal var maxRetryAfterMs = 10_000L
+        internal var budgetRatio = 0.2f
+        internal var budgetMaxTokens = 10f
+        internal var failureThreshold = 5
+        internal var openMillis = 30_000L
+        internal var metrics = ResilienceMetrics()
+        internal var random = Random()
+        internal var clock: Clock = object : Clock {
+            override fun now(): Long {
+                return System.currentTimeMillis()
+            }
+        }
+        internal var sleeper: Sleeper = object : Sleeper {
+            override fun sleep(millis: Long) {
+                try {
+                    Thread.sleep(millis)
+                } catch (e: InterruptedException) {
+                    Thread.currentThread().interrupt()
+                    throw IOException("Canceled")
+                }
+            }
+        }
+
+        /**
+         * @param maxRetries 单个请求最多重试次数
+         */
+        fun maxRetries(maxRetries: Int): Builder {
+            this.maxRetries = maxRetries
+            return this
+        }
+
+        /**
+         * @param baseDelayMs 最小退避时间
+         * @param maxDelayMs  最大退避时间
+         */
+        fun backoff(baseDelayMs: Long, maxDelayMs: Long): Builder {
+            this.baseDelayMs = baseDelayMs
+            this.maxDelayMs = maxDelayMs
+            return this
+        }
+
+        /**
+         * @param maxRetryAfterMs Retry-After 超过该值时不再重试
+         */
+        fun maxRetryAfter(maxRetryAfterMs: Long): Builder {
+            this.maxRetryAfterMs = maxRetryAfterMs
+            return this
+        }
+
+        /**
+         * @param ratio     每个请求存入的重试令牌数
+         * @param maxTokens 令牌上限
+         */
+        fun retryBudget(ratio: Float, maxTokens: Float): Builder {
+            this.budgetRatio = ratio
+            this.budgetMaxTokens = maxTokens
+            return this
+        }
+
+        /**
+         * @param failureThreshold 连续失败多少次后熔断
+         * @param openMillis       熔断持续时间，之后放行一个探测请求
+         */
+        fun circuitBreaker(failureThreshold: Int, openMillis: Long): Builder {
+            this.failureThreshold = failureThreshold
+            this.openMillis = openMillis
+            return this
+        }
+
+        fun metrics(metrics: ResilienceMetrics): Builder {
+            this.metrics = metrics
+            return this
+        }
+
+        fun clock(clock: Clock): Builder {
+            this.clock = clock
+            return this
+        }
+
+        fun sleeper(sleeper: Sleeper): Builder {
+            this.sleeper = sleeper
+            return this
+        }
+
+        fun random(random: Random): Builder {
+            this.random = random
+            return this
+        }
+
+        fun build(): RetryInterceptor {
+            return RetryInterceptor(this)
+        }
+    }
+
+    companion object {
+        const val IDEMPOTENCY_KEY_HEADER = "Idempotency-Key"
+    }
+}
@@ -0,0 +1,137 @@
+package com.magicalrice.project.library_data.remote.http.resource
+
+import com.magicalrice.project.library_base.advanced.CacheDoubleUtils
+import com.magicalrice.project.library_base.base.log.LogUtils
+import com.magicalrice.project.library_data.GsonUtils
+import io.reactivex.BackpressureStrategy
+import io.reactivex.Flowable
+import io.reactivex.Maybe
+import io.reactivex.Observable
+import io.reactivex.Scheduler
+import io.reactivex.schedulers.Schedulers
+import java.lang.reflect.Type
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resource
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 缓存 + 网络的数据加载基类，供 Repository 使用
+ *
+ * 订阅后同时开始两件事：在 io 线程从 [CacheDoubleUtils] 读取并解析缓存，以 LOADING 发出；
+ * 发起网络请求，成功后写回缓存并以 SUCCESS 发出，失败时以 ERROR 发出并带上缓存数据。
+ * 网络先返回时不再发出缓存数据，页面不会从新数据跳回旧数据。
+ *
+ * 同一个 key 的加载进行中时，再次订阅会共用同一次加载，并立刻收到最近一次状态；
+ * 所有订阅者都取消后(例如页面销毁)，缓存读取和网络请求一起取消。
+ * ```
+ * class ConfigRepository {
+ *     fun config() = object : NetworkBoundResource<AppConfig>("config", AppConfig::class.java) {
+ *         override fun createCall() = api.config()
+ *     }
+ * }
+ * ```
+ * ViewModel 中通过 BaseViewModel.load 转成 LiveData。
+ */
+
+abstract class NetworkBoundResource<T : Any>(
+    private val key: String,
+    private val type: Type,
+    private val cache: CacheDoubleUtils = CacheDoubleUtils.getInstance(),
+    private val scheduler: Scheduler = Schedulers.io()
+) {
+
+    /**
+     * 网络请求，只取第一个结果
+     */
+    protected abstract fun createCall(): Observable<T>
+
+    /**
+     * 网络数据写入缓存前的处理，默认原样保存
+     */
+    protected open fun saveCallResult(value: T) {
+        cache.put(CACHE_PREFIX + key, encode(value))
+    }
+
+    protected open fun encode(value: T): ByteArray {
+        return GsonUtils.getNetGson().toJson(value, type).toByteArray(Charsets.UTF_8)
+    }
+
+    protected open fun decode(bytes: ByteArray): T {
+        return GsonUtils.getNetGson().fromJson(String(bytes, Charsets.UTF_8), type)
+    }
+
+    /**
+     * 相同 key 的并发订阅共用一次加载
+     */
+    fun asFlowable(): Flowable<Resource<T>> {
+        while (true) {
+            IN_FLIGHT[key]?.let {
+                @Suppress("UNCHECKED_CAST")
+                return it as Flowable<Resource<T>>
+            }
+            val shared = AtomicReference<Flowable<Resource<*>>>()
+            val flowable = load()
+                .doFinally { IN_FLIGHT.remove(key, shared.get()) }
+                .replay(1)
+                .refCount()
+            @Suppress("UNCHECKED_CAST")
+            shared.set(flowable as Flowable<Resource<*>>)
+            if (IN_FLIGHT.putIfAbsent(key, flowable) == null) {
+                return flowable
+            }
+        }
+    }
+
+    /**
+     * 删除缓存
+     */
+    fun clearCache() {
+        cache.remove(CACHE_PREFIX + key)
+    }
+
+    private fun load(): Flowable<Resource<T>> {
+        return Flowable.defer {
+            val cached = AtomicReference<T>()
+            val fromCache = Maybe.fromCallable<T> { readCache() }
+                .subscribeOn(scheduler)
+                .doOnSuccess { cached.set(it) }
+                .map { Resource.loading(it) }
+                .toFlowable()
+            val fromNetwork = createCall()
+                .subscribeOn(scheduler)
+                .take(1)
+                .observeOn(scheduler)
+                .doOnNext { saveCallResult(it) }
+                .map { Resource.success(it) }
+                .onErrorReturn { Resource.error(it, cached.get()) }
+                .toFlowable(BackpressureStrategy.LATEST)
+            fromNetwork.publish { network ->
+                Flowable.merge(fromCache.takeUntil(network), network)
+            }.startWith(Resource.loading<T>(null))
+        }
+    }
+
+    private fun readCache(): T? {
+        val bytes = cache.getBytes(CACHE_PREFIX + key) ?: return null
+        return try {
+            decode(bytes)
+        } catch (e: Exception) {
+            if (e is InterruptedException || Thread.currentThread().isInterrupted) {
+                //网络先返回，读取被取消，缓存本身没有问题
+                return null
+            }
+            //数据结构变化后旧缓存无法解析，当作没有缓存
+            LogUtils.eTag(LOG_TAG, "Discarding unreadable cache $key", e)
+            clearCache()
+            null
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "NetworkBoundResource"
+        private const val CACHE_PREFIX = "resource_"
+        private val IN_FLIGHT = ConcurrentHashMap<String, Flowable<Resource<*>>>()
+    }
+}
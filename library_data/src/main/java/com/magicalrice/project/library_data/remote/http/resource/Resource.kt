@@ -0,0 +1,36 @@
+package com.magicalrice.project.library_data.remote.http.resource
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.resource
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description [NetworkBoundResource] 发布的加载状态
+ *
+ * LOADING 时 data 为缓存中的旧数据(可能为空)，SUCCESS 为网络返回的新数据，
+ * ERROR 时 data 仍是缓存数据，页面可以继续展示并提示错误。
+ */
+
+class Resource<T> private constructor(val status: Status, val data: T?, val error: Throwable?) {
+
+    enum class Status {
+        LOADING, SUCCESS, ERROR
+    }
+
+    override fun toString(): String {
+        return "Resource($status, data=$data, error=$error)"
+    }
+
+    companion object {
+        fun <T> loading(data: T?): Resource<T> {
+            return Resource(Status.LOADING, data, null)
+        }
+
+        fun <T> success(data: T): Resource<T> {
+            return Resource(Status.SUCCESS, data, null)
+        }
+
+        fun <T> error(error: Throwable, data: T?): Resource<T> {
+            return Resource(Status.ERROR, data, error)
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.magicalrice.project.library_data.remote.http.revalidate
+
+import com.google.gson.reflect.TypeToken
+import com.magicalrice.project.library_base.advanced.CacheDiskUtils
+import com.magicalrice.project.library_base.advanced.CacheDoubleUtils
+import com.magicalrice.project.library_base.advanced.CacheMemoryUtils
+import com.magicalrice.project.library_base.base.log.LogUtils
+import io.reactivex.Observable
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import retrofit2.HttpException
+import retrofit2.Response
+import retrofit2.Retrofit
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.lang.reflect.Type
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.revalidate
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 基于 ETag/Last-Modified 的条件请求缓存，供 Repository 使用
+ *
+ * 响应体和 ETag、Last-Modified 一起存入 [CacheDoubleUtils]，下次请求带上 If-None-Match/If-Modified-Since；
+ * 服务端返回 304 时直接返回内存中已解析好的对象，不再下载和解析，内存中没有时才从磁盘取出原始 body 解析一次。
+ * 解析使用 Retrofit 上注册的 Converter，与普通接口的结果一致(包括 CBOR)。
+ *
+ * 接口需要声明为返回原始响应并接收附加的请求头：
+ * ```
+ * @GET("config")
+ * fun config(@HeaderMap headers: Map<String, String>): Observable<Response<ResponseBody>>
+ *
+ * revalidationCache.fetch<AppConfig>("config") { api.config(it) }.subscribe(NetSubscriber(...))
+ * ```
+ * 返回的对象会在多次请求间共用，调用方不要修改。
+ */
+
+class RevalidationCache private constructor(builder: Builder) {
+    private val retrofit = builder.retrofit
+    private val store = builder.store ?: CacheDoubleUtils.getInstance(
+        CacheMemoryUtils.getInstance("revalidation_bytes", 16),
+        CacheDiskUtils.getInstance("revalidation")
+    )
+    private val decoded = builder.decoded ?: CacheMemoryUtils.getInstance("revalidation_objects", 64)
+    private val notModified = AtomicLong()
+    private val refreshed = AtomicLong()
+    private val bytesSaved = AtomicLong()
+    private val bytesDownloaded = AtomicLong()
+
+    /**
+     * @param key    缓存 key，一般用接口路径加参数
+     * @param type   解析后的类型
+     * @param source 用给出的条件请求头发起请求
+     */
+    fun <T> fetch(
+        key: String,
+        type: Type,
+        source: (Map<String, String>) -> Observable<Response<ResponseBody>>
+    ): Observable<T> {
+        return Observable.defer {
+            val entry = load(key, type)
+            source(entry?.conditionalHeaders() ?: emptyMap()).map { handle<T>(key, type, entry, it) }
+        }
+    }
+
+    inline fun <reified T> fetch(
+        key: String,
+        noinline source: (Map<String, String>) -> Observable<Response<ResponseBody>>
+    ): Observable<T> {
+        return fetch(key, object : TypeToken<T>() {}.type, source)
+    }
+
+    /**
+     * 删除缓存，下次请求会完整下载
+     */
+    fun invalidate(key: String) {
+        decoded.remove(key)
+        store.remove(STORE_PREFIX + key)
+    }
+
+    private fun <T> handle(key: String, type: Type, entry: Entry?, response: Response<ResponseBody>): T {
+        if (response.code() == HTTP_NOT_MODIFIED && entry != null) {
+            notModified.incrementAndGet()
+            bytesSaved.addAndGet(entry.size.toLong())
+            response.errorBody()?.close()
+            @Suppress("UNCHECKED_CAST")
+            return (entry.value ?: decodeStored(key, type, entry)) as T
+        }
+        if (!response.isSuccessful) {
+            throw HttpException(response)
+        }
+        val body = response.body() ?: throw IOException("Empty body for $key")
+        val contentType = body.contentType()
+        val bytes = body.use { it.bytes() }
+        refreshed.incrementAndGet()
+        bytesDownloaded.addAndGet(bytes.size.toLong())
+        val value = decode<T>(type, contentType, bytes)
+        val etag = response.headers().get("ETag")
+        val lastModified = response.headers().get("Last-Modified")
+        if (etag == null && lastModified == null) {
+            //没有校验值无法条件请求，不缓存
+            invalidate(key)
+            return value
+        }
+        val stored = Entry(key, type, etag, lastModified, contentType?.toString(), bytes.size, value)
+        decoded.put(key, stored, -1)
+        store.put(STORE_PREFIX + key, encode(stored, bytes))
+        return value
+    }
+
+    private fun load(key: String, type: Type): Entry? {
+        decoded.get<Entry>(key)?.let {
+            if (it.type == type) return it
+        }
+        val bytes = store.getBytes(STORE_PREFIX + key) ?: return null
+        return try {
+            decodeRecord(key, type, bytes)
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Discarding unreadable revalidation entry $key", e)
+            store.remove(STORE_PREFIX + key)
+            null
+        }
+    }
+
+    /**
+     * 内存中没有解析结果时从磁盘取出 body 解析，之后放入内存
+     */
+    private fun decodeStored(key: String, type: Type, entry: Entry): Any {
+        val bytes = store.getBytes(STORE_PREFIX + key) ?: throw IOException("Revalidation entry $key was evicted")
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        readHeader(input)
+        val body = ByteArray(input.available())
+        input.readFully(body)
+        val value = decode<Any>(type, entry.contentType?.let { MediaType.parse(it) }, body)
+        val loaded = Entry(key, type, entry.etag, entry.lastModified, entry.contentType, body.size, value)
+        decoded.put(key, loaded, -1)
+        return value
+    }
+
+    private fun <T> decode(type: Type, contentType: MediaType?, bytes: ByteArray): T {
+        val converter = retrofit.responseBodyConverter<T>(type, NO_ANNOTATIONS)
+        return converter.convert(ResponseBody.create(contentType, bytes))
+            ?: throw IOException("Converter returned null for $type")
+    }
+
+    private fun encode(entry: Entry, body: ByteArray): ByteArray {
+        val bytes = ByteArrayOutputStream(body.size + 128)
+        val output = DataOutputStream(bytes)
+        output.writeInt(MAGIC)
+        output.writeUTF(entry.key)
+        output.writeUTF(entry.etag ?: "")
+        output.writeUTF(entry.lastModified ?: "")
+        output.writeUTF(entry.contentType ?: "")
+        output.write(body)
+        return bytes.toByteArray()
+    }
+
+    /**
+     * 只读取头部，body 等到 304 时才解析
+     */
+    private fun decodeRecord(key: String, type: Type, bytes: ByteArray): Entry? {
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        val header = readHeader(input)
+        //CacheDiskUtils 按 key 的 hashCode 命名文件，不同 key 可能冲突
+        if (header[0] != key) return null
+        return Entry(key, type, header[1], header[2], header[3], input.available(), null)
+    }
+
+    private fun readHeader(input: DataInputStream): Array<String?> {
+        if (input.readInt() != MAGIC) throw IOException("Bad magic")
+        return arrayOf(
+            input.readUTF(),
+            input.readUTF().ifEmpty { null },
+            input.readUTF().ifEmpty { null },
+            input.readUTF().ifEmpty { null }
+        )
+    }
+
+    /**
+     * 收到 304 的次数
+     */
+    fun getNotModifiedCount(): Long {
+        return notModified.get()
+    }
+
+    /**
+     * 因 304 省下的 body 字节数
+     */
+    fun getBytesSaved(): Long {
+        return bytesSaved.get()
+    }
+
+    fun getSummary(): String {
+        val total = bytesSaved.get() + bytesDownloaded.get()
+        return String.format(
+            Locale.US, "revalidation: 304 %d, 200 %d, saved %d KB of %d KB (%.1f%%)",
+            notModified.get(), refreshed.get(), bytesSaved.get() / 1024, total / 1024,
+            if (total == 0L) 0.0 else bytesSaved.get() * 100.0 / total
+        )
+    }
+
+    private class Entry(
+        val key: String,
+        val type: Type,
+        val etag: String?,
+        val lastModified: String?,
+        val contentType: String?,
+        val size: Int,
+        val value: Any?
+    ) {
+        fun conditionalHeaders(): Map<String, String> {
+            val headers = HashMap<String, String>(2)
+            etag?.let { headers["If-None-Match"] = it }
+            lastModified?.let { headers["If-Modified-Since"] = it }
+            return headers
+        }
+    }
+
+    class Builder(internal val retrofit: Retrofit) {
+        internal var store: CacheDoubleUtils? = null
+        internal var decoded: CacheMemoryUtils? = null
+
+        /**
+         * 保存 body 和校验值，默认在 cache/revalidation 下
+         */
+        fun store(store: CacheDoubleUtils): Builder {
+            this.store = store
+            return this
+        }
+
+        /**
+         * 保存解析后的对象
+         */
+        fun decoded(decoded: CacheMemoryUtils): Builder {
+            this.decoded = decoded
+            return this
+        }
+
+        fun build(): RevalidationCache {
+            return RevalidationCache(this)
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "RevalidationCache"
+        private const val HTTP_NOT_MODIFIED = 304
+        private const val STORE_PREFIX = "revalidate_"
+        //"RVC1"
+        private const val MAGIC = 0x52564331
+        private val NO_ANNOTATIONS = arrayOf<Annotation>()
+    }
+}
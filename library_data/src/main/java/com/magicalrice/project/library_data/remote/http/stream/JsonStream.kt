@@ -0,0 +1,16 @@
+package com.magicalrice.project.library_data.remote.http.stream
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.stream
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 流式解析 JSON 列表
+ *
+ * 标注在返回 `Flowable<T>` 的 Retrofit 方法上，响应体边下载边解析，每解析出一个元素就发射一个，
+ * 下游请求多少才解析多少。[field] 为空时解析顶层数组，否则按 `.` 分隔的路径查找数组字段，如 `data.list`。
+ */
+
+@MustBeDocumented
+@Retention(AnnotationRetention.RUNTIME)
+@Target(AnnotationTarget.FUNCTION)
+annotation class JsonStream(val field: String = "")
@@ -0,0 +1,132 @@
+package com.magicalrice.project.library_data.remote.http.stream
+
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import com.google.gson.TypeAdapter
+import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import io.reactivex.Emitter
+import io.reactivex.Flowable
+import io.reactivex.functions.BiConsumer
+import io.reactivex.functions.Consumer
+import retrofit2.Call
+import retrofit2.CallAdapter
+import retrofit2.HttpException
+import retrofit2.Retrofit
+import java.lang.reflect.ParameterizedType
+import java.lang.reflect.Type
+import java.util.concurrent.Callable
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.stream
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 流式解析 JSON 列表的 CallAdapter
+ *
+ * 只处理标注了 [JsonStream] 且返回 `Flowable<T>` 的方法，需要放在 RxJava2CallAdapterFactory 之前注册，
+ * 并配合 [JsonStreamConverterFactory] 使用。订阅时同步执行请求，通常配合 `RxUtils.io_main_f()` 使用；
+ * 每次下游请求数据时才从响应体中读取下一个元素，取消订阅会关闭响应体并取消请求。
+ */
+
+class JsonStreamCallAdapterFactory private constructor(private val gson: Gson) : CallAdapter.Factory() {
+
+    override fun get(returnType: Type, annotations: Array<Annotation>, retrofit: Retrofit): CallAdapter<*, *>? {
+        if (getRawType(returnType) != Flowable::class.java) {
+            return null
+        }
+        val stream = annotations.firstOrNull { it is JsonStream } as JsonStream? ?: return null
+        if (returnType !is ParameterizedType) {
+            throw IllegalStateException("@JsonStream return type must be Flowable<T>")
+        }
+        val itemType = getParameterUpperBound(0, returnType)
+        val adapter = gson.getAdapter(TypeToken.get(itemType))
+        val path = if (stream.field.isEmpty()) emptyList() else stream.field.split('.')
+        return StreamCallAdapter(adapter, path)
+    }
+
+    private class StreamCallAdapter<T>(
+        private val adapter: TypeAdapter<T>,
+        private val path: List<String>
+    ) : CallAdapter<JsonStreamConverterFactory.StreamBody, Flowable<T>> {
+
+        override fun responseType(): Type {
+            return JsonStreamConverterFactory.StreamBody::class.java
+        }
+
+        override fun adapt(call: Call<JsonStreamConverterFactory.StreamBody>): Flowable<T> {
+            return Flowable.generate(
+                Callable { ItemReader(call.clone(), adapter, path) },
+                BiConsumer<ItemReader<T>, Emitter<T>> { reader, emitter -> reader.next(emitter) },
+                Consumer { reader -> reader.close() }
+            )
+        }
+    }
+
+    /**
+     * 订阅期间的解析状态，只在 generate 的回调中串行访问
+     */
+    private class ItemReader<T>(
+        private val call: Call<JsonStreamConverterFactory.StreamBody>,
+        private val adapter: TypeAdapter<T>,
+        private val path: List<String>
+    ) {
+        private var reader: JsonReader? = null
+
+        fun next(emitter: Emitter<T>) {
+            val reader = reader ?: open().also { reader = it }
+            while (reader.hasNext()) {
+                val item = adapter.read(reader)
+                if (item != null) {
+                    emitter.onNext(item)
+                    return
+                }
+            }
+            reader.endArray()
+            emitter.onComplete()
+        }
+
+        fun close() {
+            call.cancel()
+            reader?.close()
+        }
+
+        private fun open(): JsonReader {
+            val response = call.execute()
+            val body = response.body()
+            if (!response.isSuccessful || body == null) {
+                throw HttpException(response)
+            }
+            val reader = JsonReader(body.body.charStream())
+            this.reader = reader
+            for (name in path) {
+                seek(reader, name)
+            }
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw JsonParseException("Expected an array at '${path.joinToString(".")}' but was ${reader.peek()}")
+            }
+            reader.beginArray()
+            return reader
+        }
+
+        /**
+         * 进入当前对象，跳过其它字段直到 [name]
+         */
+        private fun seek(reader: JsonReader, name: String) {
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == name) {
+                    return
+                }
+                reader.skipValue()
+            }
+            throw JsonParseException("Field '$name' not found")
+        }
+    }
+
+    companion object {
+        fun create(gson: Gson): JsonStreamCallAdapterFactory {
+            return JsonStreamCallAdapterFactory(gson)
+        }
+    }
+}
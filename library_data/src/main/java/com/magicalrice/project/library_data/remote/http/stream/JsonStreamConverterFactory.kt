@@ -0,0 +1,41 @@
+package com.magicalrice.project.library_data.remote.http.stream
+
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.stream
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 流式解析使用的响应体转换器
+ *
+ * 只处理 [JsonStreamCallAdapterFactory] 声明的响应类型，不读取 body，原样交给 CallAdapter 逐个解析。
+ * 需要放在 GsonConverterFactory 之前注册。
+ */
+
+class JsonStreamConverterFactory private constructor() : Converter.Factory() {
+
+    override fun responseBodyConverter(
+        type: Type,
+        annotations: Array<Annotation>,
+        retrofit: Retrofit
+    ): Converter<ResponseBody, *>? {
+        if (type != StreamBody::class.java) {
+            return null
+        }
+        return Converter<ResponseBody, StreamBody> { StreamBody(it) }
+    }
+
+    /**
+     * 未读取的响应体
+     */
+    class StreamBody internal constructor(val body: ResponseBody)
+
+    companion object {
+        fun create(): JsonStreamConverterFactory {
+            return JsonStreamConverterFactory()
+        }
+    }
+}
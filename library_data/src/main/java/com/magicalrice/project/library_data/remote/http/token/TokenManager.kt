@@ -0,0 +1,156 @@
+package com.magicalrice.project.library_data.remote.http.token
+
+import com.magicalrice.project.library_base.base.SPUtils
+import com.magicalrice.project.library_base.base.log.LogUtils
+import okhttp3.Authenticator
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.Route
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.token
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description Token 管理
+ *
+ * token 常驻内存(volatile)，写入时同步落盘到 SPUtils，请求链路上不再读取 SharedPreferences。
+ * 401 时通过 [getAuthenticator] 刷新 token：并发失败的请求只会触发一次刷新，其余请求等待刷新结果后直接重放；
+ * 刷新失败时等待中的请求直接返回 401，不再各自重新刷新。
+ */
+
+object TokenManager {
+    private const val TAG = "TokenManager"
+    const val TOKEN_KEY = "token"
+    const val TOKEN_HEADER = "token"
+    //同一个请求最多重放次数，避免刷新出的token仍然无效时死循环
+    private const val MAX_AUTH_RETRY = 1
+
+    @Volatile
+    private var token: String? = null
+    @Volatile
+    private var refresher: TokenRefresher? = null
+    private val refreshLock = Any()
+    //已完成的刷新次数(成功或失败)，在 refreshLock 内递增
+    @Volatile
+    private var refreshCount = 0
+
+    /**
+     * 获取当前token，首次调用时从本地加载
+     */
+    fun getToken(): String {
+        var current = token
+        if (current == null) {
+            synchronized(refreshLock) {
+                current = token
+                if (current == null) {
+                    current = SPUtils.getInstance().get(TOKEN_KEY, "") as String
+                    token = current
+                }
+            }
+        }
+        return current!!
+    }
+
+    /**
+     * 更新token，内存立即生效，本地异步写入
+     */
+    fun setToken(newToken: String) {
+        token = newToken
+        SPUtils.getInstance().putApply(TOKEN_KEY, newToken)
+    }
+
+    fun clearToken() {
+        token = ""
+        SPUtils.getInstance().removeApply(TOKEN_KEY)
+    }
+
+    /**
+     * 设置token刷新器，未设置时401直接交给上层处理
+     */
+    fun setRefresher(refresher: TokenRefresher?) {
+        this.refresher = refresher
+    }
+
+    /**
+     * 为请求添加token头
+     */
+    fun getInterceptor(): Interceptor {
+        return TokenInterceptor
+    }
+
+    fun getAuthenticator(): Authenticator {
+        return TokenAuthenticator
+    }
+
+    private object TokenInterceptor : Interceptor {
+        override fun intercept(chain: Interceptor.Chain): Response {
+            val request = chain.request().newBuilder()
+                .header(TOKEN_HEADER, getToken())
+                .build()
+            return chain.proceed(request)
+        }
+    }
+
+    private object TokenAuthenticator : Authenticator {
+        override fun authenticate(route: Route?, response: Response): Request? {
+            val currentRefresher = refresher ?: return null
+            if (responseCount(response) > MAX_AUTH_RETRY) {
+                return null
+            }
+            val failedToken = response.request().header(TOKEN_HEADER) ?: ""
+            val seenCount = refreshCount
+            val freshToken: String? = synchronized(refreshLock) {
+                val latest = getToken()
+                if (latest.isNotEmpty() && latest != failedToken) {
+                    //其他请求已经刷新过token，直接使用新token重放
+                    latest
+                } else if (refreshCount != seenCount) {
+                    //等待期间其他请求刚刷新失败，不再重复刷新
+                    null
+                } else {
+                    try {
+                        val refreshed = currentRefresher.refresh(failedToken)
+                        if (refreshed.isNullOrEmpty()) {
+                            null
+                        } else {
+                            setToken(refreshed)
+                            refreshed
+                        }
+                    } catch (e: Exception) {
+                        LogUtils.eTag(TAG, "refresh token failed", e)
+                        null
+                    } finally {
+                        refreshCount++
+                    }
+                }
+            }
+            return freshToken?.let {
+                response.request().newBuilder()
+                    .header(TOKEN_HEADER, it)
+                    .build()
+            }
+        }
+
+        private fun responseCount(response: Response): Int {
+            var count = 0
+            var prior = response.priorResponse()
+            while (prior != null) {
+                count++
+                prior = prior.priorResponse()
+            }
+            return count + 1
+        }
+    }
+
+    /**
+     * token刷新器，在OkHttp线程中同步调用
+     */
+    interface TokenRefresher {
+        /**
+         * @param staleToken 已失效的token
+         * @return 新token，返回null或空串表示刷新失败
+         */
+        fun refresh(staleToken: String): String?
+    }
+}
@@ -0,0 +1,79 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import java.io.InterruptedIOException
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 全局带宽限制
+ *
+ * 令牌桶，多个传输共用一个实例时总速率不超过 bytesPerSecond。
+ * [acquire] 先扣减令牌再在锁外等待，令牌不足时欠下的部分由之后的调用依次等待，不会因为抢锁而饿死。
+ * 桶容量为 100ms 的流量(至少 64KB)，空闲后的突发不会超过该值。
+ */
+
+class BandwidthLimiter(bytesPerSecond: Long = 0) {
+    @Volatile
+    private var rate = bytesPerSecond
+    private var available = 0L
+    private var lastRefill = System.nanoTime()
+
+    /**
+     * 修改速率，0 表示不限速
+     */
+    fun setRate(bytesPerSecond: Long) {
+        synchronized(this) {
+            refill(System.nanoTime())
+            rate = bytesPerSecond
+            available = minOf(available, burst())
+        }
+    }
+
+    fun getRate(): Long {
+        return rate
+    }
+
+    /**
+     * 申请发送 bytes 字节，超出速率时阻塞
+     */
+    @Throws(InterruptedIOException::class)
+    fun acquire(bytes: Int) {
+        if (rate <= 0) {
+            return
+        }
+        val waitNanos = synchronized(this) {
+            val rate = rate
+            if (rate <= 0) return
+            val now = System.nanoTime()
+            refill(now)
+            available -= bytes
+            if (available >= 0) 0L else -available * 1_000_000_000L / rate
+        }
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1_000_000, (waitNanos % 1_000_000).toInt())
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                throw InterruptedIOException("interrupted while throttled")
+            }
+        }
+    }
+
+    private fun refill(now: Long) {
+        //最多按 1 秒补充，已足够填满桶，也避免乘法溢出
+        val elapsed = minOf(now - lastRefill, 1_000_000_000L)
+        lastRefill = now
+        if (rate > 0 && elapsed > 0) {
+            available = minOf(available + elapsed * rate / 1_000_000_000L, burst())
+        }
+    }
+
+    private fun burst(): Long {
+        return maxOf(rate / 10, MIN_BURST)
+    }
+
+    companion object {
+        private const val MIN_BURST = 64 * 1024L
+    }
+}
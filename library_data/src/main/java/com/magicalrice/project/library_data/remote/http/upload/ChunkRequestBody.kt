@@ -0,0 +1,56 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.Okio
+import java.io.FileInputStream
+import java.io.IOException
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 文件中的一段，写出时直接从磁盘读取
+ *
+ * 通过 FileChannel 定位到 offset，每次最多读写 [STEP] 字节，数据只经过 okio 的分段缓存，不创建整块或整个文件大小的数组。
+ * 每一步写出前向 [BandwidthLimiter] 申请配额，写出后直接更新任务进度(参数为基本类型，不装箱)。
+ * OkHttp 重试时可能多次调用 writeTo，每次都从分片开头重新计算进度。
+ */
+
+internal class ChunkRequestBody(
+    private val task: UploadTask,
+    private val offset: Long,
+    private val length: Long,
+    private val contentType: MediaType?,
+    private val engine: UploadEngine
+) : RequestBody() {
+
+    override fun contentType(): MediaType? {
+        return contentType
+    }
+
+    override fun contentLength(): Long {
+        return length
+    }
+
+    @Throws(IOException::class)
+    override fun writeTo(sink: BufferedSink) {
+        FileInputStream(task.file).use { input ->
+            input.channel.position(offset)
+            val source = Okio.source(input)
+            var remaining = length
+            while (remaining > 0) {
+                val step = minOf(remaining, STEP)
+                engine.limiter.acquire(step.toInt())
+                sink.write(source, step)
+                remaining -= step
+                engine.onBytesWritten(task, offset + length - remaining)
+            }
+        }
+    }
+
+    companion object {
+        private const val STEP = 8 * 1024L
+    }
+}
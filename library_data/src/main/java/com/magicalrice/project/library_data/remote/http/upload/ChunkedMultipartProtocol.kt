@@ -0,0 +1,49 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import okhttp3.MultipartBody
+import okhttp3.Request
+import okhttp3.RequestBody
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 每个分片一个 multipart 请求
+ *
+ * 表单字段：uploadId、fileName、totalSize、chunkIndex、chunkCount、offset 和 [params] 中的额外字段，
+ * 文件字段为 [fileField]，内容只包含当前分片；同时带 `Content-Range: bytes start-end/total` 请求头。
+ * 服务端按 uploadId 和 offset 写入，重复收到同一分片时覆盖即可，最后一个分片的响应 body 作为上传结果。
+ */
+
+class ChunkedMultipartProtocol @JvmOverloads constructor(
+    private val url: String,
+    private val fileField: String = "file",
+    private val params: Map<String, String> = emptyMap()
+) : UploadProtocol {
+
+    override fun target(): String {
+        return url
+    }
+
+    override fun newChunkRequest(task: UploadTask, offset: Long, chunk: RequestBody): Request {
+        val length = chunk.contentLength()
+        val builder = MultipartBody.Builder()
+            .setType(MultipartBody.FORM)
+            .addFormDataPart("uploadId", task.uploadId)
+            .addFormDataPart("fileName", task.file.name)
+            .addFormDataPart("totalSize", task.totalBytes.toString())
+            .addFormDataPart("chunkIndex", task.chunkIndex(offset).toString())
+            .addFormDataPart("chunkCount", task.chunkCount().toString())
+            .addFormDataPart("offset", offset.toString())
+        for ((key, value) in params) {
+            builder.addFormDataPart(key, value)
+        }
+        builder.addFormDataPart(fileField, task.file.name, chunk)
+        val range = if (length > 0) "$offset-${offset + length - 1}" else "*"
+        return Request.Builder()
+            .url(url)
+            .header("Content-Range", "bytes $range/${task.totalBytes}")
+            .post(builder.build())
+            .build()
+    }
+}
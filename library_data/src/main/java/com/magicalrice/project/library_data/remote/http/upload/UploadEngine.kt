@@ -0,0 +1,322 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import com.magicalrice.project.library_base.base.log.LogUtils
+import com.magicalrice.project.library_data.remote.http.metrics.NetworkMetrics
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import java.io.File
+import java.io.IOException
+import java.security.MessageDigest
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 分片续传上传
+ *
+ * 文件按 chunkSize 切成分片依次上传，每个分片直接从磁盘流式读取(见 [ChunkRequestBody])，不把文件读进内存。
+ * 每个分片被服务端确认后，把已确认字节数写入 stateDir 下的状态文件；网络中断时按退避重试当前分片，
+ * 重试用尽后任务失败但保留状态，之后调用 [resume]，或进程重启后对同一文件和地址再次调用 [upload]，都从已确认的位置继续。
+ * 最多 maxParallel 个文件同时上传，所有任务共用一个 [BandwidthLimiter]。
+ *
+ * 请求协议由 [UploadProtocol] 决定，默认使用 [ChunkedMultipartProtocol]。
+ */
+
+class UploadEngine private constructor(builder: Builder) {
+    private val client = builder.client
+    private val stateDir = builder.stateDir
+    private val chunkSize = builder.chunkSize
+    private val maxRetries = builder.maxRetries
+    private val contentType = builder.contentType
+    internal val limiter = BandwidthLimiter(builder.bytesPerSecond)
+    private val tasks = ConcurrentHashMap<String, UploadTask>()
+    private val executor = ThreadPoolExecutor(
+        builder.maxParallel, builder.maxParallel, 30, TimeUnit.SECONDS, LinkedBlockingQueue()
+    ) { runnable ->
+        Thread(runnable, "Upload-${THREAD_ID.incrementAndGet()}").apply { isDaemon = true }
+    }.apply { allowCoreThreadTimeOut(true) }
+
+    /**
+     * 上传文件，同一文件上传到同一地址的任务未结束时返回已有任务；有匹配的续传状态时从已确认的位置继续
+     */
+    @JvmOverloads
+    fun upload(file: File, protocol: UploadProtocol, listener: UploadListener? = null): UploadTask {
+        val key = stateKey(file, protocol)
+        synchronized(tasks) {
+            tasks[key]?.let {
+                if (it.status == UploadTask.Status.WAITING || it.status == UploadTask.Status.RUNNING) return it
+            }
+            val state = UploadState(File(stateDir, "$key.state"))
+            val snapshot = state.read(file)
+            val task = UploadTask(
+                file, snapshot?.uploadId ?: UUID.randomUUID().toString(), file.length(),
+                snapshot?.chunkSize ?: chunkSize, protocol, listener, state
+            )
+            if (snapshot != null) {
+                task.confirmedBytes = snapshot.confirmed
+                task.uploadedBytes = snapshot.confirmed
+                LogUtils.dTag(LOG_TAG, "resume ${file.name} from ${snapshot.confirmed}/${task.totalBytes}")
+            } else {
+                try {
+                    state.create(file, task.uploadId, task.chunkSize)
+                } catch (e: IOException) {
+                    //状态文件写不了只影响续传，不影响本次上传
+                    LogUtils.eTag(LOG_TAG, "Failed to create upload state for ${file.name}", e)
+                }
+            }
+            tasks[key] = task
+            start(task)
+            return task
+        }
+    }
+
+    /**
+     * 继续已暂停或失败的任务
+     */
+    fun resume(task: UploadTask) {
+        if (task.status == UploadTask.Status.PAUSED || task.status == UploadTask.Status.FAILED) {
+            start(task)
+        }
+    }
+
+    /**
+     * 暂停任务，正在上传的分片中断，已确认的进度保留
+     */
+    fun pause(task: UploadTask) {
+        if (task.status == UploadTask.Status.WAITING || task.status == UploadTask.Status.RUNNING) {
+            task.status = UploadTask.Status.PAUSED
+            task.runToken?.countDown()
+            task.call?.cancel()
+        }
+    }
+
+    /**
+     * 取消任务并删除续传状态
+     */
+    fun cancel(task: UploadTask) {
+        task.status = UploadTask.Status.CANCELED
+        task.runToken?.countDown()
+        task.call?.cancel()
+        task.state.delete()
+        tasks.values.remove(task)
+    }
+
+    /**
+     * 所有任务共用的带宽上限，0 表示不限速
+     */
+    fun setBandwidthLimit(bytesPerSecond: Long) {
+        limiter.setRate(bytesPerSecond)
+    }
+
+    fun getTasks(): List<UploadTask> {
+        return ArrayList(tasks.values)
+    }
+
+    internal fun onBytesWritten(task: UploadTask, position: Long) {
+        task.uploadedBytes = position
+        val listener = task.listener ?: return
+        val now = System.nanoTime()
+        if (position - task.lastReportedBytes >= task.totalBytes / 100
+            || now - task.lastReportedNanos >= PROGRESS_INTERVAL_NANOS
+            || position == task.totalBytes
+        ) {
+            task.lastReportedBytes = position
+            task.lastReportedNanos = now
+            listener.onProgress(task, position, task.totalBytes)
+        }
+    }
+
+    private fun start(task: UploadTask) {
+        val token = CountDownLatch(1)
+        task.runToken?.countDown()
+        task.runToken = token
+        task.status = UploadTask.Status.WAITING
+        task.error = null
+        executor.execute { run(task, token) }
+    }
+
+    /**
+     * 暂停后又继续时，上一次运行可能还在请求或退避中，不再是当前运行的线程直接退出
+     */
+    private fun isCurrent(task: UploadTask, token: CountDownLatch): Boolean {
+        return task.runToken === token && task.status == UploadTask.Status.RUNNING
+    }
+
+    private fun run(task: UploadTask, token: CountDownLatch) {
+        if (task.runToken !== token || task.status != UploadTask.Status.WAITING) {
+            return
+        }
+        task.status = UploadTask.Status.RUNNING
+        var failures = 0
+        var offset = task.confirmedBytes
+        while (isCurrent(task, token)) {
+            val length = minOf(task.chunkSize.toLong(), task.totalBytes - offset)
+            try {
+                val body = ChunkRequestBody(task, offset, length, contentType, this)
+                val call = client.newCall(task.protocol.newChunkRequest(task, offset, body))
+                NetworkMetrics.excludeFromBandwidth(call)
+                task.call = call
+                //pause 可能发生在 call 赋值之前
+                if (!isCurrent(task, token)) {
+                    call.cancel()
+                }
+                val confirmed = call.execute().use { response ->
+                    if (!response.isSuccessful && response.code() != HTTP_RESUME_INCOMPLETE) {
+                        throw HttpStatusException(response.code())
+                    }
+                    val confirmed = task.protocol.confirmedOffset(task, response, offset, length)
+                    if (confirmed >= task.totalBytes) {
+                        task.result = response.body()?.string()
+                    }
+                    confirmed
+                }
+                if (!isCurrent(task, token)) {
+                    return
+                }
+                if (confirmed <= offset && length > 0) {
+                    throw IOException("No progress confirmed at $offset")
+                }
+                offset = confirmed
+                task.confirmedBytes = offset
+                task.uploadedBytes = offset
+                failures = 0
+                if (offset >= task.totalBytes) {
+                    complete(task)
+                    return
+                }
+                saveConfirmed(task, offset)
+            } catch (e: IOException) {
+                if (!isCurrent(task, token)) {
+                    return
+                }
+                task.uploadedBytes = task.confirmedBytes
+                failures++
+                if (e is HttpStatusException && !e.isRetryable() || failures > maxRetries) {
+                    fail(task, e)
+                    return
+                }
+                LogUtils.dTag(LOG_TAG, "${task.file.name} chunk at $offset failed ($failures): ${e.message}")
+                try {
+                    //暂停或取消时立即醒来
+                    if (token.await(minOf(MIN_RETRY_DELAY_MS shl minOf(failures - 1, 16), MAX_RETRY_DELAY_MS), TimeUnit.MILLISECONDS)) {
+                        return
+                    }
+                } catch (ie: InterruptedException) {
+                    fail(task, e)
+                    return
+                }
+            } finally {
+                if (task.runToken === token) {
+                    task.call = null
+                }
+            }
+        }
+    }
+
+    private fun saveConfirmed(task: UploadTask, offset: Long) {
+        try {
+            task.state.updateConfirmed(offset)
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Failed to save upload progress of ${task.file.name}", e)
+        }
+    }
+
+    private fun complete(task: UploadTask) {
+        task.state.delete()
+        task.status = UploadTask.Status.COMPLETED
+        tasks.values.remove(task)
+        task.listener?.onComplete(task, task.result)
+    }
+
+    private fun fail(task: UploadTask, error: Throwable) {
+        LogUtils.eTag(LOG_TAG, "Upload ${task.file.name} failed at ${task.confirmedBytes}/${task.totalBytes}", error)
+        task.error = error
+        task.status = UploadTask.Status.FAILED
+        task.listener?.onFailed(task, error)
+    }
+
+    private fun stateKey(file: File, protocol: UploadProtocol): String {
+        val digest = MessageDigest.getInstance("MD5")
+            .digest((file.absolutePath + "|" + protocol.target()).toByteArray(Charsets.UTF_8))
+        val sb = StringBuilder(digest.size * 2)
+        for (b in digest) {
+            val v = b.toInt() and 0xff
+            if (v < 16) sb.append('0')
+            sb.append(Integer.toHexString(v))
+        }
+        return sb.toString()
+    }
+
+    /**
+     * 分片请求返回了非 2xx/308 状态码，408、429 和 5xx 会重试
+     */
+    class HttpStatusException(val code: Int) : IOException("HTTP $code") {
+        fun isRetryable(): Boolean {
+            return code == 408 || code == 429 || code >= 500
+        }
+    }
+
+    class Builder(internal val client: OkHttpClient, internal val stateDir: File) {
+        internal var chunkSize = 512 * 1024
+        internal var maxParallel = 3
+        internal var maxRetries = 5
+        internal var bytesPerSecond = 0L
+        internal var contentType: MediaType? = MediaType.parse("application/octet-stream")
+
+        fun chunkSize(bytes: Int): Builder {
+            require(bytes > 0) { "bytes <= 0" }
+            this.chunkSize = bytes
+            return this
+        }
+
+        /**
+         * 同时上传的文件数
+         */
+        fun maxParallel(count: Int): Builder {
+            require(count > 0) { "count <= 0" }
+            this.maxParallel = count
+            return this
+        }
+
+        /**
+         * 单个分片连续失败的重试次数，分片成功后重新计数
+         */
+        fun maxRetries(count: Int): Builder {
+            this.maxRetries = count
+            return this
+        }
+
+        /**
+         * 所有任务共用的带宽上限，0 表示不限速
+         */
+        fun bandwidthLimit(bytesPerSecond: Long): Builder {
+            this.bytesPerSecond = bytesPerSecond
+            return this
+        }
+
+        fun contentType(contentType: MediaType?): Builder {
+            this.contentType = contentType
+            return this
+        }
+
+        fun build(): UploadEngine {
+            return UploadEngine(this)
+        }
+    }
+
+    companion object {
+        private const val LOG_TAG = "UploadEngine"
+        private const val HTTP_RESUME_INCOMPLETE = 308
+        private const val MIN_RETRY_DELAY_MS = 1_000L
+        private const val MAX_RETRY_DELAY_MS = 30_000L
+        private val PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200)
+        private val THREAD_ID = AtomicInteger()
+    }
+}
@@ -0,0 +1,21 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 上传回调，均在上传线程调用
+ *
+ * [onProgress] 只传基本类型，不创建事件对象；回调频率受限，已发出字节每增加 1% 或间隔 200ms 才回调一次。
+ */
+
+interface UploadListener {
+    fun onProgress(task: UploadTask, uploadedBytes: Long, totalBytes: Long)
+
+    fun onComplete(task: UploadTask, result: String?)
+
+    /**
+     * 重试用尽后失败，已确认的进度保留，可调用 UploadEngine.resume 续传
+     */
+    fun onFailed(task: UploadTask, error: Throwable)
+}
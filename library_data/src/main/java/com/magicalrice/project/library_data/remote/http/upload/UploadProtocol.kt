@@ -0,0 +1,33 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.Response
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 分片上传与服务端的约定
+ *
+ * 默认实现见 [ChunkedMultipartProtocol]，接口不同的服务端实现这个接口即可。
+ */
+
+interface UploadProtocol {
+    /**
+     * 用于区分同一文件上传到不同地址时的续传状态
+     */
+    fun target(): String
+
+    /**
+     * 构造上传 [offset] 开始的一个分片的请求，[chunk] 为流式读取文件的 body，长度为 chunk.contentLength()
+     */
+    fun newChunkRequest(task: UploadTask, offset: Long, chunk: RequestBody): Request
+
+    /**
+     * 分片响应成功后服务端已确认的字节数，用于服务端只接收了部分数据的情况，默认整个分片都已确认
+     */
+    fun confirmedOffset(task: UploadTask, response: Response, offset: Long, length: Long): Long {
+        return offset + length
+    }
+}
@@ -0,0 +1,88 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import com.magicalrice.project.library_base.base.log.LogUtils
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 上传任务的续传状态文件
+ *
+ * 文件结构：魔数、已确认字节数、文件长度、文件修改时间、分片大小、uploadId、文件路径，共几十字节。
+ * 已确认字节数位于固定位置，每个分片完成后原地覆盖 8 字节并 fsync。
+ * 文件长度或修改时间与记录不一致时视为新文件，重新上传。
+ */
+
+internal class UploadState(private val file: File) {
+
+    class Snapshot(val confirmed: Long, val uploadId: String, val chunkSize: Int)
+
+    /**
+     * 读取与 [source] 匹配的状态，不存在或已失效时返回 null
+     */
+    fun read(source: File): Snapshot? {
+        if (!file.exists()) {
+            return null
+        }
+        try {
+            RandomAccessFile(file, "r").use {
+                if (it.readInt() != MAGIC) return null
+                val confirmed = it.readLong()
+                val length = it.readLong()
+                val lastModified = it.readLong()
+                val chunkSize = it.readInt()
+                val uploadId = it.readUTF()
+                val path = it.readUTF()
+                if (path != source.absolutePath || length != source.length() || lastModified != source.lastModified()) {
+                    return null
+                }
+                if (confirmed < 0 || confirmed > length || chunkSize <= 0) {
+                    return null
+                }
+                return Snapshot(confirmed, uploadId, chunkSize)
+            }
+        } catch (e: IOException) {
+            LogUtils.eTag(LOG_TAG, "Discarding unreadable upload state ${file.name}", e)
+            return null
+        }
+    }
+
+    @Throws(IOException::class)
+    fun create(source: File, uploadId: String, chunkSize: Int) {
+        file.parentFile?.mkdirs()
+        RandomAccessFile(file, "rw").use {
+            it.setLength(0)
+            it.writeInt(MAGIC)
+            it.writeLong(0)
+            it.writeLong(source.length())
+            it.writeLong(source.lastModified())
+            it.writeInt(chunkSize)
+            it.writeUTF(uploadId)
+            it.writeUTF(source.absolutePath)
+            it.fd.sync()
+        }
+    }
+
+    @Throws(IOException::class)
+    fun updateConfirmed(confirmed: Long) {
+        RandomAccessFile(file, "rw").use {
+            it.seek(CONFIRMED_POSITION)
+            it.writeLong(confirmed)
+            it.fd.sync()
+        }
+    }
+
+    fun delete() {
+        file.delete()
+    }
+
+    companion object {
+        private const val LOG_TAG = "UploadState"
+        //"UPS1"
+        private const val MAGIC = 0x55505331
+        private const val CONFIRMED_POSITION = 4L
+    }
+}
@@ -0,0 +1,78 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import okhttp3.Call
+import java.io.File
+import java.util.concurrent.CountDownLatch
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.upload
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 一个文件的上传任务
+ *
+ * 进度字段在上传线程更新，其它线程读取到的是最近一次写入的值。
+ */
+
+class UploadTask internal constructor(
+    val file: File,
+    /**
+     * 上传会话 id，续传时沿用，服务端据此拼接分片
+     */
+    val uploadId: String,
+    val totalBytes: Long,
+    val chunkSize: Int,
+    internal val protocol: UploadProtocol,
+    internal val listener: UploadListener?,
+    internal val state: UploadState
+) {
+    enum class Status {
+        WAITING, RUNNING, PAUSED, FAILED, COMPLETED, CANCELED
+    }
+
+    @Volatile
+    var status = Status.WAITING
+        internal set
+    /**
+     * 服务端已确认的字节数，持久化在状态文件中
+     */
+    @Volatile
+    var confirmedBytes = 0L
+        internal set
+    /**
+     * 已发出的字节数，包括当前分片中未确认的部分
+     */
+    @Volatile
+    var uploadedBytes = 0L
+        internal set
+    /**
+     * 最后一个分片的响应 body
+     */
+    @Volatile
+    var result: String? = null
+        internal set
+    @Volatile
+    var error: Throwable? = null
+        internal set
+
+    @Volatile
+    internal var call: Call? = null
+    /**
+     * 当前这次运行的标记，每次开始时换新；暂停、取消时 countDown，唤醒退避中的上传线程，旧的运行随之退出
+     */
+    @Volatile
+    internal var runToken: CountDownLatch? = null
+    internal var lastReportedBytes = 0L
+    internal var lastReportedNanos = 0L
+
+    fun chunkCount(): Int {
+        return ((totalBytes + chunkSize - 1) / chunkSize).toInt().coerceAtLeast(1)
+    }
+
+    fun chunkIndex(offset: Long): Int {
+        return (offset / chunkSize).toInt()
+    }
+
+    override fun toString(): String {
+        return "UploadTask(${file.name}, $uploadId, $status, $uploadedBytes/$totalBytes)"
+    }
+}
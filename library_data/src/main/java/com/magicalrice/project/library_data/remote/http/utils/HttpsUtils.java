@@ -15,8 +15,14 @@
  */
 package com.magicalrice.project.library_data.remote.http.utils;
 
+import android.net.SSLSessionCache;
+
+import com.magicalrice.project.library_base.base.log.LogUtils;
+
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
@@ -30,20 +36,54 @@ import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 
 public class HttpsUtils {
+    private static final String TAG = "HttpsUtils";
+    //客户端会话缓存条数和有效期，服务端的 ticket 有效期通常更短，以服务端为准
+    private static final int SESSION_CACHE_SIZE = 100;
+    private static final int SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+    private static volatile SSLParams defaultParams;
 
     public static class SSLParams {
         public SSLSocketFactory sSLSocketFactory;
         public X509TrustManager trustManager;
+        public SSLContext sslContext;
     }
 
+    /**
+     * 进程内共用同一个 SSLContext，所有 client 共享 TLS 会话缓存，新连接可以恢复会话，跳过完整握手
+     */
     public static SSLParams getSslSocketFactory() {
-        return getSslSocketFactoryBase(null, null, null);
+        SSLParams params = defaultParams;
+        if (params == null) {
+            synchronized (HttpsUtils.class) {
+                if (defaultParams == null) {
+                    defaultParams = getSslSocketFactoryBase(null, null, null);
+                }
+                params = defaultParams;
+            }
+        }
+        return params;
+    }
+
+    /**
+     * 将默认 SSLContext 的会话缓存持久化到 dir，进程重启后第一个连接也能恢复会话。
+     * 依赖系统的隐藏接口 SSLSessionCache.install，不可用时返回 false，仍使用内存中的会话缓存
+     */
+    public static boolean installPersistentSessionCache(File dir) {
+        try {
+            Method install = SSLSessionCache.class.getMethod("install", SSLSessionCache.class, SSLContext.class);
+            install.invoke(null, new SSLSessionCache(dir), getSslSocketFactory().sslContext);
+            return true;
+        } catch (Exception e) {
+            LogUtils.INSTANCE.wTag(TAG, "Persistent TLS session cache unavailable", e);
+            return false;
+        }
     }
 
     /**
@@ -101,9 +141,13 @@ public class HttpsUtils {
             // 用上面得到的trustManagers初始化SSLContext，这样sslContext就会信任keyStore中的证书
             // 第一个参数是授权的密钥管理器，用来授权验证，比如授权自签名的证书验证。第二个是被授权的证书管理器，用来验证服务器端的证书
             sslContext.init(keyManagers, new TrustManager[]{manager}, null);
+            SSLSessionContext sessions = sslContext.getClientSessionContext();
+            sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
             // 通过sslContext获取SSLSocketFactory对象
             sslParams.sSLSocketFactory = sslContext.getSocketFactory();
             sslParams.trustManager = manager;
+            sslParams.sslContext = sslContext;
             return sslParams;
         } catch (NoSuchAlgorithmException e) {
             throw new AssertionError(e);
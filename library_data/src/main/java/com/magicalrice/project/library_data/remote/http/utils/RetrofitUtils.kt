@@ -1,17 +1,38 @@
 package com.magicalrice.project.library_data.remote.http.utils
 
-import com.google.gson.GsonBuilder
 import com.magicalrice.project.library_base.base.AppManager
-import com.magicalrice.project.library_base.base.SPUtils
+import com.magicalrice.project.library_base.base.NetworkUtils
+import com.magicalrice.project.library_base.base.bandwidth.BandwidthEstimator
+import com.magicalrice.project.library_base.base.bandwidth.QualityTier
 import com.magicalrice.project.library_base.base.log.LogUtils
+import com.magicalrice.project.library_data.GsonUtils
+import com.magicalrice.project.library_data.bean.NetErrorBean
+import com.magicalrice.project.library_data.remote.http.cbor.CborConverterFactory
+import com.magicalrice.project.library_data.remote.http.coalesce.CoalescingCallAdapterFactory
+import com.magicalrice.project.library_data.remote.http.coalesce.CoalescingInterceptor
 import com.magicalrice.project.library_data.remote.http.cookie.CookieJarImpl
-import com.magicalrice.project.library_data.remote.http.cookie.store.PersistentCookieStore
+import com.magicalrice.project.library_data.remote.http.cookie.store.BinaryCookieStore
+import com.magicalrice.project.library_data.remote.http.dispatch.PriorityDispatcher
+import com.magicalrice.project.library_data.remote.http.dns.CachingDns
+import com.magicalrice.project.library_data.remote.http.interceptor.GzipRequestInterceptor
+import com.magicalrice.project.library_data.remote.http.download.DownloadManager
 import com.magicalrice.project.library_data.remote.http.interceptor.CacheInterceptor
 import com.magicalrice.project.library_data.remote.http.interceptor.logging.Level
 import com.magicalrice.project.library_data.remote.http.interceptor.logging.LoggingInterceptor
+import com.magicalrice.project.library_data.remote.http.metrics.NetworkMetrics
+import com.magicalrice.project.library_data.remote.http.outbox.OfflineOutbox
+import com.magicalrice.project.library_data.remote.http.resilience.ResilienceMetrics
+import com.magicalrice.project.library_data.remote.http.resilience.RetryInterceptor
+import com.magicalrice.project.library_data.remote.http.stream.JsonStreamCallAdapterFactory
+import com.magicalrice.project.library_data.remote.http.stream.JsonStreamConverterFactory
+import com.magicalrice.project.library_data.remote.http.token.TokenManager
+import com.magicalrice.project.library_data.remote.http.upload.UploadEngine
+import com.magicalrice.project.library_data.remote.http.warmup.ConnectionWarmer
 import com.magicalrice.project.library_third_internal.BuildConfig
+import io.reactivex.schedulers.Schedulers
 import okhttp3.Cache
 import okhttp3.ConnectionPool
+import okhttp3.HttpUrl
 import okhttp3.OkHttpClient
 import okhttp3.internal.platform.Platform
 import okhttp3.logging.HttpLoggingInterceptor
@@ -30,6 +51,51 @@ object RetrofitUtils {
     private val mContext = AppManager.getInstance().getApp()
     private var cache: Cache? = null
     private var httpCacheDirectory: File? = null
+    //进行中的请求表，所有 client 共用
+    private val coalescingInterceptor = CoalescingInterceptor()
+    //熔断状态按 host 记录，所有 client 共用
+    private val retryInterceptor = RetryInterceptor.Builder().build()
+    //按优先级排队，所有 client 共用同一个队列
+    private val priorityDispatcher = PriorityDispatcher()
+    private val okHttpDispatcher = priorityDispatcher.createOkHttpDispatcher()
+    //DNS 缓存，所有 client 共用，NetworkUtils.getDomainAddress 也使用它；网络切换时清空
+    private val dns = CachingDns.Builder().build().also {
+        NetworkUtils.setDomainResolver(it)
+        it.registerNetworkReceiver(mContext)
+    }
+    //分阶段耗时统计，所有 client 共用，debug 包每 5 分钟输出一次；响应体传输速率同时用于带宽估算
+    private val networkMetrics = NetworkMetrics(BandwidthEstimator.getInstance()).apply {
+        if (BuildConfig.DEBUG) startReporting(5, TimeUnit.MINUTES)
+    }
+    //请求体 gzip 压缩，默认不对任何 host 生效，通过 enableRequestGzip 登记
+    private val gzipRequestInterceptor = GzipRequestInterceptor.Builder().build()
+    //连接池所有 client 共用，预热的连接才能被业务请求复用
+    private val connectionPool = ConnectionPool(8, 5, TimeUnit.MINUTES)
+    //前台时预热已注册的 base url，进入后台 30s 后释放空闲连接
+    private val connectionWarmer = ConnectionWarmer.Builder()
+        .foreground(AppManager.getInstance().isAppForeground())
+        .build()
+        .also { AppManager.getInstance().addOnAppStatusChangedListener(it) }
+    //离线写请求队列，网络恢复或回到前台时回放
+    private val offlineOutbox = OfflineOutbox.getInstance(mContext)
+        .also { AppManager.getInstance().addOnAppStatusChangedListener(it) }
+
+    //分片续传上传，续传状态保存在 files/uploads 下
+    private val uploadEngine by lazy {
+        UploadEngine.Builder(getOkHttpClientBuilder(), File(mContext.filesDir, "uploads")).build()
+    }
+
+    //分段续传下载，续传状态保存在 files/downloads 下
+    private val downloadManager by lazy {
+        DownloadManager.Builder(getOkHttpClientBuilder(), File(mContext.filesDir, "downloads")).build()
+    }
+
+    init {
+        //TLS 会话持久化到 cache/tls_sessions，冷启动后的第一个连接也能恢复会话，系统不支持时只用内存缓存
+        HttpsUtils.installPersistentSessionCache(File(mContext.cacheDir, "tls_sessions"))
+        //错误体解析用到的 TypeAdapter 在后台预先创建，第一次请求失败时不用再创建
+        Schedulers.io().scheduleDirect { GsonUtils.prewarm(NetErrorBean::class.java) }
+    }
 
     fun getOkHttpClientBuilder(): OkHttpClient {
         val logIntercepter = HttpLoggingInterceptor {
@@ -68,7 +134,7 @@ object RetrofitUtils {
         return OkHttpClient.Builder()
             .cookieJar(
                 CookieJarImpl(
-                    PersistentCookieStore(
+                    BinaryCookieStore.getInstance(
                         mContext
                     )
                 )
@@ -81,12 +147,15 @@ object RetrofitUtils {
                     mContext
                 )
             )
-            .addInterceptor {
-                val request = it.request().newBuilder()
-                val token = SPUtils.getInstance().get("token", "") as String
-                request.addHeader("token", token)
-                return@addInterceptor it.proceed(request.build())
-            }
+            .dispatcher(okHttpDispatcher)
+            .dns(dns)
+            .eventListenerFactory(networkMetrics.eventListenerFactory())
+            .addInterceptor(offlineOutbox.getInterceptor())
+            .addInterceptor(priorityDispatcher.getInterceptor())
+            .addInterceptor(TokenManager.getInterceptor())
+            .addInterceptor(coalescingInterceptor)
+            .addInterceptor(retryInterceptor)
+            .authenticator(TokenManager.getAuthenticator())
             .addInterceptor(
                 LoggingInterceptor.Builder()
                     .loggable(BuildConfig.DEBUG) //是否开启日志打印
@@ -100,20 +169,88 @@ object RetrofitUtils {
                     ) // 添加打印头, 注意 key 和 value 都不能是中文
                     .build()
             )
-            .connectionPool(
-                ConnectionPool(
-                    8,
-                    15,
-                    TimeUnit.SECONDS
-                )
-            )                 // 这里你可以根据自己的机型设置同时连接的个数和时间，我这里8个，和每个保持时间为10s
+            .addInterceptor(gzipRequestInterceptor)
+            .connectionPool(connectionPool)                 // 同时保持的空闲连接 8 个，每个保持 5 分钟，进入后台后由 connectionWarmer 释放
             .build()
     }
 
+    /**
+     * 重试与熔断统计
+     */
+    fun getResilienceMetrics(): ResilienceMetrics {
+        return retryInterceptor.getMetrics()
+    }
+
+    fun getPriorityDispatcher(): PriorityDispatcher {
+        return priorityDispatcher
+    }
+
+    /**
+     * 分阶段耗时统计，可通过 getSummary() 输出到诊断页面
+     */
+    fun getNetworkMetrics(): NetworkMetrics {
+        return networkMetrics
+    }
+
+    /**
+     * 当前带宽档位，列表按它调整分页和预加载，如
+     * `api.list(page, tier.pageSize(20))`，滚动到距底部 tier.prefetchDepth(2) 页时加载下一页
+     */
+    fun getQualityTier(): QualityTier {
+        return BandwidthEstimator.getInstance().getTier()
+    }
+
+    /**
+     * 预解析域名，可在启动时调用
+     */
+    fun prefetchDns(vararg hostnames: String) {
+        dns.prefetch(*hostnames)
+    }
+
+    /**
+     * 对这些 host 的 JSON、表单等较大的请求体做 gzip 压缩，服务端需要支持 Content-Encoding: gzip 的请求
+     */
+    fun enableRequestGzip(vararg hosts: String) {
+        hosts.forEach { gzipRequestInterceptor.addHost(it) }
+    }
+
+    fun getConnectionWarmer(): ConnectionWarmer {
+        return connectionWarmer
+    }
+
+    /**
+     * 离线队列，可通过 depth()/oldestAgeMillis()/getSummary() 查看积压情况
+     */
+    fun getOfflineOutbox(): OfflineOutbox {
+        return offlineOutbox
+    }
+
+    /**
+     * 图片等文件上传使用，如 uploadEngine.upload(file, ChunkedMultipartProtocol(url), listener)
+     */
+    fun getUploadEngine(): UploadEngine {
+        return uploadEngine
+    }
+
+    /**
+     * 安装包、资源包等大文件下载使用，如 downloadManager.download(url, file, sha256, listener)
+     */
+    fun getDownloadManager(): DownloadManager {
+        return downloadManager
+    }
+
     fun getRetrofitBuilder(baseUrl: String): Retrofit.Builder {
-        val gson = GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss").serializeNulls().create()
-        return Retrofit.Builder().client(getOkHttpClientBuilder())
-            .addConverterFactory(GsonConverterFactory.create(gson))
+        HttpUrl.parse(baseUrl)?.let { dns.prefetch(it.host()) }
+        val client = getOkHttpClientBuilder()
+        connectionWarmer.attach(client)
+        offlineOutbox.attach(client)
+        connectionWarmer.register(baseUrl)
+        return Retrofit.Builder().client(client)
+            .addConverterFactory(JsonStreamConverterFactory.create())
+            .addConverterFactory(CborConverterFactory.create(GsonUtils.getNetGson()))
+            .addConverterFactory(GsonConverterFactory.create(GsonUtils.getNetGson()))
+            .addCallAdapterFactory(CoalescingCallAdapterFactory.create())
+            .addCallAdapterFactory(JsonStreamCallAdapterFactory.create(GsonUtils.getNetGson()))
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .baseUrl(baseUrl)
     }
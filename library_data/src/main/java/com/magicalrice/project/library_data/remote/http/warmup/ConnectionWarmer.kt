@@ -0,0 +1,203 @@
+package com.magicalrice.project.library_data.remote.http.warmup
+
+import com.magicalrice.project.library_base.base.AppManager
+import com.magicalrice.project.library_base.base.log.LogUtils
+import okhttp3.Authenticator
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.CookieJar
+import okhttp3.Dispatcher
+import okhttp3.EventListener
+import okhttp3.HttpUrl
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * @package com.magicalrice.project.library_data.remote.http.warmup
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 连接预热
+ *
+ * 对注册的 base url 提前建立连接(DNS、TCP、TLS，HTTP/2 协商)并放回连接池，首个业务请求直接复用。
+ * OkHttp 3.9 没有单独建连的接口，这里对 base url 发一个 HEAD 请求，读完响应后连接即回到连接池。
+ * 预热使用的 client 由业务 client 派生，共用连接池、DNS 和 SSL 配置，但不带拦截器、cookie、缓存、认证和耗时统计，
+ * 预热请求返回 401 时不会触发 token 刷新。
+ *
+ * 保活策略随前后台切换：
+ * - 进入前台时预热所有已注册的地址，之后每 refreshInterval 重新预热一次，刷新连接的空闲时间
+ * - 进入后台时停止刷新，backgroundGrace 后清空连接池中的空闲连接，不在后台占用连接
+ *
+ * 需要通过 AppManager.addOnAppStatusChangedListener 注册后才能收到前后台切换。
+ */
+
+class ConnectionWarmer private constructor(builder: Builder) : AppManager.OnAppStatusChangedListener {
+    private val connectionsPerHost = builder.connectionsPerHost
+    private val refreshInterval = builder.refreshInterval
+    private val backgroundGrace = builder.backgroundGrace
+    private val scheduler = builder.scheduler ?: DEFAULT_SCHEDULER
+    private val urls = CopyOnWriteArraySet<HttpUrl>()
+    @Volatile
+    private var client: OkHttpClient? = null
+    @Volatile
+    private var foreground = builder.foreground
+    private var refreshTask: ScheduledFuture<*>? = null
+    private var evictTask: ScheduledFuture<*>? = null
+
+    /**
+     * 绑定业务 client，只有第一次调用生效，之后的 client 应共用同一个连接池
+     */
+    @Synchronized
+    fun attach(client: OkHttpClient) {
+        if (this.client != null) return
+        this.client = client.newBuilder()
+            .apply {
+                interceptors().clear()
+                networkInterceptors().clear()
+            }
+            .cookieJar(CookieJar.NO_COOKIES)
+            .cache(null)
+            .authenticator(Authenticator.NONE)
+            .proxyAuthenticator(Authenticator.NONE)
+            .eventListener(EventListener.NONE)
+            .dispatcher(Dispatcher())
+            .retryOnConnectionFailure(false)
+            .build()
+        if (foreground) warmUp()
+    }
+
+    /**
+     * 注册需要预热的地址，前台时立即预热
+     */
+    fun register(baseUrl: String) {
+        val url = HttpUrl.parse(baseUrl) ?: return
+        if (urls.add(url) && foreground) {
+            warm(url)
+        }
+    }
+
+    fun unregister(baseUrl: String) {
+        HttpUrl.parse(baseUrl)?.let { urls.remove(it) }
+    }
+
+    /**
+     * 预热所有已注册的地址，连接池中已有空闲连接时会直接复用并刷新其空闲时间
+     */
+    fun warmUp() {
+        urls.forEach { warm(it) }
+    }
+
+    @Synchronized
+    override fun onForeground() {
+        foreground = true
+        evictTask?.cancel(false)
+        evictTask = null
+        warmUp()
+        if (refreshInterval > 0 && refreshTask == null) {
+            refreshTask = scheduler.scheduleWithFixedDelay(
+                { if (foreground) warmUp() },
+                refreshInterval, refreshInterval, TimeUnit.MILLISECONDS
+            )
+        }
+    }
+
+    @Synchronized
+    override fun onBackground() {
+        foreground = false
+        refreshTask?.cancel(false)
+        refreshTask = null
+        if (backgroundGrace >= 0 && evictTask == null) {
+            evictTask = scheduler.schedule({ evictIdle() }, backgroundGrace, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private fun evictIdle() {
+        synchronized(this) {
+            evictTask = null
+            if (foreground) return
+        }
+        client?.connectionPool()?.evictAll()
+    }
+
+    private fun warm(url: HttpUrl) {
+        val client = client ?: return
+        val request = Request.Builder().url(url).head().build()
+        repeat(connectionsPerHost) {
+            client.newCall(request).enqueue(object : Callback {
+                override fun onResponse(call: Call, response: Response) {
+                    response.close()
+                }
+
+                override fun onFailure(call: Call, e: IOException) {
+                    LogUtils.dTag(TAG, "warm up ${url.host()} failed: ${e.message}")
+                }
+            })
+        }
+    }
+
+    class Builder {
+        internal var connectionsPerHost = 1
+        internal var refreshInterval = 0L
+        internal var backgroundGrace = 30_000L
+        internal var foreground = false
+        internal var scheduler: ScheduledExecutorService? = null
+
+        /**
+         * 每个地址预热的连接数，HTTP/2 多路复用只需要 1 个
+         */
+        fun connectionsPerHost(count: Int): Builder {
+            require(count > 0) { "count <= 0" }
+            this.connectionsPerHost = count
+            return this
+        }
+
+        /**
+         * 前台时重新预热的间隔，应小于连接池和服务端的 keep-alive 时间，0 表示不刷新
+         */
+        fun refreshInterval(millis: Long): Builder {
+            this.refreshInterval = millis
+            return this
+        }
+
+        /**
+         * 进入后台多久后清空空闲连接，小于 0 表示不清空，由连接池按 keep-alive 时间自行回收
+         */
+        fun backgroundGrace(millis: Long): Builder {
+            this.backgroundGrace = millis
+            return this
+        }
+
+        /**
+         * 创建时应用是否已在前台
+         */
+        fun foreground(foreground: Boolean): Builder {
+            this.foreground = foreground
+            return this
+        }
+
+        fun scheduler(scheduler: ScheduledExecutorService): Builder {
+            this.scheduler = scheduler
+            return this
+        }
+
+        fun build(): ConnectionWarmer {
+            return ConnectionWarmer(this)
+        }
+    }
+
+    companion object {
+        private const val TAG = "ConnectionWarmer"
+
+        private val DEFAULT_SCHEDULER: ScheduledExecutorService by lazy {
+            Executors.newSingleThreadScheduledExecutor { runnable ->
+                Thread(runnable, "OkHttp ConnectionWarmer").apply { isDaemon = true }
+            }
+        }
+    }
+}
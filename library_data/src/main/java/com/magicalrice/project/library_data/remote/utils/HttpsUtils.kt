@@ -1,5 +1,8 @@
 package com.magicalrice.project.library_data.remote.utils
 
+import android.net.SSLSessionCache
+import com.magicalrice.project.library_base.base.log.LogUtils
+import java.io.File
 import java.io.IOException
 import java.io.InputStream
 import java.security.KeyManagementException
@@ -21,17 +24,47 @@ class HttpsUtils {
     class SSLParams {
         var sSLSocketFactory: SSLSocketFactory? = null
         var trustManager: X509TrustManager? = null
+        var sslContext: SSLContext? = null
     }
 
     companion object {
-        fun getSslSocketFactory(): SSLParams {
-            return getSslSocketFactoryBase(
+        private const val TAG = "HttpsUtils"
+        //客户端会话缓存条数和有效期，服务端的 ticket 有效期通常更短，以服务端为准
+        private const val SESSION_CACHE_SIZE = 100
+        private const val SESSION_TIMEOUT_SECONDS = 24 * 60 * 60
+
+        private val defaultParams by lazy {
+            getSslSocketFactoryBase(
                 null,
                 null,
                 null
             )
         }
 
+        /**
+         * 进程内共用同一个 SSLContext，所有 client 共享 TLS 会话缓存，新连接可以恢复会话，跳过完整握手
+         */
+        fun getSslSocketFactory(): SSLParams {
+            return defaultParams
+        }
+
+        /**
+         * 将默认 SSLContext 的会话缓存持久化到 dir，进程重启后第一个连接也能恢复会话。
+         * 依赖系统的隐藏接口 SSLSessionCache.install，不可用时返回 false，仍使用内存中的会话缓存
+         */
+        fun installPersistentSessionCache(dir: File): Boolean {
+            return try {
+                val install = SSLSessionCache::class.java.getMethod(
+                    "install", SSLSessionCache::class.java, SSLContext::class.java
+                )
+                install.invoke(null, SSLSessionCache(dir), defaultParams.sslContext)
+                true
+            } catch (e: Exception) {
+                LogUtils.wTag(TAG, "Persistent TLS session cache unavailable", e)
+                false
+            }
+        }
+
         /**
          * https单向认证
          * 可以额外配置信任服务端的证书策略，否则默认是按CA证书去验证的，若不是CA可信任的证书，则无法通过验证
@@ -130,9 +163,12 @@ class HttpsUtils {
                 // 用上面得到的trustManagers初始化SSLContext，这样sslContext就会信任keyStore中的证书
                 // 第一个参数是授权的密钥管理器，用来授权验证，比如授权自签名的证书验证。第二个是被授权的证书管理器，用来验证服务器端的证书
                 sslContext.init(keyManagers, arrayOf<TrustManager>(manager!!), null)
+                sslContext.clientSessionContext.sessionCacheSize = SESSION_CACHE_SIZE
+                sslContext.clientSessionContext.sessionTimeout = SESSION_TIMEOUT_SECONDS
                 // 通过sslContext获取SSLSocketFactory对象
                 sslParams.sSLSocketFactory = sslContext.socketFactory
                 sslParams.trustManager = manager
+                sslParams.sslContext = sslContext
                 return sslParams
             } catch (e: NoSuchAlgorithmException) {
                 throw AssertionError(e)
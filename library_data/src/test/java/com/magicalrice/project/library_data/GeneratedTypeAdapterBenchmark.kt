@@ -0,0 +1,61 @@
+package com.magicalrice.project.library_data
+
+import com.google.gson.Gson
+import com.magicalrice.project.library_data.bean.NetErrorBean
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+/**
+ * 反射解析与编译期生成的 TypeAdapter 对比。耗时对比只打印结果，不对速度做断言，默认跳过，加 -Pbenchmark 时运行
+ */
+class GeneratedTypeAdapterBenchmark {
+    private val json = "{\"timestamp\":1571400000000,\"status\":500,\"error\":\"Internal Server Error\"," +
+            "\"message\":\"服务器异常\",\"path\":\"/api/user/info\",\"trace\":[1,2,3]}"
+
+    @Test
+    fun generatedMatchesReflective() {
+        val reflective = Gson().fromJson(json, NetErrorBean::class.java)
+        val generated = GsonUtils.getNetGson().fromJson(json, NetErrorBean::class.java)
+
+        assertEquals(reflective, generated)
+        assertEquals(generated, GsonUtils.getNetGson().fromJson(GsonUtils.getNetGson().toJson(generated), NetErrorBean::class.java))
+    }
+
+    @Test
+    fun missingFieldsUseDefaults() {
+        val bean = GsonUtils.getNetGson().fromJson("{\"status\":401}", NetErrorBean::class.java)
+
+        assertEquals(401, bean.status)
+        assertEquals("", bean.message)
+    }
+
+    @Test
+    fun compareDecodeTime() {
+        assumeTrue("run with -Pbenchmark", java.lang.Boolean.getBoolean("benchmark"))
+        val reflective = Gson()
+        val generated = GsonUtils.getNetGson()
+        val coldReflective = measure { reflective.fromJson(json, NetErrorBean::class.java) }
+        val coldGenerated = measure { generated.fromJson(json, NetErrorBean::class.java) }
+        println("first decode: reflective ${coldReflective / 1000}us, generated ${coldGenerated / 1000}us")
+
+        repeat(WARMUP) {
+            reflective.fromJson(json, NetErrorBean::class.java)
+            generated.fromJson(json, NetErrorBean::class.java)
+        }
+        val hotReflective = measure { repeat(ITERATIONS) { reflective.fromJson(json, NetErrorBean::class.java) } }
+        val hotGenerated = measure { repeat(ITERATIONS) { generated.fromJson(json, NetErrorBean::class.java) } }
+        println("$ITERATIONS decodes: reflective ${hotReflective / 1000_000}ms, generated ${hotGenerated / 1000_000}ms")
+    }
+
+    private inline fun measure(block: () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return System.nanoTime() - start
+    }
+
+    companion object {
+        private const val WARMUP = 20_000
+        private const val ITERATIONS = 100_000
+    }
+}
@@ -0,0 +1,72 @@
+package com.magicalrice.project.library_data.remote.http.benchmark
+
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * 压测用的响应脚本：固定的 body 和服务端延迟
+ *
+ * body 由固定种子生成，每次运行完全相同，结果才能跨提交比较。
+ */
+class BenchmarkProfile(
+    val name: String,
+    val items: Int,
+    /**
+     * MockWebServer 3.9 在写响应头前和写 body 前各等待一次 bodyDelay，实际服务端耗时是它的两倍
+     */
+    val delayMillis: Long,
+    val calls: Int
+) {
+    val body: ByteArray = payload(name, items)
+
+    companion object {
+        /**
+         * 修改这里的参数会让结果与旧的基线不可比，需要同时重新生成基线
+         */
+        val ALL = listOf(
+            //接口本身很快，测的是客户端栈的开销
+            BenchmarkProfile("small", 5, 0, 2000),
+            //列表页大小的 body，主要是 Gson 解析和日志
+            BenchmarkProfile("large", 200, 0, 500),
+            //服务端约 20ms，测排队和并发
+            BenchmarkProfile("slow", 5, 10, 400)
+        )
+
+        private fun payload(name: String, items: Int): ByteArray {
+            val random = Random(name.hashCode().toLong())
+            val sb = StringBuilder(items * 160)
+            sb.append("{\"code\":200,\"message\":\"ok\",\"data\":[")
+            for (i in 0 until items) {
+                if (i > 0) sb.append(',')
+                sb.append("{\"id\":").append(random.nextInt(1_000_000))
+                    .append(",\"title\":\"item-").append(i).append('-').append(java.lang.Long.toHexString(random.nextLong()))
+                    .append("\",\"price\":").append(random.nextInt(100_000) / 100.0)
+                    .append(",\"tags\":[\"a").append(random.nextInt(10)).append("\",\"b").append(random.nextInt(10))
+                    .append("\"],\"description\":\"").append("x".repeat(40 + random.nextInt(40))).append("\"}")
+            }
+            sb.append("]}")
+            return sb.toString().toByteArray(Charsets.UTF_8)
+        }
+    }
+}
+
+/**
+ * 按路径 /bench/{name} 返回对应 profile 的响应，同时下发 cookie 让 cookie jar 参与每次请求
+ */
+class ScriptedDispatcher(profiles: List<BenchmarkProfile>) : Dispatcher() {
+    private val byPath = profiles.associateBy { "/bench/" + it.name }
+
+    override fun dispatch(request: RecordedRequest): MockResponse {
+        val path = request.path.substringBefore('?')
+        val profile = byPath[path] ?: return MockResponse().setResponseCode(404)
+        return MockResponse()
+            .setHeader("Content-Type", "application/json; charset=utf-8")
+            .setHeader("Set-Cookie", "session=${profile.name}; Path=/")
+            .setBodyDelay(profile.delayMillis, TimeUnit.MILLISECONDS)
+            .setBody(Buffer().write(profile.body))
+    }
+}
@@ -0,0 +1,89 @@
+package com.magicalrice.project.library_data.remote.http.benchmark
+
+import java.io.File
+import java.util.Locale
+
+/**
+ * 压测结果表，按制表符分隔，一行一个场景
+ *
+ * 把某次提交的结果文件作为基线传入，输出每项指标相对基线的变化，用于比较两次提交。
+ */
+class BenchmarkReport {
+    private val rows = LinkedHashMap<String, List<String>>()
+
+    fun add(profile: BenchmarkProfile, result: ScenarioResult) {
+        rows[key(profile.name, result.concurrency)] = listOf(
+            profile.name,
+            result.concurrency.toString(),
+            result.calls.toString(),
+            result.errors.toString(),
+            String.format(Locale.US, "%.1f", result.requestsPerSecond()),
+            result.percentileMicros(50.0).toString(),
+            result.percentileMicros(99.0).toString(),
+            result.allocatedBytesPerCall().toString()
+        )
+    }
+
+    fun format(): String {
+        val sb = StringBuilder()
+        sb.append(HEADER).append('\n')
+        sb.append(COLUMNS.joinToString("\t")).append('\n')
+        rows.values.forEach { sb.append(it.joinToString("\t")).append('\n') }
+        return sb.toString()
+    }
+
+    fun write(file: File) {
+        file.parentFile?.mkdirs()
+        file.writeText(format())
+    }
+
+    /**
+     * 与基线逐项比较，rps 越大越好，其余越小越好
+     */
+    fun compare(baseline: File): String {
+        val base = parse(baseline)
+        val sb = StringBuilder()
+        sb.append(String.format(Locale.US, "%-8s %4s %9s %9s %9s %9s%n", "scenario", "conc", "rps", "p50", "p99", "alloc"))
+        for ((key, row) in rows) {
+            val old = base[key]
+            if (old == null) {
+                sb.append(String.format(Locale.US, "%-8s %4s %9s%n", row[0], row[1], "new"))
+                continue
+            }
+            sb.append(
+                String.format(
+                    Locale.US, "%-8s %4s %9s %9s %9s %9s%n", row[0], row[1],
+                    delta(old[4], row[4]), delta(old[5], row[5]), delta(old[6], row[6]), delta(old[7], row[7])
+                )
+            )
+        }
+        return sb.toString()
+    }
+
+    private fun delta(old: String, new: String): String {
+        val before = old.toDoubleOrNull() ?: return "?"
+        val after = new.toDoubleOrNull() ?: return "?"
+        if (before <= 0) return "?"
+        return String.format(Locale.US, "%+.1f%%", (after - before) * 100 / before)
+    }
+
+    private fun parse(file: File): Map<String, List<String>> {
+        val lines = file.readLines()
+        require(lines.firstOrNull() == HEADER) { "${file.path} is not a $HEADER result" }
+        return lines.drop(2)
+            .filter { it.isNotBlank() }
+            .map { it.split('\t') }
+            .filter { it.size == COLUMNS.size }
+            .associateBy { key(it[0], it[1].toInt()) }
+    }
+
+    private fun key(name: String, concurrency: Int): String {
+        return "$name@$concurrency"
+    }
+
+    companion object {
+        //指标或场景参数含义变化时递增版本，旧基线不再可比
+        private const val HEADER = "# network-stack-benchmark v1"
+        private val COLUMNS = listOf("scenario", "concurrency", "calls", "errors", "rps", "p50_us", "p99_us", "alloc_bytes_per_call")
+    }
+}
@@ -0,0 +1,151 @@
+package com.magicalrice.project.library_data.remote.http.benchmark
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 固定并发的闭环压测：concurrency 个线程各自同步发起请求，一个完成后立即发下一个，直到总数达到 calls
+ *
+ * 先跑 warmupCalls 次让 JIT、连接池、DNS 缓存进入稳定状态，再计时。
+ */
+class LoadRunner(
+    private val concurrency: Int,
+    private val warmupCalls: Int,
+    private val calls: Int
+) {
+
+    /**
+     * @param call 发起第 index 次请求并阻塞到结束，成功返回 true
+     */
+    fun run(call: (Int) -> Boolean): ScenarioResult {
+        runPhase(warmupCalls, LongArray(warmupCalls), AtomicLong(), call)
+        System.gc()
+        val latencies = LongArray(calls)
+        val workerAllocated = AtomicLong()
+        val allocatedBefore = AllocationMeter.snapshot()
+        val start = System.nanoTime()
+        val errors = runPhase(calls, latencies, workerAllocated, call)
+        val elapsed = System.nanoTime() - start
+        val background = AllocationMeter.allocatedSince(allocatedBefore)
+        val allocated = if (background < 0) -1 else background + workerAllocated.get()
+        latencies.sort()
+        return ScenarioResult(concurrency, calls, errors, elapsed, latencies, allocated)
+    }
+
+    /**
+     * 工作线程在阶段结束前就会退出，它们的分配量在线程内自行统计
+     */
+    private fun runPhase(total: Int, latencies: LongArray, allocated: AtomicLong, call: (Int) -> Boolean): Int {
+        val next = AtomicInteger()
+        val errors = AtomicInteger()
+        val done = CountDownLatch(concurrency)
+        for (i in 0 until concurrency) {
+            Thread({
+                val allocatedAtStart = AllocationMeter.currentThread()
+                try {
+                    while (true) {
+                        val index = next.getAndIncrement()
+                        if (index >= total) break
+                        val start = System.nanoTime()
+                        val ok = try {
+                            call(index)
+                        } catch (e: Throwable) {
+                            false
+                        }
+                        latencies[index] = System.nanoTime() - start
+                        if (!ok) errors.incrementAndGet()
+                    }
+                } finally {
+                    allocated.addAndGet(AllocationMeter.currentThread() - allocatedAtStart)
+                    done.countDown()
+                }
+            }, WORKER_PREFIX + i).start()
+        }
+        done.await()
+        return errors.get()
+    }
+
+    companion object {
+        internal const val WORKER_PREFIX = "bench-worker-"
+    }
+}
+
+class ScenarioResult(
+    val concurrency: Int,
+    val calls: Int,
+    val errors: Int,
+    val elapsedNanos: Long,
+    /**
+     * 已排序，纳秒
+     */
+    private val latencies: LongArray,
+    /**
+     * 计时阶段工作线程和 OkHttp 等后台线程(不含 MockWebServer 线程)分配的字节数，JVM 不支持时为 -1
+     */
+    private val allocatedBytes: Long
+) {
+    fun requestsPerSecond(): Double {
+        return calls * 1_000_000_000.0 / elapsedNanos
+    }
+
+    /**
+     * 精确分位数(最近秩)，微秒
+     */
+    fun percentileMicros(percentile: Double): Long {
+        if (latencies.isEmpty()) return 0
+        val rank = Math.ceil(latencies.size * percentile / 100).toInt().coerceIn(1, latencies.size)
+        return latencies[rank - 1] / 1000
+    }
+
+    fun allocatedBytesPerCall(): Long {
+        return if (allocatedBytes < 0) -1 else allocatedBytes / calls
+    }
+}
+
+/**
+ * 通过 HotSpot 的线程分配计数统计分配量，后台线程在计时阶段内退出时其分配不计入
+ */
+object AllocationMeter {
+    private val bean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+
+    fun currentThread(): Long {
+        val bean = bean ?: return 0
+        if (!bean.isThreadAllocatedMemorySupported) return 0
+        bean.isThreadAllocatedMemoryEnabled = true
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    fun snapshot(): Map<Long, Long> {
+        val bean = bean ?: return emptyMap()
+        if (!bean.isThreadAllocatedMemorySupported) return emptyMap()
+        bean.isThreadAllocatedMemoryEnabled = true
+        val ids = countedThreads()
+        val bytes = bean.getThreadAllocatedBytes(ids)
+        return ids.indices.associate { ids[it] to bytes[it] }
+    }
+
+    fun allocatedSince(before: Map<Long, Long>): Long {
+        val bean = bean ?: return -1
+        if (!bean.isThreadAllocatedMemorySupported) return -1
+        val ids = countedThreads()
+        val bytes = bean.getThreadAllocatedBytes(ids)
+        var total = 0L
+        for (i in ids.indices) {
+            if (bytes[i] < 0) continue
+            total += bytes[i] - (before[ids[i]] ?: 0L)
+        }
+        return total
+    }
+
+    /**
+     * 服务端线程的分配不属于被测的客户端栈，工作线程单独统计
+     */
+    private fun countedThreads(): LongArray {
+        return Thread.getAllStackTraces().keys
+            .filter { !it.name.startsWith("MockWebServer") && !it.name.startsWith(LoadRunner.WORKER_PREFIX) }
+            .map { it.id }
+            .toLongArray()
+    }
+}
@@ -0,0 +1,114 @@
+package com.magicalrice.project.library_data.remote.http.benchmark
+
+import android.content.Context
+import com.magicalrice.project.library_base.base.AppManager
+import com.magicalrice.project.library_data.remote.http.NetSubscriber
+import com.magicalrice.project.library_data.remote.http.RetrofitErrorListener
+import com.magicalrice.project.library_data.remote.http.utils.RetrofitUtils
+import io.reactivex.Observable
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import retrofit2.http.GET
+import retrofit2.http.Path
+import retrofit2.http.Query
+import java.io.File
+import java.util.logging.Logger
+
+/**
+ * 整个网络栈的压测：RetrofitUtils 的 client(全部拦截器、cookie jar、日志)、Gson 解析、NetSubscriber 回调
+ *
+ * 服务端是本机的 MockWebServer，按 [BenchmarkProfile] 返回固定的 body 和延迟，每个 profile 依次在 1/4/16 并发下运行，
+ * 输出吞吐、p50/p99 延迟和每次调用的分配字节数，结果同时写入 build/reports/benchmark/network-stack.tsv。
+ *
+ * 默认跳过，需要时运行：
+ * ./gradlew :library_data:testDebugUnitTest --tests '*NetworkStackBenchmark' -Pbenchmark
+ * 比较两次提交时，把前一次的结果文件复制出来，再加上 -Pbenchmark.baseline=/path/to/network-stack.tsv 运行，会输出各项变化的百分比。
+ * 同一台机器上比较才有意义，p99 受调度影响较大，差异在 10% 以内时应多跑几次确认。
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class NetworkStackBenchmark {
+    private lateinit var server: MockWebServer
+    private lateinit var context: Context
+    private lateinit var api: BenchmarkApi
+
+    interface BenchmarkApi {
+        //seq 让每次请求的 url 不同，避免并发的相同请求被合并
+        @GET("bench/{profile}")
+        fun fetch(@Path("profile") profile: String, @Query("seq") seq: Int): Observable<BenchmarkResponse>
+    }
+
+    class BenchmarkResponse(val code: Int, val message: String?, val data: List<BenchmarkItem>?)
+
+    class BenchmarkItem(val id: Long, val title: String?, val price: Double, val tags: List<String>?, val description: String?)
+
+    @Before
+    fun setUp() {
+        assumeTrue("run with -Pbenchmark", java.lang.Boolean.getBoolean("benchmark"))
+        context = RuntimeEnvironment.application
+        AppManager.getInstance().init(RuntimeEnvironment.application)
+        //日志照常格式化，只是不输出到控制台，避免控制台 IO 成为瓶颈
+        Logger.getLogger(OkHttpClient::class.java.name).useParentHandlers = false
+        server = MockWebServer()
+        server.setServerSocketFactory(NoDelayServerSocketFactory())
+        server.setDispatcher(ScriptedDispatcher(BenchmarkProfile.ALL))
+        server.start()
+        api = RetrofitUtils.getRetrofit(server.url("/").toString()).create(BenchmarkApi::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        if (::server.isInitialized) {
+            server.shutdown()
+        }
+    }
+
+    @Test
+    fun networkStack() {
+        val report = BenchmarkReport()
+        for (profile in BenchmarkProfile.ALL) {
+            for (concurrency in CONCURRENCY) {
+                val result = LoadRunner(concurrency, WARMUP_CALLS, profile.calls).run { call(profile, it) }
+                report.add(profile, result)
+                assertEquals("${profile.name}@$concurrency", 0, result.errors)
+            }
+        }
+        println(report.format())
+        report.write(File(OUTPUT))
+        System.getProperty("benchmark.baseline")?.let {
+            println(report.compare(File(it)))
+        }
+    }
+
+    /**
+     * RxJava2CallAdapterFactory.create() 是同步的，subscribe 返回时回调已经执行完
+     */
+    private fun call(profile: BenchmarkProfile, seq: Int): Boolean {
+        var ok = false
+        api.fetch(profile.name, seq).subscribe(NetSubscriber(object : RetrofitErrorListener<BenchmarkResponse> {
+            override fun onNext(t: BenchmarkResponse) {
+                ok = t.data?.size == profile.items
+            }
+
+            override fun onError(t: Throwable) {
+                ok = false
+            }
+        }, context))
+        return ok
+    }
+
+    companion object {
+        private val CONCURRENCY = intArrayOf(1, 4, 16)
+        private const val WARMUP_CALLS = 200
+        private const val OUTPUT = "build/reports/benchmark/network-stack.tsv"
+    }
+}
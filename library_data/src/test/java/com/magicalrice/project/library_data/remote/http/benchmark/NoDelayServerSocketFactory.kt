@@ -0,0 +1,41 @@
+package com.magicalrice.project.library_data.remote.http.benchmark
+
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.ServerSocket
+import java.net.Socket
+import javax.net.ServerSocketFactory
+
+/**
+ * 给 MockWebServer 接受的连接设置 TCP_NODELAY
+ *
+ * MockWebServer 分两次写响应头和 body，默认开启的 Nagle 算法与客户端的延迟确认叠加，每个请求固定多出约 40ms，
+ * 会完全掩盖客户端栈本身的耗时。
+ */
+class NoDelayServerSocketFactory : ServerSocketFactory() {
+
+    override fun createServerSocket(): ServerSocket {
+        return NoDelayServerSocket()
+    }
+
+    override fun createServerSocket(port: Int): ServerSocket {
+        return NoDelayServerSocket().also { it.bind(InetSocketAddress(port)) }
+    }
+
+    override fun createServerSocket(port: Int, backlog: Int): ServerSocket {
+        return NoDelayServerSocket().also { it.bind(InetSocketAddress(port), backlog) }
+    }
+
+    override fun createServerSocket(port: Int, backlog: Int, address: InetAddress?): ServerSocket {
+        return NoDelayServerSocket().also { it.bind(InetSocketAddress(address, port), backlog) }
+    }
+
+    private class NoDelayServerSocket : ServerSocket() {
+        override fun accept(): Socket {
+            val socket = Socket()
+            implAccept(socket)
+            socket.tcpNoDelay = true
+            return socket
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.magicalrice.project.library_data.remote.http.cbor
+
+import com.google.gson.Gson
+import com.google.gson.reflect.TypeToken
+import okio.Buffer
+import okio.GzipSink
+import okio.Okio
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import java.util.Random
+
+/**
+ * 同一份列表数据分别用 JSON 和 CBOR 编码，对比 body 大小(原始和 gzip 后)和解析耗时，只打印结果，不对速度做断言。默认跳过，加 -Pbenchmark 时运行
+ */
+class CborConverterBenchmark {
+    private val gson = Gson()
+
+    class Item(
+        val id: Long,
+        val title: String,
+        val price: Double,
+        val stock: Int,
+        val score: Float,
+        val tags: List<String>,
+        val onSale: Boolean,
+        val cover: String?
+    )
+
+    class Page(val code: Int, val message: String, val data: List<Item>)
+
+    private val type = object : TypeToken<Page>() {}
+
+    private fun page(items: Int): Page {
+        val random = Random(42)
+        return Page(200, "ok", (0 until items).map {
+            Item(
+                random.nextInt(10_000_000).toLong(),
+                "商品 $it " + java.lang.Long.toHexString(random.nextLong()),
+                random.nextInt(1_000_000) / 100.0,
+                random.nextInt(1000),
+                random.nextInt(50) / 10f,
+                listOf("tag" + random.nextInt(20), "tag" + random.nextInt(20)),
+                random.nextBoolean(),
+                if (random.nextBoolean()) "https://img.example.com/${random.nextInt()}.jpg" else null
+            )
+        })
+    }
+
+    private fun gzipSize(bytes: ByteArray): Long {
+        val out = Buffer()
+        Okio.buffer(GzipSink(out)).use { it.write(bytes) }
+        return out.size()
+    }
+
+    @Test
+    fun compareWithJson() {
+        assumeTrue("run with -Pbenchmark", java.lang.Boolean.getBoolean("benchmark"))
+        val adapter = gson.getAdapter(type)
+        for (items in intArrayOf(20, 500)) {
+            val page = page(items)
+            val json = gson.toJson(page, type.type).toByteArray(Charsets.UTF_8)
+            val cborBuffer = Buffer()
+            CborWriter(cborBuffer).use { adapter.write(it, page) }
+            val cbor = cborBuffer.readByteArray()
+
+            val fromCbor = adapter.read(CborReader(Buffer().write(cbor)))
+            assertEquals(gson.toJson(page), gson.toJson(fromCbor))
+
+            val iterations = if (items > 100) 200 else 5000
+            repeat(iterations) {
+                adapter.read(CborReader(Buffer().write(cbor)))
+                adapter.fromJson(Buffer().write(json).inputStream().reader())
+            }
+            val jsonStart = System.nanoTime()
+            repeat(iterations) { adapter.fromJson(Buffer().write(json).inputStream().reader()) }
+            val jsonTime = (System.nanoTime() - jsonStart) / iterations
+            val cborStart = System.nanoTime()
+            repeat(iterations) { adapter.read(CborReader(Buffer().write(cbor))) }
+            val cborTime = (System.nanoTime() - cborStart) / iterations
+
+            println(
+                "$items items: json ${json.size}B (gzip ${gzipSize(json)}B) ${jsonTime / 1000}us, " +
+                        "cbor ${cbor.size}B (gzip ${gzipSize(cbor)}B) ${cborTime / 1000}us"
+            )
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.magicalrice.project.library_data.remote.http.cbor
+
+import com.google.gson.Gson
+import com.google.gson.annotations.SerializedName
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okio.Buffer
+import okio.ByteString
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import retrofit2.Call
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.http.GET
+import retrofit2.http.Headers
+
+class CborConverterFactoryTest {
+    private lateinit var server: MockWebServer
+    private lateinit var api: Api
+    private val gson = Gson()
+
+    data class Item(
+        @SerializedName("item_id") val id: Long,
+        val title: String?,
+        val price: Double,
+        val tags: List<String>?,
+        val attrs: Map<String, Int>?,
+        val active: Boolean,
+        val vip: Boolean?
+    )
+
+    data class Page(val code: Int, val message: String?, val data: List<Item>?)
+
+    interface Api {
+        @GET("page")
+        @Headers(CborConverterFactory.ACCEPT_CBOR)
+        fun page(): Call<Page>
+
+        @GET("any")
+        fun any(): Call<Map<String, Any>>
+    }
+
+    private val page = Page(
+        200, null, listOf(
+            Item(-5, "第一个", 12.5, listOf("a", "b"), mapOf("x" to 1, "y" to -2), true, false),
+            Item(4_000_000_000L, null, 0.1, null, null, false, null)
+        )
+    )
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        api = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(CborConverterFactory.create(gson))
+            .addConverterFactory(GsonConverterFactory.create(gson))
+            .build()
+            .create(Api::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun encode(value: Any): Buffer {
+        val buffer = Buffer()
+        CborWriter(buffer).use { gson.getAdapter(value.javaClass).write(it, value) }
+        return buffer
+    }
+
+    @Test
+    fun parsesCborIntoSameBeans() {
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/cbor").setBody(encode(page)))
+
+        assertEquals(page, api.page().execute().body())
+        assertEquals(CborConverterFactory.ACCEPT_CBOR.substringAfter(": "), server.takeRequest().getHeader("Accept"))
+    }
+
+    @Test
+    fun fallsBackToJsonByContentType() {
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/json").setBody(gson.toJson(page)))
+
+        assertEquals(page, api.page().execute().body())
+    }
+
+    /**
+     * RFC 7049 附录 A 的示例：定长与不定长容器、half float、tag
+     */
+    @Test
+    fun readsRfcExamples() {
+        //{"a": 1, "b": [2, 3]}
+        val definite = ByteString.decodeHex("a26161016162820203")
+        //{_ "a": 1, "b": [_ 2, 3]}
+        val indefinite = ByteString.decodeHex("bf61610161629f0203ffff")
+        val expected = mapOf("a" to 1.0, "b" to listOf(2.0, 3.0))
+        assertEquals(expected, readAny(definite))
+        assertEquals(expected, readAny(indefinite))
+
+        //{"h": 1.5, "t": 1(1363896240), "n": null, "s": (_ "strea", "ming")}
+        val mixed = ByteString.decodeHex("a46168f93e006174c11a514b67b0616ef66173" + "7f657374726561646d696e67ff")
+        val values = readAny(mixed)
+        assertEquals(1.5, values["h"])
+        assertEquals(1363896240.0, values["t"])
+        assertNull(values["n"])
+        assertEquals("streaming", values["s"])
+    }
+
+    private fun readAny(bytes: ByteString): Map<String, Any?> {
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/cbor").setBody(Buffer().write(bytes)))
+        return api.any().execute().body()!!
+    }
+}
@@ -0,0 +1,181 @@
+package com.magicalrice.project.library_data.remote.http.coalesce
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.QueueDispatcher
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+class CoalescingInterceptorTest {
+    private lateinit var server: MockWebServer
+    private lateinit var executor: ExecutorService
+    private val queue = QueueDispatcher()
+    @Volatile
+    private var gate: CountDownLatch? = null
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        //领头请求的响应等到相同请求都发出后再返回
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val response = queue.dispatch(request)
+                gate?.let {
+                    gate = null
+                    it.await(5, TimeUnit.SECONDS)
+                }
+                return response
+            }
+        })
+        server.start()
+        executor = Executors.newCachedThreadPool()
+        RequestCoalescing.resetStats()
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        server.shutdown()
+    }
+
+    private fun client(maxBufferBytes: Long): OkHttpClient {
+        return OkHttpClient.Builder().addInterceptor(CoalescingInterceptor(maxBufferBytes)).build()
+    }
+
+    private fun get(client: OkHttpClient, path: String = "/feed"): Response {
+        return client.newCall(Request.Builder().url(server.url(path)).build()).execute()
+    }
+
+    /**
+     * 领头请求在等响应头时发出 [followers] 个相同请求
+     */
+    private fun concurrent(client: OkHttpClient, followers: Int, vararg responses: MockResponse): List<Future<String>> {
+        //先完成一次请求，线程和类加载不占用等待时间
+        queue.enqueueResponse(MockResponse().setBody("warm"))
+        get(client, "/warm").close()
+        RequestCoalescing.resetStats()
+        responses.forEach { queue.enqueueResponse(it) }
+        val released = CountDownLatch(1)
+        gate = released
+        val leader = executor.submit(Callable { get(client).use { it.body()!!.string() } })
+        Thread.sleep(200)
+        val others = (0 until followers).map { executor.submit(Callable { get(client).use { it.body()!!.string() } }) }
+        Thread.sleep(300)
+        released.countDown()
+        return listOf(leader) + others
+    }
+
+    @Test
+    fun followersShareLeaderBody() {
+        val response = MockResponse().setChunkedBody("[1,2,3]", 2)
+
+        val bodies = concurrent(client(1024), 3, response).map { it.get(5, TimeUnit.SECONDS) }
+
+        assertEquals(listOf("[1,2,3]", "[1,2,3]", "[1,2,3]", "[1,2,3]"), bodies)
+        assertEquals(2, server.requestCount)
+        assertEquals(1, RequestCoalescing.getLeaderCount())
+        assertEquals(3, RequestCoalescing.getCollapsedCount())
+    }
+
+    /**
+     * 没有等待者时响应原样返回，长度未知的 body 不会被读进内存
+     */
+    @Test
+    fun leaderWithoutFollowersStreams() {
+        val body = "x".repeat(64 * 1024)
+        queue.enqueueResponse(MockResponse().setChunkedBody(body, 1024))
+
+        get(client(1024)).use {
+            assertEquals(-1L, it.body()!!.contentLength())
+            assertEquals(body, it.body()!!.string())
+        }
+        assertEquals(0, RequestCoalescing.getCollapsedCount())
+    }
+
+    /**
+     * 长度未知且超过上限时只预读上限大小，领头请求照常拿到完整 body，等待者自行请求
+     */
+    @Test
+    fun oversizedUnknownLengthFallsBackToStreaming() {
+        val body = "y".repeat(8 * 1024)
+        val leader = MockResponse().setChunkedBody(body, 512)
+
+        val bodies = concurrent(client(1024), 1, leader, MockResponse().setChunkedBody(body, 512))
+            .map { it.get(5, TimeUnit.SECONDS) }
+
+        assertEquals(listOf(body, body), bodies)
+        assertEquals(3, server.requestCount)
+        assertEquals(0, RequestCoalescing.getCollapsedCount())
+    }
+
+    @Test
+    fun differentUrlsAreNotCoalesced() {
+        queue.enqueueResponse(MockResponse().setBody("a"))
+        queue.enqueueResponse(MockResponse().setBody("b"))
+        val client = client(1024)
+
+        assertEquals("a", get(client, "/a").use { it.body()!!.string() })
+        assertEquals("b", get(client, "/b").use { it.body()!!.string() })
+        assertEquals(2, RequestCoalescing.getLeaderCount())
+    }
+
+    /**
+     * 条件请求的校验值不同，响应可能一个是 304 一个是完整内容，不能合并
+     */
+    @Test
+    fun validatorsArePartOfKey() {
+        val url = server.url("/feed")
+        val plain = Request.Builder().url(url).build()
+        val etag = Request.Builder().url(url).header("If-None-Match", "\"v1\"").build()
+        val since = Request.Builder().url(url).header("If-Modified-Since", "Mon, 19 Oct 2026 08:00:00 GMT").build()
+
+        assertEquals(3, setOf(RequestCoalescing.key(plain), RequestCoalescing.key(etag), RequestCoalescing.key(since)).size)
+    }
+
+    /**
+     * 领头请求被取消(如预加载随页面销毁)时，等待者没有被取消，各自重新请求
+     */
+    @Test
+    fun canceledLeaderDoesNotFailFollowers() {
+        val client = client(1024)
+        queue.enqueueResponse(MockResponse().setBody("warm"))
+        get(client, "/warm").close()
+        queue.enqueueResponse(MockResponse().setBody("leader"))
+        queue.enqueueResponse(MockResponse().setBody("own"))
+        val released = CountDownLatch(1)
+        gate = released
+        val leaderCall = client.newCall(Request.Builder().url(server.url("/feed")).build())
+        val leader = executor.submit(Callable { leaderCall.execute().use { it.body()!!.string() } })
+        Thread.sleep(200)
+        val follower = executor.submit(Callable { get(client).use { it.body()!!.string() } })
+        Thread.sleep(300)
+
+        leaderCall.cancel()
+        released.countDown()
+
+        try {
+            leader.get(5, TimeUnit.SECONDS)
+            fail()
+        } catch (e: ExecutionException) {
+            assertEquals(IOException::class.java, e.cause!!.javaClass)
+        }
+        assertEquals("own", follower.get(5, TimeUnit.SECONDS))
+        assertEquals(0, RequestCoalescing.getCollapsedCount())
+    }
+}
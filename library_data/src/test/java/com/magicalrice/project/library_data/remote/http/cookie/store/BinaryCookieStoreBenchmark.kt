@@ -0,0 +1,125 @@
+package com.magicalrice.project.library_data.remote.http.cookie.store
+
+import okhttp3.Cookie
+import okhttp3.HttpUrl
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+
+/**
+ * 与 [PersistentCookieStore] 的序列化方式对比读写耗时，只打印结果，不对速度做断言。耗时对比默认跳过，加 -Pbenchmark 时运行
+ */
+class BinaryCookieStoreBenchmark {
+    private lateinit var file: File
+    private val expiresAt = System.currentTimeMillis() + 86_400_000L
+
+    @Before
+    fun setUp() {
+        file = File.createTempFile("cookies", ".bin")
+        file.delete()
+    }
+
+    @After
+    fun tearDown() {
+        file.delete()
+    }
+
+    private fun url(host: Int): HttpUrl {
+        return HttpUrl.parse("https://api$host.example.com/")!!
+    }
+
+    private fun cookie(host: Int, index: Int): Cookie {
+        return Cookie.Builder()
+            .name("name$index")
+            .value("value-$host-$index-0123456789abcdef0123456789abcdef")
+            .domain("api$host.example.com")
+            .path("/")
+            .expiresAt(expiresAt)
+            .httpOnly()
+            .build()
+    }
+
+    @Test
+    fun roundTripAndLazyLoad() {
+        val store = BinaryCookieStore(file)
+        store.saveCookie(url(1), listOf(cookie(1, 1), cookie(1, 2)))
+        store.saveCookie(url(2), cookie(2, 1))
+        store.flush()
+
+        val reloaded = BinaryCookieStore(file)
+        assertEquals(setOf(cookie(1, 1), cookie(1, 2)), reloaded.loadCookie(url(1)).toSet())
+        //host 2 未读入内存时重写文件，原始数据应被保留
+        reloaded.removeCookie(url(1), cookie(1, 1))
+        reloaded.flush()
+        assertEquals(setOf(cookie(1, 2), cookie(2, 1)), BinaryCookieStore(file).getAllCookie().toSet())
+    }
+
+    @Test
+    fun compareWithSerializedHex() {
+        assumeTrue("run with -Pbenchmark", java.lang.Boolean.getBoolean("benchmark"))
+        val cookies = (0 until HOSTS).map { host -> (0 until COOKIES_PER_HOST).map { cookie(host, it) } }
+
+        val saveStart = System.nanoTime()
+        val encoded = cookies.map { list -> list.map { encodeHex(it) } }
+        val serializedSave = System.nanoTime() - saveStart
+        val loadStart = System.nanoTime()
+        encoded.forEach { list -> list.forEach { decodeHex(it) } }
+        val serializedLoad = System.nanoTime() - loadStart
+
+        val store = BinaryCookieStore(file)
+        cookies.forEachIndexed { host, list -> store.saveCookie(url(host), list) }
+        val binarySaveStart = System.nanoTime()
+        store.flush()
+        val binarySave = System.nanoTime() - binarySaveStart
+        val binaryOpenStart = System.nanoTime()
+        val reloaded = BinaryCookieStore(file)
+        val firstHost = reloaded.loadCookie(url(0))
+        val binaryFirstHost = System.nanoTime() - binaryOpenStart
+        val all = reloaded.getAllCookie()
+        val binaryLoad = System.nanoTime() - binaryOpenStart
+
+        assertEquals(COOKIES_PER_HOST, firstHost.size)
+        assertEquals(HOSTS * COOKIES_PER_HOST, all.size)
+        val hexBytes = encoded.sumBy { list -> list.sumBy { it.length } }
+        println("serialized+hex: save ${serializedSave / 1000}us, load ${serializedLoad / 1000}us, $hexBytes chars")
+        println("binary: save ${binarySave / 1000}us, first host ${binaryFirstHost / 1000}us, " +
+                "load all ${binaryLoad / 1000}us, ${file.length()} bytes")
+    }
+
+    /**
+     * 与 PersistentCookieStore.encodeCookie 相同的编码方式
+     */
+    private fun encodeHex(cookie: Cookie): String {
+        val os = ByteArrayOutputStream()
+        ObjectOutputStream(os).use { it.writeObject(SerializableHttpCookie(cookie)) }
+        val bytes = os.toByteArray()
+        val sb = StringBuilder(bytes.size * 2)
+        for (b in bytes) {
+            val v = b.toInt() and 0xff
+            if (v < 16) sb.append('0')
+            sb.append(Integer.toHexString(v))
+        }
+        return sb.toString().toUpperCase()
+    }
+
+    private fun decodeHex(value: String): Cookie {
+        val bytes = ByteArray(value.length / 2) {
+            ((Character.digit(value[it * 2], 16) shl 4) + Character.digit(value[it * 2 + 1], 16)).toByte()
+        }
+        return ObjectInputStream(ByteArrayInputStream(bytes)).use {
+            (it.readObject() as SerializableHttpCookie).getCookie()
+        }
+    }
+
+    companion object {
+        private const val HOSTS = 20
+        private const val COOKIES_PER_HOST = 10
+    }
+}
@@ -0,0 +1,73 @@
+package com.magicalrice.project.library_data.remote.http.cookie.store
+
+import okhttp3.Cookie
+import okhttp3.HttpUrl
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CookieIndexTest {
+    private val now = System.currentTimeMillis()
+
+    private fun url(value: String): HttpUrl {
+        return HttpUrl.parse(value)!!
+    }
+
+    private fun parse(url: String, header: String): Cookie {
+        return Cookie.parse(url(url), header)!!
+    }
+
+    private fun names(cookies: List<Cookie>): List<String> {
+        return cookies.map { it.name() }
+    }
+
+    @Test
+    fun domainCookieReachesSubdomains() {
+        val index = CookieIndex()
+        index.put(parse("https://www.example.com/", "shared=1; Domain=example.com"))
+        index.put(parse("https://www.example.com/", "hostOnly=1"))
+
+        assertEquals(listOf("shared"), names(index.match(url("https://api.example.com/"))))
+        assertEquals(listOf("shared", "hostOnly"), names(index.match(url("https://www.example.com/"))))
+        assertTrue(index.match(url("https://example.org/")).isEmpty())
+        assertTrue(index.match(url("https://badexample.com/")).isEmpty())
+    }
+
+    @Test
+    fun pathAndSecureMatching() {
+        val index = CookieIndex()
+        index.put(parse("https://example.com/", "root=1; Path=/"))
+        index.put(parse("https://example.com/", "api=1; Path=/api"))
+        index.put(parse("https://example.com/", "secure=1; Secure"))
+
+        assertEquals(listOf("api", "root", "secure"), names(index.match(url("https://example.com/api/users"))))
+        assertEquals(listOf("root", "secure"), names(index.match(url("https://example.com/apix"))))
+        assertEquals(listOf("root"), names(index.match(url("http://example.com/"))))
+    }
+
+    @Test
+    fun replacesByNameDomainAndPath() {
+        val index = CookieIndex()
+        index.put(parse("https://example.com/", "a=1; Path=/"))
+        index.put(parse("https://example.com/", "a=2; Path=/"))
+        index.put(parse("https://example.com/", "a=3; Path=/x"))
+
+        assertEquals(2, index.size())
+        assertEquals("2", index.match(url("https://example.com/")).single().value())
+    }
+
+    @Test
+    fun sweepRemovesExpiredInOneBatch() {
+        val index = CookieIndex()
+        val short = Cookie.Builder().name("short").value("1").domain("example.com").expiresAt(now + 1_000).build()
+        val long = Cookie.Builder().name("long").value("1").domain("example.com").expiresAt(now + 60_000).build()
+        val other = Cookie.Builder().name("other").value("1").domain("example.org").expiresAt(now + 2_000).build()
+        index.put(long, now)
+        index.put(short, now)
+        index.put(other, now)
+
+        assertTrue(index.sweep(now).isEmpty())
+        assertEquals(listOf("short", "other"), names(index.sweep(now + 5_000)))
+        assertEquals(listOf("long"), names(index.all()))
+    }
+}
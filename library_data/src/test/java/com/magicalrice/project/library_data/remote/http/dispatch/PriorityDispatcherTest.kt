@@ -0,0 +1,166 @@
+package com.magicalrice.project.library_data.remote.http.dispatch
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class PriorityDispatcherTest {
+    private lateinit var server: MockWebServer
+    private lateinit var executor: ExecutorService
+    private val released = CountDownLatch(1)
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        //"/hold" 一直占用名额，直到测试放行
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (request.path == "/hold") {
+                    released.await(5, TimeUnit.SECONDS)
+                }
+                return MockResponse().setBody(request.path)
+            }
+        })
+        server.start()
+        executor = Executors.newCachedThreadPool()
+    }
+
+    @After
+    fun tearDown() {
+        released.countDown()
+        executor.shutdownNow()
+        server.shutdown()
+    }
+
+    private fun client(dispatcher: PriorityDispatcher): OkHttpClient {
+        return OkHttpClient.Builder()
+            .dispatcher(dispatcher.createOkHttpDispatcher())
+            .addInterceptor(dispatcher.getInterceptor())
+            .build()
+    }
+
+    private fun get(client: OkHttpClient, path: String, priority: String? = null): String {
+        val builder = Request.Builder().url(server.url(path))
+        if (priority != null) {
+            builder.header(RequestPriority.HEADER_NAME, priority)
+        }
+        return client.newCall(builder.build()).execute().use { it.body()!!.string() }
+    }
+
+    private fun awaitQueued(dispatcher: PriorityDispatcher, count: Int) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (dispatcher.getQueuedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        assertEquals(count, dispatcher.getQueuedCount())
+    }
+
+    @Test
+    fun queuedRequestsRunInPriorityOrder() {
+        val dispatcher = PriorityDispatcher(maxRequests = 1, reservedForCritical = 0)
+        val client = client(dispatcher)
+        val hold = executor.submit(Callable { get(client, "/hold") })
+        while (server.requestCount == 0) Thread.sleep(10)
+
+        val calls = listOf("/prefetch" to "prefetch", "/normal" to null, "/critical" to "critical").map { (path, priority) ->
+            executor.submit(Callable { get(client, path, priority) })
+        }
+        awaitQueued(dispatcher, 3)
+        released.countDown()
+        hold.get(5, TimeUnit.SECONDS)
+        calls.forEach { it.get(5, TimeUnit.SECONDS) }
+
+        val order = (0 until 4).map { server.takeRequest().path }
+        assertEquals(listOf("/hold", "/critical", "/normal", "/prefetch"), order)
+        assertEquals(0, dispatcher.getRunningCount())
+    }
+
+    @Test
+    fun reservedSlotsOnlyForCritical() {
+        val dispatcher = PriorityDispatcher(maxRequests = 2, reservedForCritical = 1)
+        val client = client(dispatcher)
+        executor.submit(Callable { get(client, "/hold") })
+        while (server.requestCount == 0) Thread.sleep(10)
+
+        val normal = executor.submit(Callable { get(client, "/normal") })
+        awaitQueued(dispatcher, 1)
+        assertEquals("/critical", get(client, "/critical", "critical"))
+        assertEquals(1, dispatcher.getQueuedCount())
+
+        released.countDown()
+        assertEquals("/normal", normal.get(5, TimeUnit.SECONDS))
+    }
+
+    /**
+     * 排队时被中断的请求要移出队列，名额不会泄漏
+     */
+    @Test
+    fun interruptedWaiterDoesNotLeakSlot() {
+        val dispatcher = PriorityDispatcher(maxRequests = 1, reservedForCritical = 0)
+        val client = client(dispatcher)
+        val hold = executor.submit(Callable { get(client, "/hold") })
+        while (server.requestCount == 0) Thread.sleep(10)
+
+        val failure = arrayOfNulls<Throwable>(1)
+        val waiter = Thread {
+            try {
+                get(client, "/interrupted")
+            } catch (e: IOException) {
+                failure[0] = e
+            }
+        }
+        waiter.start()
+        awaitQueued(dispatcher, 1)
+        waiter.interrupt()
+        waiter.join(5000)
+
+        assertTrue(failure[0] is IOException)
+        assertEquals(0, dispatcher.getQueuedCount())
+        released.countDown()
+        hold.get(5, TimeUnit.SECONDS)
+        assertEquals(0, dispatcher.getRunningCount())
+        assertEquals("/after", get(client, "/after"))
+        assertEquals(0, dispatcher.getRunningCount())
+    }
+
+    /**
+     * 同时入队的请求序号不能重复，否则 TreeSet 会丢掉其中一个，对应请求永远等待
+     */
+    @Test
+    fun concurrentWaitersAreAllQueued() {
+        val dispatcher = PriorityDispatcher(maxRequests = 1, reservedForCritical = 0)
+        val client = client(dispatcher)
+        val hold = executor.submit(Callable { get(client, "/hold") })
+        while (server.requestCount == 0) Thread.sleep(10)
+
+        val count = 32
+        val barrier = CyclicBarrier(count)
+        val calls = (0 until count).map {
+            executor.submit(Callable {
+                barrier.await()
+                get(client, "/waiter")
+            })
+        }
+        awaitQueued(dispatcher, count)
+
+        released.countDown()
+        hold.get(5, TimeUnit.SECONDS)
+        calls.forEach { assertEquals("/waiter", it.get(5, TimeUnit.SECONDS)) }
+        assertEquals(0, dispatcher.getRunningCount())
+    }
+}
@@ -0,0 +1,141 @@
+package com.magicalrice.project.library_data.remote.http.dns
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Test
+import java.net.InetAddress
+import java.net.UnknownHostException
+import java.util.concurrent.Executor
+
+class CachingDnsTest {
+    private var now = 0L
+    private val answers = HashMap<String, CachingDns.Answer>()
+    private val queries = ArrayList<String>()
+    private val pending = ArrayList<Runnable>()
+
+    private val resolver = object : CachingDns.Resolver {
+        override fun resolve(hostname: String): CachingDns.Answer {
+            queries.add(hostname)
+            return answers[hostname] ?: throw UnknownHostException(hostname)
+        }
+    }
+
+    private val clock = object : CachingDns.Clock {
+        override fun now(): Long {
+            return now
+        }
+    }
+
+    //后台任务先暂存，由测试决定何时执行
+    private val executor = Executor { pending.add(it) }
+
+    private fun dns(): CachingDns {
+        return CachingDns.Builder()
+            .resolver(resolver)
+            .clock(clock)
+            .executor(executor)
+            .defaultTtl(1_000)
+            .negativeTtl(500)
+            .maxStale(10_000)
+            .build()
+    }
+
+    private fun address(value: String): InetAddress {
+        return InetAddress.getByName(value)
+    }
+
+    private fun runPending() {
+        val tasks = ArrayList(pending)
+        pending.clear()
+        tasks.forEach { it.run() }
+    }
+
+    @Test
+    fun cachesUntilTtl() {
+        answers["a.com"] = CachingDns.Answer(listOf(address("10.0.0.1")), 2_000)
+        val dns = dns()
+
+        dns.lookup("a.com")
+        now = 1_999
+        dns.lookup("a.com")
+        assertEquals(1, queries.size)
+    }
+
+    @Test
+    fun servesStaleWhileRevalidating() {
+        answers["a.com"] = CachingDns.Answer(listOf(address("10.0.0.1")))
+        val dns = dns()
+        dns.lookup("a.com")
+
+        answers["a.com"] = CachingDns.Answer(listOf(address("10.0.0.2")))
+        now = 1_500
+        assertEquals(listOf(address("10.0.0.1")), dns.lookup("a.com"))
+        dns.lookup("a.com")
+        assertEquals(1, pending.size)
+
+        runPending()
+        assertEquals(listOf(address("10.0.0.2")), dns.lookup("a.com"))
+        assertEquals(2, queries.size)
+    }
+
+    @Test
+    fun keepsStaleResultWhenRefreshFails() {
+        answers["a.com"] = CachingDns.Answer(listOf(address("10.0.0.1")))
+        val dns = dns()
+        dns.lookup("a.com")
+
+        answers.clear()
+        now = 1_500
+        dns.lookup("a.com")
+        runPending()
+        assertEquals(listOf(address("10.0.0.1")), dns.lookup("a.com"))
+
+        now = 20_000
+        try {
+            dns.lookup("a.com")
+            fail()
+        } catch (expected: UnknownHostException) {
+        }
+    }
+
+    @Test
+    fun cachesFailures() {
+        val dns = dns()
+        repeat(2) {
+            try {
+                dns.lookup("missing.com")
+                fail()
+            } catch (expected: UnknownHostException) {
+            }
+        }
+        assertEquals(1, queries.size)
+
+        now = 500
+        answers["missing.com"] = CachingDns.Answer(listOf(address("10.0.0.3")))
+        assertEquals(listOf(address("10.0.0.3")), dns.lookup("missing.com"))
+    }
+
+    @Test
+    fun interleavesAddressFamilies() {
+        answers["a.com"] = CachingDns.Answer(
+            listOf(address("::1"), address("::2"), address("10.0.0.1"), address("10.0.0.2"), address("10.0.0.3"))
+        )
+
+        assertEquals(
+            listOf(address("10.0.0.1"), address("::1"), address("10.0.0.2"), address("::2"), address("10.0.0.3")),
+            dns().lookup("a.com")
+        )
+    }
+
+    @Test
+    fun prefetchResolvesInBackground() {
+        answers["a.com"] = CachingDns.Answer(listOf(address("10.0.0.1")))
+        val dns = dns()
+
+        dns.prefetch("a.com")
+        assertEquals(0, queries.size)
+        runPending()
+        dns.lookup("a.com")
+        assertEquals(1, queries.size)
+    }
+}
@@ -0,0 +1,218 @@
+package com.magicalrice.project.library_data.remote.http.download
+
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.RandomAccessFile
+import java.security.MessageDigest
+import java.util.Random
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class DownloadManagerTest {
+    private lateinit var server: MockWebServer
+    private lateinit var dir: File
+    private val content = ByteArray(1024 * 1024).also { Random(11).nextBytes(it) }
+    private val sha256 = MessageDigest.getInstance("SHA-256").digest(content).joinToString("") { "%02x".format(it) }
+    private val ranges = CopyOnWriteArrayList<String>()
+    private val client = OkHttpClient.Builder().retryOnConnectionFailure(false).build()
+    @Volatile
+    private var supportRanges = true
+    //每次响应 body 的传输速度，0 不限速
+    @Volatile
+    private var throttleBytes = 0L
+
+    /**
+     * 按 Range 头返回对应的部分，If-Range 不匹配时返回整个文件
+     */
+    private val dispatcher = object : Dispatcher() {
+        override fun dispatch(request: RecordedRequest): MockResponse {
+            val range = request.getHeader("Range")
+            val ifRange = request.getHeader("If-Range")
+            if (!supportRanges || range == null || (ifRange != null && ifRange != ETAG)) {
+                return MockResponse().setBody(Buffer().write(content)).setHeader("ETag", ETAG)
+            }
+            ranges.add(range)
+            val (first, last) = range.removePrefix("bytes=").split("-").map { it.toInt() }
+            val response = MockResponse()
+                .setResponseCode(206)
+                .setHeader("ETag", ETAG)
+                .setHeader("Content-Range", "bytes $first-$last/${content.size}")
+                .setBody(Buffer().write(content, first, last - first + 1))
+            if (throttleBytes > 0) {
+                response.throttleBody(throttleBytes, 100, TimeUnit.MILLISECONDS)
+            }
+            return response
+        }
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.setDispatcher(dispatcher)
+        server.start()
+        dir = File(System.getProperty("java.io.tmpdir"), "download-test-" + System.nanoTime())
+        dir.mkdirs()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        dir.deleteRecursively()
+    }
+
+    private fun manager(): DownloadManager {
+        return DownloadManager.Builder(client, File(dir, "state"))
+            .segments(3, 4)
+            .minSegmentSize(64 * 1024)
+            .maxRetries(0)
+            .build()
+    }
+
+    private fun await(manager: DownloadManager, target: File, hash: String?): DownloadTask {
+        val latch = CountDownLatch(1)
+        val task = manager.download(server.url("/file.bin").toString(), target, hash, object : DownloadListener {
+            override fun onProgress(task: DownloadTask, downloadedBytes: Long, totalBytes: Long) {}
+
+            override fun onComplete(task: DownloadTask, file: File) {
+                latch.countDown()
+            }
+
+            override fun onFailed(task: DownloadTask, error: Throwable) {
+                latch.countDown()
+            }
+        })
+        assertTrue(latch.await(20, TimeUnit.SECONDS))
+        return task
+    }
+
+    @Test
+    fun downloadsSegmentsAndVerifiesHash() {
+        val target = File(dir, "file.bin")
+        val task = await(manager(), target, sha256.toUpperCase())
+
+        assertEquals(DownloadTask.Status.COMPLETED, task.status)
+        assertArrayEquals(content, target.readBytes())
+        assertEquals(sha256, task.hash)
+        assertTrue(ranges.size >= 4)
+        assertFalse(task.partFile().exists())
+        assertFalse(task.stateFile.exists())
+    }
+
+    @Test
+    fun resumesFromSavedState() {
+        val target = File(dir, "file.bin")
+        val part = File(target.path + ".part")
+        val half = content.size / 2L
+        //前一次进程写完了前半段的一半和后半段的全部
+        RandomAccessFile(part, "rw").use {
+            it.setLength(content.size.toLong())
+            it.write(content, 0, (half / 2).toInt())
+            it.seek(half)
+            it.write(content, half.toInt(), (content.size - half).toInt())
+        }
+        val manager = manager()
+        val url = server.url("/file.bin").toString()
+        val stateFile = File(File(dir, "state"), md5Key(url, target) + ".dl")
+        DownloadState(
+            url, content.size.toLong(), ETAG,
+            listOf(DownloadSegment(0, half, half / 2), DownloadSegment(half, content.size.toLong(), content.size.toLong()))
+        ).write(stateFile)
+
+        val task = await(manager, target, sha256)
+
+        assertEquals(DownloadTask.Status.COMPLETED, task.status)
+        assertArrayEquals(content, target.readBytes())
+        //除探测外只请求了未完成的部分
+        val requested = ranges.drop(1).map { it.removePrefix("bytes=").split("-")[0].toLong() }
+        assertTrue(requested.isNotEmpty())
+        assertTrue(requested.all { it >= half / 2 && it < half })
+    }
+
+    @Test
+    fun hashMismatchFailsAndDiscardsData() {
+        val target = File(dir, "file.bin")
+        val task = await(manager(), target, "00")
+
+        assertEquals(DownloadTask.Status.FAILED, task.status)
+        assertFalse(target.exists())
+        assertFalse(task.partFile().exists())
+        assertFalse(task.stateFile.exists())
+    }
+
+    @Test
+    fun fallsBackToSingleStreamWithoutRanges() {
+        supportRanges = false
+        val target = File(dir, "file.bin")
+        val task = await(manager(), target, sha256)
+
+        assertEquals(DownloadTask.Status.COMPLETED, task.status)
+        assertArrayEquals(content, target.readBytes())
+        assertEquals(2, server.requestCount)
+    }
+
+    /**
+     * 暂停后在调度线程下一次检查前继续，旧的调度和分段线程要先退出，只有一次运行写文件并回调完成
+     */
+    @Test
+    fun pauseThenImmediateResumeRunsOnce() {
+        throttleBytes = 16 * 1024L
+        val target = File(dir, "file.bin")
+        val manager = manager()
+        val progressed = CountDownLatch(1)
+        val done = CountDownLatch(1)
+        val completions = AtomicInteger()
+        val failures = AtomicInteger()
+        val task = manager.download(server.url("/file.bin").toString(), target, sha256, object : DownloadListener {
+            override fun onProgress(task: DownloadTask, downloadedBytes: Long, totalBytes: Long) {
+                if (downloadedBytes > 0) progressed.countDown()
+            }
+
+            override fun onComplete(task: DownloadTask, file: File) {
+                completions.incrementAndGet()
+                done.countDown()
+            }
+
+            override fun onFailed(task: DownloadTask, error: Throwable) {
+                failures.incrementAndGet()
+                done.countDown()
+            }
+        })
+        assertTrue(progressed.await(10, TimeUnit.SECONDS))
+
+        manager.pause(task)
+        manager.resume(task)
+        throttleBytes = 0
+
+        assertTrue(done.await(20, TimeUnit.SECONDS))
+        //留出时间让多余的运行(如果有)也结束
+        Thread.sleep(500)
+        assertEquals(1, completions.get())
+        assertEquals(0, failures.get())
+        assertEquals(DownloadTask.Status.COMPLETED, task.status)
+        assertArrayEquals(content, target.readBytes())
+        assertFalse(task.stateFile.exists())
+    }
+
+    private fun md5Key(url: String, target: File): String {
+        return MessageDigest.getInstance("MD5").digest((url + "|" + target.absolutePath).toByteArray())
+            .joinToString("") { "%02x".format(it) }
+    }
+
+    companion object {
+        private const val ETAG = "\"v1\""
+    }
+}
@@ -0,0 +1,114 @@
+package com.magicalrice.project.library_data.remote.http.interceptor
+
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import okio.BufferedSink
+import okio.GzipSource
+import okio.Okio
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class GzipRequestInterceptorTest {
+    private lateinit var server: MockWebServer
+    private lateinit var interceptor: GzipRequestInterceptor
+    private lateinit var client: OkHttpClient
+
+    private val json = MediaType.parse("application/json; charset=utf-8")
+    private val events = (0 until 200).joinToString(",", "[", "]") {
+        "{\"event\":\"page_view\",\"page\":\"home\",\"seq\":$it}"
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        interceptor = GzipRequestInterceptor.Builder().hosts(server.hostName).build()
+        client = OkHttpClient.Builder().addInterceptor(interceptor).build()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun post(body: RequestBody): RecordedRequest {
+        server.enqueue(MockResponse())
+        client.newCall(Request.Builder().url(server.url("/events")).post(body).build()).execute().close()
+        return server.takeRequest()
+    }
+
+    private fun gunzip(body: Buffer): String {
+        return Okio.buffer(GzipSource(body)).readUtf8()
+    }
+
+    @Test
+    fun compressesLargeJson() {
+        val recorded = post(RequestBody.create(json, events))
+
+        assertEquals("gzip", recorded.getHeader("Content-Encoding"))
+        assertEquals("chunked", recorded.getHeader("Transfer-Encoding"))
+        assertTrue(recorded.bodySize < events.length / 5)
+        assertEquals(events, gunzip(recorded.body))
+    }
+
+    /**
+     * 长度未知的流式请求体边写边压缩
+     */
+    @Test
+    fun compressesStreamingBody() {
+        val body = object : RequestBody() {
+            override fun contentType() = json
+
+            override fun writeTo(sink: BufferedSink) {
+                repeat(50) { sink.writeUtf8(events) }
+            }
+        }
+
+        assertEquals(events.repeat(50), gunzip(post(body).body))
+    }
+
+    @Test
+    fun skipsSmallCompressedAndForeignBodies() {
+        assertNull(post(RequestBody.create(json, "{\"a\":1}")).getHeader("Content-Encoding"))
+        val image = ByteArray(64 * 1024)
+        assertNull(post(RequestBody.create(MediaType.parse("image/jpeg"), image)).getHeader("Content-Encoding"))
+
+        interceptor.removeHost(server.hostName)
+        val plain = post(RequestBody.create(json, events))
+        assertNull(plain.getHeader("Content-Encoding"))
+        assertEquals(events, plain.body.readUtf8())
+    }
+
+    @Test
+    fun pooledDeflatersAreIsolatedAcrossThreads() {
+        val executor = Executors.newFixedThreadPool(8)
+        try {
+            val bodies = (0 until 32).map { index -> events.replace("home", "home$index") }
+            repeat(bodies.size) { server.enqueue(MockResponse()) }
+            bodies.map { body ->
+                executor.submit(Callable {
+                    client.newCall(
+                        Request.Builder().url(server.url("/events")).post(RequestBody.create(json, body)).build()
+                    ).execute().close()
+                })
+            }.forEach { it.get() }
+
+            val received = (0 until bodies.size).map { gunzip(server.takeRequest().body) }.toSet()
+            assertEquals(bodies.toSet(), received)
+        } finally {
+            executor.shutdown()
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.magicalrice.project.library_data.remote.http.interceptor.logging
+
+import okio.Buffer
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class JsonStreamFormatterTest {
+
+    private fun format(json: String): String {
+        return JsonStreamFormatter.format(Buffer().writeUtf8(json), 2)
+    }
+
+    @Test
+    fun indentsNestedObjectsAndArrays() {
+        assertEquals(
+            "{\n  \"a\": 1,\n  \"b\": [\n    true,\n    null\n  ],\n  \"c\": {}\n}",
+            format("{ \"a\" :1,\"b\":[true , null],\n\"c\":{ }}")
+        )
+    }
+
+    /**
+     * 字符串内的结构字符、转义引号和多字节字符原样保留
+     */
+    @Test
+    fun stringContentIsCopiedVerbatim() {
+        val json = "{\"s\":\"a, {b}: [c] \\\"q\\\" 中文 \\\\\",\"n\":2}"
+
+        val formatted = format(json)
+
+        assertEquals("{\n  \"s\": \"a, {b}: [c] \\\"q\\\" 中文 \\\\\",\n  \"n\": 2\n}", formatted)
+        assertEquals(JSONObject(json).toString(), JSONObject(formatted).toString())
+    }
+
+    @Test
+    fun truncatedJsonIsFormattedUpToTheCut() {
+        assertEquals("[\n  {\n    \"id\": 1\n  },\n  {\n    \"id\": \"tr", format("[{\"id\":1},{\"id\":\"tr"))
+    }
+
+    @Test
+    fun detectsJsonByFirstNonWhitespace() {
+        assertTrue(JsonStreamFormatter.isJson(Buffer().writeUtf8(" \n\t[1]")))
+        assertTrue(JsonStreamFormatter.isJson(Buffer().writeUtf8("{}")))
+        assertFalse(JsonStreamFormatter.isJson(Buffer().writeUtf8("<html>")))
+        assertFalse(JsonStreamFormatter.isJson(Buffer()))
+    }
+}
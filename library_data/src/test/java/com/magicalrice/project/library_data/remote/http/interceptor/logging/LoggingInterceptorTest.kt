@@ -0,0 +1,166 @@
+package com.magicalrice.project.library_data.remote.http.interceptor.logging
+
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okio.BufferedSink
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.Collections
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class LoggingInterceptorTest {
+    private lateinit var server: MockWebServer
+    private val lines: MutableList<String> = Collections.synchronizedList(ArrayList())
+
+    private val logger = object : Logger {
+        override fun log(level: Int, tag: String, msg: String) {
+            lines.add(msg)
+        }
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun get(level: Level, maxBodyBytes: Long): String {
+        return client(level, maxBodyBytes).newCall(Request.Builder().url(server.url("/list")).build()).execute()
+            .use { it.body()!!.string() }
+    }
+
+    private fun client(level: Level, maxBodyBytes: Long): OkHttpClient {
+        return OkHttpClient.Builder()
+            .addInterceptor(
+                LoggingInterceptor.Builder()
+                    .loggable(true)
+                    .setLevel(level)
+                    .logger(logger)
+                    .maxBodyBytes(maxBodyBytes)
+                    .build()
+            )
+            .build()
+    }
+
+    private fun json(count: Int): String {
+        return (0 until count).joinToString(",", "[", "]") { "{\"id\":$it}" }
+    }
+
+    /**
+     * 只输出前 maxBodyBytes 字节，下游仍拿到完整 body
+     */
+    @Test
+    fun bodyIsCappedButStillDeliveredInFull() {
+        val body = json(5000)
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/json").setBody(body))
+
+        assertEquals(body, get(Level.BODY, 1024))
+
+        val logged = lines.joinToString("")
+        assertTrue(logged.contains("truncated, ${body.length - 1024} bytes omitted"))
+        assertTrue(logged.contains("\"id\": 0"))
+        assertFalse(logged.contains("\"id\": 4999"))
+    }
+
+    @Test
+    fun unknownLengthBodyIsMarkedTruncated() {
+        val body = json(5000)
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/json").setChunkedBody(body, 512))
+
+        assertEquals(body, get(Level.BODY, 1024))
+
+        assertTrue(lines.contains("... (truncated)"))
+    }
+
+    @Test
+    fun smallBodyIsLoggedWhole() {
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/json").setBody("{\"ok\":true}"))
+
+        assertEquals("{\"ok\":true}", get(Level.BODY, 1024))
+
+        assertTrue(lines.any { it.trim() == "\"ok\": true" })
+        assertFalse(lines.any { it.contains("truncated") })
+    }
+
+    @Test
+    fun bodyOfExactlyMaxBytesIsNotTruncated() {
+        val body = json(100)
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/json").setChunkedBody(body, 64))
+
+        assertEquals(body, get(Level.BODY, body.length.toLong()))
+
+        assertTrue(lines.any { it.trim() == "\"id\": 99" })
+        assertFalse(lines.any { it.contains("truncated") })
+    }
+
+    /**
+     * 请求体只复制前 maxBodyBytes + 1 字节，不会为了输出日志把整个 body 写一遍
+     */
+    @Test
+    fun requestBodyIsCopiedUpToMaxBytes() {
+        server.enqueue(MockResponse().setBody("ok"))
+        val json = json(5000)
+        var written = 0
+        var logging = true
+        val body = object : RequestBody() {
+            override fun contentType(): MediaType? {
+                return MediaType.parse("application/json")
+            }
+
+            override fun contentLength(): Long {
+                return json.length.toLong()
+            }
+
+            override fun writeTo(sink: BufferedSink) {
+                //按 100 字节一块写入，记录日志阶段写了多少
+                for (start in 0 until json.length step 100) {
+                    sink.writeUtf8(json, start, minOf(start + 100, json.length))
+                    sink.emit()
+                    if (logging) written += minOf(100, json.length - start)
+                }
+            }
+        }
+        val request = Request.Builder().url(server.url("/upload")).post(body).build()
+        val client = client(Level.BODY, 1024).newBuilder()
+            .addNetworkInterceptor { chain ->
+                logging = false
+                chain.proceed(chain.request())
+            }
+            .build()
+
+        client.newCall(request).execute().close()
+
+        assertTrue("$written bytes written for logging", written <= 1024 + 100)
+        assertTrue(lines.joinToString("").contains("truncated, ${json.length - 1024} bytes omitted"))
+        assertEquals(json, server.takeRequest().body.readUtf8())
+    }
+
+    /**
+     * HEADERS 不输出 body，也不读取
+     */
+    @Test
+    fun headersLevelSkipsBody() {
+        server.enqueue(MockResponse().setHeader("Content-Type", "application/json").setBody(json(10)))
+
+        assertEquals(json(10), get(Level.HEADERS, 1024))
+
+        assertFalse(lines.any { it.contains("\"id\"") || it.startsWith("Body logged in") })
+    }
+}
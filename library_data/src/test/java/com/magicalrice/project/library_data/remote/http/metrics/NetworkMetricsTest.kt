@@ -0,0 +1,141 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+import com.magicalrice.project.library_base.base.bandwidth.BandwidthEstimator
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.mockwebserver.SocketPolicy
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+class NetworkMetricsTest {
+    private lateinit var server: MockWebServer
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun client(metrics: NetworkMetrics): OkHttpClient {
+        return OkHttpClient.Builder()
+            .eventListenerFactory(metrics.eventListenerFactory())
+            .build()
+    }
+
+    private fun get(client: OkHttpClient, path: String): String {
+        return client.newCall(Request.Builder().url(server.url(path)).build()).execute().use { it.body()!!.string() }
+    }
+
+    /**
+     * 服务端处理时间计入 wait，慢速传输计入 response，total 覆盖整个请求
+     */
+    @Test
+    fun phasesSeparateServerWaitFromTransfer() {
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                Thread.sleep(200)
+                //约 300ms 传完
+                return MockResponse().setBody("x".repeat(4096)).throttleBody(1024, 100, TimeUnit.MILLISECONDS)
+            }
+        })
+        val metrics = NetworkMetrics()
+
+        get(client(metrics), "/feed")
+
+        val endpoint = metrics.getEndpoints().single()
+        val wait = endpoint.getHistogram(NetworkPhase.WAIT).getMeanMicros()
+        val response = endpoint.getHistogram(NetworkPhase.RESPONSE).getMeanMicros()
+        val total = endpoint.getHistogram(NetworkPhase.TOTAL).getMeanMicros()
+        assertTrue("wait $wait", wait in 200_000..290_000)
+        assertTrue("response $response", response >= 250_000 && response < wait + 300_000)
+        assertTrue("total $total", total >= wait + response)
+        assertEquals(1, endpoint.getHistogram(NetworkPhase.CONNECT).getCount())
+        assertEquals(1, endpoint.getHistogram(NetworkPhase.REQUEST).getCount())
+        assertEquals(4096, endpoint.getBytesReceived())
+    }
+
+    /**
+     * 路径中的 id 合并为同一接口，复用连接的请求没有 connect 阶段
+     */
+    @Test
+    fun reusedConnectionSkipsConnectPhase() {
+        val metrics = NetworkMetrics()
+        val client = client(metrics)
+        server.enqueue(MockResponse().setBody("a"))
+        server.enqueue(MockResponse().setBody("b"))
+
+        get(client, "/user/1")
+        get(client, "/user/2")
+
+        val endpoint = metrics.getEndpoints().single()
+        assertEquals("/user/{id}", endpoint.path)
+        assertEquals(2, endpoint.getCallCount())
+        assertEquals(1, endpoint.getNewConnectionCount())
+        assertEquals(1, endpoint.getReusedConnectionCount())
+        assertEquals(1, endpoint.getHistogram(NetworkPhase.CONNECT).getCount())
+        assertEquals(2, endpoint.getHistogram(NetworkPhase.WAIT).getCount())
+        assertEquals(2, endpoint.getHistogram(NetworkPhase.TOTAL).getCount())
+    }
+
+    @Test
+    fun failedCallIsCountedWithoutResponsePhase() {
+        val metrics = NetworkMetrics()
+        val client = OkHttpClient.Builder()
+            .eventListenerFactory(metrics.eventListenerFactory())
+            .retryOnConnectionFailure(false)
+            .build()
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+
+        try {
+            get(client, "/feed")
+            fail()
+        } catch (e: IOException) {
+        }
+
+        val endpoint = metrics.getEndpoints().single()
+        assertEquals(1, endpoint.getFailureCount())
+        assertEquals(0, endpoint.getHistogram(NetworkPhase.RESPONSE).getCount())
+        assertEquals(1, endpoint.getHistogram(NetworkPhase.TOTAL).getCount())
+    }
+
+    /**
+     * 限速的下载、上传请求不影响带宽估算
+     */
+    @Test
+    fun excludedCallsAreNotBandwidthSamples() {
+        val estimator = BandwidthEstimator()
+        val prior = estimator.getBitrateEstimate()
+        val client = client(NetworkMetrics(estimator))
+        val body = "x".repeat(64 * 1024)
+
+        repeat(BandwidthEstimator.MIN_SAMPLES) {
+            server.enqueue(MockResponse().setBody(body))
+            val call = client.newCall(Request.Builder().url(server.url("/download")).build())
+            NetworkMetrics.excludeFromBandwidth(call)
+            call.execute().use { it.body()!!.string() }
+        }
+        assertEquals(prior, estimator.getBitrateEstimate())
+
+        repeat(BandwidthEstimator.MIN_SAMPLES) {
+            server.enqueue(MockResponse().setBody(body))
+            client.newCall(Request.Builder().url(server.url("/feed")).build()).execute().use { it.body()!!.string() }
+        }
+        assertNotEquals(prior, estimator.getBitrateEstimate())
+    }
+}
@@ -0,0 +1,72 @@
+package com.magicalrice.project.library_data.remote.http.metrics
+
+import com.magicalrice.project.library_data.remote.http.utils.HttpsUtils
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+import java.security.KeyStore
+import javax.net.ssl.KeyManagerFactory
+import javax.net.ssl.SSLContext
+
+class TlsSessionReuseTest {
+    private lateinit var server: MockWebServer
+    private val metrics = NetworkMetrics()
+
+    @Before
+    fun setUp() {
+        //自签名的 localhost 证书，默认配置使用的 UnSafeTrustManager 会接受
+        val keyStore = KeyStore.getInstance("PKCS12")
+        javaClass.getResourceAsStream("/tls/localhost.p12").use { keyStore.load(it, PASSWORD) }
+        val keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm())
+        keyManagers.init(keyStore, PASSWORD)
+        val serverContext = SSLContext.getInstance("TLS")
+        serverContext.init(keyManagers.keyManagers, null, null)
+        server = MockWebServer()
+        server.useHttps(serverContext.socketFactory, false)
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun newClient(): OkHttpClient {
+        val sslParams = HttpsUtils.getSslSocketFactory()
+        return OkHttpClient.Builder()
+            .sslSocketFactory(sslParams.sSLSocketFactory, sslParams.trustManager)
+            .hostnameVerifier(HttpsUtils.UnSafeHostnameVerifier)
+            .eventListenerFactory(metrics.eventListenerFactory())
+            .build()
+    }
+
+    private fun call(client: OkHttpClient) {
+        server.enqueue(MockResponse().setBody("ok"))
+        client.newCall(Request.Builder().url(server.url("/")).build()).execute().close()
+        client.connectionPool().evictAll()
+    }
+
+    @Test
+    fun clientsShareSessionCache() {
+        assertSame(HttpsUtils.getSslSocketFactory(), HttpsUtils.getSslSocketFactory())
+
+        call(newClient())
+        //会话创建时间精确到毫秒
+        Thread.sleep(5)
+        call(newClient())
+        call(newClient())
+
+        assertEquals(1, metrics.getFullHandshakeCount())
+        assertEquals(2, metrics.getResumedHandshakeCount())
+    }
+
+    companion object {
+        private val PASSWORD = "secret".toCharArray()
+    }
+}
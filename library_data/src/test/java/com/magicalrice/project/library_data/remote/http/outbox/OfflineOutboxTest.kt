@@ -0,0 +1,265 @@
+package com.magicalrice.project.library_data.remote.http.outbox
+
+import com.magicalrice.project.library_data.remote.http.resilience.RetryInterceptor
+import okhttp3.HttpUrl
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+class OfflineOutboxTest {
+    private lateinit var server: MockWebServer
+    private lateinit var file: File
+    private lateinit var executor: ScheduledExecutorService
+    @Volatile
+    private var connected = false
+
+    private val connectivity = object : OfflineOutbox.Connectivity {
+        override fun isConnected(): Boolean {
+            return connected
+        }
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        file = File.createTempFile("outbox", ".bin")
+        file.delete()
+        executor = Executors.newSingleThreadScheduledExecutor()
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        server.shutdown()
+        file.delete()
+    }
+
+    private fun outbox(): OfflineOutbox {
+        return OfflineOutbox.Builder(file)
+            .connectivity(connectivity)
+            .batchSize(2)
+            .executor(executor)
+            .build()
+    }
+
+    private fun client(outbox: OfflineOutbox): OkHttpClient {
+        return OkHttpClient.Builder()
+            .addInterceptor(outbox.getInterceptor())
+            .build()
+            .also { outbox.attach(it) }
+    }
+
+    private fun post(path: String, body: String, mode: String = OfflineOutbox.HEADER_QUEUE): Request {
+        val header = mode.split(": ")
+        return Request.Builder()
+            .url(server.url(path))
+            .header(header[0], header[1])
+            .post(RequestBody.create(MediaType.parse("application/json"), body))
+            .build()
+    }
+
+    private fun awaitReplay(outbox: OfflineOutbox) {
+        outbox.replay()
+        executor.submit {}.get()
+    }
+
+    @Test
+    fun offlineRequestIsQueuedAndReplayedInOrder() {
+        val outbox = outbox()
+        val client = client(outbox)
+        for (i in 1..3) {
+            try {
+                client.newCall(post("/comment/$i", "{\"i\":$i}")).execute()
+                fail()
+            } catch (e: OfflineQueuedException) {
+                assertNotNull(e.entry.idempotencyKey)
+            }
+        }
+        assertEquals(3, outbox.depth())
+        assertEquals(0, server.requestCount)
+
+        repeat(3) { server.enqueue(MockResponse().setResponseCode(201)) }
+        connected = true
+        awaitReplay(outbox)
+
+        val keys = HashSet<String>()
+        for (i in 1..3) {
+            val recorded = server.takeRequest()
+            assertEquals("/comment/$i", recorded.path)
+            assertEquals("{\"i\":$i}", recorded.body.readUtf8())
+            assertEquals(null, recorded.getHeader(OfflineOutbox.HEADER_NAME))
+            keys.add(recorded.getHeader(RetryInterceptor.IDEMPOTENCY_KEY_HEADER))
+        }
+        assertEquals(3, keys.size)
+        assertEquals(0, outbox.depth())
+    }
+
+    @Test
+    fun replaceModeKeepsOnlyLatestWrite() {
+        val outbox = outbox()
+        val client = client(outbox)
+        for (value in listOf("like", "unlike", "like")) {
+            try {
+                client.newCall(post("/like/42", value, OfflineOutbox.HEADER_REPLACE)).execute()
+                fail()
+            } catch (e: OfflineQueuedException) {
+            }
+        }
+        try {
+            client.newCall(post("/comment", "hi")).execute()
+            fail()
+        } catch (e: OfflineQueuedException) {
+        }
+        assertEquals(2, outbox.depth())
+
+        val entries = outbox.getEntries()
+        assertEquals("/like/42", HttpUrl.parse(entries[0].url)!!.encodedPath())
+        assertEquals("like", Buffer().apply { entries[0].toRequest().body()!!.writeTo(this) }.readUtf8())
+        assertEquals("/comment", HttpUrl.parse(entries[1].url)!!.encodedPath())
+    }
+
+    @Test
+    fun queueSurvivesRestart() {
+        val first = outbox()
+        first.enqueue(post("/a", "1"))
+        first.enqueue(post("/b", "2"), "b")
+        first.enqueue(post("/b", "3"), "b")
+        first.enqueue(Request.Builder().url(server.url("/c")).delete().build())
+
+        val restored = outbox()
+        val entries = restored.getEntries()
+        assertEquals(3, entries.size)
+        assertEquals(listOf("/a", "/b", "/c"), entries.map { HttpUrl.parse(it.url)!!.encodedPath() })
+        assertEquals(first.getEntries().map { it.idempotencyKey }, entries.map { it.idempotencyKey })
+
+        //新入队的 id 不与已有的重复
+        val added = restored.enqueue(post("/d", "4"))!!
+        assertEquals(entries.map { it.id }.max()!! + 1, added.id)
+    }
+
+    @Test
+    fun truncatedTailIsDiscarded() {
+        val outbox = outbox()
+        outbox.enqueue(post("/a", "1"))
+        outbox.enqueue(post("/b", "2"))
+        val length = file.length()
+        RandomAccessFile(file, "rw").use { it.setLength(length - 3) }
+
+        assertEquals(1, outbox().depth())
+    }
+
+    @Test
+    fun serverErrorStopsReplayAndClientErrorDrops() {
+        val outbox = outbox()
+        client(outbox)
+        outbox.enqueue(post("/a", "1"))
+        outbox.enqueue(post("/b", "2"))
+        outbox.enqueue(post("/c", "3"))
+        server.enqueue(MockResponse().setResponseCode(400))
+        server.enqueue(MockResponse().setResponseCode(503))
+        connected = true
+        awaitReplay(outbox)
+
+        assertEquals(2, server.requestCount)
+        assertEquals(listOf("/b", "/c"), outbox.getEntries().map { HttpUrl.parse(it.url)!!.encodedPath() })
+        assertEquals(1, outbox.getEntries()[0].attempts)
+    }
+
+    /**
+     * 有网但队列未清空时，新请求排在旧请求后面并替换相同 key 的旧请求，不直接发出
+     */
+    @Test
+    fun onlineWriteQueuesBehindPendingEntries() {
+        val outbox = outbox()
+        val client = client(outbox)
+        outbox.enqueue(post("/like/42", "like"), "like-42")
+        outbox.enqueue(post("/comment", "hi"))
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(MockResponse().setResponseCode(503))
+        connected = true
+        awaitReplay(outbox)
+        assertEquals("/like/42", server.takeRequest().path)
+
+        try {
+            client.newCall(post("/like/42", "unlike").newBuilder()
+                .header(OfflineOutbox.COALESCE_KEY_HEADER, "like-42").build()).execute()
+            fail()
+        } catch (e: OfflineQueuedException) {
+        }
+        //入队后立即回放，替换后的请求排在队尾
+        executor.submit {}.get()
+        assertEquals("/comment", server.takeRequest().path)
+        assertEquals(listOf("/comment", "/like/42"), outbox.getEntries().map { HttpUrl.parse(it.url)!!.encodedPath() })
+        assertEquals("unlike", Buffer().apply { outbox.getEntries()[1].toRequest().body()!!.writeTo(this) }.readUtf8())
+    }
+
+    /**
+     * 队列已满时新请求直接失败，不越过队列中更早的请求发出
+     */
+    @Test
+    fun fullQueueFailsInsteadOfSkippingAhead() {
+        val outbox = OfflineOutbox.Builder(file)
+            .connectivity(connectivity)
+            .maxEntries(1)
+            .executor(executor)
+            .build()
+        val client = client(outbox)
+        outbox.enqueue(post("/a", "1"))
+
+        try {
+            client.newCall(post("/b", "2")).execute()
+            fail()
+        } catch (e: IOException) {
+            assertFalse(e is OfflineQueuedException)
+        }
+        assertEquals(0, server.requestCount)
+        assertEquals(listOf("/a"), outbox.getEntries().map { HttpUrl.parse(it.url)!!.encodedPath() })
+    }
+
+    /**
+     * 有网时请求因网络异常入队，不等网络变化广播也会回放
+     */
+    @Test
+    fun failedOnlineWriteIsReplayed() {
+        val outbox = outbox()
+        val client = OkHttpClient.Builder()
+            .addInterceptor(outbox.getInterceptor())
+            .retryOnConnectionFailure(false)
+            .build()
+            .also { outbox.attach(it) }
+        connected = true
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START))
+        server.enqueue(MockResponse().setResponseCode(201))
+        try {
+            client.newCall(post("/comment", "hi")).execute()
+            fail()
+        } catch (e: OfflineQueuedException) {
+        }
+        assertEquals(1, outbox.depth())
+
+        //断开的连接也会记录一次(path 为空)
+        server.takeRequest()
+        assertEquals("/comment", server.takeRequest(5, TimeUnit.SECONDS)?.path)
+        executor.submit {}.get()
+        assertEquals(0, outbox.depth())
+    }
+}
@@ -0,0 +1,162 @@
+package com.magicalrice.project.library_data.remote.http.resilience
+
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.util.Random
+
+class RetryInterceptorTest {
+    private lateinit var server: MockWebServer
+    private val sleeps = ArrayList<Long>()
+    private var now = 0L
+
+    private val clock = object : RetryInterceptor.Clock {
+        override fun now(): Long {
+            return now
+        }
+    }
+
+    private val sleeper = object : RetryInterceptor.Sleeper {
+        override fun sleep(millis: Long) {
+            sleeps.add(millis)
+            now += millis
+        }
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun client(interceptor: RetryInterceptor): OkHttpClient {
+        return OkHttpClient.Builder()
+            .addInterceptor(interceptor)
+            .retryOnConnectionFailure(false)
+            .build()
+    }
+
+    private fun builder(): RetryInterceptor.Builder {
+        return RetryInterceptor.Builder()
+            .clock(clock)
+            .sleeper(sleeper)
+            .random(Random(1))
+    }
+
+    @Test
+    fun retriesIdempotentRequestOn503() {
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+        server.enqueue(MockResponse().setBody("ok"))
+        val interceptor = builder().maxRetries(2).backoff(100, 1_000).build()
+
+        val response = client(interceptor).newCall(Request.Builder().url(server.url("/")).build()).execute()
+
+        assertEquals("ok", response.body()!!.string())
+        assertEquals(3, server.requestCount)
+        assertEquals(2L, interceptor.getMetrics().getRetryCount())
+        assertEquals(2, sleeps.size)
+        for (delay in sleeps) {
+            if (delay < 100 || delay > 1_000) fail("delay out of range: $delay")
+        }
+    }
+
+    @Test
+    fun honorsRetryAfter() {
+        server.enqueue(MockResponse().setResponseCode(429).addHeader("Retry-After", "3"))
+        server.enqueue(MockResponse().setBody("ok"))
+        val interceptor = builder().build()
+
+        client(interceptor).newCall(Request.Builder().url(server.url("/")).build()).execute()
+
+        assertEquals(listOf(3_000L), sleeps)
+    }
+
+    @Test
+    fun doesNotRetryPost() {
+        server.enqueue(MockResponse().setResponseCode(503))
+        val interceptor = builder().build()
+        val body = RequestBody.create(MediaType.parse("text/plain"), "x")
+
+        val response = client(interceptor).newCall(Request.Builder().url(server.url("/")).post(body).build()).execute()
+
+        assertEquals(503, response.code())
+        assertEquals(1, server.requestCount)
+    }
+
+    @Test
+    fun breakerOpensThenProbes() {
+        val interceptor = builder().maxRetries(0).circuitBreaker(2, 1_000).build()
+        val client = client(interceptor)
+        val request = Request.Builder().url(server.url("/")).build()
+        server.enqueue(MockResponse().setResponseCode(500))
+        server.enqueue(MockResponse().setResponseCode(500))
+        client.newCall(request).execute().close()
+        client.newCall(request).execute().close()
+        assertEquals(CircuitBreaker.State.OPEN, interceptor.getBreaker(server.hostName).getState())
+
+        try {
+            client.newCall(request).execute()
+            fail()
+        } catch (expected: CircuitOpenException) {
+        }
+        assertEquals(2, server.requestCount)
+
+        now += 1_000
+        server.enqueue(MockResponse().setBody("ok"))
+        client.newCall(request).execute().close()
+        assertEquals(CircuitBreaker.State.CLOSED, interceptor.getBreaker(server.hostName).getState())
+        assertEquals(3L, interceptor.getMetrics().getBreakerTransitionCount())
+    }
+
+    /**
+     * 探测请求抛出非 IOException 时重新熔断，冷却后还能再次探测
+     */
+    @Test
+    fun probeFailingWithRuntimeExceptionReopensBreaker() {
+        val interceptor = builder().maxRetries(0).circuitBreaker(1, 1_000).build()
+        var crash = false
+        val client = OkHttpClient.Builder()
+            .addInterceptor(interceptor)
+            .addInterceptor { chain ->
+                if (crash) throw IllegalStateException("crash")
+                chain.proceed(chain.request())
+            }
+            .retryOnConnectionFailure(false)
+            .build()
+        val request = Request.Builder().url(server.url("/")).build()
+        server.enqueue(MockResponse().setResponseCode(500))
+        client.newCall(request).execute().close()
+        val breaker = interceptor.getBreaker(server.hostName)
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState())
+
+        now += 1_000
+        crash = true
+        try {
+            client.newCall(request).execute()
+            fail()
+        } catch (expected: IllegalStateException) {
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState())
+
+        now += 1_000
+        crash = false
+        server.enqueue(MockResponse().setBody("ok"))
+        client.newCall(request).execute().close()
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState())
+    }
+}
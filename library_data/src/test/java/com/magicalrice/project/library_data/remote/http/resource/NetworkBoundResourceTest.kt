@@ -0,0 +1,135 @@
+package com.magicalrice.project.library_data.remote.http.resource
+
+import com.magicalrice.project.library_base.advanced.CacheDiskUtils
+import com.magicalrice.project.library_base.advanced.CacheDoubleUtils
+import com.magicalrice.project.library_base.advanced.CacheMemoryUtils
+import io.reactivex.Observable
+import io.reactivex.subjects.PublishSubject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class NetworkBoundResourceTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var cache: CacheDoubleUtils
+
+    data class Profile(val name: String, val level: Int)
+
+    @Before
+    fun setUp() {
+        cache = CacheDoubleUtils.getInstance(
+            CacheMemoryUtils.getInstance(folder.root.name, 4),
+            CacheDiskUtils.getInstance(folder.newFolder(), Long.MAX_VALUE, 16)
+        )
+    }
+
+    private open inner class ProfileResource(private val call: () -> Observable<Profile>) :
+        NetworkBoundResource<Profile>("profile", Profile::class.java, cache) {
+        override fun createCall(): Observable<Profile> {
+            return call()
+        }
+    }
+
+    private fun statuses(values: List<Resource<Profile>>): List<Resource.Status> {
+        return values.map { it.status }
+    }
+
+    @Test
+    fun emitsCacheThenNetworkAndWritesThrough() {
+        ProfileResource { Observable.just(Profile("old", 1)) }.asFlowable().blockingLast()
+        val network = PublishSubject.create<Profile>()
+
+        val observer = ProfileResource { network }.asFlowable().test()
+        observer.awaitCount(2)
+        assertEquals(Profile("old", 1), observer.values()[1].data)
+        network.onNext(Profile("new", 2))
+        observer.awaitTerminalEvent(5, TimeUnit.SECONDS)
+
+        assertEquals(
+            listOf(Resource.Status.LOADING, Resource.Status.LOADING, Resource.Status.SUCCESS),
+            statuses(observer.values())
+        )
+        val next = ProfileResource { Observable.never() }.asFlowable().test().awaitCount(2)
+        assertEquals(Profile("new", 2), next.values()[1].data)
+        next.dispose()
+    }
+
+    /**
+     * 网络先于缓存解析完成时，不再发出旧数据
+     */
+    @Test
+    fun dropsCacheWhenNetworkWins() {
+        ProfileResource { Observable.just(Profile("old", 1)) }.asFlowable().blockingLast()
+        val networkDone = CountDownLatch(1)
+        val resource = object : ProfileResource({ Observable.just(Profile("new", 2)).doOnComplete { networkDone.countDown() } }) {
+            override fun decode(bytes: ByteArray): Profile {
+                networkDone.await(5, TimeUnit.SECONDS)
+                return super.decode(bytes)
+            }
+        }
+
+        val values = resource.asFlowable().toList().blockingGet()
+
+        assertEquals(listOf(Resource.Status.LOADING, Resource.Status.SUCCESS), statuses(values))
+        assertEquals(Profile("new", 2), values.last().data)
+    }
+
+    @Test
+    fun errorKeepsCachedData() {
+        ProfileResource { Observable.just(Profile("old", 1)) }.asFlowable().blockingLast()
+        val network = PublishSubject.create<Profile>()
+        val observer = ProfileResource { network }.asFlowable().test()
+        observer.awaitCount(2)
+
+        network.onError(IOException("offline"))
+        observer.awaitTerminalEvent(5, TimeUnit.SECONDS)
+
+        val last = observer.values().last()
+        assertEquals(Resource.Status.ERROR, last.status)
+        assertEquals(Profile("old", 1), last.data)
+    }
+
+    @Test
+    fun sharesConcurrentLoadsAndCancelsWithLastSubscriber() {
+        val calls = AtomicInteger()
+        val network = PublishSubject.create<Profile>()
+        val first = ProfileResource { calls.incrementAndGet(); network }.asFlowable().test()
+        first.awaitCount(1)
+        val second = ProfileResource { calls.incrementAndGet(); network }.asFlowable().test()
+        second.awaitCount(1)
+
+        //第二个订阅者立刻收到最近一次状态，且没有发起新的请求
+        assertNull(second.values()[0].data)
+        assertTrue(waitFor { network.hasObservers() })
+        assertEquals(1, calls.get())
+
+        first.dispose()
+        assertTrue(network.hasObservers())
+        second.dispose()
+        assertTrue(waitFor { !network.hasObservers() })
+
+        ProfileResource { calls.incrementAndGet(); Observable.just(Profile("new", 2)) }.asFlowable().blockingLast()
+        assertEquals(2, calls.get())
+        assertFalse(network.hasObservers())
+    }
+
+    private fun waitFor(condition: () -> Boolean): Boolean {
+        val deadline = System.currentTimeMillis() + 5000
+        while (!condition()) {
+            if (System.currentTimeMillis() > deadline) return false
+            Thread.sleep(5)
+        }
+        return true
+    }
+}
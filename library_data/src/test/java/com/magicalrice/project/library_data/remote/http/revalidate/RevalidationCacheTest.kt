@@ -0,0 +1,131 @@
+package com.magicalrice.project.library_data.remote.http.revalidate
+
+import com.google.gson.Gson
+import com.magicalrice.project.library_base.advanced.CacheDiskUtils
+import com.magicalrice.project.library_base.advanced.CacheDoubleUtils
+import com.magicalrice.project.library_base.advanced.CacheMemoryUtils
+import io.reactivex.Observable
+import okhttp3.ResponseBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import retrofit2.Response
+import retrofit2.Retrofit
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory
+import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.http.GET
+import retrofit2.http.HeaderMap
+import java.io.File
+
+class RevalidationCacheTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var server: MockWebServer
+    private lateinit var api: Api
+    private lateinit var retrofit: Retrofit
+
+    data class Config(val version: Int, val features: List<String>)
+
+    interface Api {
+        @GET("config")
+        fun config(@HeaderMap headers: Map<String, String>): Observable<Response<ResponseBody>>
+    }
+
+    private val body = Gson().toJson(Config(3, listOf("feed", "chat")))
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        retrofit = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(GsonConverterFactory.create())
+            .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+            .build()
+        api = retrofit.create(Api::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    /**
+     * @param memory 内存缓存的名字，换一个名字相当于进程重启，只剩磁盘上的记录
+     */
+    private fun newCache(name: String, dir: File = folder.newFolder(name), memory: String = name): RevalidationCache {
+        val store = CacheDoubleUtils.getInstance(
+            CacheMemoryUtils.getInstance("${memory}_bytes", 4),
+            CacheDiskUtils.getInstance(dir, Long.MAX_VALUE, 16)
+        )
+        return RevalidationCache.Builder(retrofit)
+            .store(store)
+            .decoded(CacheMemoryUtils.getInstance("${memory}_objects", 4))
+            .build()
+    }
+
+    private fun RevalidationCache.config(): Config {
+        return fetch<Config>("config") { api.config(it) }.blockingFirst()
+    }
+
+    @Test
+    fun notModifiedReusesDecodedValue() {
+        val cache = newCache("reuse")
+        server.enqueue(
+            MockResponse().setBody(body)
+                .setHeader("ETag", "\"v3\"")
+                .setHeader("Last-Modified", "Mon, 19 Oct 2026 08:00:00 GMT")
+        )
+        server.enqueue(MockResponse().setResponseCode(304))
+
+        val first = cache.config()
+        assertNull(server.takeRequest().getHeader("If-None-Match"))
+        val second = cache.config()
+        val revalidate = server.takeRequest()
+
+        assertEquals("\"v3\"", revalidate.getHeader("If-None-Match"))
+        assertEquals("Mon, 19 Oct 2026 08:00:00 GMT", revalidate.getHeader("If-Modified-Since"))
+        assertSame(first, second)
+        assertEquals(1, cache.getNotModifiedCount())
+        assertEquals(body.length.toLong(), cache.getBytesSaved())
+    }
+
+    /**
+     * 进程重启后内存中没有对象，304 时从磁盘记录解析
+     */
+    @Test
+    fun notModifiedDecodesStoredBody() {
+        val dir = folder.newFolder("restart")
+        server.enqueue(MockResponse().setBody(body).setHeader("ETag", "\"v3\""))
+        server.enqueue(MockResponse().setResponseCode(304))
+        val first = newCache("restart", dir).config()
+
+        val restarted = newCache("restart", dir, "restarted")
+        assertEquals(first, restarted.config())
+        assertEquals(1, restarted.getNotModifiedCount())
+        server.takeRequest()
+        assertEquals("\"v3\"", server.takeRequest().getHeader("If-None-Match"))
+    }
+
+    @Test
+    fun responseWithoutValidatorIsNotCached() {
+        val cache = newCache("plain")
+        server.enqueue(MockResponse().setBody(body))
+        server.enqueue(MockResponse().setBody(body))
+
+        cache.config()
+        cache.config()
+
+        server.takeRequest()
+        assertNull(server.takeRequest().getHeader("If-None-Match"))
+        assertEquals(0, cache.getNotModifiedCount())
+    }
+}
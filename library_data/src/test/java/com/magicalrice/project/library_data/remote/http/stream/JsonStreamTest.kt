@@ -0,0 +1,114 @@
+package com.magicalrice.project.library_data.remote.http.stream
+
+import com.google.gson.Gson
+import com.magicalrice.project.library_data.remote.http.coalesce.CoalescingInterceptor
+import io.reactivex.Flowable
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import retrofit2.Retrofit
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory
+import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.http.GET
+import java.util.concurrent.TimeUnit
+
+class JsonStreamTest {
+    private lateinit var server: MockWebServer
+    private lateinit var api: Api
+
+    data class Item(val id: Int, val name: String)
+
+    interface Api {
+        @JsonStream
+        @GET("items")
+        fun items(): Flowable<Item>
+
+        @JsonStream("data.list")
+        @GET("page")
+        fun page(): Flowable<Item>
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        //合并拦截器在没有相同请求等待时不缓存响应体，流式接口不需要额外声明
+        val client = OkHttpClient.Builder().addInterceptor(CoalescingInterceptor()).build()
+        api = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .client(client)
+            .addConverterFactory(JsonStreamConverterFactory.create())
+            .addConverterFactory(GsonConverterFactory.create())
+            .addCallAdapterFactory(JsonStreamCallAdapterFactory.create(Gson()))
+            .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+            .build()
+            .create(Api::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    private fun items(count: Int): String {
+        val sb = StringBuilder("[")
+        for (i in 0 until count) {
+            if (i > 0) sb.append(',')
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item").append(i).append("\"}")
+        }
+        return sb.append(']').toString()
+    }
+
+    /**
+     * 下游请求多少解析多少，没有请求时不发出网络请求
+     */
+    @Test
+    fun parsesOnlyRequestedItems() {
+        server.enqueue(MockResponse().setBody(items(100)))
+        val subscriber = api.items().test(0)
+        assertEquals(0, server.requestCount)
+
+        subscriber.request(3)
+        subscriber.assertValues(Item(0, "item0"), Item(1, "item1"), Item(2, "item2"))
+        subscriber.assertNotComplete()
+
+        subscriber.request(Long.MAX_VALUE)
+        subscriber.assertValueCount(100)
+        subscriber.assertComplete()
+        assertEquals(1, server.requestCount)
+    }
+
+    /**
+     * 第一个元素在响应体下载完之前就发射
+     */
+    @Test
+    fun firstItemArrivesBeforeBodyCompletes() {
+        val body = items(4000)
+        //约 1.5s 才能下载完
+        server.enqueue(MockResponse().setBody(body).throttleBody(body.length / 6L, 250, TimeUnit.MILLISECONDS))
+        val start = System.nanoTime()
+
+        val first = api.items().blockingFirst()
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        assertEquals(Item(0, "item0"), first)
+        assertTrue("first item after $elapsedMs ms", elapsedMs < 750)
+    }
+
+    @Test
+    fun readsNestedArrayAndSkipsNulls() {
+        server.enqueue(
+            MockResponse().setBody(
+                "{\"code\":0,\"extra\":{\"x\":[1]},\"data\":{\"total\":2,\"list\":" +
+                        "[{\"id\":1,\"name\":\"a\"},null,{\"id\":2,\"name\":\"b\"}]}}"
+            )
+        )
+
+        assertEquals(listOf(Item(1, "a"), Item(2, "b")), api.page().toList().blockingGet())
+    }
+}
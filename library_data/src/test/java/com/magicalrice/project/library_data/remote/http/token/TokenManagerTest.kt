@@ -0,0 +1,120 @@
+package com.magicalrice.project.library_data.remote.http.token
+
+import com.magicalrice.project.library_base.base.AppManager
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class TokenManagerTest {
+    private lateinit var server: MockWebServer
+    private lateinit var executor: ExecutorService
+    private lateinit var client: OkHttpClient
+    private val unauthorized = AtomicInteger()
+    private val refreshes = AtomicInteger()
+
+    @Before
+    fun setUp() {
+        AppManager.getInstance().init(RuntimeEnvironment.application)
+        TokenManager.setToken("stale")
+        server = MockWebServer()
+        //只认 fresh，其它 token 一律 401
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (request.getHeader(TokenManager.TOKEN_HEADER) == "fresh") {
+                    return MockResponse().setBody("ok")
+                }
+                unauthorized.incrementAndGet()
+                return MockResponse().setResponseCode(401)
+            }
+        })
+        server.start()
+        executor = Executors.newCachedThreadPool()
+        client = OkHttpClient.Builder()
+            .addInterceptor(TokenManager.getInterceptor())
+            .authenticator(TokenManager.getAuthenticator())
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        TokenManager.setRefresher(null)
+        TokenManager.clearToken()
+        executor.shutdownNow()
+        server.shutdown()
+    }
+
+    /**
+     * 所有请求都带着旧 token 收到 401 后才让刷新返回，保证刷新期间其余请求都在排队
+     */
+    private fun awaitUnauthorized(count: Int) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (unauthorized.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+
+    private fun getConcurrently(count: Int): List<Int> {
+        val futures = (0 until count).map { seq ->
+            executor.submit(Callable {
+                client.newCall(Request.Builder().url(server.url("/profile?seq=$seq")).build()).execute().use { it.code() }
+            })
+        }
+        return futures.map { it.get(10, TimeUnit.SECONDS) }
+    }
+
+    @Test
+    fun concurrentUnauthorizedTriggersOneRefresh() {
+        TokenManager.setRefresher(object : TokenManager.TokenRefresher {
+            override fun refresh(staleToken: String): String? {
+                refreshes.incrementAndGet()
+                awaitUnauthorized(6)
+                return "fresh"
+            }
+        })
+
+        assertEquals(List(6) { 200 }, getConcurrently(6))
+        assertEquals(1, refreshes.get())
+        assertEquals(6, unauthorized.get())
+        assertEquals(12, server.requestCount)
+        assertEquals("fresh", TokenManager.getToken())
+    }
+
+    @Test
+    fun failedRefreshFailsQueuedCalls() {
+        TokenManager.setRefresher(object : TokenManager.TokenRefresher {
+            override fun refresh(staleToken: String): String? {
+                refreshes.incrementAndGet()
+                awaitUnauthorized(6)
+                throw IOException("refresh failed")
+            }
+        })
+
+        assertEquals(List(6) { 401 }, getConcurrently(6))
+        assertEquals(1, refreshes.get())
+        assertEquals(6, server.requestCount)
+        assertEquals("stale", TokenManager.getToken())
+
+        //之后新的 401 会重新尝试刷新
+        assertEquals(listOf(401), getConcurrently(1))
+        assertEquals(2, refreshes.get())
+    }
+}
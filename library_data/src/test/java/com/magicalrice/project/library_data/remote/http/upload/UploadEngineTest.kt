@@ -0,0 +1,225 @@
+package com.magicalrice.project.library_data.remote.http.upload
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.util.Random
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class UploadEngineTest {
+    private lateinit var server: MockWebServer
+    private lateinit var dir: File
+    private lateinit var source: File
+    private val content = ByteArray(300 * 1024).also { Random(7).nextBytes(it) }
+    private val client = OkHttpClient.Builder().retryOnConnectionFailure(false).build()
+
+    /**
+     * 每个分片直接作为 PUT body，便于在服务端还原
+     */
+    private val protocol = object : UploadProtocol {
+        override fun target(): String {
+            return server.url("/upload").toString()
+        }
+
+        override fun newChunkRequest(task: UploadTask, offset: Long, chunk: RequestBody): Request {
+            return Request.Builder()
+                .url(target())
+                .header("Upload-Id", task.uploadId)
+                .header("Upload-Offset", offset.toString())
+                .put(chunk)
+                .build()
+        }
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        dir = File(System.getProperty("java.io.tmpdir"), "upload-test-" + System.nanoTime())
+        dir.mkdirs()
+        source = File(dir, "photo.jpg")
+        source.writeBytes(content)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        dir.deleteRecursively()
+    }
+
+    private fun engine(): UploadEngine {
+        return UploadEngine.Builder(client, File(dir, "state"))
+            .chunkSize(128 * 1024)
+            .maxRetries(0)
+            .build()
+    }
+
+    private class Recorder : UploadListener {
+        val done = CountDownLatch(1)
+        var progressCalls = 0
+        var lastProgress = 0L
+        var result: String? = null
+        var error: Throwable? = null
+
+        override fun onProgress(task: UploadTask, uploadedBytes: Long, totalBytes: Long) {
+            progressCalls++
+            lastProgress = uploadedBytes
+        }
+
+        override fun onComplete(task: UploadTask, result: String?) {
+            this.result = result
+            done.countDown()
+        }
+
+        override fun onFailed(task: UploadTask, error: Throwable) {
+            this.error = error
+            done.countDown()
+        }
+    }
+
+    @Test
+    fun uploadsInChunks() {
+        server.enqueue(MockResponse().setResponseCode(308))
+        server.enqueue(MockResponse().setResponseCode(308))
+        server.enqueue(MockResponse().setBody("{\"url\":\"/img/1.jpg\"}"))
+        val recorder = Recorder()
+
+        val task = engine().upload(source, protocol, recorder)
+        assertTrue(recorder.done.await(10, TimeUnit.SECONDS))
+
+        assertEquals(UploadTask.Status.COMPLETED, task.status)
+        assertEquals("{\"url\":\"/img/1.jpg\"}", recorder.result)
+        assertEquals(content.size.toLong(), recorder.lastProgress)
+        //每 1% 最多回调一次
+        assertTrue(recorder.progressCalls <= 101)
+        val received = Buffer()
+        for (offset in listOf(0, 128 * 1024, 256 * 1024)) {
+            val request = server.takeRequest()
+            assertEquals(offset.toString(), request.getHeader("Upload-Offset"))
+            assertEquals(task.uploadId, request.getHeader("Upload-Id"))
+            received.writeAll(request.body)
+        }
+        assertArrayEquals(content, received.readByteArray())
+        assertEquals(0, File(dir, "state").list()!!.size)
+    }
+
+    @Test
+    fun resumesFromConfirmedChunkAfterRestart() {
+        server.enqueue(MockResponse().setResponseCode(308))
+        server.enqueue(MockResponse().setResponseCode(503))
+        val first = Recorder()
+        val failed = engine().upload(source, protocol, first)
+        assertTrue(first.done.await(10, TimeUnit.SECONDS))
+        assertEquals(UploadTask.Status.FAILED, failed.status)
+        assertEquals(128 * 1024L, failed.confirmedBytes)
+        server.takeRequest()
+        server.takeRequest()
+
+        server.enqueue(MockResponse().setResponseCode(308))
+        server.enqueue(MockResponse().setBody("ok"))
+        val second = Recorder()
+        //新的 engine 模拟进程重启
+        val resumed = engine().upload(source, protocol, second)
+        assertTrue(second.done.await(10, TimeUnit.SECONDS))
+
+        assertEquals(UploadTask.Status.COMPLETED, resumed.status)
+        assertEquals(failed.uploadId, resumed.uploadId)
+        assertEquals("131072", server.takeRequest().getHeader("Upload-Offset"))
+        assertEquals("262144", server.takeRequest().getHeader("Upload-Offset"))
+    }
+
+    @Test
+    fun clientErrorFailsWithoutRetry() {
+        server.enqueue(MockResponse().setResponseCode(413))
+        val recorder = Recorder()
+        val task = UploadEngine.Builder(client, File(dir, "state")).maxRetries(3).build()
+            .upload(source, protocol, recorder)
+        assertTrue(recorder.done.await(10, TimeUnit.SECONDS))
+
+        assertEquals(UploadTask.Status.FAILED, task.status)
+        assertEquals(413, (recorder.error as UploadEngine.HttpStatusException).code)
+        assertEquals(1, server.requestCount)
+    }
+
+    @Test
+    fun multipartChunkCarriesSessionFields() {
+        server.enqueue(MockResponse().setResponseCode(308))
+        server.enqueue(MockResponse().setResponseCode(308))
+        server.enqueue(MockResponse().setBody("ok"))
+        val recorder = Recorder()
+        val task = engine().upload(source, ChunkedMultipartProtocol(server.url("/upload").toString()), recorder)
+        assertTrue(recorder.done.await(10, TimeUnit.SECONDS))
+
+        server.takeRequest()
+        val request = server.takeRequest()
+        assertEquals("bytes 131072-262143/307200", request.getHeader("Content-Range"))
+        val body = request.body.readUtf8()
+        assertTrue(body.contains(task.uploadId))
+        assertTrue(body.contains("name=\"chunkIndex\""))
+        assertTrue(body.contains("filename=\"photo.jpg\""))
+    }
+
+    /**
+     * 退避中暂停再继续，只有新的一次运行在上传，旧线程不会在醒来后重复发送分片
+     */
+    @Test
+    fun pauseDuringBackoffStopsPreviousRun() {
+        val requests = AtomicInteger()
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                return when (requests.incrementAndGet()) {
+                    1 -> MockResponse().setResponseCode(503)
+                    2 -> {
+                        //拖过第一次的 1s 退避
+                        Thread.sleep(1_500)
+                        MockResponse().setResponseCode(308)
+                    }
+                    3 -> MockResponse().setResponseCode(308)
+                    else -> MockResponse().setBody("ok")
+                }
+            }
+        })
+        val engine = UploadEngine.Builder(client, File(dir, "state"))
+            .chunkSize(128 * 1024)
+            .maxRetries(3)
+            .build()
+        val recorder = Recorder()
+        val task = engine.upload(source, protocol, recorder)
+        server.takeRequest()
+        //503 立即返回，之后 1s 内在退避
+        Thread.sleep(300)
+        engine.pause(task)
+        assertEquals(UploadTask.Status.PAUSED, task.status)
+        engine.resume(task)
+        assertTrue(recorder.done.await(10, TimeUnit.SECONDS))
+
+        assertEquals(UploadTask.Status.COMPLETED, task.status)
+        assertEquals(4, server.requestCount)
+        val offsets = (0 until 3).map { server.takeRequest().getHeader("Upload-Offset") }
+        assertEquals(listOf("0", "131072", "262144"), offsets)
+    }
+
+    @Test
+    fun bandwidthLimiterCapsThroughput() {
+        val limiter = BandwidthLimiter(512 * 1024L)
+        val start = System.nanoTime()
+        //初始桶为空，256KB 在 512KB/s 下约需 0.5s
+        repeat(32) { limiter.acquire(8 * 1024) }
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        assertTrue("elapsed $elapsedMs ms", elapsedMs >= 400)
+    }
+}
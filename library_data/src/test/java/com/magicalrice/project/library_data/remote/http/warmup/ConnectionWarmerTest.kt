@@ -0,0 +1,98 @@
+package com.magicalrice.project.library_data.remote.http.warmup
+
+import okhttp3.ConnectionPool
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ConnectionWarmerTest {
+    private lateinit var server: MockWebServer
+    private lateinit var scheduler: ScheduledExecutorService
+    private val pool = ConnectionPool(5, 5, TimeUnit.MINUTES)
+    private val authenticated = AtomicInteger()
+    private lateinit var client: OkHttpClient
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        scheduler = Executors.newSingleThreadScheduledExecutor()
+        client = OkHttpClient.Builder()
+            .connectionPool(pool)
+            .addInterceptor { it.proceed(it.request().newBuilder().header("token", "t").build()) }
+            .authenticator { _, response ->
+                authenticated.incrementAndGet()
+                response.request().newBuilder().header("token", "refreshed").build()
+            }
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        scheduler.shutdownNow()
+        pool.evictAll()
+        server.shutdown()
+    }
+
+    private fun warmer(grace: Long = 30_000L): ConnectionWarmer {
+        return ConnectionWarmer.Builder()
+            .foreground(true)
+            .backgroundGrace(grace)
+            .scheduler(scheduler)
+            .build()
+            .also { it.attach(client) }
+    }
+
+    private fun awaitIdle(count: Int) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (pool.idleConnectionCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        assertEquals(count, pool.idleConnectionCount())
+    }
+
+    /**
+     * 预热请求不经过业务拦截器，401 也不会触发认证
+     */
+    @Test
+    fun warmUpOpensReusableConnection() {
+        server.enqueue(MockResponse().setResponseCode(401))
+        server.enqueue(MockResponse().setBody("ok"))
+        warmer().register(server.url("/api/").toString())
+
+        val warm = server.takeRequest(5, TimeUnit.SECONDS)!!
+        assertEquals("HEAD", warm.method)
+        assertEquals("/api/", warm.path)
+        assertNull(warm.getHeader("token"))
+        awaitIdle(1)
+        assertEquals(0, authenticated.get())
+
+        client.newCall(Request.Builder().url(server.url("/api/feed")).build()).execute().close()
+        //业务请求复用预热的连接
+        assertEquals(1, server.takeRequest().sequenceNumber)
+        assertEquals(1, pool.connectionCount())
+    }
+
+    @Test
+    fun backgroundEvictsIdleConnections() {
+        server.enqueue(MockResponse())
+        val warmer = warmer(grace = 0)
+        warmer.register(server.url("/").toString())
+        server.takeRequest(5, TimeUnit.SECONDS)
+        awaitIdle(1)
+
+        warmer.onBackground()
+        scheduler.submit {}.get()
+        assertEquals(0, pool.connectionCount())
+    }
+}
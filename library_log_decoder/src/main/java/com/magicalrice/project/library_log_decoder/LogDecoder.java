@@ -0,0 +1,327 @@
+package com.magicalrice.project.library_log_decoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 把 LogUtils 写出的二进制日志(.blog)转成文本或 JSON。
+ * <p>
+ * 格式见 library_base 中的 BinaryLogEncoder，这里的常量需要与其保持一致。每段以 MLOG 开头，
+ * 同一文件中可以有多段(进程重启后接着写)，多个文件直接拼接也能解码。
+ * 文本输出与 LogFileFormat.TEXT 的日志文件相同(时间按写入时的时区)；JSON 每行一个对象，
+ * 包含原始时间戳、格式串和带类型的参数，方便再用其它工具筛选。
+ * <pre>
+ * java -jar library_log_decoder.jar [--json] util-2026-10-19.blog ...
+ * </pre>
+ */
+public class LogDecoder {
+    static final byte[] MAGIC = {'M', 'L', 'O', 'G'};
+    static final int VERSION = 1;
+    static final int RECORD_DEFINE = 0x01;
+    static final int RECORD_EVENT = 0x02;
+    static final int RECORD_TEXT = 0x03;
+    static final int ARG_NULL = 0;
+    static final int ARG_TRUE = 1;
+    static final int ARG_FALSE = 2;
+    static final int ARG_LONG = 3;
+    static final int ARG_DOUBLE = 4;
+    static final int ARG_FLOAT = 5;
+    static final int ARG_STRING = 6;
+
+    private static final char[] LEVELS = {'V', 'D', 'I', 'W', 'E', 'A'};
+    //与 android.util.Log.VERBOSE 相同
+    private static final int LEVEL_VERBOSE = 2;
+    private static final long DAY_MILLIS = 86400000L;
+
+    private final DataInputStream input;
+    private final Writer output;
+    private final boolean json;
+    private final List<String> strings = new ArrayList<>();
+    private long offsetMillis;
+    private long lastMillis;
+
+    public LogDecoder(InputStream input, Writer output, boolean json) {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+        this.output = output;
+        this.json = json;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean json = false;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if ("--json".equals(arg)) {
+                json = true;
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("usage: LogDecoder [--json] <file.blog>...");
+            System.exit(2);
+        }
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (String file : files) {
+            try (InputStream input = new FileInputStream(file)) {
+                new LogDecoder(input, output, json).decode();
+            } catch (IOException e) {
+                output.flush();
+                System.err.println(file + ": " + e.getMessage());
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * 解码整个文件。进程被杀时最后一条记录可能不完整，到此为止并返回已解码的条数
+     */
+    public int decode() throws IOException {
+        if (input.read() != MAGIC[0]) {
+            throw new IOException("Not a binary log file");
+        }
+        readHead();
+        int count = 0;
+        while (true) {
+            int type = input.read();
+            if (type == -1) {
+                return count;
+            }
+            try {
+                switch (type) {
+                    case 'M':
+                        readHead();
+                        break;
+                    case RECORD_DEFINE:
+                        int id = (int) readVarLong();
+                        String value = readString();
+                        if (id != strings.size() + 1) {
+                            throw new IOException("Unexpected string id " + id);
+                        }
+                        strings.add(value);
+                        break;
+                    case RECORD_EVENT:
+                        readEvent();
+                        count++;
+                        break;
+                    case RECORD_TEXT:
+                        writeText(readString());
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            } catch (EOFException e) {
+                System.err.println("truncated record after " + count + " events");
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 段头，第一个字节已读取
+     */
+    private void readHead() throws IOException {
+        byte[] magic = new byte[MAGIC.length - 1];
+        input.readFully(magic);
+        if (!Arrays.equals(magic, Arrays.copyOfRange(MAGIC, 1, MAGIC.length))) {
+            throw new IOException("Not a binary log file");
+        }
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        offsetMillis = unzigzag(readVarLong()) * 60000L;
+        strings.clear();
+        lastMillis = 0;
+    }
+
+    private void readEvent() throws IOException {
+        long millis = lastMillis + unzigzag(readVarLong());
+        lastMillis = millis;
+        int level = input.readUnsignedByte();
+        String tag = lookup(readVarLong());
+        String head = lookup(readVarLong());
+        long formatId = readVarLong();
+        String format = formatId == 0 ? null : lookup(formatId);
+        int count = (int) readVarLong();
+        Object[] args = new Object[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = readArg();
+        }
+        String message = format == null ? joinArgs(args) : formatTemplate(format, args);
+        char levelChar = level >= LEVEL_VERBOSE && level < LEVEL_VERBOSE + LEVELS.length
+                ? LEVELS[level - LEVEL_VERBOSE] : '?';
+        if (json) {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append("{\"time\":").append(millis)
+                    .append(",\"level\":\"").append(levelChar).append('"')
+                    .append(",\"tag\":");
+            appendJson(sb, tag);
+            sb.append(",\"head\":");
+            appendJson(sb, head);
+            sb.append(",\"format\":");
+            appendJson(sb, format);
+            sb.append(",\"args\":[");
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) sb.append(',');
+                appendJson(sb, args[i]);
+            }
+            sb.append("],\"message\":");
+            appendJson(sb, message);
+            output.write(sb.append("}\n").toString());
+        } else {
+            output.write(formatTime(millis) + levelChar + "/" + tag + head + message + "\n");
+        }
+    }
+
+    private Object readArg() throws IOException {
+        int type = input.readUnsignedByte();
+        switch (type) {
+            case ARG_NULL:
+                return null;
+            case ARG_TRUE:
+                return Boolean.TRUE;
+            case ARG_FALSE:
+                return Boolean.FALSE;
+            case ARG_LONG:
+                return unzigzag(readVarLong());
+            case ARG_DOUBLE:
+                return input.readDouble();
+            case ARG_FLOAT:
+                return input.readFloat();
+            case ARG_STRING:
+                return readString();
+            default:
+                throw new IOException("Unknown argument type " + type);
+        }
+    }
+
+    private void writeText(String text) throws IOException {
+        if (json) {
+            StringBuilder sb = new StringBuilder(text.length() + 16).append("{\"text\":");
+            appendJson(sb, text);
+            output.write(sb.append("}\n").toString());
+        } else {
+            output.write(text);
+        }
+    }
+
+    private String lookup(long id) throws IOException {
+        if (id < 1 || id > strings.size()) {
+            throw new IOException("Undefined string id " + id);
+        }
+        return strings.get((int) id - 1);
+    }
+
+    /**
+     * 与 LogUtils 一致：一个参数直接输出，多个参数每行一个 args[i] = ...
+     */
+    static String joinArgs(Object[] args) {
+        if (args.length == 1) {
+            return String.valueOf(args[0]);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            sb.append("args[").append(i).append("] = ").append(args[i]).append('\n');
+        }
+        return sb.length() == 0 ? "log nothing" : sb.toString();
+    }
+
+    static String formatTemplate(String format, Object[] args) {
+        StringBuilder sb = new StringBuilder(format.length() + args.length * 8);
+        int start = 0;
+        for (Object arg : args) {
+            int placeholder = format.indexOf("{}", start);
+            if (placeholder == -1) break;
+            sb.append(format, start, placeholder).append(arg);
+            start = placeholder + 2;
+        }
+        return sb.append(format, start, format.length()).toString();
+    }
+
+    private String formatTime(long millis) {
+        long time = Math.floorMod(millis + offsetMillis, DAY_MILLIS) / 1000;
+        char[] chars = {
+                (char) ('0' + time / 36000), (char) ('0' + time / 3600 % 10), ':',
+                (char) ('0' + time % 3600 / 600), (char) ('0' + time % 3600 / 60 % 10), ':',
+                (char) ('0' + time % 60 / 10), (char) ('0' + time % 10)
+        };
+        return new String(chars);
+    }
+
+    private static void appendJson(StringBuilder sb, Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Long) {
+            sb.append(value);
+            return;
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (!Double.isNaN(number) && !Double.isInfinite(number)) {
+                sb.append(value);
+                return;
+            }
+        }
+        String text = value.toString();
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -1,9 +1,19 @@
 package com.magicalrice.project.library_widget.base.image
 
+import android.content.Context
+import com.bumptech.glide.Glide
+import com.bumptech.glide.Registry
 import com.bumptech.glide.annotation.GlideModule
 import com.bumptech.glide.module.AppGlideModule
+import java.io.InputStream
 
 @GlideModule
 class GlideModuleApp : AppGlideModule() {
 
-}
\ No newline at end of file
+    override fun registerComponents(context: Context, glide: Glide, registry: Registry) {
+        registry.prepend(
+            QualityImage::class.java,
+            InputStream::class.java,
+            QualityImageLoader.Factory { GlideUtils.getUrlRewriter() })
+    }
+}
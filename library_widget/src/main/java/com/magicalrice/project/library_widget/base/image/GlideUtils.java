@@ -5,34 +5,70 @@ import android.graphics.drawable.PictureDrawable;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
+import com.magicalrice.project.library_base.base.bandwidth.BandwidthEstimator;
+import com.magicalrice.project.library_base.base.bandwidth.QualityTier;
 
 /**
  *
  */
 public final class GlideUtils {
+    private static volatile ImageUrlRewriter urlRewriter;
+
+    /**
+     * 设置后网络图片按控件尺寸和带宽档位改写地址，向 CDN 请求合适的尺寸和格式
+     */
+    public static void setUrlRewriter(ImageUrlRewriter rewriter) {
+        urlRewriter = rewriter;
+    }
+
+    static ImageUrlRewriter getUrlRewriter() {
+        return urlRewriter;
+    }
 
     public static void setCircleImage(Context context, String url, ImageView view) {
-        RequestOptions requestOptions = new RequestOptions()
+        RequestOptions requestOptions = qualityOptions()
 //                .placeholder(R.drawable.def_img_round_holder)
 //                .error(R.drawable.def_img_round_error)
                 .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
                 .circleCrop().dontAnimate();
-        Glide.with(context).load(url).apply(requestOptions).into(view);
+        Glide.with(context).load(model(url)).apply(requestOptions).into(view);
     }
 
     public static void setImage(Context context, String url, ImageView view) {
-        if (url.endsWith(".svg") || url.endsWith(".SVG")) {
+        if (url != null && (url.endsWith(".svg") || url.endsWith(".SVG"))) {
             setSvgImage(context, url, view);
             return;
         }
 
-        RequestOptions requestOptions = new RequestOptions()
+        RequestOptions requestOptions = qualityOptions()
 //                .placeholder(R.drawable.def_img)
 //                .error(R.drawable.def_img)
                 .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC).dontAnimate();
-        Glide.with(context).load(url).apply(requestOptions).into(view);
+        Glide.with(context).load(model(url)).apply(requestOptions).into(view);
+    }
+
+    /**
+     * 按当前带宽档位缩小请求尺寸，低档位使用 RGB_565 解码
+     */
+    private static RequestOptions qualityOptions() {
+        QualityTier tier = BandwidthEstimator.Companion.getInstance().getTier();
+        return new RequestOptions()
+                .sizeMultiplier(tier.getImageScale())
+                .format(tier.getPreferRgb565() ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888);
+    }
+
+    private static Object model(String url) {
+        //空地址原样交给 Glide，走 Glide 自己的空地址处理
+        if (url == null || url.isEmpty()) {
+            return url;
+        }
+        if (urlRewriter != null && (url.startsWith("http://") || url.startsWith("https://"))) {
+            return new QualityImage(url);
+        }
+        return url;
     }
 
     private static void setSvgImage(Context context, String url, ImageView view) {
@@ -0,0 +1,26 @@
+package com.magicalrice.project.library_widget.base.image
+
+import com.magicalrice.project.library_base.base.bandwidth.QualityTier
+
+/**
+ * @package com.magicalrice.project.library_widget.base.image
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 按控件尺寸和带宽档位改写图片地址，一般用于拼接 CDN 的缩放、格式和质量参数
+ *
+ * 通过 [GlideUtils.setUrlRewriter] 设置，例如：
+ * ```
+ * GlideUtils.setUrlRewriter(object : ImageUrlRewriter {
+ *     override fun rewrite(url: String, width: Int, height: Int, tier: QualityTier) =
+ *         "$url?x-oss-process=image/resize,w_$width/format,webp/quality,q_${tier.imageQuality}"
+ * })
+ * ```
+ */
+
+interface ImageUrlRewriter {
+    /**
+     * @param width  需要的宽度(已按 [QualityTier.imageScale] 缩放)，原图加载时为 Target.SIZE_ORIGINAL
+     * @param height 需要的高度，同上
+     */
+    fun rewrite(url: String, width: Int, height: Int, tier: QualityTier): String
+}
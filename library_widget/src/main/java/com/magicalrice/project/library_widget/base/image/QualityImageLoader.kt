@@ -0,0 +1,48 @@
+package com.magicalrice.project.library_widget.base.image
+
+import com.bumptech.glide.load.Options
+import com.bumptech.glide.load.model.GlideUrl
+import com.bumptech.glide.load.model.ModelLoader
+import com.bumptech.glide.load.model.ModelLoaderFactory
+import com.bumptech.glide.load.model.MultiModelLoaderFactory
+import com.bumptech.glide.load.model.stream.BaseGlideUrlLoader
+import com.magicalrice.project.library_base.base.bandwidth.BandwidthEstimator
+import java.io.InputStream
+
+/**
+ * @package com.magicalrice.project.library_widget.base.image
+ * @author Adolph
+ * @date 2026-10-19 Mon
+ * @description 加载 [QualityImage]，在知道控件尺寸后通过 [ImageUrlRewriter] 生成实际地址
+ *
+ * 磁盘缓存以改写后的地址为 key，不同尺寸、档位的图片分开缓存。
+ */
+
+class QualityImageLoader(
+    concreteLoader: ModelLoader<GlideUrl, InputStream>,
+    private val rewriter: () -> ImageUrlRewriter?
+) : BaseGlideUrlLoader<QualityImage>(concreteLoader) {
+
+    override fun getUrl(model: QualityImage, width: Int, height: Int, options: Options): String {
+        val tier = BandwidthEstimator.getInstance().getTier()
+        return rewriter()?.rewrite(model.url, width, height, tier) ?: model.url
+    }
+
+    override fun handles(model: QualityImage): Boolean {
+        return true
+    }
+
+    class Factory(private val rewriter: () -> ImageUrlRewriter?) : ModelLoaderFactory<QualityImage, InputStream> {
+        override fun build(multiFactory: MultiModelLoaderFactory): ModelLoader<QualityImage, InputStream> {
+            return QualityImageLoader(multiFactory.build(GlideUrl::class.java, InputStream::class.java), rewriter)
+        }
+
+        override fun teardown() {
+        }
+    }
+}
+
+/**
+ * 需要按带宽档位改写地址的网络图片
+ */
+data class QualityImage(val url: String)